@@ -0,0 +1,102 @@
+package com.xiaoleilu.loServer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.filter.Filter;
+import com.xiaoleilu.loServer.filter.FilterChain;
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+import com.xiaoleilu.loServer.router.ActionRoute;
+import com.xiaoleilu.loServer.router.Router;
+
+/**
+ * 路由和Filter查找的基准测试<br>
+ * 注册数十个静态路径、路径变量和通配的路由，分别测试各类路径的匹配耗时
+ *
+ * @author Looly
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouterBenchmark {
+
+	@Param({ "/", "/user/list", "/user/12345", "/user/12345/orders/678", "/static/js/lib/app.min.js", "/no/such/path" })
+	public String path;
+
+	private Router router;
+	private int[] params;
+
+	@Setup
+	public void setup() {
+		final Action action = new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setContent("ok");
+			}
+		};
+		final Filter filter = new Filter() {
+			@Override
+			public boolean doFilter(Request request, Response response) {
+				return true;
+			}
+		};
+
+		for (int i = 0; i < 20; i++) {
+			ServerSetting.setAction("/module" + i + "/list", action);
+			ServerSetting.setAction("/module" + i + "/{id}", action);
+		}
+		ServerSetting.setAction("/user/list", action);
+		ServerSetting.setAction("/user/{id}", action);
+		ServerSetting.setAction("/user/{id}/orders/{orderId}", action);
+		ServerSetting.setAction("/static/**", action);
+
+		ServerSetting.setFilter("/*", filter);
+		ServerSetting.setFilter("/user/*", filter, 1);
+		ServerSetting.setFilter("/user/list", filter, 2);
+
+		router = ServerSetting.getRouter();
+		params = new int[router.getMaxParams() << 1];
+	}
+
+	/**
+	 * 公开的按路径查找Action
+	 */
+	@Benchmark
+	public Action getAction() {
+		return ServerSetting.getAction(path);
+	}
+
+	/**
+	 * 公开的按路径查找Filter
+	 */
+	@Benchmark
+	public Filter getFilter() {
+		return ServerSetting.getFilter(path);
+	}
+
+	/**
+	 * ActionHandler中的实际流程：匹配路由并捕获路径变量，取得预编译的Filter链
+	 */
+	@Benchmark
+	public FilterChain matchWithParams() {
+		final ActionRoute route = router.match(path, params);
+		return (null == route) ? ServerSetting.getDefaultFilterChain() : route.getFilterChain();
+	}
+}
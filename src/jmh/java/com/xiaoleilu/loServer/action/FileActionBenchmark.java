@@ -0,0 +1,82 @@
+package com.xiaoleilu.loServer.action;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.resource.StaticResource;
+import com.xiaoleilu.loServer.resource.StaticResourceCache;
+
+import cn.hutool.core.io.FileUtil;
+
+/**
+ * 静态文件路径解析的基准测试<br>
+ * getFileByPath每次都解码和检查路径，缓存命中时只有一次查找，两者的差距即缓存节省的开销
+ *
+ * @author Looly
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileActionBenchmark {
+
+	@Param({ "/index.html", "/static/js/lib/app.min.js", "/docs/user%20guide.txt", "/static/../../etc/passwd" })
+	public String path;
+
+	private File root;
+	private StaticResourceCache cache;
+
+	@Setup
+	public void setup() {
+		root = FileUtil.mkdir(FileUtil.file(FileUtil.getTmpDirPath(), "loServer-benchmark-" + System.nanoTime()));
+		FileUtil.writeUtf8String("<html></html>", FileUtil.file(root, "index.html"));
+		FileUtil.writeUtf8String("var a = 1;", FileUtil.file(root, "static/js/lib/app.min.js"));
+		FileUtil.writeUtf8String("readme", FileUtil.file(root, "docs/user guide.txt"));
+		ServerSetting.setRoot(root);
+
+		cache = new StaticResourceCache(ServerSetting.getStaticCacheSize(), false);
+		final File file = FileAction.getFileByPath(path);
+		if (null != file && file.isFile()) {
+			cache.put(path, file);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		cache.close();
+		FileUtil.del(root);
+	}
+
+	/**
+	 * 解码路径、安全检查并转换为文件
+	 */
+	@Benchmark
+	public File getFileByPath() {
+		return FileAction.getFileByPath(path);
+	}
+
+	/**
+	 * FileAction中缓存命中时的查找
+	 */
+	@Benchmark
+	public StaticResource cacheHit() {
+		return cache.get(path);
+	}
+}
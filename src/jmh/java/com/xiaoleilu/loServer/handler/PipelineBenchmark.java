@@ -0,0 +1,169 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.dispatch.ActionDispatcher;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.StrUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 完整HTTP/1.1处理流程的基准测试<br>
+ * 通过HttpServerInitializer.addHttp1在EmbeddedChannel中组装与服务器相同的HTTP/1.1 Pipeline，写入原始请求字节，读出编码后的响应，覆盖解码、路由、Action、静态文件缓存、压缩和编码<br>
+ * 不包括网络IO和FlushConsolidationHandler（其合并依赖事件循环的调度）
+ *
+ * @author Looly
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+	/**
+	 * 请求场景：<br>
+	 * action：简单Action<br>
+	 * pathParam：带路径变量和Query参数的Action<br>
+	 * actionGzip：4KB的动态响应，gzip压缩<br>
+	 * static：内存中缓存的小文件<br>
+	 * staticGzip：压缩后缓存的文本文件<br>
+	 * pipelined：一次写入4个管线化的请求
+	 */
+	@Param({ "action", "pathParam", "actionGzip", "static", "staticGzip", "pipelined" })
+	public String scenario;
+
+	private File root;
+	private EmbeddedChannel channel;
+	private ByteBuf rawRequestBytes;
+	/** 解码器读取后会释放请求，使用不可释放的包装重复写入 */
+	private ByteBuf requestBytes;
+	private int responses;
+
+	@Setup
+	public void setup() {
+		root = FileUtil.mkdir(FileUtil.file(FileUtil.getTmpDirPath(), "loServer-benchmark-" + System.nanoTime()));
+		FileUtil.writeUtf8String(StrUtil.repeat("<p>hello</p>", 40), FileUtil.file(root, "index.html"));
+		FileUtil.writeUtf8String(StrUtil.repeat("body { margin: 0; padding: 0; }\n", 200), FileUtil.file(root, "style.css"));
+		ServerSetting.setRoot(root);
+
+		final String big = StrUtil.repeat("lorem ipsum ", 340);
+		ServerSetting.setAction("/hello", new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setContent("Hello LoServer");
+			}
+		});
+		ServerSetting.setAction("/user/{id}", new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setJsonContent("{\"id\":\"" + request.getPathParam("id") + "\",\"fields\":\"" + request.getParam("fields") + "\"}");
+			}
+		});
+		ServerSetting.setAction("/big", new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setContent(big);
+			}
+		});
+
+		final String request;
+		switch (scenario) {
+		case "pathParam":
+			request = request("/user/12345?fields=name,email", false);
+			responses = 1;
+			break;
+		case "actionGzip":
+			request = request("/big", true);
+			responses = 1;
+			break;
+		case "static":
+			request = request("/index.html", false);
+			responses = 1;
+			break;
+		case "staticGzip":
+			request = request("/style.css", true);
+			responses = 1;
+			break;
+		case "pipelined":
+			request = request("/hello", false) + request("/user/1?fields=name", false) + request("/index.html", false) + request("/hello", false);
+			responses = 4;
+			break;
+		default:
+			request = request("/hello", false);
+			responses = 1;
+		}
+		rawRequestBytes = Unpooled.directBuffer().writeBytes(request.getBytes(CharsetUtil.CHARSET_ISO_8859_1));
+		requestBytes = Unpooled.unreleasableBuffer(rawRequestBytes);
+
+		channel = new EmbeddedChannel();
+		new HttpServerInitializer(new ActionDispatcher(), null).addHttp1(channel.pipeline(), new HttpServerCodec());
+
+		// 确认场景得到的是正常响应，而非错误页
+		channel.writeInbound(requestBytes.duplicate());
+		final StringBuilder output = new StringBuilder();
+		Object msg;
+		while (null != (msg = channel.readOutbound())) {
+			if (msg instanceof ByteBuf) {
+				output.append(((ByteBuf) msg).toString(CharsetUtil.CHARSET_ISO_8859_1));
+			}
+			ReferenceCountUtil.release(msg);
+		}
+		if (StrUtil.count(output, "HTTP/1.1 200 OK") != responses) {
+			throw new IllegalStateException("Unexpected response of scenario [" + scenario + "]:\n" + output);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		channel.finishAndReleaseAll();
+		rawRequestBytes.release();
+		FileUtil.del(root);
+	}
+
+	@Benchmark
+	public int request() {
+		channel.writeInbound(requestBytes.duplicate());
+		int count = 0;
+		Object msg;
+		while (null != (msg = channel.readOutbound())) {
+			ReferenceCountUtil.release(msg);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @param uri 请求URI
+	 * @param isGzip 是否接受gzip编码
+	 * @return 请求报文
+	 */
+	private static String request(String uri, boolean isGzip) {
+		return "GET " + uri + " HTTP/1.1\r\nHost: localhost:8090\r\nUser-Agent: loServer-benchmark\r\nAccept: */*\r\n"
+				+ (isGzip ? "Accept-Encoding: gzip\r\n" : "") + "\r\n";
+	}
+}
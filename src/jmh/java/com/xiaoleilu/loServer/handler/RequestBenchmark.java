@@ -0,0 +1,144 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cn.hutool.core.util.CharsetUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Request构建和读取的基准测试<br>
+ * 每种请求构建Request后读取Action常用的信息，包括只读路径、Query参数、浏览器的完整头、Cookie和表单请求体
+ *
+ * @author Looly
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestBenchmark {
+
+	private EmbeddedChannel channel;
+	private ChannelHandlerContext ctx;
+
+	private HttpRequest simpleRequest;
+	private HttpRequest queryRequest;
+	private HttpRequest browserRequest;
+	private FullHttpRequest formRequest;
+
+	@Setup
+	public void setup() {
+		channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		ctx = channel.pipeline().firstContext();
+
+		simpleRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/index.html");
+		simpleRequest.headers().set(HttpHeaderNames.HOST, "localhost:8090");
+
+		queryRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/search?q=netty%20server&page=2&size=20&sort=desc&tag=java&tag=nio&lang=zh-CN");
+		queryRequest.headers().set(HttpHeaderNames.HOST, "localhost:8090");
+
+		browserRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/user/profile");
+		final HttpHeaders headers = browserRequest.headers();
+		headers.set(HttpHeaderNames.HOST, "localhost:8090");
+		headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+		headers.set(HttpHeaderNames.USER_AGENT, "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/118.0.0.0 Safari/537.36");
+		headers.set(HttpHeaderNames.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8");
+		headers.set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate, br");
+		headers.set(HttpHeaderNames.ACCEPT_LANGUAGE, "zh-CN,zh;q=0.9,en;q=0.8");
+		headers.set(HttpHeaderNames.CACHE_CONTROL, "max-age=0");
+		headers.set(HttpHeaderNames.REFERER, "http://localhost:8090/index.html");
+		headers.set("Sec-Fetch-Dest", "document");
+		headers.set("Sec-Fetch-Mode", "navigate");
+		headers.set("Sec-Fetch-Site", "same-origin");
+		headers.set("Upgrade-Insecure-Requests", "1");
+		headers.set(HttpHeaderNames.COOKIE, "session=8a7b6c5d4e3f2a1b; theme=dark; lang=zh-CN; _ga=GA1.1.123456789.1697000000; csrf=abcdef0123456789; remember=1");
+
+		final String form = "username=looly&password=123456&email=loolly%40gmail.com&age=30&city=Beijing&tags=a&tags=b&remember=on&redirect=%2Fuser%2Fprofile&note=hello+world";
+		formRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/user/login", Unpooled.copiedBuffer(form, CharsetUtil.CHARSET_UTF_8));
+		formRequest.headers().set(HttpHeaderNames.HOST, "localhost:8090");
+		formRequest.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED);
+		formRequest.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, formRequest.content().readableBytes());
+	}
+
+	@TearDown
+	public void tearDown() {
+		formRequest.release();
+		channel.finishAndReleaseAll();
+	}
+
+	/**
+	 * 只读取路径和方法，例如静态文件
+	 */
+	@Benchmark
+	public void simple(Blackhole bh) {
+		final Request request = Request.build(ctx, simpleRequest);
+		bh.consume(request.getPath());
+		bh.consume(request.getMethod());
+		request.release();
+	}
+
+	/**
+	 * 解析Query参数，包括重复的参数和URL编码
+	 */
+	@Benchmark
+	public void queryParams(Blackhole bh) {
+		final Request request = Request.build(ctx, queryRequest);
+		bh.consume(request.getParam("q"));
+		bh.consume(request.getIntParam("page", 1));
+		bh.consume(request.getArrayParam("tag"));
+		request.release();
+	}
+
+	/**
+	 * 浏览器的完整请求头，读取常用头、Keep-Alive、Accept-Encoding和Cookie
+	 */
+	@Benchmark
+	public void browserHeaders(Blackhole bh) {
+		final Request request = Request.build(ctx, browserRequest);
+		bh.consume(request.getHeader(HttpHeaderNames.USER_AGENT.toString()));
+		bh.consume(request.isKeepAlive());
+		bh.consume(request.acceptsEncoding("gzip"));
+		bh.consume(request.getCookie("session"));
+		request.release();
+	}
+
+	/**
+	 * 聚合完成的表单请求，解析请求体中的参数
+	 */
+	@Benchmark
+	public void formBody(Blackhole bh) {
+		final FullHttpRequest fullRequest = formRequest.retainedDuplicate();
+		final Request request = Request.build(ctx, fullRequest);
+		request.setFullRequest(fullRequest);
+		bh.consume(request.getParam("username"));
+		bh.consume(request.getArrayParam("tags"));
+		request.release();
+	}
+}
@@ -0,0 +1,90 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.hutool.core.util.RandomUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Response生成和编码的基准测试<br>
+ * 文本内容编码为ByteBuf、转换为FullHttpResponse（toFullHttpResponse）并写出，encoded为true时再经过HttpResponseEncoder编码为字节
+ *
+ * @author Looly
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseBenchmark {
+
+	/** 响应文本的长度 */
+	@Param({ "16", "1024", "16384" })
+	public int size;
+	/** 是否经过HttpResponseEncoder */
+	@Param({ "false", "true" })
+	public boolean encoded;
+
+	private EmbeddedChannel channel;
+	private ChannelHandlerContext ctx;
+	private Request request;
+	private String content;
+
+	@Setup
+	public void setup() {
+		channel = encoded ? new EmbeddedChannel(new HttpResponseEncoder(), new ChannelInboundHandlerAdapter()) : new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		ctx = channel.pipeline().lastContext();
+		request = Request.build(ctx, new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/benchmark"));
+		content = RandomUtil.randomString(size);
+	}
+
+	@TearDown
+	public void tearDown() {
+		request.release();
+		channel.finishAndReleaseAll();
+	}
+
+	/**
+	 * 文本响应
+	 */
+	@Benchmark
+	public boolean text() {
+		Response.build(ctx, request).setContent(content).send();
+		return channel.releaseOutbound();
+	}
+
+	/**
+	 * 带自定义头和Cookie的JSON响应
+	 */
+	@Benchmark
+	public boolean jsonWithHeaders() {
+		Response.build(ctx, request)
+			.setHeader("X-Request-Id", "0af7651916cd43dd8448eb211c80319c")
+			.setHeader("Cache-Control", "no-cache")
+			.addCookie("session", "8a7b6c5d4e3f2a1b", 3600)
+			.setJsonContent(content)
+			.send();
+		return channel.releaseOutbound();
+	}
+}
@@ -0,0 +1,240 @@
+package com.xiaoleilu.loServer.loadtest;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * 基于Netty的HTTP/1.1负载客户端<br>
+ * 闭环模型：每个连接保持pipelining个未完成的请求，收到一个响应即发出下一个；非长连接时每个请求新建连接，延迟包括建立连接的时间<br>
+ * 先预热，再在测量阶段记录每个请求从发出到收到完整响应的延迟
+ *
+ * @author Looly
+ *
+ */
+public class LoadClient {
+
+	/** 连接失败后重连的间隔（毫秒） */
+	private static final long RECONNECT_DELAY = 100;
+	/** 测量结束后等待未完成请求的最长时间（毫秒） */
+	private static final long DRAIN_TIMEOUT = 5000;
+
+	private final EventLoopGroup group;
+	private final String host;
+	private final int port;
+
+	/**
+	 * 构造
+	 *
+	 * @param group 客户端的事件循环组
+	 * @param host 服务端地址
+	 * @param port 服务端端口
+	 */
+	public LoadClient(EventLoopGroup group, String host, int port) {
+		this.group = group;
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * 运行一个场景
+	 *
+	 * @param scenario 场景
+	 * @param warmupMillis 预热时间（毫秒），期间不记录
+	 * @param durationMillis 测量时间（毫秒）
+	 * @return 测量阶段的结果
+	 * @throws InterruptedException 等待时被中断
+	 */
+	public LoadResult run(LoadScenario scenario, long warmupMillis, long durationMillis) throws InterruptedException {
+		return new Session(scenario).run(warmupMillis, durationMillis);
+	}
+
+	/**
+	 * 一次场景运行的状态
+	 *
+	 * @author Looly
+	 *
+	 */
+	private class Session {
+		private final LoadScenario scenario;
+		private final String hostHeader;
+		private final Bootstrap bootstrap;
+		private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+		/** 已发出未完成的请求数 */
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private volatile boolean running = true;
+		/** 测量阶段的结果，预热和收尾时为null */
+		private volatile LoadResult result;
+
+		Session(LoadScenario scenario) {
+			this.scenario = scenario;
+			this.hostHeader = host + ":" + port;
+			this.bootstrap = new Bootstrap().group(group)
+					.channel(NioSocketChannel.class)
+					.option(ChannelOption.TCP_NODELAY, true)
+					.handler(new ChannelInitializer<SocketChannel>() {
+						@Override
+						protected void initChannel(SocketChannel ch) {
+							ch.pipeline().addLast(new HttpClientCodec(), new ConnectionHandler(System.nanoTime()));
+						}
+					});
+		}
+
+		LoadResult run(long warmupMillis, long durationMillis) throws InterruptedException {
+			for (int i = 0; i < scenario.getConnections(); i++) {
+				connect();
+			}
+			Thread.sleep(warmupMillis);
+
+			final LoadResult measured = new LoadResult(scenario.getName());
+			final long start = System.nanoTime();
+			result = measured;
+			Thread.sleep(durationMillis);
+			result = null;
+			measured.finish(System.nanoTime() - start);
+
+			running = false;
+			final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+			while (outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			channels.close().awaitUninterruptibly();
+			return measured;
+		}
+
+		/**
+		 * 新建连接，失败时记为错误并稍后重连
+		 */
+		private void connect() {
+			bootstrap.connect(host, port).addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture future) {
+					if (future.isSuccess()) {
+						return;
+					}
+					final LoadResult current = result;
+					if (null != current) {
+						current.error(1);
+					}
+					if (running) {
+						group.schedule(new Runnable() {
+							@Override
+							public void run() {
+								connect();
+							}
+						}, RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+					}
+				}
+			});
+		}
+
+		/**
+		 * 单个连接上的请求和响应，管线化的响应按请求的顺序返回，因此用队列记录每个请求的发出时间
+		 *
+		 * @author Looly
+		 *
+		 */
+		private class ConnectionHandler extends SimpleChannelInboundHandler<HttpObject> {
+			private final Queue<Long> startTimes = new ArrayDeque<Long>();
+			/** 开始建立连接的时间，非长连接时作为请求的开始时间 */
+			private final long connectStart;
+			private boolean isError;
+
+			ConnectionHandler(long connectStart) {
+				this.connectStart = connectStart;
+			}
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx) {
+				channels.add(ctx.channel());
+				if (false == running) {
+					ctx.close();
+					return;
+				}
+				if (scenario.isKeepAlive()) {
+					for (int i = 0; i < scenario.getPipelining(); i++) {
+						send(ctx, System.nanoTime());
+					}
+				} else {
+					send(ctx, connectStart);
+				}
+				ctx.flush();
+			}
+
+			@Override
+			protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) {
+				if (msg instanceof HttpResponse) {
+					isError = ((HttpResponse) msg).status().code() >= 400;
+				}
+				if (msg instanceof LastHttpContent) {
+					final Long start = startTimes.poll();
+					if (null == start) {
+						return;
+					}
+					outstanding.decrementAndGet();
+					final LoadResult current = result;
+					if (null != current) {
+						current.record(System.nanoTime() - start, isError);
+					}
+					if (running && scenario.isKeepAlive()) {
+						send(ctx, System.nanoTime());
+						ctx.flush();
+					}
+				}
+			}
+
+			@Override
+			public void channelInactive(ChannelHandlerContext ctx) {
+				// 连接关闭时仍未得到响应的请求记为错误
+				final int lost = startTimes.size();
+				startTimes.clear();
+				if (lost > 0) {
+					outstanding.addAndGet(-lost);
+					final LoadResult current = result;
+					if (null != current) {
+						current.error(lost);
+					}
+				}
+				if (running) {
+					connect();
+				}
+			}
+
+			@Override
+			public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+				ctx.close();
+			}
+
+			/**
+			 * 写出下一个请求（不flush）
+			 *
+			 * @param ctx ChannelHandlerContext
+			 * @param start 请求的开始时间
+			 */
+			private void send(ChannelHandlerContext ctx, long start) {
+				startTimes.add(start);
+				outstanding.incrementAndGet();
+				ctx.write(scenario.nextRequest().newHttpRequest(hostHeader, scenario.isKeepAlive()));
+			}
+		}
+	}
+}
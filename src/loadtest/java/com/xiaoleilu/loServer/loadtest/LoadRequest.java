@@ -0,0 +1,100 @@
+package com.xiaoleilu.loServer.loadtest;
+
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.StrUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * 负载测试中的一种请求<br>
+ * 定义格式为“方法 URI [请求体字节数]”，请求体为指定大小的表单，例如：POST /echo 8192
+ *
+ * @author Looly
+ *
+ */
+public class LoadRequest {
+
+	private final String name;
+	private final HttpMethod method;
+	private final String uri;
+	/** 所有连接共享的请求体，发送时使用不可释放的副本 */
+	private final ByteBuf body;
+
+	/**
+	 * 解析请求定义
+	 *
+	 * @param name 名称
+	 * @param definition 定义，例如：GET /hello
+	 * @return LoadRequest
+	 * @throws IllegalArgumentException 定义格式错误
+	 */
+	public static LoadRequest parse(String name, String definition) {
+		final String[] parts = StrUtil.splitToArray(StrUtil.trim(definition), ' ', -1);
+		if (parts.length < 2) {
+			throw new IllegalArgumentException(StrUtil.format("Invalid request [{}]: [{}]", name, definition));
+		}
+		final int bodySize = (parts.length > 2) ? Integer.parseInt(parts[2]) : 0;
+		return new LoadRequest(name, HttpMethod.valueOf(parts[0].toUpperCase()), parts[1], bodySize);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param name 名称
+	 * @param method 方法
+	 * @param uri URI
+	 * @param bodySize 表单请求体的字节数，0表示无请求体
+	 */
+	public LoadRequest(String name, HttpMethod method, String uri, int bodySize) {
+		this.name = name;
+		this.method = method;
+		this.uri = uri;
+		if (bodySize > 0) {
+			final String form = "data=" + StrUtil.repeat('a', Math.max(0, bodySize - 5));
+			this.body = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(form, CharsetUtil.CHARSET_ISO_8859_1));
+		} else {
+			this.body = Unpooled.EMPTY_BUFFER;
+		}
+	}
+
+	/**
+	 * @return 名称
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 创建一个新的请求
+	 *
+	 * @param host Host头
+	 * @param isKeepAlive 是否长连接，否则带Connection: close
+	 * @return FullHttpRequest
+	 */
+	public FullHttpRequest newHttpRequest(String host, boolean isKeepAlive) {
+		final FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri, body.duplicate());
+		final HttpHeaders headers = request.headers();
+		headers.set(HttpHeaderNames.HOST, host);
+		headers.set(HttpHeaderNames.USER_AGENT, "loServer-loadtest");
+		if (body.isReadable()) {
+			headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED);
+			headers.setInt(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+		}
+		if (false == isKeepAlive) {
+			headers.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+		}
+		return request;
+	}
+
+	@Override
+	public String toString() {
+		return body.isReadable() ? StrUtil.format("{} {} ({} bytes)", method, uri, body.readableBytes()) : method + " " + uri;
+	}
+}
@@ -0,0 +1,167 @@
+package com.xiaoleilu.loServer.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.xiaoleilu.loServer.metrics.LatencyHistogram;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 一个场景在测量阶段的结果<br>
+ * 延迟以微秒记录在{@link LatencyHistogram}中，报告和阈值均使用毫秒
+ *
+ * @author Looly
+ *
+ */
+public class LoadResult {
+
+	private static final double MICROS_PER_MILLI = 1000D;
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder errors = new LongAdder();
+	private long elapsedNanos;
+
+	/**
+	 * 构造
+	 *
+	 * @param name 场景名
+	 */
+	public LoadResult(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * 记录一个完成的请求
+	 *
+	 * @param latencyNanos 延迟（纳秒）
+	 * @param isError 是否为错误响应（4xx、5xx）
+	 */
+	public void record(long latencyNanos, boolean isError) {
+		latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+		if (isError) {
+			errors.increment();
+		}
+	}
+
+	/**
+	 * 记录未得到响应的请求，例如连接失败或被关闭
+	 *
+	 * @param count 请求数
+	 */
+	public void error(int count) {
+		errors.add(count);
+	}
+
+	/**
+	 * 测量结束
+	 *
+	 * @param elapsedNanos 测量阶段的时长（纳秒）
+	 */
+	public void finish(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return 完成的请求数
+	 */
+	public long getRequests() {
+		return latency.getCount();
+	}
+
+	/**
+	 * @return 错误数
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * @return 吞吐（请求/秒）
+	 */
+	public double getRps() {
+		return (elapsedNanos > 0) ? getRequests() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+	}
+
+	/**
+	 * @return p50、p99、p999和最大延迟（毫秒）
+	 */
+	public double[] getLatencies() {
+		final long[] values = latency.getValuesAt(0.5, 0.99, 0.999);
+		return new double[] { values[0] / MICROS_PER_MILLI, values[1] / MICROS_PER_MILLI, values[2] / MICROS_PER_MILLI, latency.getMax() / MICROS_PER_MILLI };
+	}
+
+	/**
+	 * 检查是否达到场景的阈值以及是否相对基线退化<br>
+	 * 与基线比较吞吐和p99，p999在短时间的测量中波动较大，只检查绝对阈值
+	 *
+	 * @param scenario 场景
+	 * @param baseline 基线结果，null表示不比较
+	 * @param tolerance 允许退化的比例，例如0.2
+	 * @return 未通过的项，全部通过时为空
+	 */
+	public List<String> check(LoadScenario scenario, Properties baseline, double tolerance) {
+		final List<String> failures = new ArrayList<String>();
+		final double rps = getRps();
+		final double[] latencies = getLatencies();
+
+		if (getErrors() > 0) {
+			failures.add(StrUtil.format("[{}] {} errors", name, getErrors()));
+		}
+		if (scenario.getMinRps() > 0 && rps < scenario.getMinRps()) {
+			failures.add(StrUtil.format("[{}] rps {} < {}", name, format(rps), format(scenario.getMinRps())));
+		}
+		if (scenario.getMaxP99() > 0 && latencies[1] > scenario.getMaxP99()) {
+			failures.add(StrUtil.format("[{}] p99 {}ms > {}ms", name, format(latencies[1]), format(scenario.getMaxP99())));
+		}
+		if (scenario.getMaxP999() > 0 && latencies[2] > scenario.getMaxP999()) {
+			failures.add(StrUtil.format("[{}] p999 {}ms > {}ms", name, format(latencies[2]), format(scenario.getMaxP999())));
+		}
+
+		if (null != baseline) {
+			final String baseRps = baseline.getProperty(name + ".rps");
+			if (null != baseRps && rps < Double.parseDouble(baseRps) * (1 - tolerance)) {
+				failures.add(StrUtil.format("[{}] rps {} regressed from baseline {}", name, format(rps), baseRps));
+			}
+			final String baseP99 = baseline.getProperty(name + ".p99");
+			if (null != baseP99 && latencies[1] > Double.parseDouble(baseP99) * (1 + tolerance)) {
+				failures.add(StrUtil.format("[{}] p99 {}ms regressed from baseline {}ms", name, format(latencies[1]), baseP99));
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * 将结果写入Properties，可作为下次运行的基线
+	 *
+	 * @param results 结果
+	 */
+	public void store(Properties results) {
+		final double[] latencies = getLatencies();
+		results.setProperty(name + ".rps", format(getRps()));
+		results.setProperty(name + ".p50", format(latencies[0]));
+		results.setProperty(name + ".p99", format(latencies[1]));
+		results.setProperty(name + ".p999", format(latencies[2]));
+		results.setProperty(name + ".errors", String.valueOf(getErrors()));
+	}
+
+	@Override
+	public String toString() {
+		final double[] latencies = getLatencies();
+		return StrUtil.format("[{}] requests={}, errors={}, rps={}, p50={}ms, p99={}ms, p999={}ms, max={}ms",
+				name, getRequests(), getErrors(), format(getRps()), format(latencies[0]), format(latencies[1]), format(latencies[2]), format(latencies[3]));
+	}
+
+	/**
+	 * @param value 值
+	 * @return 保留两位小数
+	 */
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.2f", value);
+	}
+}
@@ -0,0 +1,185 @@
+package com.xiaoleilu.loServer.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 负载测试场景<br>
+ * 包括连接数、每个连接上管线化的请求数、是否长连接、请求的混合比例以及回归阈值
+ *
+ * @author Looly
+ *
+ */
+public class LoadScenario {
+
+	private final String name;
+	private final int connections;
+	private final int pipelining;
+	private final boolean keepAlive;
+	private final List<LoadRequest> requests = new ArrayList<LoadRequest>();
+	/** 累积权重，与requests一一对应 */
+	private final List<Integer> weights = new ArrayList<Integer>();
+	private int totalWeight;
+
+	private final double minRps;
+	private final double maxP99;
+	private final double maxP999;
+
+	/**
+	 * 从配置中读取场景，配置项为“场景名.项”
+	 *
+	 * @param name 场景名
+	 * @param config 配置
+	 * @return LoadScenario
+	 * @throws IllegalArgumentException 配置错误
+	 */
+	public static LoadScenario parse(String name, Properties config) {
+		final String prefix = name + ".";
+		final String mix = config.getProperty(prefix + "mix");
+		if (StrUtil.isBlank(mix)) {
+			throw new IllegalArgumentException(StrUtil.format("No mix defined for scenario [{}]", name));
+		}
+
+		final LoadScenario scenario = new LoadScenario(name,
+				Integer.parseInt(config.getProperty(prefix + "connections", "16")),
+				Integer.parseInt(config.getProperty(prefix + "pipelining", "1")),
+				Boolean.parseBoolean(config.getProperty(prefix + "keepAlive", "true")),
+				Double.parseDouble(config.getProperty(prefix + "minRps", "0")),
+				Double.parseDouble(config.getProperty(prefix + "maxP99", "0")),
+				Double.parseDouble(config.getProperty(prefix + "maxP999", "0")));
+
+		// 混合比例格式为“请求名:权重”，以逗号分隔，权重默认为1
+		for (String item : StrUtil.splitTrim(mix, ',')) {
+			final List<String> pair = StrUtil.splitTrim(item, ':');
+			final String requestName = pair.get(0);
+			final String definition = config.getProperty("request." + requestName);
+			if (null == definition) {
+				throw new IllegalArgumentException(StrUtil.format("Unknown request [{}] in scenario [{}]", requestName, name));
+			}
+			scenario.addRequest(LoadRequest.parse(requestName, definition), (pair.size() > 1) ? Integer.parseInt(pair.get(1)) : 1);
+		}
+		return scenario;
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param name 场景名
+	 * @param connections 连接数
+	 * @param pipelining 每个连接上同时发出的请求数，非长连接时总是为1
+	 * @param keepAlive 是否长连接，否则每个请求新建连接
+	 * @param minRps 最低吞吐（请求/秒），0表示不检查
+	 * @param maxP99 p99延迟上限（毫秒），0表示不检查
+	 * @param maxP999 p999延迟上限（毫秒），0表示不检查
+	 */
+	public LoadScenario(String name, int connections, int pipelining, boolean keepAlive, double minRps, double maxP99, double maxP999) {
+		this.name = name;
+		this.connections = Math.max(1, connections);
+		this.pipelining = keepAlive ? Math.max(1, pipelining) : 1;
+		this.keepAlive = keepAlive;
+		this.minRps = minRps;
+		this.maxP99 = maxP99;
+		this.maxP999 = maxP999;
+	}
+
+	/**
+	 * 加入一种请求
+	 *
+	 * @param request 请求
+	 * @param weight 权重
+	 * @return this
+	 */
+	public LoadScenario addRequest(LoadRequest request, int weight) {
+		if (weight > 0) {
+			totalWeight += weight;
+			requests.add(request);
+			weights.add(totalWeight);
+		}
+		return this;
+	}
+
+	/**
+	 * 按权重随机选择下一个请求
+	 *
+	 * @return 请求
+	 */
+	public LoadRequest nextRequest() {
+		if (requests.size() == 1) {
+			return requests.get(0);
+		}
+		final int value = ThreadLocalRandom.current().nextInt(totalWeight);
+		for (int i = 0; i < weights.size(); i++) {
+			if (value < weights.get(i)) {
+				return requests.get(i);
+			}
+		}
+		return requests.get(requests.size() - 1);
+	}
+
+	/**
+	 * @return 场景名
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return 连接数
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	/**
+	 * @return 每个连接上同时发出的请求数
+	 */
+	public int getPipelining() {
+		return pipelining;
+	}
+
+	/**
+	 * @return 是否长连接
+	 */
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	/**
+	 * @return 最低吞吐（请求/秒），0表示不检查
+	 */
+	public double getMinRps() {
+		return minRps;
+	}
+
+	/**
+	 * @return p99延迟上限（毫秒），0表示不检查
+	 */
+	public double getMaxP99() {
+		return maxP99;
+	}
+
+	/**
+	 * @return p999延迟上限（毫秒），0表示不检查
+	 */
+	public double getMaxP999() {
+		return maxP999;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder mix = new StringBuilder();
+		int previous = 0;
+		for (int i = 0; i < requests.size(); i++) {
+			if (i > 0) {
+				mix.append(", ");
+			}
+			mix.append(requests.get(i)).append(" x").append(weights.get(i) - previous);
+			previous = weights.get(i);
+		}
+		return StrUtil.format("[{}] connections={}, pipelining={}, keepAlive={}, mix=[{}]", name, connections, pipelining, keepAlive, mix);
+	}
+}
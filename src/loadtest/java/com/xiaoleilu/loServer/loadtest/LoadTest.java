@@ -0,0 +1,218 @@
+package com.xiaoleilu.loServer.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.xiaoleilu.loServer.LoServer;
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * 负载测试和吞吐/延迟回归检查<br>
+ * 在同一进程中启动LoServer，由{@link LoadClient}通过loopback依次运行loadtest.properties中的各场景，报告吞吐和p50/p99/p999延迟<br>
+ * 任一场景有错误、未达到阈值或相对基线退化时以非0状态退出，使构建失败<br>
+ * 参数为“项=值”，覆盖loadtest.properties中的同名项，例如：duration=30 scenarios=mixed
+ *
+ * @author Looly
+ *
+ */
+public class LoadTest {
+	private static final Log log = StaticLog.get();
+
+	private static final String HOST = "127.0.0.1";
+	/** 等待服务端启动的最长时间（毫秒） */
+	private static final long STARTUP_TIMEOUT = 10000;
+
+	public static void main(String[] args) throws Exception {
+		final Properties config = loadConfig(args);
+		final int port = Integer.parseInt(config.getProperty("port"));
+		final int threads = Integer.parseInt(config.getProperty("threads", "0"));
+		final long warmup = TimeUnit.SECONDS.toMillis(Long.parseLong(config.getProperty("warmup")));
+		final long duration = TimeUnit.SECONDS.toMillis(Long.parseLong(config.getProperty("duration")));
+		final Properties baseline = loadBaseline(config.getProperty("baseline"));
+		final double tolerance = Double.parseDouble(config.getProperty("tolerance", "0.2"));
+
+		final List<LoadScenario> scenarios = new ArrayList<LoadScenario>();
+		for (String name : StrUtil.splitTrim(config.getProperty("scenarios"), ',')) {
+			scenarios.add(LoadScenario.parse(name, config));
+		}
+
+		final File root = prepareServer();
+		startServer(port);
+
+		final List<String> failures = new ArrayList<String>();
+		final Properties results = new Properties();
+		final EventLoopGroup group = new NioEventLoopGroup(threads);
+		try {
+			final LoadClient client = new LoadClient(group, HOST, port);
+			for (LoadScenario scenario : scenarios) {
+				log.info("Running {}", scenario);
+				final LoadResult result = client.run(scenario, warmup, duration);
+				log.info("{}", result);
+				result.store(results);
+				failures.addAll(result.check(scenario, baseline, tolerance));
+			}
+		} finally {
+			group.shutdownGracefully();
+			FileUtil.del(root);
+		}
+
+		// 相对路径基于工作目录，而非FileUtil默认的classpath
+		final File output = FileUtil.touch(new File(config.getProperty("output")));
+		OutputStream out = null;
+		try {
+			out = FileUtil.getOutputStream(output);
+			results.store(out, "LoServer load test results");
+		} finally {
+			IoUtil.close(out);
+		}
+		log.info("Results written to [{}]", output.getAbsolutePath());
+
+		if (failures.isEmpty()) {
+			log.info("All scenarios passed.");
+			System.exit(0);
+		}
+		for (String failure : failures) {
+			log.error("FAILED {}", failure);
+		}
+		System.exit(1);
+	}
+
+	/**
+	 * 读取classpath中的loadtest.properties，再以参数覆盖
+	 *
+	 * @param args 参数，格式为“项=值”
+	 * @return 配置
+	 * @throws IOException 读取失败
+	 */
+	private static Properties loadConfig(String[] args) throws IOException {
+		final Properties config = new Properties();
+		InputStream in = null;
+		try {
+			in = LoadTest.class.getClassLoader().getResourceAsStream("loadtest.properties");
+			if (null == in) {
+				throw new IOException("loadtest.properties not found in classpath!");
+			}
+			config.load(in);
+		} finally {
+			IoUtil.close(in);
+		}
+
+		for (String arg : args) {
+			final int index = arg.indexOf('=');
+			if (index <= 0) {
+				throw new IllegalArgumentException(StrUtil.format("Invalid argument [{}], use key=value", arg));
+			}
+			config.setProperty(arg.substring(0, index).trim(), arg.substring(index + 1).trim());
+		}
+		return config;
+	}
+
+	/**
+	 * 读取基线结果
+	 *
+	 * @param path 基线文件路径，为空表示不比较
+	 * @return 基线，不比较时为null
+	 * @throws IOException 读取失败
+	 */
+	private static Properties loadBaseline(String path) throws IOException {
+		if (StrUtil.isBlank(path)) {
+			return null;
+		}
+		final Properties baseline = new Properties();
+		InputStream in = null;
+		try {
+			in = FileUtil.getInputStream(new File(path));
+			baseline.load(in);
+		} finally {
+			IoUtil.close(in);
+		}
+		log.info("Compare with baseline [{}]", path);
+		return baseline;
+	}
+
+	/**
+	 * 注册负载测试使用的Action和静态文件
+	 *
+	 * @return 静态文件根目录，测试结束后删除
+	 */
+	private static File prepareServer() {
+		final File root = FileUtil.mkdir(FileUtil.file(FileUtil.getTmpDirPath(), "loServer-loadtest-" + System.nanoTime()));
+		FileUtil.writeUtf8String(StrUtil.repeat("<p>hello loServer</p>\n", 100), FileUtil.file(root, "index.html"));
+		FileUtil.writeBytes(RandomUtil.randomBytes(64 * 1024), FileUtil.file(root, "large.bin"));
+		ServerSetting.setRoot(root);
+
+		ServerSetting.setAction("/hello", new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setContent("Hello LoServer");
+			}
+		});
+		ServerSetting.setAction("/user/{id}", new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setJsonContent("{\"id\":\"" + request.getPathParam("id") + "\",\"fields\":\"" + request.getParam("fields") + "\"}");
+			}
+		});
+		ServerSetting.setAction("/echo", new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+				response.setContent("received " + StrUtil.length(request.getParam("data")));
+			}
+		});
+		return root;
+	}
+
+	/**
+	 * 在后台线程中启动服务端，并等待端口可连接
+	 *
+	 * @param port 端口
+	 * @throws InterruptedException 等待时被中断
+	 */
+	private static void startServer(final int port) throws InterruptedException {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					new LoServer().start(port);
+				} catch (InterruptedException e) {
+					log.error(e, "LoServer stopped!");
+				}
+			}
+		}, "loServer-loadtest");
+		thread.setDaemon(true);
+		thread.start();
+
+		final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while (true) {
+			try (Socket socket = new Socket()) {
+				socket.connect(new InetSocketAddress(HOST, port), 1000);
+				return;
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > deadline || false == thread.isAlive()) {
+					throw new IllegalStateException(StrUtil.format("LoServer not started on port [{}]", port), e);
+				}
+				Thread.sleep(100);
+			}
+		}
+	}
+}
@@ -1,84 +1,228 @@
-package com.xiaoleilu.loServer;
-
-import com.xiaoleilu.loServer.handler.ActionHandler;
-
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.log.Log;
-import cn.hutool.log.StaticLog;
-import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.stream.ChunkedWriteHandler;
-
-/**
- * LoServer starter<br>
- * 用于启动服务器的主对象<br>
- * 使用LoServer.start()启动服务器<br>
- * 服务的Action类和端口等设置在ServerSetting中设置
- * @author Looly
- *
- */
-public class LoServer {
-	private static final Log log = StaticLog.get();
-	
-	/**
-	 * 启动服务
-	 * @param port 端口
-	 * @throws InterruptedException 
-	 */
-	public void start(int port) throws InterruptedException {
-		long start = System.currentTimeMillis();
-		
-		// Configure the server.
-		final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-		final EventLoopGroup workerGroup = new NioEventLoopGroup();
-		
-		try {
-			final ServerBootstrap b = new ServerBootstrap();
-			b.group(bossGroup, workerGroup)
-				.option(ChannelOption.SO_BACKLOG, 1024)
-				.channel(NioServerSocketChannel.class)
-//				.handler(new LoggingHandler(LogLevel.INFO))
-				.childHandler(new ChannelInitializer<SocketChannel>(){
-					@Override
-					protected void initChannel(SocketChannel ch) throws Exception {
-						ch.pipeline()
-						.addLast(new HttpServerCodec())
-						//把多个消息转换为一个单一的FullHttpRequest或是FullHttpResponse
-						.addLast(new HttpObjectAggregator(65536))
-						//压缩Http消息
-//						.addLast(new HttpChunkContentCompressor())
-						//大文件支持
-						.addLast(new ChunkedWriteHandler())
-						
-						.addLast(new ActionHandler());
-					}
-				});
-			
-			final Channel ch = b.bind(port).sync().channel();
-			log.info("***** Welcome To LoServer on port [{}], startting spend {}ms *****", port, DateUtil.spendMs(start));
-			ch.closeFuture().sync();
-		} finally {
-			bossGroup.shutdownGracefully();
-			workerGroup.shutdownGracefully();
-		}
-	}
-	
-	/**
-	 * 启动服务器
-	 */
-	public static void start() {
-		try {
-			new LoServer().start(ServerSetting.getPort());
-		} catch (InterruptedException e) {
-			log.error("LoServer start error!", e);
-		}
-	}
-}
+package com.xiaoleilu.loServer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.SSLException;
+
+import com.xiaoleilu.loServer.dispatch.ActionDispatcher;
+import com.xiaoleilu.loServer.exception.ServerSettingException;
+import com.xiaoleilu.loServer.handler.ConnectionLimitHandler;
+import com.xiaoleilu.loServer.handler.HttpServerInitializer;
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+import com.xiaoleilu.loServer.transport.TransportType;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * LoServer starter<br>
+ * 用于启动服务器的主对象<br>
+ * 使用LoServer.start()启动服务器<br>
+ * 服务的Action类和端口等设置在ServerSetting中设置
+ * @author Looly
+ *
+ */
+public class LoServer {
+	private static final Log log = StaticLog.get();
+	
+	/** 指标中线程组的名称 */
+	private static final String METRICS_BOSS = "boss";
+	private static final String METRICS_WORKER = "worker";
+	
+	/**
+	 * 启动服务
+	 * @param port 端口
+	 * @throws InterruptedException 
+	 */
+	public void start(int port) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		
+		final TransportType transport = ServerSetting.getTransport().resolve();
+		final boolean isEpoll = (transport == TransportType.EPOLL);
+		// SO_REUSEPORT下每个接收线程各自绑定一次端口
+		final int bindTimes = (isEpoll && ServerSetting.isReusePort()) ? ServerSetting.getAcceptThreads() : 1;
+		
+		// Configure the server.
+		final EventLoopGroup bossGroup = transport.newEventLoopGroup(bindTimes, "loServer-boss");
+		final EventLoopGroup workerGroup = transport.newEventLoopGroup(ServerSetting.getIoThreads(), "loServer-worker");
+		final ActionDispatcher dispatcher = new ActionDispatcher();
+		final SslContext sslContext = ServerSetting.isSslEnabled() ? newSslContext() : null;
+		ServerMetrics.register(METRICS_BOSS, bossGroup);
+		ServerMetrics.register(METRICS_WORKER, workerGroup);
+		
+		try {
+			final ServerBootstrap b = new ServerBootstrap();
+			b.group(bossGroup, workerGroup)
+				.option(ChannelOption.SO_BACKLOG, 1024)
+				.option(ChannelOption.ALLOCATOR, ServerSetting.getAllocator())
+				.childOption(ChannelOption.ALLOCATOR, ServerSetting.getAllocator())
+				.channel(transport.serverChannelClass())
+//				.handler(new LoggingHandler(LogLevel.INFO))
+				.childHandler(new HttpServerInitializer(dispatcher, sslContext));
+			if(isEpoll) {
+				setEpollOptions(b, bindTimes > 1);
+			}
+			if(ServerSetting.getMaxConnections() > 0) {
+				// 多次绑定时共用连接数
+				b.handler(new ConnectionLimitHandler(ServerSetting.getMaxConnections()));
+			}
+			
+			final Channel[] channels = new Channel[bindTimes];
+			for(int i = 0; i < bindTimes; i++) {
+				channels[i] = b.bind(port).sync().channel();
+			}
+			log.info("***** Welcome To LoServer on port [{}]{} with transport [{}] * {}, startting spend {}ms *****", port, getProtocolDesc(sslContext), transport, bindTimes, DateUtil.spendMs(start));
+			for (Channel ch : channels) {
+				ch.closeFuture().sync();
+			}
+		} finally {
+			ServerMetrics.unregister(METRICS_BOSS);
+			ServerMetrics.unregister(METRICS_WORKER);
+			bossGroup.shutdownGracefully();
+			workerGroup.shutdownGracefully();
+			dispatcher.shutdown();
+		}
+	}
+	
+	/**
+	 * 设置epoll专有参数
+	 * @param b ServerBootstrap
+	 * @param isReusePort 是否开启SO_REUSEPORT
+	 */
+	private void setEpollOptions(ServerBootstrap b, boolean isReusePort) {
+		final EpollMode epollMode = ServerSetting.isEpollEdgeTriggered() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+		b.option(EpollChannelOption.EPOLL_MODE, epollMode).childOption(EpollChannelOption.EPOLL_MODE, epollMode);
+		if(isReusePort) {
+			b.option(EpollChannelOption.SO_REUSEPORT, true);
+		}
+		if(ServerSetting.getTcpFastOpen() > 0) {
+			b.option(EpollChannelOption.TCP_FASTOPEN, ServerSetting.getTcpFastOpen());
+		}
+	}
+	
+	/**
+	 * 根据ServerSetting中的SSL设置创建SslContext<br>
+	 * classpath中存在netty-tcnative时优先使用OpenSSL，否则使用JDK的实现<br>
+	 * 只在启用HTTP/2时配置ALPN，JDK的实现在Java 8上不支持ALPN，配置后所有SSL连接都会握手失败
+	 * @return SslContext
+	 */
+	private SslContext newSslContext() {
+		final SslProvider provider = (ServerSetting.isSslOpenSslPreferred() && OpenSsl.isAvailable()) ? SslProvider.OPENSSL : SslProvider.JDK;
+		final SslContextBuilder builder = SslContextBuilder.forServer(ServerSetting.getSslCertFile(), ServerSetting.getSslKeyFile(), ServerSetting.getSslKeyPassword())
+				.sslProvider(provider)
+				.protocols(ServerSetting.getSslProtocols())
+				.ciphers(getSslCiphers(), SupportedCipherSuiteFilter.INSTANCE);
+		if(ServerSetting.isHttp2()) {
+			if(SslProvider.JDK == provider && PlatformDependent.javaVersion() < 9) {
+				throw new ServerSettingException("HTTP/2 over SSL requires ALPN, which the JDK SSL provider does not support on Java 8, add netty-tcnative or use Java 9+!");
+			}
+			builder.applicationProtocolConfig(newApplicationProtocolConfig());
+		}
+		if(ServerSetting.getSslSessionCacheSize() > 0) {
+			builder.sessionCacheSize(ServerSetting.getSslSessionCacheSize());
+		}
+		if(ServerSetting.getSslSessionTimeout() > 0) {
+			builder.sessionTimeout(ServerSetting.getSslSessionTimeout());
+		}
+		
+		final SslContext sslContext;
+		try {
+			sslContext = builder.build();
+		} catch (SSLException e) {
+			throw new ServerSettingException(e);
+		}
+		
+		final byte[] ticketKeys = ServerSetting.getSslSessionTicketKeys();
+		if(null != ticketKeys) {
+			if(sslContext.sessionContext() instanceof OpenSslSessionContext) {
+				((OpenSslSessionContext)sslContext.sessionContext()).setTicketKeys(toSessionTicketKeys(ticketKeys));
+			}else {
+				log.warn("SSL session ticket keys are only supported by OpenSSL, ignore them.");
+			}
+		}
+		log.info("SSL enabled with provider [{}]", provider);
+		return sslContext;
+	}
+	
+	/**
+	 * 将连续的会话票据密钥拆分为OpenSslSessionTicketKey，每个密钥依次为名称、HMAC密钥和AES密钥
+	 * @param ticketKeys 密钥，长度为48字节的整数倍
+	 * @return OpenSslSessionTicketKey数组，第一个用于加密
+	 */
+	private static OpenSslSessionTicketKey[] toSessionTicketKeys(byte[] ticketKeys) {
+		final OpenSslSessionTicketKey[] keys = new OpenSslSessionTicketKey[ticketKeys.length / OpenSslSessionTicketKey.TICKET_KEY_SIZE];
+		for (int i = 0; i < keys.length; i++) {
+			final int nameStart = i * OpenSslSessionTicketKey.TICKET_KEY_SIZE;
+			final int hmacKeyStart = nameStart + OpenSslSessionTicketKey.NAME_SIZE;
+			final int aesKeyStart = hmacKeyStart + OpenSslSessionTicketKey.HMAC_KEY_SIZE;
+			keys[i] = new OpenSslSessionTicketKey(Arrays.copyOfRange(ticketKeys, nameStart, hmacKeyStart),
+					Arrays.copyOfRange(ticketKeys, hmacKeyStart, aesKeyStart),
+					Arrays.copyOfRange(ticketKeys, aesKeyStart, aesKeyStart + OpenSslSessionTicketKey.AES_KEY_SIZE));
+		}
+		return keys;
+	}
+	
+	/**
+	 * 未指定加密套件时，启用HTTP/2则使用HTTP/2规范允许的套件（RFC 7540 9.2.2）
+	 * @return 加密套件，null表示使用默认
+	 */
+	private List<String> getSslCiphers() {
+		if(null == ServerSetting.getSslCiphers() && ServerSetting.isHttp2()) {
+			return Http2SecurityUtil.CIPHERS;
+		}
+		return ServerSetting.getSslCiphers();
+	}
+	
+	/**
+	 * @param sslContext SslContext，null表示未启用SSL
+	 * @return 启动日志中的协议描述
+	 */
+	private String getProtocolDesc(SslContext sslContext) {
+		if(ServerSetting.isHttp2()) {
+			return (null == sslContext) ? " (h2c)" : " (SSL, h2)";
+		}
+		return (null == sslContext) ? "" : " (SSL)";
+	}
+	
+	/**
+	 * 通过ALPN告知客户端支持的应用层协议，优先h2，仅在启用HTTP/2时使用
+	 * @return ApplicationProtocolConfig
+	 */
+	private ApplicationProtocolConfig newApplicationProtocolConfig() {
+		return new ApplicationProtocolConfig(Protocol.ALPN, SelectorFailureBehavior.NO_ADVERTISE, SelectedListenerFailureBehavior.ACCEPT,
+				ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1);
+	}
+	
+	/**
+	 * 启动服务器
+	 */
+	public static void start() {
+		try {
+			new LoServer().start(ServerSetting.getPort());
+		} catch (InterruptedException e) {
+			log.error("LoServer start error!", e);
+		}
+	}
+}
@@ -1,279 +1,1264 @@
-package com.xiaoleilu.loServer;
-
-import java.io.File;
-import java.nio.charset.Charset;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import com.xiaoleilu.loServer.action.Action;
-import com.xiaoleilu.loServer.action.DefaultIndexAction;
-import com.xiaoleilu.loServer.action.ErrorAction;
-import com.xiaoleilu.loServer.annotation.Route;
-import com.xiaoleilu.loServer.exception.ServerSettingException;
-import com.xiaoleilu.loServer.filter.Filter;
-
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.lang.Singleton;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.log.Log;
-import cn.hutool.log.StaticLog;
-
-/**
- * 全局设定文件
- * @author xiaoleilu
- *
- */
-public class ServerSetting {
-	private static final Log log = StaticLog.get();
-	
-	//-------------------------------------------------------- Default value start
-	/** 默认的字符集编码 */
-	public final static String DEFAULT_CHARSET = "utf-8";
-	
-	public final static String MAPPING_ALL = "/*";
-	
-	public final static String MAPPING_ERROR = "/_error";
-	//-------------------------------------------------------- Default value end
-	
-	/** 字符编码 */
-	private static String charset = DEFAULT_CHARSET;
-	/** 端口 */
-	private static int port = 8090;
-	/** 根目录 */
-	private static File root;
-	/** Filter映射表 */
-	private static Map<String, Filter> filterMap;
-	/** Action映射表 */
-	private static Map<String, Action> actionMap;
-	
-	static{
-		filterMap = new ConcurrentHashMap<String, Filter>();
-		
-		actionMap = new ConcurrentHashMap<String, Action>();
-		actionMap.put(StrUtil.SLASH, new DefaultIndexAction());
-		actionMap.put(MAPPING_ERROR, new ErrorAction());
-	}
-	
-	/**
-	 * @return 获取编码
-	 */
-	public static String getCharset() {
-		return charset;
-	}
-	/**
-	 * @return 字符集
-	 */
-	public static Charset charset() {
-		return Charset.forName(getCharset());
-	}
-	
-	/**
-	 * 设置编码
-	 * @param charset 编码
-	 */
-	public static void setCharset(String charset) {
-		ServerSetting.charset = charset;
-	}
-	
-	/**
-	 * @return 监听端口
-	 */
-	public static int getPort() {
-		return port;
-	}
-	/**
-	 * 设置监听端口
-	 * @param port 端口
-	 */
-	public static void setPort(int port) {
-		ServerSetting.port = port;
-	}
-	
-	//----------------------------------------------------------------------------------------------- Root start
-	/**
-	 * @return 根目录
-	 */
-	public static File getRoot() {
-		return root;
-	}
-	/**
-	 * @return 根目录
-	 */
-	public static boolean isRootAvailable() {
-		if(root != null && root.isDirectory() && root.isHidden() == false && root.canRead()){
-			return true;
-		}
-		return false;
-	}
-	/**
-	 * @return 根目录
-	 */
-	public static String getRootPath() {
-		return FileUtil.getAbsolutePath(root);
-	}
-	/**
-	 * 根目录
-	 * @param root 根目录绝对路径
-	 */
-	public static void setRoot(String root) {
-		ServerSetting.root = FileUtil.mkdir(root);
-		log.debug("Set root to [{}]", ServerSetting.root.getAbsolutePath());
-	}
-	/**
-	 * 根目录
-	 * @param root 根目录绝对路径
-	 */
-	public static void setRoot(File root) {
-		if(root.exists() == false){
-			root.mkdirs();
-		}else if(root.isDirectory() == false){
-			throw new ServerSettingException(StrUtil.format("{} is not a directory!", root.getPath()));
-		}
-		ServerSetting.root = root;
-	}
-	//----------------------------------------------------------------------------------------------- Root end
-	
-	//----------------------------------------------------------------------------------------------- Filter start
-	/**
-	 * @return 获取FilterMap
-	 */
-	public static Map<String, Filter> getFilterMap() {
-		return filterMap;
-	}
-	/**
-	 * 获得路径对应的Filter
-	 * @param path 路径，为空时将获得 根目录对应的Action
-	 * @return Filter
-	 */
-	public static Filter getFilter(String path){
-		if(StrUtil.isBlank(path)){
-			path = StrUtil.SLASH;
-		}
-		return getFilterMap().get(path.trim());
-	}
-	/**
-	 * 设置FilterMap
-	 * @param filterMap FilterMap
-	 */
-	public static void setFilterMap(Map<String, Filter> filterMap) {
-		ServerSetting.filterMap = filterMap;
-	}
-	
-	/**
-	 * 设置Filter类，已有的Filter类将被覆盖
-	 * @param path 拦截路径（必须以"/"开头）
-	 * @param filter Action类
-	 */
-	public static void setFilter(String path, Filter filter) {
-		if(StrUtil.isBlank(path)){
-			path = StrUtil.SLASH;
-		}
-		
-		if(null == filter) {
-			log.warn("Added blank action, pass it.");
-			return;
-		}
-		//所有路径必须以 "/" 开头，如果没有则补全之
-		if(false == path.startsWith(StrUtil.SLASH)) {
-			path = StrUtil.SLASH + path;
-		}
-		
-		ServerSetting.filterMap.put(path, filter);
-	}
-	
-	/**
-	 * 设置Filter类，已有的Filter类将被覆盖
-	 * @param path 拦截路径（必须以"/"开头）
-	 * @param filterClass Filter类
-	 */
-	public static void setFilter(String path, Class<? extends Filter> filterClass) {
-		setFilter(path, (Filter)Singleton.get(filterClass));
-	}
-	//----------------------------------------------------------------------------------------------- Filter end
-	
-	//----------------------------------------------------------------------------------------------- Action start
-	/**
-	 * @return 获取ActionMap
-	 */
-	public static Map<String, Action> getActionMap() {
-		return actionMap;
-	}
-	/**
-	 * 获得路径对应的Action
-	 * @param path 路径，为空时将获得 根目录对应的Action
-	 * @return Action
-	 */
-	public static Action getAction(String path){
-		if(StrUtil.isBlank(path)){
-			path = StrUtil.SLASH;
-		}
-		return getActionMap().get(path.trim());
-	}
-	/**
-	 * 设置ActionMap
-	 * @param actionMap ActionMap
-	 */
-	public static void setActionMap(Map<String, Action> actionMap) {
-		ServerSetting.actionMap = actionMap;
-	}
-	
-	/**
-	 * 设置Action类，已有的Action类将被覆盖
-	 * @param path 拦截路径（必须以"/"开头）
-	 * @param action Action类
-	 */
-	public static void setAction(String path, Action action) {
-		if(StrUtil.isBlank(path)){
-			path = StrUtil.SLASH;
-		}
-		
-		if(null == action) {
-			log.warn("Added blank action, pass it.");
-			return;
-		}
-		//所有路径必须以 "/" 开头，如果没有则补全之
-		if(false == path.startsWith(StrUtil.SLASH)) {
-			path = StrUtil.SLASH + path;
-		}
-		
-		ServerSetting.actionMap.put(path, action);
-	}
-	
-	/**
-	 * 增加Action类，已有的Action类将被覆盖<br>
-	 * 所有Action都是以单例模式存在的！
-	 * @param path 拦截路径（必须以"/"开头）
-	 * @param actionClass Action类
-	 */
-	public static void setAction(String path, Class<? extends Action> actionClass) {
-		setAction(path, (Action)Singleton.get(actionClass));
-	}
-	
-	/**
-	 * 增加Action类，已有的Action类将被覆盖<br>
-	 * 自动读取Route的注解来获得Path路径
-	 * @param action 带注解的Action对象
-	 */
-	public static void setAction(Action action) {
-		final Route route = action.getClass().getAnnotation(Route.class);
-		if(route != null){
-			final String path = route.value();
-			if(StrUtil.isNotBlank(path)){
-				setAction(path, action);
-				return;
-			}
-		}
-		throw new ServerSettingException("Can not find Route annotation,please add annotation to Action class!");
-	}
-	
-	/**
-	 * 增加Action类，已有的Action类将被覆盖<br>
-	 * 所有Action都是以单例模式存在的！
-	 * @param actionClass 带注解的Action类
-	 */
-	public static void setAction(Class<? extends Action> actionClass) {
-		setAction((Action)Singleton.get(actionClass));
-	}
-	//----------------------------------------------------------------------------------------------- Action start
-	
-}
+package com.xiaoleilu.loServer;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.action.AsyncAction;
+import com.xiaoleilu.loServer.action.DefaultIndexAction;
+import com.xiaoleilu.loServer.action.ErrorAction;
+import com.xiaoleilu.loServer.action.MetricsAction;
+import com.xiaoleilu.loServer.annotation.Body;
+import com.xiaoleilu.loServer.annotation.Dispatch;
+import com.xiaoleilu.loServer.annotation.Route;
+import com.xiaoleilu.loServer.dispatch.DispatchMode;
+import com.xiaoleilu.loServer.dispatch.RejectPolicy;
+import com.xiaoleilu.loServer.exception.ServerSettingException;
+import com.xiaoleilu.loServer.filter.Filter;
+import com.xiaoleilu.loServer.filter.FilterChain;
+import com.xiaoleilu.loServer.filter.FilterMapping;
+import com.xiaoleilu.loServer.router.ActionRoute;
+import com.xiaoleilu.loServer.router.Router;
+import com.xiaoleilu.loServer.transport.TransportType;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.lang.Singleton;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.DiskAttribute;
+import io.netty.handler.codec.http.multipart.DiskFileUpload;
+import io.netty.handler.codec.http.multipart.FileUpload;
+
+/**
+ * 全局设定文件
+ * @author xiaoleilu
+ *
+ */
+public class ServerSetting {
+	private static final Log log = StaticLog.get();
+	
+	//-------------------------------------------------------- Default value start
+	/** 默认的字符集编码 */
+	public final static String DEFAULT_CHARSET = "utf-8";
+	
+	public final static String MAPPING_ALL = "/*";
+	
+	/** 匹配任意路径的模式，用于编译未匹配到路由时的Filter链 */
+	private final static String MAPPING_ANY = "/**";
+	
+	public final static String MAPPING_ERROR = "/_error";
+	
+	public final static String MAPPING_METRICS = "/_metrics";
+	//-------------------------------------------------------- Default value end
+	
+	/** 字符编码 */
+	private static String charset = DEFAULT_CHARSET;
+	/** 字符集对象，随charset一起更新，避免每次请求都查找字符集 */
+	private static Charset charsetObj = Charset.forName(DEFAULT_CHARSET);
+	/** 端口 */
+	private static int port = 8090;
+	/** 根目录 */
+	private static File root;
+	/** 网络传输层类型 */
+	private static TransportType transport = TransportType.AUTO;
+	/** 接收连接的线程数（Boss线程） */
+	private static int acceptThreads = 1;
+	/** IO线程数（Worker线程），0表示使用Netty默认值 */
+	private static int ioThreads = 0;
+	/** 是否开启SO_REUSEPORT（仅epoll），开启后每个接收线程独立绑定端口 */
+	private static boolean reusePort;
+	/** TCP_FASTOPEN队列长度（仅epoll），0表示关闭 */
+	private static int tcpFastOpen;
+	/** 是否使用边缘触发模式（仅epoll），false为水平触发 */
+	private static boolean epollEdgeTriggered = true;
+	/** Action的默认执行方式 */
+	private static DispatchMode dispatchMode = DispatchMode.IO;
+	/** 自定义的业务线程池 */
+	private static Executor actionExecutor;
+	/** 内置业务线程池的线程数，0表示CPU核数 * 2 */
+	private static int executorThreads;
+	/** 内置业务线程池每个线程的最大排队任务数 */
+	private static int executorQueueSize = 1024;
+	/** 业务线程池队列已满时的拒绝策略 */
+	private static RejectPolicy rejectPolicy = RejectPolicy.SERVICE_UNAVAILABLE;
+	/** 异步Action的默认超时毫秒数，0表示不超时 */
+	private static long asyncTimeout = 30000;
+	/** 静态资源缓存的最大文件数，0表示不缓存 */
+	private static int staticCacheSize = 1024;
+	/** 缓存的静态资源是否共享打开的FileChannel */
+	private static boolean staticChannelShared;
+	/** 内容缓存在内存中的静态文件大小上限，0表示不缓存内容 */
+	private static long staticMemoryFileSize = 16 * 1024;
+	/** 内存中缓存的静态文件内容总大小上限 */
+	private static long staticMemoryCacheSize = 16 * 1024 * 1024;
+	/** 静态文件是否使用内容摘要作为强ETag */
+	private static boolean staticStrongETag;
+	/** 压缩后缓存在内存中的静态文件大小上限，0表示静态文件只使用预压缩文件 */
+	private static long staticCompressFileSize = 1024 * 1024;
+	/** 响应压缩的最小大小，小于0表示不压缩 */
+	private static int compressionThreshold = 1024;
+	/** 压缩级别 */
+	private static int compressionLevel = 6;
+	/** 合并flush的最大次数，达到后立即flush，0表示不合并 */
+	private static int flushConsolidation = 256;
+	/** 管线化时每个连接暂存的已完成响应数上限，超出时关闭连接 */
+	private static int maxPipelinedResponses = 128;
+	/** 读取请求头的超时毫秒数，从收到请求的第一个字节（新连接从建立时）开始计算，0表示不限制 */
+	private static long headerReadTimeout = 20000;
+	/** 读取请求体时两次读取的最大间隔毫秒数，0表示不限制 */
+	private static long bodyReadTimeout = 30000;
+	/** 有待发送的数据但没有进展的超时毫秒数，0表示不限制 */
+	private static long writeTimeout = 30000;
+	/** 长连接没有进行中的请求和响应时的空闲超时毫秒数，0表示不限制 */
+	private static long keepAliveTimeout = 60000;
+	/** 每个连接处理的请求数上限，达到后响应并关闭连接，0表示不限制 */
+	private static int maxRequestsPerConnection;
+	/** 最大连接数，超出时新连接被接受后立即关闭，0表示不限制 */
+	private static int maxConnections;
+	/** 是否收集运行指标 */
+	private static boolean metricsEnabled;
+	/** 聚合请求体的默认大小上限 */
+	private static long maxContentLength = 65536;
+	/** 表单和上传文件保存在内存中的默认大小上限 */
+	private static long uploadThreshold = DefaultHttpDataFactory.MINSIZE;
+	/** 上传临时文件目录，null表示系统临时目录 */
+	private static String uploadDir;
+	/** SSL证书链文件（PEM格式），为null表示不启用SSL */
+	private static File sslCertFile;
+	/** SSL私钥文件（PKCS#8 PEM格式） */
+	private static File sslKeyFile;
+	/** SSL私钥密码，私钥未加密时为null */
+	private static String sslKeyPassword;
+	/** 启用的SSL协议，null表示使用默认 */
+	private static String[] sslProtocols;
+	/** 启用的加密套件，null表示使用默认 */
+	private static List<String> sslCiphers;
+	/** 是否优先使用OpenSSL（需要netty-tcnative） */
+	private static boolean sslOpenSslPreferred = true;
+	/** SSL会话缓存数，0表示使用默认 */
+	private static long sslSessionCacheSize;
+	/** SSL会话超时秒数，0表示使用默认 */
+	private static long sslSessionTimeout;
+	/** SSL会话票据密钥，null表示使用随机生成的密钥 */
+	private static byte[] sslSessionTicketKeys;
+	/** 是否启用HTTP/2，SSL时通过ALPN协商h2，明文时支持h2c */
+	private static boolean http2;
+	/** HTTP/2每个连接允许的最大并发流数 */
+	private static long http2MaxConcurrentStreams = 100;
+	/** HTTP/2每个流的初始流控窗口大小 */
+	private static int http2InitialWindowSize = 65535;
+	/** WebSocket消息的最大长度（分片聚合后） */
+	private static int webSocketMaxFramePayloadLength = 65536;
+	/** WebSocket是否支持permessage-deflate压缩 */
+	private static boolean webSocketCompression = true;
+	/** Server-Sent Events事件流的心跳间隔毫秒数，0表示不发送 */
+	private static long eventStreamHeartbeat = 15000;
+	/** ByteBuf分配器，默认使用池化分配器（平台支持时优先直接内存） */
+	private static ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+	/** Filter映射表 */
+	private static Map<String, Filter> filterMap;
+	/** Filter映射，按照执行顺序排列 */
+	private static final List<FilterMapping> filterMappings = new ArrayList<FilterMapping>();
+	/** Filter注册序号，用于相同顺序的Filter按照注册顺序执行 */
+	private static long filterSequence;
+	/** 未匹配到路由的请求使用的Filter链 */
+	private static volatile FilterChain defaultFilterChain = FilterChain.EMPTY;
+	/** Action映射表 */
+	private static Map<String, Action> actionMap;
+	/** 由Action映射表编译而成的路由器 */
+	private static final Router router = new Router();
+	
+	static{
+		//上传的临时文件在请求处理完毕后删除，不使用deleteOnExit（其记录的路径直到JVM退出才释放）
+		DiskFileUpload.deleteOnExitTemporaryFile = false;
+		DiskAttribute.deleteOnExitTemporaryFile = false;
+		
+		filterMap = new ConcurrentHashMap<String, Filter>();
+		
+		actionMap = new ConcurrentHashMap<String, Action>();
+		setAction(StrUtil.SLASH, new DefaultIndexAction());
+		setAction(MAPPING_ERROR, new ErrorAction());
+	}
+	
+	/**
+	 * @return 获取编码
+	 */
+	public static String getCharset() {
+		return charset;
+	}
+	/**
+	 * @return 字符集
+	 */
+	public static Charset charset() {
+		return charsetObj;
+	}
+	
+	/**
+	 * 设置编码
+	 * @param charset 编码
+	 */
+	public static void setCharset(String charset) {
+		ServerSetting.charsetObj = Charset.forName(charset);
+		ServerSetting.charset = charset;
+	}
+	
+	/**
+	 * @return 监听端口
+	 */
+	public static int getPort() {
+		return port;
+	}
+	/**
+	 * 设置监听端口
+	 * @param port 端口
+	 */
+	public static void setPort(int port) {
+		ServerSetting.port = port;
+	}
+	
+	//----------------------------------------------------------------------------------------------- Transport start
+	/**
+	 * @return 网络传输层类型
+	 */
+	public static TransportType getTransport() {
+		return transport;
+	}
+	/**
+	 * 设置网络传输层类型，指定的原生传输不可用时回退到NIO
+	 * @param transport 传输层类型
+	 */
+	public static void setTransport(TransportType transport) {
+		ServerSetting.transport = (null == transport) ? TransportType.AUTO : transport;
+	}
+	/**
+	 * 设置网络传输层类型
+	 * @param transport 传输层类型名，可选值：auto、nio、epoll、io_uring
+	 */
+	public static void setTransport(String transport) {
+		setTransport(TransportType.of(transport));
+	}
+	/**
+	 * @return 接收连接的线程数
+	 */
+	public static int getAcceptThreads() {
+		return acceptThreads;
+	}
+	/**
+	 * 设置接收连接的线程数<br>
+	 * 只有在epoll下开启SO_REUSEPORT时多个接收线程才有意义
+	 * @param acceptThreads 接收连接的线程数
+	 */
+	public static void setAcceptThreads(int acceptThreads) {
+		ServerSetting.acceptThreads = Math.max(1, acceptThreads);
+	}
+	/**
+	 * @return IO线程数，0表示使用Netty默认值
+	 */
+	public static int getIoThreads() {
+		return ioThreads;
+	}
+	/**
+	 * 设置IO线程数
+	 * @param ioThreads IO线程数，0表示使用Netty默认值（CPU核数 * 2）
+	 */
+	public static void setIoThreads(int ioThreads) {
+		ServerSetting.ioThreads = Math.max(0, ioThreads);
+	}
+	/**
+	 * @return 是否开启SO_REUSEPORT
+	 */
+	public static boolean isReusePort() {
+		return reusePort;
+	}
+	/**
+	 * 设置是否开启SO_REUSEPORT（仅epoll）<br>
+	 * 开启后按照接收线程数多次绑定同一端口，由内核在多个接收线程间分配连接
+	 * @param reusePort 是否开启
+	 */
+	public static void setReusePort(boolean reusePort) {
+		ServerSetting.reusePort = reusePort;
+	}
+	/**
+	 * @return TCP_FASTOPEN队列长度，0表示关闭
+	 */
+	public static int getTcpFastOpen() {
+		return tcpFastOpen;
+	}
+	/**
+	 * 设置TCP_FASTOPEN队列长度（仅epoll）
+	 * @param tcpFastOpen 队列长度，0表示关闭
+	 */
+	public static void setTcpFastOpen(int tcpFastOpen) {
+		ServerSetting.tcpFastOpen = Math.max(0, tcpFastOpen);
+	}
+	/**
+	 * @return 是否使用边缘触发模式
+	 */
+	public static boolean isEpollEdgeTriggered() {
+		return epollEdgeTriggered;
+	}
+	/**
+	 * 设置epoll触发模式（仅epoll）
+	 * @param epollEdgeTriggered true为边缘触发（默认），false为水平触发
+	 */
+	public static void setEpollEdgeTriggered(boolean epollEdgeTriggered) {
+		ServerSetting.epollEdgeTriggered = epollEdgeTriggered;
+	}
+	/**
+	 * @return ByteBuf分配器
+	 */
+	public static ByteBufAllocator getAllocator() {
+		return allocator;
+	}
+	/**
+	 * 设置ByteBuf分配器，用于服务端及客户端连接，响应内容也从此分配器中分配
+	 * @param allocator ByteBuf分配器
+	 */
+	public static void setAllocator(ByteBufAllocator allocator) {
+		ServerSetting.allocator = (null == allocator) ? PooledByteBufAllocator.DEFAULT : allocator;
+	}
+	/**
+	 * 设置ByteBuf分配策略
+	 * @param pooled 是否池化，池化可大幅减少小响应的内存分配和GC
+	 * @param preferDirect 是否优先使用直接内存，直接内存写入Socket时可少一次拷贝
+	 */
+	public static void setAllocator(boolean pooled, boolean preferDirect) {
+		if(pooled) {
+			setAllocator(preferDirect == PooledByteBufAllocator.defaultPreferDirect() ? PooledByteBufAllocator.DEFAULT : new PooledByteBufAllocator(preferDirect));
+		}else {
+			setAllocator(new UnpooledByteBufAllocator(preferDirect));
+		}
+	}
+	//----------------------------------------------------------------------------------------------- Transport end
+	
+	//----------------------------------------------------------------------------------------------- Dispatch start
+	/**
+	 * @return Action的默认执行方式
+	 */
+	public static DispatchMode getDispatchMode() {
+		return dispatchMode;
+	}
+	/**
+	 * 设置Action的默认执行方式，单个Action可以使用{@link Dispatch}注解单独指定
+	 * @param dispatchMode 执行方式
+	 */
+	public static void setDispatchMode(DispatchMode dispatchMode) {
+		ServerSetting.dispatchMode = (null == dispatchMode) ? DispatchMode.IO : dispatchMode;
+	}
+	/**
+	 * @return 自定义的业务线程池，未设置返回null
+	 */
+	public static Executor getActionExecutor() {
+		return actionExecutor;
+	}
+	/**
+	 * 设置自定义的业务线程池，替代内置的EventExecutorGroup<br>
+	 * 线程池应有队列上限，队列满时抛出RejectedExecutionException
+	 * @param actionExecutor 业务线程池
+	 */
+	public static void setActionExecutor(Executor actionExecutor) {
+		ServerSetting.actionExecutor = actionExecutor;
+	}
+	/**
+	 * @return 内置业务线程池的线程数，0表示CPU核数 * 2
+	 */
+	public static int getExecutorThreads() {
+		return executorThreads;
+	}
+	/**
+	 * 设置内置业务线程池的线程数
+	 * @param executorThreads 线程数，0表示CPU核数 * 2
+	 */
+	public static void setExecutorThreads(int executorThreads) {
+		ServerSetting.executorThreads = Math.max(0, executorThreads);
+	}
+	/**
+	 * @return 内置业务线程池每个线程的最大排队任务数
+	 */
+	public static int getExecutorQueueSize() {
+		return executorQueueSize;
+	}
+	/**
+	 * 设置内置业务线程池每个线程的最大排队任务数，使用虚拟线程时为最大并发Action数<br>
+	 * Netty的EventExecutor队列长度最小为16
+	 * @param executorQueueSize 最大排队任务数
+	 */
+	public static void setExecutorQueueSize(int executorQueueSize) {
+		ServerSetting.executorQueueSize = Math.max(1, executorQueueSize);
+	}
+	/**
+	 * @return 业务线程池队列已满时的拒绝策略
+	 */
+	public static RejectPolicy getRejectPolicy() {
+		return rejectPolicy;
+	}
+	/**
+	 * 设置业务线程池队列已满时的拒绝策略
+	 * @param rejectPolicy 拒绝策略
+	 */
+	public static void setRejectPolicy(RejectPolicy rejectPolicy) {
+		ServerSetting.rejectPolicy = (null == rejectPolicy) ? RejectPolicy.SERVICE_UNAVAILABLE : rejectPolicy;
+	}
+	/**
+	 * @return 异步Action的默认超时毫秒数，0表示不超时
+	 */
+	public static long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+	/**
+	 * 设置异步Action的默认超时时间，单个Action可以通过{@link AsyncAction#getTimeout()}单独指定
+	 * @param asyncTimeout 超时毫秒数，0表示不超时
+	 */
+	public static void setAsyncTimeout(long asyncTimeout) {
+		ServerSetting.asyncTimeout = Math.max(0, asyncTimeout);
+	}
+	//----------------------------------------------------------------------------------------------- Dispatch end
+	
+	//----------------------------------------------------------------------------------------------- Request start
+	/**
+	 * @return 聚合请求体的默认大小上限
+	 */
+	public static long getMaxContentLength() {
+		return maxContentLength;
+	}
+	/**
+	 * 设置聚合请求体的默认大小上限，超出时返回413，单个Action可以使用{@link Body}注解单独指定
+	 * @param maxContentLength 字节数
+	 */
+	public static void setMaxContentLength(long maxContentLength) {
+		ServerSetting.maxContentLength = maxContentLength;
+	}
+	/**
+	 * @return 表单和上传文件保存在内存中的默认大小上限
+	 */
+	public static long getUploadThreshold() {
+		return uploadThreshold;
+	}
+	/**
+	 * 设置表单和上传文件保存在内存中的默认大小上限，超出后写入临时文件，单个Action可以使用{@link Body}注解单独指定
+	 * @param uploadThreshold 字节数，0表示总是写入临时文件
+	 */
+	public static void setUploadThreshold(long uploadThreshold) {
+		ServerSetting.uploadThreshold = Math.max(0, uploadThreshold);
+	}
+	/**
+	 * @return 上传临时文件目录，null表示系统临时目录
+	 */
+	public static String getUploadDir() {
+		return uploadDir;
+	}
+	/**
+	 * 设置上传临时文件目录，与目标目录在同一文件系统时，{@link FileUpload#renameTo(File)}只移动文件而不复制
+	 * @param uploadDir 目录，null表示系统临时目录
+	 */
+	public static void setUploadDir(String uploadDir) {
+		if(null != uploadDir) {
+			FileUtil.mkdir(uploadDir);
+		}
+		ServerSetting.uploadDir = uploadDir;
+		DiskFileUpload.baseDirectory = uploadDir;
+		DiskAttribute.baseDirectory = uploadDir;
+	}
+	//----------------------------------------------------------------------------------------------- Request end
+	
+	//----------------------------------------------------------------------------------------------- Connection start
+	/**
+	 * @return 合并flush的最大次数，0表示不合并
+	 */
+	public static int getFlushConsolidation() {
+		return flushConsolidation;
+	}
+	/**
+	 * 设置合并flush的最大次数，需在启动前设置<br>
+	 * 同一次读取中处理的多个请求（例如管线化）的响应只在读取结束时flush一次，连续flush达到此次数时立即flush
+	 * @param flushConsolidation 次数，0表示不合并
+	 */
+	public static void setFlushConsolidation(int flushConsolidation) {
+		ServerSetting.flushConsolidation = Math.max(0, flushConsolidation);
+	}
+	/**
+	 * @return 管线化时每个连接暂存的已完成响应数上限
+	 */
+	public static int getMaxPipelinedResponses() {
+		return maxPipelinedResponses;
+	}
+	/**
+	 * 设置管线化时每个连接暂存的响应数上限，需在启动前设置<br>
+	 * 同一连接上的请求可以并发执行，但响应必须按照请求顺序写出，前面的请求未完成时后续的响应暂存在内存中，超出上限时关闭连接
+	 * @param maxPipelinedResponses 响应数
+	 */
+	public static void setMaxPipelinedResponses(int maxPipelinedResponses) {
+		if(maxPipelinedResponses < 1) {
+			throw new ServerSettingException("Max pipelined responses must be positive!");
+		}
+		ServerSetting.maxPipelinedResponses = maxPipelinedResponses;
+	}
+	/**
+	 * @return 读取请求头的超时毫秒数，0表示不限制
+	 */
+	public static long getHeaderReadTimeout() {
+		return headerReadTimeout;
+	}
+	/**
+	 * 设置读取请求头的超时，需在启动前设置<br>
+	 * 从收到请求的第一个字节开始计算（新连接从建立时开始），超时未收到完整的请求头时关闭连接，防止慢速发送请求头（slowloris）占用连接
+	 * @param headerReadTimeout 超时毫秒数，0表示不限制
+	 */
+	public static void setHeaderReadTimeout(long headerReadTimeout) {
+		ServerSetting.headerReadTimeout = Math.max(0, headerReadTimeout);
+	}
+	/**
+	 * @return 读取请求体时两次读取的最大间隔毫秒数，0表示不限制
+	 */
+	public static long getBodyReadTimeout() {
+		return bodyReadTimeout;
+	}
+	/**
+	 * 设置读取请求体的超时，需在启动前设置<br>
+	 * 超过此时间没有收到请求体的数据时关闭连接，流式接收请求体时服务端暂停读取的时间不计
+	 * @param bodyReadTimeout 两次读取的最大间隔毫秒数，0表示不限制
+	 */
+	public static void setBodyReadTimeout(long bodyReadTimeout) {
+		ServerSetting.bodyReadTimeout = Math.max(0, bodyReadTimeout);
+	}
+	/**
+	 * @return 写出没有进展的超时毫秒数，0表示不限制
+	 */
+	public static long getWriteTimeout() {
+		return writeTimeout;
+	}
+	/**
+	 * 设置写出超时，需在启动前设置<br>
+	 * 有待发送的数据但超过此时间没有发送出任何数据（客户端不读取）时关闭连接，慢速但持续读取的客户端不受影响
+	 * @param writeTimeout 超时毫秒数，0表示不限制
+	 */
+	public static void setWriteTimeout(long writeTimeout) {
+		ServerSetting.writeTimeout = Math.max(0, writeTimeout);
+	}
+	/**
+	 * @return 长连接的空闲超时毫秒数，0表示不限制
+	 */
+	public static long getKeepAliveTimeout() {
+		return keepAliveTimeout;
+	}
+	/**
+	 * 设置长连接的空闲超时，需在启动前设置<br>
+	 * 响应写出后超过此时间没有新的请求时关闭连接；Action处理中、事件流和分块响应发送中的连接不算空闲，WebSocket连接不受此限制
+	 * @param keepAliveTimeout 超时毫秒数，0表示不限制
+	 */
+	public static void setKeepAliveTimeout(long keepAliveTimeout) {
+		ServerSetting.keepAliveTimeout = Math.max(0, keepAliveTimeout);
+	}
+	/**
+	 * @return 每个连接处理的请求数上限，0表示不限制
+	 */
+	public static int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+	/**
+	 * 设置每个连接处理的请求数上限，需在启动前设置<br>
+	 * 达到上限的请求以Connection: close响应后关闭连接，客户端重新建立连接，使负载在IO线程和多个实例间重新分布；只对HTTP/1.x有效
+	 * @param maxRequestsPerConnection 请求数，0表示不限制
+	 */
+	public static void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+		ServerSetting.maxRequestsPerConnection = Math.max(0, maxRequestsPerConnection);
+	}
+	/**
+	 * @return 最大连接数，0表示不限制
+	 */
+	public static int getMaxConnections() {
+		return maxConnections;
+	}
+	/**
+	 * 设置最大连接数，需在启动前设置<br>
+	 * 超出时新连接被接受后立即关闭，不分配Pipeline和缓冲区，使文件描述符和内存占用有上限
+	 * @param maxConnections 连接数，0表示不限制
+	 */
+	public static void setMaxConnections(int maxConnections) {
+		ServerSetting.maxConnections = Math.max(0, maxConnections);
+	}
+	//----------------------------------------------------------------------------------------------- Connection end
+	
+	//----------------------------------------------------------------------------------------------- Metrics start
+	/**
+	 * @return 是否收集运行指标
+	 */
+	public static boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+	/**
+	 * 设置是否收集运行指标，需在启动前设置<br>
+	 * 收集各路由按状态码的请求数和延迟分位数、连接数、收发字节数以及线程的排队任务数，开启时在{@link #MAPPING_METRICS}注册{@link MetricsAction}（已注册其它Action时不覆盖）
+	 * @param metricsEnabled 是否收集
+	 */
+	public static void setMetricsEnabled(boolean metricsEnabled) {
+		ServerSetting.metricsEnabled = metricsEnabled;
+		if(metricsEnabled && false == actionMap.containsKey(MAPPING_METRICS)) {
+			setAction(MAPPING_METRICS, new MetricsAction());
+		}
+	}
+	//----------------------------------------------------------------------------------------------- Metrics end
+	
+	//----------------------------------------------------------------------------------------------- Compression start
+	/**
+	 * @return 响应压缩的最小大小，小于0表示不压缩
+	 */
+	public static int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+	/**
+	 * 设置响应压缩的最小大小，客户端支持时使用gzip或deflate压缩文本类型的响应，需在启动前设置
+	 * @param compressionThreshold 字节数，小于0表示不压缩
+	 */
+	public static void setCompressionThreshold(int compressionThreshold) {
+		ServerSetting.compressionThreshold = compressionThreshold;
+	}
+	/**
+	 * @return 压缩级别
+	 */
+	public static int getCompressionLevel() {
+		return compressionLevel;
+	}
+	/**
+	 * 设置压缩级别，需在启动前设置
+	 * @param compressionLevel 压缩级别，1（最快）~9（最小）
+	 */
+	public static void setCompressionLevel(int compressionLevel) {
+		if(compressionLevel < 1 || compressionLevel > 9) {
+			throw new ServerSettingException(StrUtil.format("Compression level [{}] must be in 1~9!", compressionLevel));
+		}
+		ServerSetting.compressionLevel = compressionLevel;
+	}
+	/**
+	 * @return 压缩后缓存在内存中的静态文件大小上限
+	 */
+	public static long getStaticCompressFileSize() {
+		return staticCompressFileSize;
+	}
+	/**
+	 * 设置压缩后缓存在内存中的静态文件大小上限，压缩内容与静态文件内容共用内存上限，需在启动前设置<br>
+	 * 同目录下存在预压缩文件（.br、.gz）时优先使用预压缩文件，不受此限制
+	 * @param staticCompressFileSize 字节数，0表示静态文件只使用预压缩文件
+	 */
+	public static void setStaticCompressFileSize(long staticCompressFileSize) {
+		ServerSetting.staticCompressFileSize = Math.max(0, staticCompressFileSize);
+	}
+	//----------------------------------------------------------------------------------------------- Compression end
+	
+	//----------------------------------------------------------------------------------------------- SSL start
+	/**
+	 * @return 是否启用SSL
+	 */
+	public static boolean isSslEnabled() {
+		return null != sslCertFile && null != sslKeyFile;
+	}
+	/**
+	 * 启用SSL，需在启动前设置
+	 * @param certPath 证书链文件（PEM格式）路径
+	 * @param keyPath 私钥文件（PKCS#8 PEM格式）路径
+	 */
+	public static void setSsl(String certPath, String keyPath) {
+		setSsl(certPath, keyPath, null);
+	}
+	/**
+	 * 启用SSL，需在启动前设置
+	 * @param certPath 证书链文件（PEM格式）路径
+	 * @param keyPath 私钥文件（PKCS#8 PEM格式）路径
+	 * @param keyPassword 私钥密码，私钥未加密时为null
+	 */
+	public static void setSsl(String certPath, String keyPath, String keyPassword) {
+		final File certFile = FileUtil.file(certPath);
+		final File keyFile = FileUtil.file(keyPath);
+		if(false == FileUtil.isFile(certFile)) {
+			throw new ServerSettingException(StrUtil.format("SSL cert file [{}] not exist!", certPath));
+		}
+		if(false == FileUtil.isFile(keyFile)) {
+			throw new ServerSettingException(StrUtil.format("SSL key file [{}] not exist!", keyPath));
+		}
+		ServerSetting.sslCertFile = certFile;
+		ServerSetting.sslKeyFile = keyFile;
+		ServerSetting.sslKeyPassword = keyPassword;
+	}
+	/**
+	 * @return SSL证书链文件
+	 */
+	public static File getSslCertFile() {
+		return sslCertFile;
+	}
+	/**
+	 * @return SSL私钥文件
+	 */
+	public static File getSslKeyFile() {
+		return sslKeyFile;
+	}
+	/**
+	 * @return SSL私钥密码
+	 */
+	public static String getSslKeyPassword() {
+		return sslKeyPassword;
+	}
+	/**
+	 * @return 启用的SSL协议，null表示使用默认
+	 */
+	public static String[] getSslProtocols() {
+		return sslProtocols;
+	}
+	/**
+	 * 设置启用的SSL协议，需在启动前设置
+	 * @param sslProtocols 协议，例如TLSv1.3、TLSv1.2，null表示使用默认
+	 */
+	public static void setSslProtocols(String... sslProtocols) {
+		ServerSetting.sslProtocols = sslProtocols;
+	}
+	/**
+	 * @return 启用的加密套件，null表示使用默认
+	 */
+	public static List<String> getSslCiphers() {
+		return sslCiphers;
+	}
+	/**
+	 * 设置启用的加密套件，当前SSL实现不支持的套件将被忽略，需在启动前设置
+	 * @param sslCiphers 加密套件，null表示使用默认
+	 */
+	public static void setSslCiphers(List<String> sslCiphers) {
+		ServerSetting.sslCiphers = sslCiphers;
+	}
+	/**
+	 * @return 是否优先使用OpenSSL
+	 */
+	public static boolean isSslOpenSslPreferred() {
+		return sslOpenSslPreferred;
+	}
+	/**
+	 * 设置是否优先使用OpenSSL，classpath中存在netty-tcnative时使用OpenSSL，否则使用JDK的实现，需在启动前设置
+	 * @param sslOpenSslPreferred 是否优先使用OpenSSL
+	 */
+	public static void setSslOpenSslPreferred(boolean sslOpenSslPreferred) {
+		ServerSetting.sslOpenSslPreferred = sslOpenSslPreferred;
+	}
+	/**
+	 * @return SSL会话缓存数，0表示使用默认
+	 */
+	public static long getSslSessionCacheSize() {
+		return sslSessionCacheSize;
+	}
+	/**
+	 * 设置SSL会话缓存数，缓存的会话用于客户端重连时恢复会话，省去完整握手，需在启动前设置
+	 * @param sslSessionCacheSize 缓存数，0表示使用默认
+	 */
+	public static void setSslSessionCacheSize(long sslSessionCacheSize) {
+		ServerSetting.sslSessionCacheSize = Math.max(0, sslSessionCacheSize);
+	}
+	/**
+	 * @return SSL会话超时秒数，0表示使用默认
+	 */
+	public static long getSslSessionTimeout() {
+		return sslSessionTimeout;
+	}
+	/**
+	 * 设置SSL会话超时秒数，需在启动前设置
+	 * @param sslSessionTimeout 秒数，0表示使用默认
+	 */
+	public static void setSslSessionTimeout(long sslSessionTimeout) {
+		ServerSetting.sslSessionTimeout = Math.max(0, sslSessionTimeout);
+	}
+	/**
+	 * @return SSL会话票据密钥，null表示使用随机生成的密钥
+	 */
+	public static byte[] getSslSessionTicketKeys() {
+		return sslSessionTicketKeys;
+	}
+	/**
+	 * 设置SSL会话票据密钥，多台服务器使用相同的密钥时客户端可以在任意一台上恢复会话，需在启动前设置<br>
+	 * 仅OpenSSL支持，JDK实现的会话票据由系统属性jdk.tls.server.enableSessionTicketExtension控制
+	 * @param sslSessionTicketKeys 密钥，长度为48字节的整数倍（每个密钥包括16字节名称、16字节HMAC密钥和16字节AES密钥），第一个用于加密
+	 */
+	public static void setSslSessionTicketKeys(byte[] sslSessionTicketKeys) {
+		if(null != sslSessionTicketKeys && (0 == sslSessionTicketKeys.length || 0 != sslSessionTicketKeys.length % 48)) {
+			throw new ServerSettingException("SSL session ticket keys length must be a multiple of 48!");
+		}
+		ServerSetting.sslSessionTicketKeys = sslSessionTicketKeys;
+	}
+	//----------------------------------------------------------------------------------------------- SSL end
+	
+	//----------------------------------------------------------------------------------------------- HTTP/2 start
+	/**
+	 * @return 是否启用HTTP/2
+	 */
+	public static boolean isHttp2() {
+		return http2;
+	}
+	/**
+	 * 设置是否启用HTTP/2，需在启动前设置<br>
+	 * 启用SSL时通过ALPN协商h2，否则支持h2c升级（Upgrade: h2c）和直接发送HTTP/2连接前言（prior knowledge），不支持HTTP/2的客户端仍使用HTTP/1.1
+	 * @param http2 是否启用HTTP/2
+	 */
+	public static void setHttp2(boolean http2) {
+		ServerSetting.http2 = http2;
+	}
+	/**
+	 * @return HTTP/2每个连接允许的最大并发流数
+	 */
+	public static long getHttp2MaxConcurrentStreams() {
+		return http2MaxConcurrentStreams;
+	}
+	/**
+	 * 设置HTTP/2每个连接允许的最大并发流数，需在启动前设置
+	 * @param http2MaxConcurrentStreams 最大并发流数
+	 */
+	public static void setHttp2MaxConcurrentStreams(long http2MaxConcurrentStreams) {
+		if(http2MaxConcurrentStreams < 1) {
+			throw new ServerSettingException("HTTP/2 max concurrent streams must be positive!");
+		}
+		ServerSetting.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+	}
+	/**
+	 * @return HTTP/2每个流的初始流控窗口大小
+	 */
+	public static int getHttp2InitialWindowSize() {
+		return http2InitialWindowSize;
+	}
+	/**
+	 * 设置HTTP/2每个流的初始流控窗口大小，上传较大请求体时可适当调大，需在启动前设置
+	 * @param http2InitialWindowSize 字节数，不能为负数
+	 */
+	public static void setHttp2InitialWindowSize(int http2InitialWindowSize) {
+		if(http2InitialWindowSize < 0) {
+			throw new ServerSettingException("HTTP/2 initial window size must not be negative!");
+		}
+		ServerSetting.http2InitialWindowSize = http2InitialWindowSize;
+	}
+	//----------------------------------------------------------------------------------------------- HTTP/2 end
+	
+	//----------------------------------------------------------------------------------------------- WebSocket start
+	/**
+	 * @return WebSocket消息的最大长度
+	 */
+	public static int getWebSocketMaxFramePayloadLength() {
+		return webSocketMaxFramePayloadLength;
+	}
+	/**
+	 * 设置WebSocket消息的最大长度，分片的消息按照聚合后的长度计算，超出时以1009关闭连接
+	 * @param webSocketMaxFramePayloadLength 字节数
+	 */
+	public static void setWebSocketMaxFramePayloadLength(int webSocketMaxFramePayloadLength) {
+		if(webSocketMaxFramePayloadLength < 1) {
+			throw new ServerSettingException("WebSocket max frame payload length must be positive!");
+		}
+		ServerSetting.webSocketMaxFramePayloadLength = webSocketMaxFramePayloadLength;
+	}
+	/**
+	 * @return WebSocket是否支持permessage-deflate压缩
+	 */
+	public static boolean isWebSocketCompression() {
+		return webSocketCompression;
+	}
+	/**
+	 * 设置WebSocket是否支持permessage-deflate压缩（RFC 7692），客户端请求时启用，压缩级别使用{@link #getCompressionLevel()}<br>
+	 * 每个压缩的连接各自保存压缩上下文，连接数很多时关闭可节省内存
+	 * @param webSocketCompression 是否支持
+	 */
+	public static void setWebSocketCompression(boolean webSocketCompression) {
+		ServerSetting.webSocketCompression = webSocketCompression;
+	}
+	//----------------------------------------------------------------------------------------------- WebSocket end
+	
+	//----------------------------------------------------------------------------------------------- EventStream start
+	/**
+	 * @return Server-Sent Events事件流的心跳间隔毫秒数，0表示不发送
+	 */
+	public static long getEventStreamHeartbeat() {
+		return eventStreamHeartbeat;
+	}
+	/**
+	 * 设置Server-Sent Events事件流的心跳间隔，间隔内没有发送事件时发送一个注释行，防止代理或客户端因空闲断开连接
+	 * @param eventStreamHeartbeat 毫秒数，0表示不发送
+	 */
+	public static void setEventStreamHeartbeat(long eventStreamHeartbeat) {
+		ServerSetting.eventStreamHeartbeat = Math.max(0, eventStreamHeartbeat);
+	}
+	//----------------------------------------------------------------------------------------------- EventStream end
+	
+	//----------------------------------------------------------------------------------------------- Root start
+	/**
+	 * @return 根目录
+	 */
+	public static File getRoot() {
+		return root;
+	}
+	/**
+	 * @return 根目录
+	 */
+	public static boolean isRootAvailable() {
+		if(root != null && root.isDirectory() && root.isHidden() == false && root.canRead()){
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * @return 根目录
+	 */
+	public static String getRootPath() {
+		return FileUtil.getAbsolutePath(root);
+	}
+	/**
+	 * 根目录
+	 * @param root 根目录绝对路径
+	 */
+	public static void setRoot(String root) {
+		ServerSetting.root = FileUtil.mkdir(root);
+		log.debug("Set root to [{}]", ServerSetting.root.getAbsolutePath());
+	}
+	/**
+	 * 根目录
+	 * @param root 根目录绝对路径
+	 */
+	public static void setRoot(File root) {
+		if(root.exists() == false){
+			root.mkdirs();
+		}else if(root.isDirectory() == false){
+			throw new ServerSettingException(StrUtil.format("{} is not a directory!", root.getPath()));
+		}
+		ServerSetting.root = root;
+	}
+	/**
+	 * @return 静态资源缓存的最大文件数，0表示不缓存
+	 */
+	public static int getStaticCacheSize() {
+		return staticCacheSize;
+	}
+	/**
+	 * 设置静态资源缓存的最大文件数，缓存文件的大小、修改时间和MIME类型，文件变更时自动失效，需在启动前设置
+	 * @param staticCacheSize 最大文件数，0表示不缓存
+	 */
+	public static void setStaticCacheSize(int staticCacheSize) {
+		ServerSetting.staticCacheSize = Math.max(0, staticCacheSize);
+	}
+	/**
+	 * @return 缓存的静态资源是否共享打开的FileChannel
+	 */
+	public static boolean isStaticChannelShared() {
+		return staticChannelShared;
+	}
+	/**
+	 * 设置缓存的静态资源是否共享打开的FileChannel，共享时每个缓存的文件占用一个文件描述符，需在启动前设置
+	 * @param staticChannelShared 是否共享
+	 */
+	public static void setStaticChannelShared(boolean staticChannelShared) {
+		ServerSetting.staticChannelShared = staticChannelShared;
+	}
+	/**
+	 * @return 内容缓存在内存中的静态文件大小上限
+	 */
+	public static long getStaticMemoryFileSize() {
+		return staticMemoryFileSize;
+	}
+	/**
+	 * 设置内容缓存在内存中的静态文件大小上限，再次请求的小文件内容将读入内存，之后直接发送而不读取磁盘，需在启动前设置
+	 * @param staticMemoryFileSize 字节数，0表示不缓存内容
+	 */
+	public static void setStaticMemoryFileSize(long staticMemoryFileSize) {
+		ServerSetting.staticMemoryFileSize = Math.max(0, staticMemoryFileSize);
+	}
+	/**
+	 * @return 内存中缓存的静态文件内容总大小上限
+	 */
+	public static long getStaticMemoryCacheSize() {
+		return staticMemoryCacheSize;
+	}
+	/**
+	 * 设置内存中缓存的静态文件内容总大小上限，超出时释放最久未访问文件的内容，需在启动前设置
+	 * @param staticMemoryCacheSize 字节数，0表示不缓存内容
+	 */
+	public static void setStaticMemoryCacheSize(long staticMemoryCacheSize) {
+		ServerSetting.staticMemoryCacheSize = Math.max(0, staticMemoryCacheSize);
+	}
+	/**
+	 * @return 静态文件是否使用内容摘要作为强ETag
+	 */
+	public static boolean isStaticStrongETag() {
+		return staticStrongETag;
+	}
+	/**
+	 * 设置静态文件是否使用内容摘要作为强ETag，摘要在首次请求时计算并随缓存保存，文件变更时重新计算<br>
+	 * 默认使用由大小和修改时间生成的弱ETag，不需要读取文件内容
+	 * @param staticStrongETag 是否使用强ETag
+	 */
+	public static void setStaticStrongETag(boolean staticStrongETag) {
+		ServerSetting.staticStrongETag = staticStrongETag;
+	}
+	//----------------------------------------------------------------------------------------------- Root end
+	
+	//----------------------------------------------------------------------------------------------- Filter start
+	/**
+	 * @return 获取FilterMap
+	 */
+	public static Map<String, Filter> getFilterMap() {
+		return filterMap;
+	}
+	/**
+	 * 获得路径对应的Filter
+	 * @param path 路径，为空时将获得 根目录对应的Action
+	 * @return Filter
+	 */
+	public static Filter getFilter(String path){
+		if(StrUtil.isBlank(path)){
+			path = StrUtil.SLASH;
+		}
+		return getFilterMap().get(path.trim());
+	}
+	/**
+	 * 设置FilterMap，所有Filter的执行顺序为0，Filter链将重新编译
+	 * @param filterMap FilterMap
+	 */
+	public static synchronized void setFilterMap(Map<String, Filter> filterMap) {
+		ServerSetting.filterMap = filterMap;
+		filterMappings.clear();
+		for (Entry<String, Filter> entry : filterMap.entrySet()) {
+			filterMappings.add(new FilterMapping(entry.getKey(), entry.getValue(), 0, filterSequence++));
+		}
+		Collections.sort(filterMappings, FilterMapping.ORDER_COMPARATOR);
+		compileFilterChains();
+	}
+	
+	/**
+	 * @return 按照执行顺序排列的Filter映射
+	 */
+	public static synchronized List<FilterMapping> getFilterMappings() {
+		return new ArrayList<FilterMapping>(filterMappings);
+	}
+	
+	/**
+	 * @return 未匹配到路由的请求（例如静态文件）所使用的Filter链
+	 */
+	public static FilterChain getDefaultFilterChain() {
+		return defaultFilterChain;
+	}
+	
+	/**
+	 * 设置Filter类，已有的Filter类将被覆盖，执行顺序为0
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param filter Action类
+	 */
+	public static void setFilter(String path, Filter filter) {
+		setFilter(path, filter, 0);
+	}
+	
+	/**
+	 * 设置Filter类，已有的Filter类将被覆盖<br>
+	 * 路径语法与Action相同，例如："/*"拦截所有请求，"/api/*"拦截/api/下的所有请求，"/user/{id}"拦截单个路径段<br>
+	 * 所有匹配的Filter按照order从小到大依次执行，order相同时"/*"在前，其次按照注册顺序
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param filter Action类
+	 * @param order 执行顺序，越小越先执行
+	 */
+	public static synchronized void setFilter(String path, Filter filter, int order) {
+		if(StrUtil.isBlank(path)){
+			path = StrUtil.SLASH;
+		}
+		
+		if(null == filter) {
+			log.warn("Added blank action, pass it.");
+			return;
+		}
+		//所有路径必须以 "/" 开头，如果没有则补全之
+		if(false == path.startsWith(StrUtil.SLASH)) {
+			path = StrUtil.SLASH + path;
+		}
+		
+		final Iterator<FilterMapping> iterator = filterMappings.iterator();
+		while (iterator.hasNext()) {
+			if(iterator.next().getPattern().getPattern().equals(path)) {
+				iterator.remove();
+			}
+		}
+		filterMappings.add(new FilterMapping(path, filter, order, filterSequence++));
+		Collections.sort(filterMappings, FilterMapping.ORDER_COMPARATOR);
+		
+		ServerSetting.filterMap.put(path, filter);
+		compileFilterChains();
+	}
+	
+	/**
+	 * 设置Filter类，已有的Filter类将被覆盖
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param filterClass Filter类
+	 */
+	public static void setFilter(String path, Class<? extends Filter> filterClass) {
+		setFilter(path, (Filter)Singleton.get(filterClass));
+	}
+	
+	/**
+	 * 设置Filter类，已有的Filter类将被覆盖
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param filterClass Filter类
+	 * @param order 执行顺序，越小越先执行
+	 */
+	public static void setFilter(String path, Class<? extends Filter> filterClass, int order) {
+		setFilter(path, (Filter)Singleton.get(filterClass), order);
+	}
+	
+	/**
+	 * 重新编译所有路由的Filter链，在Filter变更时调用
+	 */
+	private static synchronized void compileFilterChains() {
+		for (ActionRoute route : router.getRoutes()) {
+			route.setFilterChain(FilterChain.compile(route.getPattern(), filterMappings));
+		}
+		defaultFilterChain = FilterChain.compile(MAPPING_ANY, filterMappings);
+	}
+	
+	/**
+	 * 编译单个路由的Filter链，在路由注册时调用
+	 * @param route 路由
+	 */
+	private static synchronized void compileFilterChain(ActionRoute route) {
+		route.setFilterChain(FilterChain.compile(route.getPattern(), filterMappings));
+	}
+	//----------------------------------------------------------------------------------------------- Filter end
+	
+	//----------------------------------------------------------------------------------------------- Action start
+	/**
+	 * @return 获取ActionMap
+	 */
+	public static Map<String, Action> getActionMap() {
+		return actionMap;
+	}
+	/**
+	 * @return 路由器
+	 */
+	public static Router getRouter() {
+		return router;
+	}
+	/**
+	 * 获得路径对应的Action<br>
+	 * 按照静态路径、路径变量、通配的优先级匹配，无匹配时返回"/*"对应的Action（如果有）
+	 * @param path 路径，为空时将获得 根目录对应的Action
+	 * @return Action
+	 */
+	public static Action getAction(String path){
+		if(StrUtil.isBlank(path)){
+			path = StrUtil.SLASH;
+		}
+		final ActionRoute route = router.match(path.trim());
+		return (null == route) ? null : route.getAction();
+	}
+	/**
+	 * 设置ActionMap，路由器将按照新的ActionMap重新编译
+	 * @param actionMap ActionMap
+	 */
+	public static void setActionMap(Map<String, Action> actionMap) {
+		ServerSetting.actionMap = actionMap;
+		router.clear();
+		for (Entry<String, Action> entry : actionMap.entrySet()) {
+			final ActionRoute route = router.add(entry.getKey(), entry.getValue());
+			final Dispatch dispatch = entry.getValue().getClass().getAnnotation(Dispatch.class);
+			route.setDispatchMode((null == dispatch) ? null : dispatch.value());
+			setBody(route, entry.getValue());
+			compileFilterChain(route);
+		}
+	}
+	
+	/**
+	 * 设置Action类，已有的Action类将被覆盖<br>
+	 * 路径支持路径变量和通配，例如：/user/{id}、/static/**，详见{@link Router}<br>
+	 * Action的执行方式读取其{@link Dispatch}注解，无注解时使用全局设置，接收请求体的方式读取其{@link Body}注解
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param action Action类
+	 */
+	public static void setAction(String path, Action action) {
+		final Dispatch dispatch = (null == action) ? null : action.getClass().getAnnotation(Dispatch.class);
+		setAction(path, action, (null == dispatch) ? null : dispatch.value());
+	}
+	
+	/**
+	 * 设置Action类，已有的Action类将被覆盖<br>
+	 * 路径支持路径变量和通配，例如：/user/{id}、/static/**，详见{@link Router}
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param action Action类
+	 * @param dispatchMode 执行方式，null表示使用全局设置
+	 */
+	public static void setAction(String path, Action action, DispatchMode dispatchMode) {
+		if(StrUtil.isBlank(path)){
+			path = StrUtil.SLASH;
+		}
+		
+		if(null == action) {
+			log.warn("Added blank action, pass it.");
+			return;
+		}
+		//所有路径必须以 "/" 开头，如果没有则补全之
+		if(false == path.startsWith(StrUtil.SLASH)) {
+			path = StrUtil.SLASH + path;
+		}
+		
+		final ActionRoute route = router.add(path, action);
+		route.setDispatchMode(dispatchMode);
+		setBody(route, action);
+		compileFilterChain(route);
+		ServerSetting.actionMap.put(path, action);
+	}
+	
+	/**
+	 * 按照Action的{@link Body}注解设置路由接收请求体的方式
+	 * @param route 路由
+	 * @param action Action
+	 */
+	private static void setBody(ActionRoute route, Action action) {
+		final Body body = action.getClass().getAnnotation(Body.class);
+		route.setStreaming(null != body && body.streaming());
+		route.setMaxContentLength((null == body) ? -1 : body.maxContentLength());
+		route.setUploadThreshold((null == body) ? -1 : body.uploadThreshold());
+	}
+	
+	/**
+	 * 增加Action类，已有的Action类将被覆盖<br>
+	 * 所有Action都是以单例模式存在的！
+	 * @param path 拦截路径（必须以"/"开头）
+	 * @param actionClass Action类
+	 */
+	public static void setAction(String path, Class<? extends Action> actionClass) {
+		setAction(path, (Action)Singleton.get(actionClass));
+	}
+	
+	/**
+	 * 增加Action类，已有的Action类将被覆盖<br>
+	 * 自动读取Route的注解来获得Path路径
+	 * @param action 带注解的Action对象
+	 */
+	public static void setAction(Action action) {
+		final Route route = action.getClass().getAnnotation(Route.class);
+		if(route != null){
+			final String path = route.value();
+			if(StrUtil.isNotBlank(path)){
+				setAction(path, action);
+				return;
+			}
+		}
+		throw new ServerSettingException("Can not find Route annotation,please add annotation to Action class!");
+	}
+	
+	/**
+	 * 增加Action类，已有的Action类将被覆盖<br>
+	 * 所有Action都是以单例模式存在的！
+	 * @param actionClass 带注解的Action类
+	 */
+	public static void setAction(Class<? extends Action> actionClass) {
+		setAction((Action)Singleton.get(actionClass));
+	}
+	//----------------------------------------------------------------------------------------------- Action start
+	
+}
@@ -0,0 +1,43 @@
+package com.xiaoleilu.loServer.action;
+
+import java.util.concurrent.CompletionStage;
+
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+
+/**
+ * 异步请求处理接口<br>
+ * doAsyncAction立即返回一个CompletionStage，在其完成之后才发送响应，等待期间不占用任何线程<br>
+ * 异常完成时交由ErrorAction处理；超时或连接关闭时CompletionStage会被取消
+ * 
+ * @author Looly
+ *
+ */
+public interface AsyncAction extends Action {
+
+	/**
+	 * 异步处理请求，在返回的CompletionStage完成前设置好Response的内容既可
+	 * 
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 * @return 完成时发送响应的CompletionStage
+	 */
+	public CompletionStage<?> doAsyncAction(Request request, Response response);
+
+	/**
+	 * 超时时间，超时后返回503并取消CompletionStage
+	 * 
+	 * @return 超时毫秒数，小于0表示使用ServerSetting中的全局设置，0表示不超时
+	 */
+	default long getTimeout() {
+		return -1;
+	}
+
+	/**
+	 * 同步调用时阻塞等待异步处理完成，只用于在其它Action中直接调用此Action的场景
+	 */
+	@Override
+	default void doAction(Request request, Response response) {
+		doAsyncAction(request, response).toCompletableFuture().join();
+	}
+}
@@ -1,114 +1,228 @@
-package com.xiaoleilu.loServer.action;
-
-import java.io.File;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.regex.Pattern;
-
-import com.xiaoleilu.loServer.ServerSetting;
-import com.xiaoleilu.loServer.handler.Request;
-import com.xiaoleilu.loServer.handler.Response;
-
-import cn.hutool.core.date.DatePattern;
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.ReUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.log.Log;
-import cn.hutool.log.StaticLog;
-import io.netty.handler.codec.http.HttpHeaderNames;
-import io.netty.handler.codec.http.HttpResponseStatus;
-
-/**
- * 默认的主页Action，当访问主页且没有定义主页Action时，调用此Action
- * 
- * @author Looly
- *
- */
-public class FileAction implements Action {
-	private static final Log log = StaticLog.get();
-
-	private static final Pattern INSECURE_URI = Pattern.compile(".*[<>&\"].*");
-	private static final SimpleDateFormat HTTP_DATE_FORMATER = new SimpleDateFormat(DatePattern.HTTP_DATETIME_PATTERN, Locale.US);
-
-	@Override
-	public void doAction(Request request, Response response) {
-		if (false == Request.METHOD_GET.equalsIgnoreCase(request.getMethod())) {
-			response.sendError(HttpResponseStatus.METHOD_NOT_ALLOWED, "Please use GET method to request file!");
-			return;
-		}
-		
-		if(ServerSetting.isRootAvailable() == false){
-			response.sendError(HttpResponseStatus.NOT_FOUND, "404 Root dir not avaliable!");
-			return;
-		}
-
-		final File file = getFileByPath(request.getPath());
-		log.debug("Client [{}] get file [{}]", request.getIp(), file.getPath());
-		
-		// 隐藏文件，跳过
-		if (file.isHidden() || !file.exists()) {
-			response.sendError(HttpResponseStatus.NOT_FOUND, "404 File not found!");
-			return;
-		}
-
-		// 非文件，跳过
-		if (false == file.isFile()) {
-			response.sendError(HttpResponseStatus.FORBIDDEN, "403 Forbidden!");
-			return;
-		}
-
-		// Cache Validation
-		String ifModifiedSince = request.getHeader(HttpHeaderNames.IF_MODIFIED_SINCE.toString());
-		if (StrUtil.isNotBlank(ifModifiedSince)) {
-			Date ifModifiedSinceDate = null;
-			try {
-				ifModifiedSinceDate = DateUtil.parse(ifModifiedSince, HTTP_DATE_FORMATER);
-			} catch (Exception e) {
-				log.warn("If-Modified-Since header parse error: {}", e.getMessage());
-			}
-			if(ifModifiedSinceDate != null) {
-				// 只对比到秒一级别
-				long ifModifiedSinceDateSeconds = ifModifiedSinceDate.getTime() / 1000;
-				long fileLastModifiedSeconds = file.lastModified() / 1000;
-				if (ifModifiedSinceDateSeconds == fileLastModifiedSeconds) {
-					log.debug("File {} not modified.", file.getPath());
-					response.sendNotModified();
-					return;
-				}
-			}
-		}
-		
-		response.setContent(file);
-	}
-	
-	/**
-	 * 通过URL中的path获得文件的绝对路径
-	 * 
-	 * @param httpPath Http请求的Path
-	 * @return 文件绝对路径
-	 */
-	public static File getFileByPath(String httpPath) {
-		// Decode the path.
-		try {
-			httpPath = URLDecoder.decode(httpPath, "UTF-8");
-		} catch (UnsupportedEncodingException e) {
-			throw new Error(e);
-		}
-
-		if (httpPath.isEmpty() || httpPath.charAt(0) != '/') {
-			return null;
-		}
-
-		// 路径安全检查
-		if (httpPath.contains("/.") || httpPath.contains("./") || httpPath.charAt(0) == '.' || httpPath.charAt(httpPath.length() - 1) == '.' || ReUtil.isMatch(INSECURE_URI, httpPath)) {
-			return null;
-		}
-
-		// 转换为绝对路径
-		return FileUtil.file(ServerSetting.getRoot(), httpPath);
-	}
+package com.xiaoleilu.loServer.action;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.handler.ETag;
+import com.xiaoleilu.loServer.handler.HttpChunkContentCompressor;
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+import com.xiaoleilu.loServer.resource.StaticResource;
+import com.xiaoleilu.loServer.resource.StaticResourceCache;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * 默认的主页Action，当访问主页且没有定义主页Action时，调用此Action
+ * 
+ * @author Looly
+ *
+ */
+public class FileAction implements Action {
+	private static final Log log = StaticLog.get();
+
+	private static final Pattern INSECURE_URI = Pattern.compile(".*[<>&\"].*");
+	/** 查找预压缩文件的编码，按照优先顺序排列 */
+	private static final String[] PRECOMPRESSED_ENCODINGS = { "br", "gzip" };
+
+	/** 静态资源缓存，命中时不访问文件系统 */
+	private final StaticResourceCache cache = new StaticResourceCache(ServerSetting.getStaticCacheSize(), ServerSetting.isStaticChannelShared(),
+			ServerSetting.getStaticMemoryFileSize(), ServerSetting.getStaticMemoryCacheSize())
+			.setCompression(ServerSetting.getStaticCompressFileSize(), ServerSetting.getCompressionLevel());
+	/** 缓存对应的根目录，根目录变更时清空缓存 */
+	private volatile File cachedRoot;
+
+	@Override
+	public void doAction(Request request, Response response) {
+		if (false == Request.METHOD_GET.equalsIgnoreCase(request.getMethod())) {
+			response.sendError(HttpResponseStatus.METHOD_NOT_ALLOWED, "Please use GET method to request file!");
+			return;
+		}
+		
+		final StaticResource resource = getResource(request, response);
+		if(null == resource) {
+			return;
+		}
+
+		// 按照客户端接受的编码设置响应内容，不同编码的ETag不同
+		response.setHeader(HttpHeaderNames.LAST_MODIFIED.toString(), resource.getLastModifiedHeader());
+		final String etag = setEncodedContent(request, response, resource);
+
+		// Cache Validation，If-None-Match优先于If-Modified-Since
+		if (StrUtil.isNotBlank(request.getHeader(HttpHeaderNames.IF_NONE_MATCH.toString()))) {
+			if (response.checkNotModified(etag)) {
+				log.debug("File {} not modified.", resource);
+			}
+			return;
+		}
+		response.setETag(etag);
+		String ifModifiedSince = request.getHeader(HttpHeaderNames.IF_MODIFIED_SINCE.toString());
+		if (StrUtil.isNotBlank(ifModifiedSince)) {
+			if(ifModifiedSince.equals(resource.getLastModifiedHeader())) {
+				log.debug("File {} not modified.", resource);
+				response.sendNotModified();
+				return;
+			}
+			
+			Date ifModifiedSinceDate = null;
+			try {
+				ifModifiedSinceDate = DateUtil.parse(ifModifiedSince, DatePattern.HTTP_DATETIME_FORMAT);
+			} catch (Exception e) {
+				log.warn("If-Modified-Since header parse error: {}", e.getMessage());
+			}
+			if(ifModifiedSinceDate != null) {
+				// 只对比到秒一级别
+				long ifModifiedSinceDateSeconds = ifModifiedSinceDate.getTime() / 1000;
+				long fileLastModifiedSeconds = resource.getLastModified() / 1000;
+				if (ifModifiedSinceDateSeconds == fileLastModifiedSeconds) {
+					log.debug("File {} not modified.", resource);
+					response.sendNotModified();
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return 静态资源缓存
+	 */
+	public StaticResourceCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * 按照客户端接受的编码设置响应内容<br>
+	 * 优先使用预压缩文件（br优先于gzip），其次使用缓存的gzip压缩内容，都不可用时发送原始文件
+	 * 
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 * @param resource 静态资源
+	 * @return 所发送内容的ETag
+	 */
+	private String setEncodedContent(Request request, Response response, StaticResource resource) {
+		final boolean isStrongETag = ServerSetting.isStaticStrongETag();
+		final boolean isCompressible = ServerSetting.getCompressionThreshold() >= 0 && resource.getLength() >= ServerSetting.getCompressionThreshold()
+				&& HttpChunkContentCompressor.isCompressible(resource.getContentType());
+		if (false == isCompressible && false == resource.hasEncodedFile()) {
+			response.setContent(resource);
+			return cache.getETag(resource, isStrongETag);
+		}
+		response.setHeader(HttpHeaderNames.VARY.toString(), HttpHeaderNames.ACCEPT_ENCODING.toString());
+		if (StrUtil.isNotBlank(request.getHeader(HttpHeaderNames.RANGE.toString()))) {
+			// 范围请求针对原始文件
+			response.setContent(resource);
+			return cache.getETag(resource, isStrongETag);
+		}
+
+		for (String encoding : PRECOMPRESSED_ENCODINGS) {
+			if (request.acceptsEncoding(encoding)) {
+				final StaticResource encodedFile = cache.getEncodedFile(resource, encoding);
+				if (null != encodedFile) {
+					response.setHeader(HttpHeaderNames.CONTENT_ENCODING.toString(), encoding);
+					response.setContent(encodedFile);
+					return cache.getETag(encodedFile, isStrongETag);
+				}
+			}
+		}
+
+		if (isCompressible && request.acceptsEncoding(HttpHeaderValues.GZIP.toString())) {
+			final ByteBuf gzipContent = cache.getGzipContent(resource);
+			if (null != gzipContent) {
+				response.setHeader(HttpHeaderNames.CONTENT_ENCODING.toString(), HttpHeaderValues.GZIP.toString());
+				response.setContentType(resource.getContentType());
+				response.setContent(gzipContent);
+				return ETag.withSuffix(cache.getETag(resource, isStrongETag), HttpHeaderValues.GZIP.toString());
+			}
+		}
+		response.setContent(resource);
+		return cache.getETag(resource, isStrongETag);
+	}
+	
+	/**
+	 * 获得请求路径对应的静态资源，优先从缓存中获取，资源不存在时发送错误响应
+	 * 
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 * @return 静态资源，不存在返回null
+	 */
+	private StaticResource getResource(Request request, Response response) {
+		final File root = ServerSetting.getRoot();
+		if(root != cachedRoot) {
+			cache.clear();
+			cachedRoot = root;
+		}
+		
+		final String path = request.getPath();
+		final StaticResource resource = cache.get(path);
+		if(null != resource) {
+			return resource;
+		}
+		
+		if(ServerSetting.isRootAvailable() == false){
+			response.sendError(HttpResponseStatus.NOT_FOUND, "404 Root dir not avaliable!");
+			return null;
+		}
+
+		final File file = getFileByPath(path);
+		if (null == file) {
+			response.sendError(HttpResponseStatus.FORBIDDEN, "403 Forbidden!");
+			return null;
+		}
+		log.debug("Client [{}] get file [{}]", request.getIp(), file.getPath());
+		
+		// 隐藏文件，跳过
+		if (file.isHidden() || !file.exists()) {
+			response.sendError(HttpResponseStatus.NOT_FOUND, "404 File not found!");
+			return null;
+		}
+
+		// 非文件，跳过
+		if (false == file.isFile()) {
+			response.sendError(HttpResponseStatus.FORBIDDEN, "403 Forbidden!");
+			return null;
+		}
+		
+		return cache.put(path, file);
+	}
+	
+	/**
+	 * 通过URL中的path获得文件的绝对路径
+	 * 
+	 * @param httpPath Http请求的Path
+	 * @return 文件绝对路径
+	 */
+	public static File getFileByPath(String httpPath) {
+		// Decode the path.
+		try {
+			httpPath = URLDecoder.decode(httpPath, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new Error(e);
+		}
+
+		if (httpPath.isEmpty() || httpPath.charAt(0) != '/') {
+			return null;
+		}
+
+		// 路径安全检查
+		if (httpPath.contains("/.") || httpPath.contains("./") || httpPath.charAt(0) == '.' || httpPath.charAt(httpPath.length() - 1) == '.' || ReUtil.isMatch(INSECURE_URI, httpPath)) {
+			return null;
+		}
+
+		// 转换为绝对路径
+		return FileUtil.file(ServerSetting.getRoot(), httpPath);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.xiaoleilu.loServer.action;
+
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * 输出Prometheus文本格式的运行指标，开启指标收集时注册在{@link com.xiaoleilu.loServer.ServerSetting#MAPPING_METRICS}
+ * @author Looly
+ *
+ */
+public class MetricsAction implements Action{
+
+	/** Prometheus文本格式的Content-Type */
+	public final static String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4";
+
+	@Override
+	public void doAction(Request request, Response response) {
+		if (false == Request.METHOD_GET.equalsIgnoreCase(request.getMethod())) {
+			response.sendError(HttpResponseStatus.METHOD_NOT_ALLOWED, "Please use GET method to request metrics!");
+			return;
+		}
+		response.setContentType(CONTENT_TYPE_PROMETHEUS);
+		response.setContent(ServerMetrics.toPrometheus());
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.xiaoleilu.loServer.action;
+
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+import com.xiaoleilu.loServer.handler.WebSocketSession;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+
+/**
+ * WebSocket处理接口<br>
+ * 与普通Action一样通过ServerSetting.setAction或{@link com.xiaoleilu.loServer.annotation.Route}注解注册，Filter在握手前执行，可用于鉴权<br>
+ * 握手完成后连接不再处理HTTP请求，所有回调都在连接的IO线程中执行，不可阻塞；分片的消息聚合完整后才回调
+ *
+ * @author Looly
+ *
+ */
+public interface WebSocketAction extends Action {
+
+	/**
+	 * 握手完成，可在此将会话加入{@link com.xiaoleilu.loServer.handler.WebSocketGroup}
+	 *
+	 * @param session 会话
+	 */
+	default void onOpen(WebSocketSession session) {
+	}
+
+	/**
+	 * 收到文本消息
+	 *
+	 * @param session 会话
+	 * @param text 文本
+	 */
+	default void onText(WebSocketSession session, String text) {
+	}
+
+	/**
+	 * 收到二进制消息
+	 *
+	 * @param session 会话
+	 * @param data 数据，回调返回后释放，需要保留时调用retain
+	 */
+	default void onBinary(WebSocketSession session, ByteBuf data) {
+	}
+
+	/**
+	 * 连接关闭，无论由哪一方关闭或异常断开
+	 *
+	 * @param session 会话
+	 * @param statusCode 关闭状态码，未收到关闭帧时为1006
+	 * @param reason 关闭原因，可能为null
+	 */
+	default void onClose(WebSocketSession session, int statusCode, String reason) {
+	}
+
+	/**
+	 * 回调中抛出异常，默认以1011关闭连接；收到非法或超长的帧时按协议关闭连接，不经过此方法
+	 *
+	 * @param session 会话
+	 * @param cause 异常
+	 */
+	default void onError(WebSocketSession session, Throwable cause) {
+		session.close(WebSocketCloseStatus.INTERNAL_SERVER_ERROR.code(), null);
+	}
+
+	/**
+	 * 支持的子协议，按照优先级排列，从客户端提供的子协议中选择第一个支持的
+	 *
+	 * @return 子协议，null表示不使用子协议
+	 */
+	default String[] getSubprotocols() {
+		return null;
+	}
+
+	/**
+	 * 非WebSocket握手的请求，返回426
+	 */
+	@Override
+	default void doAction(Request request, Response response) {
+		response.setStatus(HttpResponseStatus.UPGRADE_REQUIRED)
+			.setHeader(HttpHeaderNames.UPGRADE.toString(), HttpHeaderValues.WEBSOCKET.toString())
+			.setContent("426 Upgrade Required!");
+	}
+}
@@ -0,0 +1,33 @@
+package com.xiaoleilu.loServer.annotation;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * 注解，用于指定Action接收请求体的方式<br>
+ * 未指定时请求体被完整聚合到内存中，大小上限使用ServerSetting中的全局设置
+ * @author loolly
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)/*保留的时间长短*/
+@Inherited/*只用于class，可被子类继承*/
+public @interface Body {
+	/**
+	 * 是否流式接收请求体，流式接收时Action在收到请求头后即被调用，请求体通过Request.onBody或Request.decodeBody逐段读取
+	 * @return 是否流式接收
+	 */
+	boolean streaming() default false;
+	
+	/**
+	 * 请求体大小上限，超出时返回413
+	 * @return 字节数，小于0表示使用全局设置（流式接收时不限制）
+	 */
+	long maxContentLength() default -1;
+	
+	/**
+	 * 表单和上传文件保存在内存中的大小上限，超出后写入临时文件
+	 * @return 字节数，0表示总是写入临时文件，小于0表示使用全局设置
+	 */
+	long uploadThreshold() default -1;
+}
@@ -0,0 +1,19 @@
+package com.xiaoleilu.loServer.annotation;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import com.xiaoleilu.loServer.dispatch.DispatchMode;
+
+/**
+ * 注解，用于指定Action的执行方式<br>
+ * 未指定时使用ServerSetting中的全局设置
+ * @author loolly
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)/*保留的时间长短*/
+@Inherited/*只用于class，可被子类继承*/
+public @interface Dispatch {
+	DispatchMode value();
+}
@@ -0,0 +1,190 @@
+package com.xiaoleilu.loServer.dispatch;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+import com.xiaoleilu.loServer.router.ActionRoute;
+
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+
+/**
+ * Action调度器<br>
+ * 根据路由或全局的{@link DispatchMode}选择执行Action的线程，业务线程池和虚拟线程均在首次使用时创建<br>
+ * 业务线程池的队列长度有上限，超出时抛出{@link RejectedExecutionException}，由调用方按照{@link RejectPolicy}处理
+ *
+ * @author Looly
+ *
+ */
+public class ActionDispatcher {
+	private static final Log log = StaticLog.get();
+
+	/** 指标中内置业务线程池的名称 */
+	private static final String METRICS_NAME = "action";
+
+	private final DispatchMode defaultMode;
+	private final Executor customExecutor;
+	private final int threads;
+	private final int queueSize;
+
+	private volatile EventExecutorGroup executorGroup;
+	private volatile Executor virtualExecutor;
+	private volatile boolean virtualUnavailable;
+
+	/**
+	 * 构造，使用ServerSetting中的设置
+	 */
+	public ActionDispatcher() {
+		this(ServerSetting.getDispatchMode(), ServerSetting.getActionExecutor(), ServerSetting.getExecutorThreads(), ServerSetting.getExecutorQueueSize());
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param defaultMode 默认执行方式
+	 * @param customExecutor 自定义的业务线程池，为null时使用内置的EventExecutorGroup
+	 * @param threads 内置业务线程池的线程数，0表示CPU核数 * 2
+	 * @param queueSize 每个业务线程的最大排队任务数，虚拟线程时为最大并发数
+	 */
+	public ActionDispatcher(DispatchMode defaultMode, Executor customExecutor, int threads, int queueSize) {
+		this.defaultMode = (null == defaultMode) ? DispatchMode.IO : defaultMode;
+		this.customExecutor = customExecutor;
+		this.threads = (threads > 0) ? threads : NettyRuntime.availableProcessors() * 2;
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * 选择执行Action的线程池
+	 *
+	 * @param route 路由，为null表示未匹配到路由（静态文件）
+	 * @return Executor，返回null表示在IO线程中直接执行
+	 */
+	public Executor select(ActionRoute route) {
+		DispatchMode mode = (null == route) ? null : route.getDispatchMode();
+		if (null == mode) {
+			mode = defaultMode;
+		}
+
+		switch (mode) {
+		case EXECUTOR:
+			return executor();
+		case VIRTUAL:
+			final Executor virtual = virtualExecutor();
+			return (null != virtual) ? virtual : executor();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * 关闭内置的线程池，自定义线程池由使用者自行关闭
+	 */
+	public void shutdown() {
+		if (null != executorGroup) {
+			ServerMetrics.unregister(METRICS_NAME);
+			executorGroup.shutdownGracefully();
+		}
+		if (virtualExecutor instanceof BoundedExecutor) {
+			((BoundedExecutor) virtualExecutor).shutdown();
+		}
+	}
+
+	// --------------------------------------------------------- Private method start
+	/**
+	 * @return 业务线程池
+	 */
+	private Executor executor() {
+		if (null != customExecutor) {
+			return customExecutor;
+		}
+		if (null == executorGroup) {
+			synchronized (this) {
+				if (null == executorGroup) {
+					executorGroup = new DefaultEventExecutorGroup(threads, new DefaultThreadFactory("loServer-action"), queueSize, RejectedExecutionHandlers.reject());
+					ServerMetrics.register(METRICS_NAME, executorGroup);
+					log.debug("Create action executor with {} threads, max {} pending tasks per thread.", threads, queueSize);
+				}
+			}
+		}
+		return executorGroup;
+	}
+
+	/**
+	 * @return 虚拟线程池，JDK不支持时返回null
+	 */
+	private Executor virtualExecutor() {
+		if (null == virtualExecutor && false == virtualUnavailable) {
+			synchronized (this) {
+				if (null == virtualExecutor && false == virtualUnavailable) {
+					try {
+						final Method method = ReflectUtil.getMethod(java.util.concurrent.Executors.class, "newVirtualThreadPerTaskExecutor");
+						if (null == method) {
+							throw new UnsupportedOperationException("Virtual thread is not supported by current JDK.");
+						}
+						virtualExecutor = new BoundedExecutor((ExecutorService) method.invoke(null), queueSize);
+					} catch (Exception e) {
+						log.warn("Virtual thread is not available, use executor instead: {}", e.getMessage());
+						virtualUnavailable = true;
+					}
+				}
+			}
+		}
+		return virtualExecutor;
+	}
+	// --------------------------------------------------------- Private method end
+
+	/**
+	 * 限制并发任务数的Executor，用于本身无队列上限的虚拟线程池
+	 *
+	 * @author Looly
+	 *
+	 */
+	private static class BoundedExecutor implements Executor {
+		private final ExecutorService executor;
+		private final int maxTasks;
+		private final AtomicInteger tasks = new AtomicInteger();
+
+		BoundedExecutor(ExecutorService executor, int maxTasks) {
+			this.executor = executor;
+			this.maxTasks = maxTasks;
+		}
+
+		@Override
+		public void execute(final Runnable command) {
+			if (tasks.incrementAndGet() > maxTasks) {
+				tasks.decrementAndGet();
+				throw new RejectedExecutionException("Too many pending actions: " + maxTasks);
+			}
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							command.run();
+						} finally {
+							tasks.decrementAndGet();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				tasks.decrementAndGet();
+				throw e;
+			}
+		}
+
+		void shutdown() {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.xiaoleilu.loServer.dispatch;
+
+/**
+ * Action的执行方式
+ *
+ * @author Looly
+ *
+ */
+public enum DispatchMode {
+	/** 在IO线程（EventLoop）中直接执行，适合无阻塞的快速Action */
+	IO,
+	/** 在业务线程池中执行，适合包含数据库、远程调用等阻塞操作的Action */
+	EXECUTOR,
+	/** 在虚拟线程中执行（JDK 21+），不支持时退化为EXECUTOR */
+	VIRTUAL
+}
@@ -0,0 +1,14 @@
+package com.xiaoleilu.loServer.dispatch;
+
+/**
+ * 业务线程池队列已满时的拒绝策略
+ *
+ * @author Looly
+ *
+ */
+public enum RejectPolicy {
+	/** 返回503 Service Unavailable */
+	SERVICE_UNAVAILABLE,
+	/** 在IO线程中直接执行，会阻塞此IO线程上的其它连接 */
+	CALLER_RUNS
+}
@@ -0,0 +1,24 @@
+package com.xiaoleilu.loServer.filter;
+
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+
+/**
+ * 环绕过滤器接口<br>
+ * 在{@link Filter#doFilter(Request, Response)}之外增加Action执行之后的回调<br>
+ * 只有doFilter返回true的过滤器才会被回调，回调顺序与doFilter相反；Action抛出异常时，在错误处理之后回调<br>
+ * 只需要后置处理的过滤器在doFilter中直接返回true既可
+ * 
+ * @author Looly
+ *
+ */
+public interface AroundFilter extends Filter {
+
+	/**
+	 * Action执行之后、响应发送之前调用
+	 * 
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 */
+	public void doAfter(Request request, Response response);
+}
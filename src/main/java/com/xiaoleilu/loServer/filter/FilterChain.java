@@ -0,0 +1,134 @@
+package com.xiaoleilu.loServer.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+import com.xiaoleilu.loServer.router.PathPattern;
+
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+
+/**
+ * 预编译的Filter链<br>
+ * 在路由或Filter注册时按照路由的路径模式计算出需要执行的Filter，请求时只需顺序遍历数组<br>
+ * 对于注册时无法确定是否匹配的Filter（例如Filter为/user/1而路由为/user/{id}），保留其路径模式在请求时判断
+ *
+ * @author Looly
+ *
+ */
+public class FilterChain {
+	private static final Log log = StaticLog.get();
+
+	/** 空的Filter链 */
+	public static final FilterChain EMPTY = new FilterChain(new Filter[0], new PathPattern[0]);
+
+	private final Filter[] filters;
+	/** 与filters一一对应，为null表示总是执行，否则请求时判断路径是否匹配 */
+	private final PathPattern[] conditions;
+	private final boolean hasAroundFilter;
+
+	/**
+	 * 构造
+	 *
+	 * @param filters Filter数组
+	 * @param conditions 请求时的匹配条件
+	 */
+	private FilterChain(Filter[] filters, PathPattern[] conditions) {
+		this.filters = filters;
+		this.conditions = conditions;
+		boolean hasAroundFilter = false;
+		for (Filter filter : filters) {
+			if (filter instanceof AroundFilter) {
+				hasAroundFilter = true;
+				break;
+			}
+		}
+		this.hasAroundFilter = hasAroundFilter;
+	}
+
+	/**
+	 * @return Filter个数
+	 */
+	public int size() {
+		return filters.length;
+	}
+
+	/**
+	 * 按顺序执行Filter，遇到返回false的Filter时中断
+	 *
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 * @return 返回true（通过）的Filter个数，等于{@link #size()}表示全部通过
+	 */
+	public int doFilter(Request request, Response response) {
+		final Filter[] filters = this.filters;
+		final PathPattern[] conditions = this.conditions;
+		for (int i = 0; i < filters.length; i++) {
+			if (null != conditions[i] && false == conditions[i].matches(request.getPath())) {
+				continue;
+			}
+			if (false == filters[i].doFilter(request, response)) {
+				return i;
+			}
+		}
+		return filters.length;
+	}
+
+	/**
+	 * 逆序回调已通过的{@link AroundFilter}，单个回调的异常只记录日志，不影响其它回调
+	 *
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 * @param passed {@link #doFilter(Request, Response)}的返回值
+	 */
+	public void doAfter(Request request, Response response, int passed) {
+		if (false == hasAroundFilter) {
+			return;
+		}
+		for (int i = passed - 1; i >= 0; i--) {
+			if (filters[i] instanceof AroundFilter) {
+				if (null != conditions[i] && false == conditions[i].matches(request.getPath())) {
+					continue;
+				}
+				try {
+					((AroundFilter) filters[i]).doAfter(request, response);
+				} catch (Exception e) {
+					log.error(e, "Filter [{}] doAfter error!", filters[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 为指定路由模式编译Filter链
+	 *
+	 * @param routePattern 路由的路径模式
+	 * @param mappings 已排序的Filter映射
+	 * @return FilterChain
+	 */
+	public static FilterChain compile(String routePattern, Iterable<FilterMapping> mappings) {
+		final List<Filter> filters = new ArrayList<Filter>();
+		final List<PathPattern> conditions = new ArrayList<PathPattern>();
+		for (FilterMapping mapping : mappings) {
+			switch (mapping.getPattern().cover(routePattern)) {
+			case PathPattern.COVER_ALL:
+				filters.add(mapping.getFilter());
+				conditions.add(null);
+				break;
+			case PathPattern.COVER_PARTIAL:
+				filters.add(mapping.getFilter());
+				conditions.add(mapping.getPattern());
+				break;
+			default:
+				break;
+			}
+		}
+
+		if (filters.isEmpty()) {
+			return EMPTY;
+		}
+		return new FilterChain(filters.toArray(new Filter[filters.size()]), conditions.toArray(new PathPattern[conditions.size()]));
+	}
+}
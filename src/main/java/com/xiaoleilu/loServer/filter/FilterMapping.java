@@ -0,0 +1,76 @@
+package com.xiaoleilu.loServer.filter;
+
+import java.util.Comparator;
+
+import com.xiaoleilu.loServer.router.PathPattern;
+
+/**
+ * Filter映射，保存拦截路径模式、Filter对象和执行顺序
+ *
+ * @author Looly
+ *
+ */
+public class FilterMapping {
+
+	/** 按照order从小到大排序，order相同时匹配所有路径的Filter在前，其次按照注册顺序 */
+	public static final Comparator<FilterMapping> ORDER_COMPARATOR = new Comparator<FilterMapping>() {
+		@Override
+		public int compare(FilterMapping o1, FilterMapping o2) {
+			if (o1.order != o2.order) {
+				return o1.order < o2.order ? -1 : 1;
+			}
+			final boolean all1 = o1.pattern.isMatchAll();
+			final boolean all2 = o2.pattern.isMatchAll();
+			if (all1 != all2) {
+				return all1 ? -1 : 1;
+			}
+			return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+		}
+	};
+
+	private final PathPattern pattern;
+	private final Filter filter;
+	private final int order;
+	private final long sequence;
+
+	/**
+	 * 构造
+	 *
+	 * @param pattern 拦截路径模式
+	 * @param filter Filter
+	 * @param order 执行顺序，越小越先执行
+	 * @param sequence 注册序号
+	 */
+	public FilterMapping(String pattern, Filter filter, int order, long sequence) {
+		this.pattern = new PathPattern(pattern);
+		this.filter = filter;
+		this.order = order;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * @return 拦截路径模式
+	 */
+	public PathPattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return Filter
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @return 执行顺序
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	@Override
+	public String toString() {
+		return pattern + " -> " + filter + " (order " + order + ")";
+	}
+}
@@ -0,0 +1,244 @@
+package com.xiaoleilu.loServer.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+import com.xiaoleilu.loServer.router.ActionRoute;
+
+import cn.hutool.core.util.StrUtil;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * 令牌桶限流过滤器，按照客户端IP、路由或请求头限制请求速率，超出时响应429和Retry-After，不再执行后续的Filter和Action<br>
+ * 每个key一个令牌桶，桶的状态只是一个long（令牌全部补满的时刻），取令牌时按照流逝的时间惰性补充并以CAS更新，无锁也无定时任务<br>
+ * 令牌桶存放在固定大小的表中，按照key的哈希分段（stripe），每段8个槽位，只在段内查找和淘汰：优先使用空槽位，其次替换补充得最满的桶，
+ * 已补满的桶与新桶等价，淘汰不影响限流结果；正在被限流的key（桶接近空）最后被淘汰，大量伪造的key不能使其解除限流，内存占用有上限<br>
+ * 使用：ServerSetting.setFilter("/api/*", new RateLimitFilter(RateLimitFilter.KeyResolver.REMOTE_IP, 100, 200), -100);
+ *
+ * @author Looly
+ *
+ */
+public class RateLimitFilter implements Filter {
+
+	/** 默认最多保存的key数 */
+	public static final int DEFAULT_MAX_KEYS = 65536;
+	/** 每段的槽位数 */
+	private static final int STRIPE_SIZE = 8;
+
+	private final KeyResolver keyResolver;
+	/** 补充一个令牌的纳秒数 */
+	private final long interval;
+	/** 桶容量对应的纳秒数，桶满时可以连续通过的请求数为容量 */
+	private final long capacityNanos;
+	private final AtomicReferenceArray<Bucket> buckets;
+	/** 段数减一，段数为2的幂 */
+	private final int stripeMask;
+
+	/**
+	 * 构造，最多保存{@link #DEFAULT_MAX_KEYS}个key
+	 *
+	 * @param keyResolver 限流的key
+	 * @param permitsPerSecond 每秒补充的令牌数，即持续的请求速率
+	 * @param burst 桶容量，即允许的突发请求数
+	 */
+	public RateLimitFilter(KeyResolver keyResolver, double permitsPerSecond, int burst) {
+		this(keyResolver, permitsPerSecond, burst, DEFAULT_MAX_KEYS);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param keyResolver 限流的key
+	 * @param permitsPerSecond 每秒补充的令牌数，即持续的请求速率
+	 * @param burst 桶容量，即允许的突发请求数
+	 * @param maxKeys 最多保存的key数，向上取整为8的2的幂倍
+	 */
+	public RateLimitFilter(KeyResolver keyResolver, double permitsPerSecond, int burst, int maxKeys) {
+		if (null == keyResolver) {
+			throw new IllegalArgumentException("Key resolver must not be null!");
+		}
+		if (false == permitsPerSecond > 0) {
+			throw new IllegalArgumentException("Permits per second must be positive: " + permitsPerSecond);
+		}
+		if (burst < 1 || maxKeys < 1) {
+			throw new IllegalArgumentException(StrUtil.format("Burst and max keys must be positive: {}, {}", burst, maxKeys));
+		}
+		this.keyResolver = keyResolver;
+		this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.capacityNanos = interval * burst;
+
+		int stripes = 1;
+		while (stripes * STRIPE_SIZE < maxKeys) {
+			stripes <<= 1;
+		}
+		this.buckets = new AtomicReferenceArray<Bucket>(stripes * STRIPE_SIZE);
+		this.stripeMask = stripes - 1;
+	}
+
+	@Override
+	public boolean doFilter(Request request, Response response) {
+		final String key = keyResolver.getKey(request);
+		if (null == key) {
+			return true;
+		}
+		final long wait = acquire(key, System.nanoTime());
+		if (wait <= 0) {
+			return true;
+		}
+		response.setStatus(HttpResponseStatus.TOO_MANY_REQUESTS)
+		.setHeader(HttpHeaderNames.RETRY_AFTER.toString(), (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))
+		.setContent("429 Too Many Requests!");
+		return false;
+	}
+
+	/**
+	 * 从key对应的桶中取一个令牌
+	 *
+	 * @param key key
+	 * @param now 当前时间（纳秒）
+	 * @return 0表示取得，否则为需要等待的纳秒数
+	 */
+	long acquire(String key, long now) {
+		final Bucket bucket = getBucket(key, now);
+		long fullTime;
+		long newFullTime;
+		do {
+			fullTime = bucket.fullTime;
+			// 桶已满时从当前时刻开始计算，取走一个令牌相当于补满时刻推后一个补充间隔
+			newFullTime = ((fullTime - now > 0) ? fullTime : now) + interval;
+			if (newFullTime - now > capacityNanos) {
+				return newFullTime - now - capacityNanos;
+			}
+		} while (false == Bucket.FULL_TIME_UPDATER.compareAndSet(bucket, fullTime, newFullTime));
+		return 0;
+	}
+
+	/**
+	 * 获得key对应的桶，不存在时在所在段中创建
+	 *
+	 * @param key key
+	 * @param now 当前时间（纳秒）
+	 * @return 桶
+	 */
+	private Bucket getBucket(String key, long now) {
+		final int hash = key.hashCode();
+		final int start = ((hash ^ (hash >>> 16)) & stripeMask) * STRIPE_SIZE;
+
+		int victim = start;
+		Bucket victimBucket = buckets.get(start);
+		Bucket bucket;
+		for (int i = start; i < start + STRIPE_SIZE; i++) {
+			bucket = buckets.get(i);
+			if (null == bucket) {
+				if (null != victimBucket) {
+					victim = i;
+					victimBucket = null;
+				}
+				continue;
+			}
+			if (key.equals(bucket.key)) {
+				return bucket;
+			}
+			if (null != victimBucket && bucket.fullTime - victimBucket.fullTime < 0) {
+				victim = i;
+				victimBucket = bucket;
+			}
+		}
+
+		final Bucket created = new Bucket(key, now);
+		// 替换失败说明其它线程同时修改了此槽位，新桶仍可用于本次请求，之后的请求重新查找
+		buckets.compareAndSet(victim, victimBucket, created);
+		return created;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimitFilter [permitsPerSecond=" + (TimeUnit.SECONDS.toNanos(1) / (double) interval) + ", burst=" + (capacityNanos / interval) + ", maxKeys=" + buckets.length() + "]";
+	}
+
+	/**
+	 * 令牌桶
+	 *
+	 * @author Looly
+	 *
+	 */
+	private static class Bucket {
+		static final AtomicLongFieldUpdater<Bucket> FULL_TIME_UPDATER = AtomicLongFieldUpdater.newUpdater(Bucket.class, "fullTime");
+
+		final String key;
+		/** 令牌全部补满的时刻（纳秒），不晚于当前时刻表示桶已满 */
+		volatile long fullTime;
+
+		/**
+		 * 构造，新桶是满的
+		 *
+		 * @param key key
+		 * @param now 当前时间（纳秒）
+		 */
+		Bucket(String key, long now) {
+			this.key = key;
+			this.fullTime = now;
+		}
+	}
+
+	/**
+	 * 限流的key，相同key的请求共用一个令牌桶
+	 *
+	 * @author Looly
+	 *
+	 */
+	public interface KeyResolver {
+
+		/** 客户端IP，优先使用X-Forwarded-For，适用于部署在可信的反向代理之后 */
+		KeyResolver IP = new KeyResolver() {
+			@Override
+			public String getKey(Request request) {
+				return request.getIp();
+			}
+		};
+
+		/** 连接对端的IP，客户端无法通过伪造X-Forwarded-For绕过 */
+		KeyResolver REMOTE_IP = new KeyResolver() {
+			@Override
+			public String getKey(Request request) {
+				return request.getRemoteIp();
+			}
+		};
+
+		/** 匹配的路由，限制每个接口的总速率，未匹配到路由的请求（静态文件）共用一个桶 */
+		KeyResolver ROUTE = new KeyResolver() {
+			@Override
+			public String getKey(Request request) {
+				final ActionRoute route = request.getRoute();
+				return (null == route) ? StrUtil.EMPTY : route.getPattern();
+			}
+		};
+
+		/**
+		 * 获得请求的key
+		 *
+		 * @param request 请求对象
+		 * @return key，null表示不限流
+		 */
+		String getKey(Request request);
+
+		/**
+		 * 按照请求头限流，例如API Key，没有此请求头的请求不限流
+		 *
+		 * @param name 请求头名
+		 * @return KeyResolver
+		 */
+		static KeyResolver header(final String name) {
+			return new KeyResolver() {
+				@Override
+				public String getKey(Request request) {
+					return request.getHeader(name);
+				}
+			};
+		}
+	}
+}
@@ -1,107 +1,607 @@
-package com.xiaoleilu.loServer.handler;
-
-import java.io.IOException;
-
-import com.xiaoleilu.loServer.ServerSetting;
-import com.xiaoleilu.loServer.action.Action;
-import com.xiaoleilu.loServer.action.ErrorAction;
-import com.xiaoleilu.loServer.action.FileAction;
-import com.xiaoleilu.loServer.filter.Filter;
-
-import cn.hutool.core.lang.Singleton;
-import cn.hutool.log.Log;
-import cn.hutool.log.StaticLog;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.http.FullHttpRequest;
-
-/**
- * Action处理单元
- * 
- * @author Looly
- */
-public class ActionHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
-	private static final Log log = StaticLog.get();
-
-	@Override
-	protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest fullHttpRequest) throws Exception {
-
-		final Request request = Request.build(ctx, fullHttpRequest);
-		final Response response = Response.build(ctx, request);
-		
-		try {
-			//do filter
-			boolean isPass = this.doFilter(request, response);
-			
-			if(isPass){
-				//do action
-				this.doAction(request, response);
-			}
-		} catch (Exception e) {
-			Action errorAction = ServerSetting.getAction(ServerSetting.MAPPING_ERROR);
-			request.putParam(ErrorAction.ERROR_PARAM_NAME, e);
-			errorAction.doAction(request, response);
-		}
-		
-		//如果发送请求未被触发，则触发之，否则跳过。
-		if(false ==response.isSent()){
-			response.send();
-		}
-	}
-	
-	@Override
-	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-		if(cause instanceof IOException){
-			log.warn("{}", cause.getMessage());
-		}else{
-			super.exceptionCaught(ctx, cause);
-		}
-	}
-	
-	//---------------------------------------------------------------------------------------- Private method start
-	/**
-	 * 执行过滤
-	 * @param request 请求
-	 * @param response 响应
-	 * @param 是否继续
-	 */
-	private boolean doFilter(Request request, Response response) {
-		//全局过滤器
-		Filter filter = ServerSetting.getFilter(ServerSetting.MAPPING_ALL);
-		if(null != filter){
-			if(false == filter.doFilter(request, response)){
-				return false;
-			}
-		}
-		
-		//自定义Path过滤器
-		filter = ServerSetting.getFilter(request.getPath());
-		if(null != filter){
-			if(false == filter.doFilter(request, response)){
-				return false;
-			}
-		}
-		
-		return true;
-	}
-	
-	/**
-	 * 执行Action
-	 * @param request 请求对象
-	 * @param response 响应对象
-	 */
-	private void doAction(Request request, Response response){
-		Action action = ServerSetting.getAction(request.getPath());
-		if (null == action) {
-			//查找匹配所有路径的Action
-			action = ServerSetting.getAction(ServerSetting.MAPPING_ALL);
-			if(null == action){
-				// 非Action方法，调用静态文件读取
-				action = Singleton.get(FileAction.class);
-			}
-		}
-
-		action.doAction(request, response);
-	}
-	//---------------------------------------------------------------------------------------- Private method start
-}
+package com.xiaoleilu.loServer.handler;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.action.AsyncAction;
+import com.xiaoleilu.loServer.action.ErrorAction;
+import com.xiaoleilu.loServer.action.FileAction;
+import com.xiaoleilu.loServer.action.WebSocketAction;
+import com.xiaoleilu.loServer.dispatch.ActionDispatcher;
+import com.xiaoleilu.loServer.dispatch.RejectPolicy;
+import com.xiaoleilu.loServer.filter.FilterChain;
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+import com.xiaoleilu.loServer.router.ActionRoute;
+import com.xiaoleilu.loServer.router.Router;
+
+import cn.hutool.core.lang.Singleton;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Action处理单元<br>
+ * 请求体按照路由的设置聚合（大小上限可按路由指定）或流式交给Action，见{@link com.xiaoleilu.loServer.annotation.Body}
+ * 
+ * @author Looly
+ */
+public class ActionHandler extends SimpleChannelInboundHandler<HttpObject> {
+	private static final Log log = StaticLog.get();
+	
+	/** 聚合请求体时CompositeByteBuf的最大组件数，超出后合并 */
+	private static final int MAX_COMPOSITE_COMPONENTS = 1024;
+	
+	private final ActionDispatcher dispatcher;
+	/** 路径变量下标缓存，每个连接一个Handler，随路由变量数增长 */
+	private int[] pathParamIndexes = new int[0];
+	
+	/** 正在聚合请求体的请求，未在聚合时为null */
+	private Request aggregating;
+	private ActionRoute aggregatingRoute;
+	private CompositeByteBuf aggregatingContent;
+	/** 正在流式接收的请求体，未在接收时为null */
+	private StreamingBody streaming;
+	private long streamingReceived;
+	/** 当前请求体的大小上限，小于等于0表示不限制 */
+	private long maxContentLength;
+	/** 是否需要按照请求顺序响应（HTTP/1.1管线化） */
+	private boolean isPipelined;
+	/** 下一个请求的序号 */
+	private int nextSequence;
+	/** 连接是否将在响应后关闭，之后管线化的请求不再处理 */
+	private boolean isClosing;
+
+	/**
+	 * 构造，使用默认的调度器
+	 */
+	public ActionHandler() {
+		this(new ActionDispatcher());
+	}
+	
+	/**
+	 * 构造
+	 * @param dispatcher Action调度器
+	 */
+	public ActionHandler(ActionDispatcher dispatcher) {
+		//请求对象在处理完毕（包括异步Action完成）后由Request.release()释放
+		super(false);
+		this.dispatcher = dispatcher;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		isPipelined = null != ctx.pipeline().get(HttpPipeliningHandler.class);
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
+		if(msg instanceof HttpRequest) {
+			onRequest(ctx, (HttpRequest)msg);
+		}else if(msg instanceof HttpContent) {
+			onContent(ctx, (HttpContent)msg);
+		}
+	}
+	
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		resetAggregating();
+		if(null != streaming) {
+			streaming.fail(new ClosedChannelException());
+			streaming = null;
+		}
+		super.channelInactive(ctx);
+	}
+	
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if(ctx.channel().isWritable()) {
+			//连接恢复可写，发送事件流积压的事件；此事件可能在写入中途的flush中触发，推迟到当前写入完成之后
+			final EventStream eventStream = EventStream.get(ctx.channel());
+			if(null != eventStream) {
+				ctx.executor().execute(new Runnable() {
+					@Override
+					public void run() {
+						eventStream.drain();
+					}
+				});
+			}
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+	
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		if(cause instanceof IOException){
+			log.warn("{}", cause.getMessage());
+		}else{
+			super.exceptionCaught(ctx, cause);
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------- Private method start
+	/**
+	 * 收到请求头，按照路由决定聚合或流式接收请求体
+	 * @param ctx ChannelHandlerContext
+	 * @param nettyRequest HttpRequest
+	 */
+	private void onRequest(ChannelHandlerContext ctx, HttpRequest nettyRequest) {
+		if(isClosing) {
+			ReferenceCountUtil.release(nettyRequest);
+			return;
+		}
+		final int sequence = isPipelined ? nextSequence++ : -1;
+		if(false == HttpUtil.isKeepAlive(nettyRequest)) {
+			isClosing = true;
+		}
+		if(nettyRequest.decoderResult().isFailure()) {
+			ReferenceCountUtil.release(nettyRequest);
+			sendStatus(ctx, null, sequence, HttpResponseStatus.BAD_REQUEST, true);
+			return;
+		}
+		
+		if(nettyRequest instanceof FullHttpRequest) {
+			//上游已聚合（例如HTTP/2）
+			final Request request = Request.build(ctx, nettyRequest);
+			request.setSequence(sequence);
+			final ActionRoute route = route(request);
+			request.setFullRequest((FullHttpRequest)nettyRequest);
+			dispatch(ctx, route, request);
+			return;
+		}
+		
+		final Request request = Request.build(ctx, nettyRequest);
+		request.setSequence(sequence);
+		final ActionRoute route = this.route(request);
+		final boolean isStreaming;
+		if(null != route && route.isStreaming()) {
+			isStreaming = true;
+			maxContentLength = route.getMaxContentLength();
+		}else {
+			isStreaming = false;
+			maxContentLength = (null != route && route.getMaxContentLength() >= 0) ? route.getMaxContentLength() : ServerSetting.getMaxContentLength();
+		}
+		
+		if(maxContentLength > 0 && HttpUtil.getContentLength(nettyRequest, -1L) > maxContentLength) {
+			if(HttpUtil.is100ContinueExpected(nettyRequest)) {
+				//客户端尚未发送请求体，拒绝后连接仍可使用，误发的请求体将被忽略
+				sendStatus(ctx, route, sequence, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, false);
+			}else {
+				sendStatus(ctx, route, sequence, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, true);
+			}
+			return;
+		}
+		if(HttpUtil.is100ContinueExpected(nettyRequest)) {
+			ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER)));
+			nettyRequest.headers().remove(HttpHeaderNames.EXPECT);
+		}
+		
+		if(isStreaming) {
+			//收到请求头即执行Action，请求体由Action逐段读取
+			streaming = new StreamingBody(ctx);
+			streamingReceived = 0;
+			request.setBody(streaming);
+			dispatch(ctx, route, request);
+		}else {
+			aggregating = request;
+			aggregatingRoute = route;
+			aggregatingContent = ctx.alloc().compositeBuffer(MAX_COMPOSITE_COMPONENTS);
+		}
+	}
+	
+	/**
+	 * 收到请求体片段
+	 * @param ctx ChannelHandlerContext
+	 * @param content HttpContent
+	 */
+	private void onContent(ChannelHandlerContext ctx, HttpContent content) {
+		final boolean isLast = content instanceof LastHttpContent;
+		
+		if(null != streaming) {
+			final StreamingBody body = this.streaming;
+			if(isLast) {
+				this.streaming = null;
+			}
+			streamingReceived += content.content().readableBytes();
+			if(maxContentLength > 0 && streamingReceived > maxContentLength) {
+				body.fail(new TooLongFrameException("Request body is larger than " + maxContentLength + " bytes."));
+				maxContentLength = 0;
+			}
+			body.offer(content);
+			return;
+		}
+		
+		if(null != aggregating) {
+			final CompositeByteBuf aggregatingContent = this.aggregatingContent;
+			if(maxContentLength > 0 && aggregatingContent.readableBytes() > maxContentLength - content.content().readableBytes()) {
+				//未声明长度的请求体超出上限，剩余内容无法跳过，响应后关闭连接
+				content.release();
+				final ActionRoute route = aggregatingRoute;
+				final int sequence = aggregating.getSequence();
+				resetAggregating();
+				sendStatus(ctx, route, sequence, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, true);
+				return;
+			}
+			
+			aggregatingContent.addComponent(true, content.content());
+			if(isLast) {
+				final Request request = this.aggregating;
+				final ActionRoute route = this.aggregatingRoute;
+				final HttpRequest nettyRequest = request.getNettyRequest();
+				final FullHttpRequest fullRequest = new DefaultFullHttpRequest(nettyRequest.protocolVersion(), nettyRequest.method(), nettyRequest.uri(),
+						aggregatingContent, nettyRequest.headers(), ((LastHttpContent)content).trailingHeaders());
+				HttpUtil.setTransferEncodingChunked(fullRequest, false);
+				HttpUtil.setContentLength(fullRequest, aggregatingContent.readableBytes());
+				
+				this.aggregating = null;
+				this.aggregatingRoute = null;
+				this.aggregatingContent = null;
+				request.setFullRequest(fullRequest);
+				dispatch(ctx, route, request);
+			}
+			return;
+		}
+		
+		//被拒绝请求的请求体，忽略之
+		content.release();
+	}
+	
+	/**
+	 * 选择执行线程并执行Action
+	 * @param ctx ChannelHandlerContext
+	 * @param route 路由，为null表示未匹配到路由
+	 * @param request 请求对象
+	 */
+	private void dispatch(final ChannelHandlerContext ctx, final ActionRoute route, final Request request) {
+		final Response response = Response.build(ctx, request);
+		
+		final Executor executor = dispatcher.select(route);
+		if(null == executor) {
+			//在IO线程中直接执行
+			this.process(ctx, route, request, response);
+			return;
+		}
+		
+		//在业务线程中执行
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					process(ctx, route, request, response);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			if(ServerSetting.getRejectPolicy() == RejectPolicy.CALLER_RUNS) {
+				this.process(ctx, route, request, response);
+			}else {
+				log.warn("Action of [{}] rejected, too many pending actions.", request.getPath());
+				request.release();
+				response.sendError(HttpResponseStatus.SERVICE_UNAVAILABLE, "503 Service Unavailable!");
+				if(ServerSetting.isMetricsEnabled()) {
+					ServerMetrics.getRoute(route).countStatus(HttpResponseStatus.SERVICE_UNAVAILABLE.code());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 释放正在聚合的请求体
+	 */
+	private void resetAggregating() {
+		if(null != aggregating) {
+			aggregating.release();
+			aggregating = null;
+			aggregatingRoute = null;
+		}
+		if(null != aggregatingContent) {
+			aggregatingContent.release();
+			aggregatingContent = null;
+		}
+	}
+	
+	/**
+	 * 执行Filter链和Action，并在未发送响应时发送之
+	 * @param ctx ChannelHandlerContext
+	 * @param route 路由，为null表示未匹配到路由
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 */
+	private void process(ChannelHandlerContext ctx, ActionRoute route, Request request, Response response) {
+		final FilterChain filterChain = (null != route) ? route.getFilterChain() : ServerSetting.getDefaultFilterChain();
+		
+		int passed = 0;
+		try {
+			//do filter
+			passed = filterChain.doFilter(request, response);
+			
+			if(passed == filterChain.size()){
+				// 非Action方法，调用静态文件读取
+				final Action action = (null != route) ? route.getAction() : Singleton.get(FileAction.class);
+				if(action instanceof AsyncAction) {
+					//异步Action，完成后再执行后续流程
+					new AsyncCompletion(ctx, filterChain, passed, request, response).start((AsyncAction)action);
+					return;
+				}
+				
+				if(action instanceof WebSocketAction && WebSocketHandler.isUpgradeRequest(ctx, request)) {
+					//WebSocket握手，101响应写出后连接切换为WebSocket
+					WebSocketHandler.upgrade(ctx, request, response, (WebSocketAction)action);
+				}else {
+					//do action
+					action.doAction(request, response);
+				}
+			}
+		} catch (Exception e) {
+			doError(request, response, e);
+		}
+		
+		if(request.isStreaming()) {
+			//请求体读取完毕后再响应，未读取的请求体将被丢弃
+			new AsyncCompletion(ctx, filterChain, passed, request, response).await(request.getBody().after(null), 0);
+			return;
+		}
+		complete(filterChain, passed, request, response);
+	}
+	
+	/**
+	 * 请求处理完毕，执行后置Filter，发送响应并释放请求
+	 * @param filterChain Filter链
+	 * @param passed 通过的Filter数
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 */
+	private static void complete(FilterChain filterChain, int passed, Request request, Response response) {
+		try {
+			filterChain.doAfter(request, response, passed);
+			
+			//如果发送请求未被触发，则触发之，否则跳过。
+			if(false ==response.isSent()){
+				response.send();
+			}else {
+				//结束Action未关闭的分块响应
+				response.closeChunked();
+			}
+		} finally {
+			if(ServerSetting.isMetricsEnabled()) {
+				ServerMetrics.getRoute(request.getRoute()).record(response.getStatus().code(), System.nanoTime() - request.getStartNanos());
+			}
+			request.release();
+		}
+	}
+	
+	/**
+	 * 调用错误处理Action
+	 * @param request 请求对象
+	 * @param response 响应对象
+	 * @param e 异常
+	 */
+	private static void doError(Request request, Response response, Exception e) {
+		if(response.abortChunked()) {
+			//响应已部分发送，无法再发送错误页面，关闭连接使客户端得知响应不完整
+			log.error(e, "Action of [{}] error after chunked response started!", request.getPath());
+			return;
+		}
+		if(e instanceof TooLongFrameException) {
+			response.setStatus(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE).setContent("413 Request Entity Too Large!");
+			return;
+		}
+		Action errorAction = ServerSetting.getAction(ServerSetting.MAPPING_ERROR);
+		request.putParam(ErrorAction.ERROR_PARAM_NAME, e);
+		errorAction.doAction(request, response);
+	}
+	
+	/**
+	 * 匹配路由并填充路径变量
+	 * @param request 请求对象
+	 * @return 路由，无匹配返回null
+	 */
+	private ActionRoute route(Request request) {
+		final Router router = ServerSetting.getRouter();
+		final int paramSize = router.getMaxParams() << 1;
+		if(pathParamIndexes.length < paramSize) {
+			pathParamIndexes = new int[paramSize];
+		}
+		
+		//无匹配时使用匹配所有路径的Action（"/*"）
+		final ActionRoute route = router.match(request.getPath(), pathParamIndexes);
+		request.setRoute(route);
+		if (null != route && route.hasParams()) {
+			request.putPathParams(route, pathParamIndexes);
+		}
+		return route;
+	}
+	
+	/**
+	 * 直接发送只有状态码的响应，用于请求未交给Action之前的错误
+	 * @param ctx ChannelHandlerContext
+	 * @param route 路由，用于统计，null表示未匹配到路由或请求无法解析
+	 * @param sequence 请求序号，-1表示无需排序
+	 * @param status 状态码
+	 * @param close 是否在发送后关闭连接
+	 */
+	private void sendStatus(ChannelHandlerContext ctx, ActionRoute route, int sequence, HttpResponseStatus status, boolean close) {
+		if(ServerSetting.isMetricsEnabled()) {
+			ServerMetrics.getRoute(route).countStatus(status.code());
+		}
+		final FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER);
+		HttpUtil.setContentLength(response, 0);
+		if(close) {
+			isClosing = true;
+			response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+			ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, response)).addListener(ChannelFutureListener.CLOSE);
+		}else {
+			ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, response));
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------- Private method end
+	
+	//---------------------------------------------------------------------------------------- Private class start
+	/**
+	 * 异步Action的完成处理<br>
+	 * 正常完成、异常、超时和连接关闭四种情况只有最先发生的一种生效
+	 * 
+	 * @author Looly
+	 */
+	private static class AsyncCompletion implements BiConsumer<Object, Throwable>, Runnable, ChannelFutureListener {
+		private final ChannelHandlerContext ctx;
+		private final FilterChain filterChain;
+		private final int passed;
+		private final Request request;
+		private final Response response;
+		
+		private final AtomicBoolean isDone = new AtomicBoolean();
+		/** 异步Action返回的Future，同步Action时为null */
+		private CompletableFuture<?> future;
+		private ScheduledFuture<?> timeoutFuture;
+
+		AsyncCompletion(ChannelHandlerContext ctx, FilterChain filterChain, int passed, Request request, Response response) {
+			this.ctx = ctx;
+			this.filterChain = filterChain;
+			this.passed = passed;
+			this.request = request;
+			this.response = response;
+		}
+		
+		/**
+		 * 执行异步Action并注册超时和连接关闭监听
+		 * @param action 异步Action
+		 */
+		void start(AsyncAction action) {
+			final CompletionStage<?> stage = action.doAsyncAction(request, response);
+			if(null == stage) {
+				throw new NullPointerException(StrUtil.format("AsyncAction [{}] returned null CompletionStage!", action));
+			}
+			this.future = stage.toCompletableFuture();
+			
+			long timeout = action.getTimeout();
+			if(timeout < 0) {
+				//流式接收的请求体大小不定，默认不超时
+				timeout = request.isStreaming() ? 0 : ServerSetting.getAsyncTimeout();
+			}
+			await(request.isStreaming() ? request.getBody().after(stage) : stage, timeout);
+		}
+		
+		/**
+		 * 等待完成并注册超时和连接关闭监听
+		 * @param stage 完成后发送响应的CompletionStage
+		 * @param timeout 超时毫秒数，0表示不超时
+		 */
+		void await(CompletionStage<?> stage, long timeout) {
+			if(timeout > 0) {
+				timeoutFuture = ctx.executor().schedule(this, timeout, TimeUnit.MILLISECONDS);
+			}
+			ctx.channel().closeFuture().addListener(this);
+			
+			stage.whenComplete(this);
+		}
+
+		/**
+		 * 异步Action完成
+		 */
+		@Override
+		public void accept(Object result, Throwable cause) {
+			if(false == isDone.compareAndSet(false, true)) {
+				return;
+			}
+			cleanup();
+			
+			if(null != cause) {
+				if(cause instanceof CompletionException && null != cause.getCause()) {
+					cause = cause.getCause();
+				}
+				try {
+					doError(request, response, (cause instanceof Exception) ? (Exception)cause : new RuntimeException(cause));
+				} catch (Exception e) {
+					log.error(e, "Error action of [{}] error!", request.getPath());
+				}
+			}
+			complete(filterChain, passed, request, response);
+		}
+
+		/**
+		 * 超时
+		 */
+		@Override
+		public void run() {
+			if(false == isDone.compareAndSet(false, true)) {
+				return;
+			}
+			cleanup();
+			if(null != future) {
+				future.cancel(true);
+			}
+			
+			log.warn("Async action of [{}] timeout.", request.getPath());
+			if(false == response.discard()) {
+				//响应已开始发送，无法再发送503，中止未完成的分块响应
+				response.abortChunked();
+				complete(filterChain, passed, request, response);
+				return;
+			}
+			//Action可能仍在其它线程中写入原响应，使用新的响应发送503
+			final Response timeoutResponse = new Response(ctx, request);
+			timeoutResponse.setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE).setContent("503 Async action timeout!");
+			complete(filterChain, passed, request, timeoutResponse);
+		}
+
+		/**
+		 * 连接关闭
+		 */
+		@Override
+		public void operationComplete(ChannelFuture closeFuture) {
+			if(false == isDone.compareAndSet(false, true)) {
+				return;
+			}
+			cleanup();
+			if(null != future) {
+				future.cancel(true);
+			}
+			//丢弃之后Action写入的内容
+			response.discard();
+			request.release();
+		}
+		
+		/**
+		 * 取消超时并移除连接关闭监听，避免长连接上的监听器堆积
+		 */
+		private void cleanup() {
+			if(null != timeoutFuture) {
+				timeoutFuture.cancel(false);
+			}
+			ctx.channel().closeFuture().removeListener(this);
+		}
+	}
+	//---------------------------------------------------------------------------------------- Private class end
+}
@@ -0,0 +1,179 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 字节范围，对应Range头中的一项，例如bytes=0-499中的0-499<br>
+ * 起止位置均为闭区间，已按照文件长度修正
+ *
+ * @author Looly
+ *
+ */
+public class ByteRange {
+
+	/** 范围单位前缀 */
+	private static final String BYTES_UNIT = "bytes=";
+	/** 最多支持的范围数，超出时忽略Range头发送完整内容 */
+	private static final int MAX_RANGES = 16;
+
+	private final long start;
+	private final long end;
+
+	/**
+	 * 构造
+	 *
+	 * @param start 开始位置（包含）
+	 * @param end 结束位置（包含）
+	 */
+	public ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @return 开始位置（包含）
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return 结束位置（包含）
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return 字节数
+	 */
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * 生成Content-Range头的值
+	 *
+	 * @param totalLength 完整内容的长度
+	 * @return Content-Range头的值，例如bytes 0-499/1234
+	 */
+	public String toContentRange(long totalLength) {
+		return StrUtil.format("bytes {}-{}/{}", start, end, totalLength);
+	}
+
+	@Override
+	public String toString() {
+		return start + "-" + end;
+	}
+
+	/**
+	 * 解析Range头<br>
+	 * 重叠或相邻的范围合并为一个，并按照开始位置排序
+	 *
+	 * @param rangeHeader Range头，例如bytes=0-499,-500
+	 * @param totalLength 完整内容的长度
+	 * @return 可满足的范围，无法解析或范围过多时返回null（应忽略Range头），都不可满足时返回空列表（应返回416）
+	 */
+	public static List<ByteRange> parse(String rangeHeader, long totalLength) {
+		if (StrUtil.isBlank(rangeHeader) || false == StrUtil.startWithIgnoreCase(rangeHeader, BYTES_UNIT)) {
+			return null;
+		}
+
+		final List<String> specs = StrUtil.split(rangeHeader.substring(BYTES_UNIT.length()), ',', true, true);
+		if (specs.isEmpty() || specs.size() > MAX_RANGES) {
+			return null;
+		}
+
+		final List<ByteRange> ranges = new ArrayList<ByteRange>(specs.size());
+		int dashIndex;
+		long start;
+		long end;
+		try {
+			for (String spec : specs) {
+				dashIndex = spec.indexOf('-');
+				if (dashIndex < 0) {
+					return null;
+				}
+				if (0 == dashIndex) {
+					// 后缀范围，例如-500表示最后500字节
+					final long suffixLength = parseNumber(spec.substring(1));
+					if (suffixLength > 0 && totalLength > 0) {
+						ranges.add(new ByteRange(Math.max(0, totalLength - suffixLength), totalLength - 1));
+					}
+					continue;
+				}
+
+				start = parseNumber(spec.substring(0, dashIndex));
+				if (dashIndex == spec.length() - 1) {
+					end = totalLength - 1;
+				} else {
+					end = parseNumber(spec.substring(dashIndex + 1));
+					if (end < start) {
+						return null;
+					}
+					end = Math.min(end, totalLength - 1);
+				}
+				if (start < totalLength) {
+					ranges.add(new ByteRange(start, end));
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		return merge(ranges);
+	}
+
+	/**
+	 * 解析非负整数
+	 *
+	 * @param str 字符串
+	 * @return 整数
+	 * @throws NumberFormatException 非数字或溢出
+	 */
+	private static long parseNumber(String str) {
+		str = StrUtil.trim(str);
+		if (str.isEmpty() || false == Character.isDigit(str.charAt(0))) {
+			throw new NumberFormatException(str);
+		}
+		return Long.parseLong(str);
+	}
+
+	/**
+	 * 合并重叠或相邻的范围
+	 *
+	 * @param ranges 范围列表
+	 * @return 合并后的范围列表
+	 */
+	private static List<ByteRange> merge(List<ByteRange> ranges) {
+		if (ranges.size() < 2) {
+			return ranges;
+		}
+
+		Collections.sort(ranges, new Comparator<ByteRange>() {
+			@Override
+			public int compare(ByteRange o1, ByteRange o2) {
+				return Long.compare(o1.start, o2.start);
+			}
+		});
+		final List<ByteRange> merged = new ArrayList<ByteRange>(ranges.size());
+		ByteRange last = ranges.get(0);
+		ByteRange range;
+		for (int i = 1; i < ranges.size(); i++) {
+			range = ranges.get(i);
+			if (range.start <= last.end + 1) {
+				last = new ByteRange(last.start, Math.max(last.end, range.end));
+			} else {
+				merged.add(last);
+				last = range;
+			}
+		}
+		merged.add(last);
+		return merged;
+	}
+}
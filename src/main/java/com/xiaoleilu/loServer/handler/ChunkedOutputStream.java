@@ -0,0 +1,181 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.ClosedChannelException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * 分块发送的响应体，由{@link Response#sendChunked()}开启，用于边生成边发送的大响应（例如导出）<br>
+ * 写入的数据先缓存在固定大小的池化Buffer中，写满或flush时作为一个分块发送；连接不可写时写入线程等待上一个分块发送完毕，内存占用与响应体大小无关<br>
+ * 在IO线程中写入时无法等待，大量输出应在业务线程中执行，或使用{@link Response#setContent(io.netty.handler.stream.ChunkedInput)}由IO线程按需读取<br>
+ * 非线程安全，Action返回（异步Action完成）后自动关闭
+ *
+ * @author Looly
+ *
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+	private final ChannelHandlerContext ctx;
+	private final int sequence;
+	private final boolean isKeepAlive;
+	private final int chunkSize;
+	/** 当前分块，未写入时为null */
+	private ByteBuf buffer;
+	/** 上一次写出的Future */
+	private ChannelFuture lastFuture;
+	private boolean isClosed;
+
+	/**
+	 * 构造，写出响应头（不flush）
+	 *
+	 * @param ctx ChannelHandlerContext
+	 * @param request 请求对象，可以为null
+	 * @param isKeepAlive 结束后连接是否保持
+	 * @param head 响应头
+	 * @param chunkSize 分块大小
+	 */
+	ChunkedOutputStream(ChannelHandlerContext ctx, Request request, boolean isKeepAlive, HttpResponse head, int chunkSize) {
+		this.ctx = ctx;
+		this.sequence = (null == request) ? -1 : request.getSequence();
+		this.isKeepAlive = isKeepAlive;
+		this.chunkSize = chunkSize;
+		this.lastFuture = ctx.write(HttpPipeliningHandler.sequenced(sequence, head));
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureBuffer().writeByte(b);
+		if (false == buffer.isWritable()) {
+			writeChunk();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		int length;
+		while (len > 0) {
+			length = Math.min(len, ensureBuffer().writableBytes());
+			buffer.writeBytes(b, off, length);
+			off += length;
+			len -= length;
+			if (false == buffer.isWritable()) {
+				writeChunk();
+			}
+		}
+	}
+
+	/**
+	 * 将已写入的数据作为一个分块发送
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (isClosed) {
+			return;
+		}
+		if (null != buffer) {
+			writeChunk();
+		} else {
+			ctx.flush();
+		}
+	}
+
+	/**
+	 * 发送剩余的数据和结尾分块，结束响应
+	 */
+	@Override
+	public void close() throws IOException {
+		if (isClosed) {
+			return;
+		}
+		if (null != buffer) {
+			writeChunk();
+		}
+		isClosed = true;
+		final ChannelFuture future = ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, LastHttpContent.EMPTY_LAST_CONTENT));
+		if (false == isKeepAlive) {
+			future.addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+
+	/**
+	 * 中止响应并关闭连接，客户端将收到不完整的分块响应，用于生成内容出错时
+	 */
+	void abort() {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		releaseBuffer();
+		ctx.close();
+	}
+
+	/**
+	 * @return 是否已关闭
+	 */
+	boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * @return 当前分块，不存在时申请
+	 * @throws IOException 已关闭
+	 */
+	private ByteBuf ensureBuffer() throws IOException {
+		if (isClosed) {
+			throw new IOException("Stream closed");
+		}
+		if (null == buffer) {
+			buffer = ctx.alloc().buffer(chunkSize, chunkSize);
+		}
+		return buffer;
+	}
+
+	/**
+	 * 连接不可写时等待上一个分块发送完毕，然后发送当前分块
+	 *
+	 * @throws IOException 连接已关闭或等待被中断
+	 */
+	private void writeChunk() throws IOException {
+		final Channel channel = ctx.channel();
+		if (false == ctx.executor().inEventLoop()) {
+			try {
+				while (false == channel.isWritable() && false == lastFuture.isDone()) {
+					lastFuture.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				releaseBuffer();
+				throw new InterruptedIOException();
+			}
+		}
+		if (false == channel.isActive()) {
+			isClosed = true;
+			releaseBuffer();
+			throw new ClosedChannelException();
+		}
+
+		final ByteBuf chunk = buffer;
+		buffer = null;
+		lastFuture = ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, new DefaultHttpContent(chunk)));
+	}
+
+	/**
+	 * 释放未发送的分块
+	 */
+	private void releaseBuffer() {
+		if (null != buffer) {
+			buffer.release();
+			buffer = null;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * 全局连接数限制，加在监听端口的Channel上（ServerBootstrap.handler）<br>
+ * 接受的连接超出上限时在注册到IO线程之前立即关闭，不分配Pipeline和缓冲区；SO_REUSEPORT多次绑定时共用一个实例
+ *
+ * @author Looly
+ *
+ */
+@Sharable
+public class ConnectionLimitHandler extends ChannelInboundHandlerAdapter {
+	private static final Log log = StaticLog.get();
+
+	/** 拒绝连接时日志的最小间隔毫秒数 */
+	private static final long WARN_INTERVAL = 1000;
+
+	private final int maxConnections;
+	private final AtomicInteger connections = new AtomicInteger();
+	private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+		@Override
+		public void operationComplete(ChannelFuture future) throws Exception {
+			connections.decrementAndGet();
+		}
+	};
+	private volatile long lastWarnTime;
+
+	/**
+	 * 构造
+	 *
+	 * @param maxConnections 最大连接数
+	 */
+	public ConnectionLimitHandler(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * @return 当前连接数
+	 */
+	public int getConnections() {
+		return connections.get();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		final Channel child = (Channel) msg;
+		if (connections.incrementAndGet() > maxConnections) {
+			connections.decrementAndGet();
+			child.unsafe().closeForcibly();
+			ServerMetrics.connectionRejected();
+
+			final long now = System.currentTimeMillis();
+			if (now - lastWarnTime >= WARN_INTERVAL) {
+				lastWarnTime = now;
+				log.warn("Connections reach the limit of {}, reject new connection from {}.", maxConnections, child.remoteAddress());
+			}
+			return;
+		}
+		child.closeFuture().addListener(closeListener);
+		ctx.fireChannelRead(msg);
+	}
+}
@@ -0,0 +1,128 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * ETag工具<br>
+ * 弱ETag由文件大小和修改时间生成，无需读取内容；强ETag为内容的MD5摘要
+ *
+ * @author Looly
+ *
+ */
+public final class ETag {
+
+	/** 弱ETag前缀 */
+	private static final String WEAK_PREFIX = "W/";
+
+	private ETag() {
+	}
+
+	/**
+	 * 由大小和修改时间生成弱ETag
+	 *
+	 * @param length 大小
+	 * @param lastModified 修改时间
+	 * @return 弱ETag，例如W/"1f4-16d2a8c3b40"
+	 */
+	public static String weak(long length, long lastModified) {
+		return StrUtil.format("W/\"{}-{}\"", Long.toHexString(length), Long.toHexString(lastModified));
+	}
+
+	/**
+	 * 由MD5摘要生成强ETag
+	 *
+	 * @param md5Hex 十六进制的MD5摘要
+	 * @return 强ETag，例如"d41d8cd98f00b204e9800998ecf8427e"
+	 */
+	public static String strong(String md5Hex) {
+		return '"' + md5Hex + '"';
+	}
+
+	/**
+	 * 计算内容的强ETag，不改变ByteBuf的读写位置
+	 *
+	 * @param content 内容
+	 * @return 强ETag
+	 */
+	public static String strong(ByteBuf content) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		if (content.hasArray()) {
+			digest.update(content.array(), content.arrayOffset() + content.readerIndex(), content.readableBytes());
+		} else {
+			digest.update(content.nioBuffer());
+		}
+		return strong(HexUtil.encodeHexStr(digest.digest()));
+	}
+
+	/**
+	 * 为ETag增加后缀，用于区分同一资源的不同编码，例如gzip压缩后的内容
+	 *
+	 * @param etag ETag
+	 * @param suffix 后缀
+	 * @return 新的ETag，例如"abc"加后缀gzip为"abc-gzip"
+	 */
+	public static String withSuffix(String etag, String suffix) {
+		return etag.substring(0, etag.length() - 1) + '-' + suffix + '"';
+	}
+
+	/**
+	 * @param etag ETag
+	 * @return 是否为弱ETag
+	 */
+	public static boolean isWeak(String etag) {
+		return etag.startsWith(WEAK_PREFIX);
+	}
+
+	/**
+	 * 使用弱比较判断If-None-Match是否匹配，忽略W/前缀
+	 *
+	 * @param ifNoneMatch If-None-Match头，可以是*或逗号分隔的多个ETag
+	 * @param etag 当前的ETag
+	 * @return 是否匹配
+	 */
+	public static boolean matches(String ifNoneMatch, String etag) {
+		if (StrUtil.isBlank(ifNoneMatch) || null == etag) {
+			return false;
+		}
+		final String opaqueTag = opaqueTag(etag);
+		final List<String> candidates = StrUtil.split(ifNoneMatch, ',', true, true);
+		for (String candidate : candidates) {
+			if ("*".equals(candidate) || opaqueTag.equals(opaqueTag(candidate))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 使用强比较判断ETag是否匹配，用于If-Range，弱ETag总是不匹配
+	 *
+	 * @param header 请求中的ETag
+	 * @param etag 当前的ETag
+	 * @return 是否匹配
+	 */
+	public static boolean strongMatches(String header, String etag) {
+		return null != header && null != etag && false == isWeak(header) && false == isWeak(etag) && header.equals(etag);
+	}
+
+	/**
+	 * 去掉W/前缀
+	 *
+	 * @param etag ETag
+	 * @return 带引号的ETag值
+	 */
+	private static String opaqueTag(String etag) {
+		return isWeak(etag) ? etag.substring(WEAK_PREFIX.length()) : etag;
+	}
+}
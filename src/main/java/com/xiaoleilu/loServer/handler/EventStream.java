@@ -0,0 +1,344 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.xiaoleilu.loServer.ServerSetting;
+
+import cn.hutool.core.util.CharsetUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+
+/**
+ * Server-Sent Events事件流，由{@link Response#sendEventStream()}开启<br>
+ * 事件以分块的HttpContent写出，连接保持打开直到任一方关闭；发送方法可在任意线程中调用，写出在连接的IO线程中进行<br>
+ * 客户端消费过慢（连接待发送的数据超过高水位）时按照{@link OverflowPolicy}丢弃或合并事件，恢复可写后再发送，
+ * 长时间没有事件时由IO线程的定时器发送心跳注释，防止代理和客户端因空闲断开
+ *
+ * @author Looly
+ *
+ */
+public class EventStream {
+
+	private static final AttributeKey<EventStream> STREAM_KEY = AttributeKey.valueOf("loServer.eventStream");
+	/** 心跳注释 */
+	private static final ByteBuf HEARTBEAT = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(":\n\n", CharsetUtil.CHARSET_ISO_8859_1));
+	/** 合并时最多暂存的事件数（按事件名），超出时丢弃最早的 */
+	private static final int MAX_PENDING = 256;
+
+	/**
+	 * 连接不可写时的事件处理策略
+	 *
+	 * @author Looly
+	 *
+	 */
+	public enum OverflowPolicy {
+		/** 丢弃新事件 */
+		DROP,
+		/** 每个事件名只保留最新的一个，恢复可写后按顺序发送，适用于推送状态的场景 */
+		COALESCE
+	}
+
+	private final ChannelHandlerContext ctx;
+	private final int sequence;
+	private final boolean isKeepAlive;
+	private final String lastEventId;
+	private final ChannelPromise closePromise;
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+	private volatile boolean isClosed;
+	/** 丢弃或被合并的事件数，只在IO线程中修改 */
+	private volatile long dropped;
+
+	// 以下只在IO线程中访问
+	/** 积压的事件，key为事件名 */
+	private final Map<String, ServerSentEvent> pending = new LinkedHashMap<String, ServerSentEvent>();
+	/** 上次心跳后是否写出过数据 */
+	private boolean isWritten;
+	private ScheduledFuture<?> heartbeatFuture;
+
+	/**
+	 * 构造，并在IO线程中写出响应头
+	 *
+	 * @param ctx ChannelHandlerContext
+	 * @param request 请求对象，可以为null
+	 * @param isKeepAlive 结束后连接是否保持
+	 * @param head 响应头
+	 */
+	EventStream(ChannelHandlerContext ctx, Request request, boolean isKeepAlive, final HttpResponse head) {
+		this.ctx = ctx;
+		this.sequence = (null == request) ? -1 : request.getSequence();
+		this.isKeepAlive = isKeepAlive;
+		this.lastEventId = (null == request) ? null : request.getHeader("Last-Event-ID");
+		this.closePromise = ctx.newPromise();
+
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				start(head);
+			}
+		});
+	}
+
+	/**
+	 * 获得连接上正在发送的事件流
+	 *
+	 * @param channel 连接
+	 * @return 事件流，没有时返回null
+	 */
+	static EventStream get(Channel channel) {
+		return channel.attr(STREAM_KEY).get();
+	}
+
+	/**
+	 * @return 客户端重连时请求头中的Last-Event-ID，首次连接为null
+	 */
+	public String getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * @return 连接不可写时的事件处理策略
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * 设置连接不可写时的事件处理策略，默认为{@link OverflowPolicy#COALESCE}
+	 *
+	 * @param overflowPolicy 策略
+	 * @return 自己
+	 */
+	public EventStream setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+		return this;
+	}
+
+	/**
+	 * @return 因客户端消费过慢而丢弃或被合并的事件数
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return 事件流是否打开
+	 */
+	public boolean isOpen() {
+		return false == isClosed;
+	}
+
+	/**
+	 * @return 事件流结束（任一方关闭）时完成的Future
+	 */
+	public ChannelFuture closeFuture() {
+		return closePromise;
+	}
+
+	/**
+	 * 发送默认事件（message）
+	 *
+	 * @param data 数据
+	 * @return 事件流是否打开，打开时事件仍可能因客户端消费过慢被丢弃或合并
+	 */
+	public boolean send(String data) {
+		return send(new ServerSentEvent(data));
+	}
+
+	/**
+	 * 发送事件
+	 *
+	 * @param event 事件名
+	 * @param data 数据
+	 * @return 事件流是否打开，打开时事件仍可能因客户端消费过慢被丢弃或合并
+	 */
+	public boolean send(String event, String data) {
+		return send(new ServerSentEvent(event, data));
+	}
+
+	/**
+	 * 发送事件，同一个事件可以发送给多个事件流
+	 *
+	 * @param event 事件
+	 * @return 事件流是否打开，打开时事件仍可能因客户端消费过慢被丢弃或合并
+	 */
+	public boolean send(final ServerSentEvent event) {
+		if (isClosed) {
+			return false;
+		}
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				write(event);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * 结束事件流，长连接时连接可继续处理后续请求，积压的事件被丢弃
+	 */
+	public void close() {
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				if (isClosed) {
+					return;
+				}
+				final ChannelFuture future = ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, LastHttpContent.EMPTY_LAST_CONTENT));
+				if (false == isKeepAlive) {
+					future.addListener(ChannelFutureListener.CLOSE);
+				}
+				onClosed();
+			}
+		});
+	}
+
+	/**
+	 * 连接恢复可写，发送积压的事件，由{@link ActionHandler}调用
+	 */
+	void drain() {
+		if (isClosed || pending.isEmpty()) {
+			return;
+		}
+		final Channel channel = ctx.channel();
+		final Iterator<ServerSentEvent> iterator = pending.values().iterator();
+		while (iterator.hasNext() && channel.isWritable()) {
+			writeEvent(iterator.next());
+			iterator.remove();
+		}
+		ctx.flush();
+	}
+
+	@Override
+	public String toString() {
+		return "EventStream [" + ctx.channel() + "]";
+	}
+
+	/**
+	 * 写出响应头，注册连接关闭监听和心跳
+	 *
+	 * @param head 响应头
+	 */
+	private void start(HttpResponse head) {
+		final Channel channel = ctx.channel();
+		if (false == channel.isActive()) {
+			onClosed();
+			return;
+		}
+		channel.attr(STREAM_KEY).set(this);
+		channel.closeFuture().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				onClosed();
+			}
+		});
+		ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, head));
+
+		final long heartbeat = ServerSetting.getEventStreamHeartbeat();
+		if (heartbeat > 0) {
+			heartbeatFuture = ctx.executor().scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					heartbeat();
+				}
+			}, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 在IO线程中写出事件，不可写或已有积压时按照策略处理
+	 *
+	 * @param event 事件
+	 */
+	private void write(ServerSentEvent event) {
+		if (isClosed) {
+			return;
+		}
+		if (pending.isEmpty() && ctx.channel().isWritable()) {
+			writeEvent(event);
+			ctx.flush();
+			return;
+		}
+
+		if (OverflowPolicy.DROP == overflowPolicy) {
+			dropped++;
+			return;
+		}
+		if (null != pending.remove(event.getKey())) {
+			dropped++;
+		} else if (pending.size() >= MAX_PENDING) {
+			final Iterator<ServerSentEvent> iterator = pending.values().iterator();
+			iterator.next();
+			iterator.remove();
+			dropped++;
+		}
+		pending.put(event.getKey(), event);
+	}
+
+	/**
+	 * 写出事件，不flush
+	 *
+	 * @param event 事件
+	 */
+	private void writeEvent(ServerSentEvent event) {
+		ctx.write(HttpPipeliningHandler.sequenced(sequence, new DefaultHttpContent(event.content())));
+		isWritten = true;
+	}
+
+	/**
+	 * 一个周期内没有写出数据时发送心跳，积压时说明连接仍有数据在发送，无需心跳
+	 */
+	private void heartbeat() {
+		if (isWritten) {
+			isWritten = false;
+			return;
+		}
+		if (false == isClosed && pending.isEmpty() && ctx.channel().isWritable()) {
+			ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, new DefaultHttpContent(HEARTBEAT.duplicate())));
+		}
+	}
+
+	/**
+	 * 事件流结束，取消心跳并丢弃积压的事件
+	 */
+	private void onClosed() {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		if (null != heartbeatFuture) {
+			heartbeatFuture.cancel(false);
+		}
+		pending.clear();
+		ctx.channel().attr(STREAM_KEY).compareAndSet(this, null);
+		closePromise.trySuccess();
+	}
+
+	/**
+	 * 在IO线程中执行
+	 *
+	 * @param task 任务
+	 */
+	private void execute(Runnable task) {
+		final EventExecutor executor = ctx.executor();
+		if (executor.inEventLoop()) {
+			task.run();
+		} else {
+			executor.execute(task);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+
+/**
+ * 事件流组，用于向大量订阅者广播事件<br>
+ * 广播的事件只编码一次，各事件流共享编码后的字节；消费过慢的订阅者按照各自的策略丢弃或合并事件，不影响其它订阅者<br>
+ * 结束的事件流自动从组中移除，所有方法可在任意线程中调用
+ *
+ * @author Looly
+ *
+ */
+public class EventStreamGroup {
+
+	private final String name;
+	private final Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 构造
+	 *
+	 * @param name 组名
+	 */
+	public EventStreamGroup(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * 加入事件流
+	 *
+	 * @param stream 事件流
+	 * @return 是否加入，已在组中或已结束时返回false
+	 */
+	public boolean add(final EventStream stream) {
+		if (false == stream.isOpen() || false == streams.add(stream)) {
+			return false;
+		}
+		stream.closeFuture().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				streams.remove(stream);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * 移除事件流
+	 *
+	 * @param stream 事件流
+	 * @return 是否移除
+	 */
+	public boolean remove(EventStream stream) {
+		return streams.remove(stream);
+	}
+
+	/**
+	 * @return 事件流数
+	 */
+	public int size() {
+		return streams.size();
+	}
+
+	/**
+	 * 广播默认事件（message）
+	 *
+	 * @param data 数据
+	 */
+	public void broadcast(String data) {
+		broadcast(new ServerSentEvent(data));
+	}
+
+	/**
+	 * 广播事件
+	 *
+	 * @param event 事件名
+	 * @param data 数据
+	 */
+	public void broadcast(String event, String data) {
+		broadcast(new ServerSentEvent(event, data));
+	}
+
+	/**
+	 * 广播事件
+	 *
+	 * @param event 事件
+	 */
+	public void broadcast(ServerSentEvent event) {
+		for (EventStream stream : streams) {
+			stream.send(event);
+		}
+	}
+
+	/**
+	 * 结束组中所有事件流
+	 */
+	public void close() {
+		for (EventStream stream : streams) {
+			stream.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "EventStreamGroup [" + name + "] size=" + streams.size();
+	}
+}
@@ -1,27 +1,76 @@
-package com.xiaoleilu.loServer.handler;
-
-import cn.hutool.log.StaticLog;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelPromise;
-import io.netty.channel.FileRegion;
-import io.netty.handler.codec.http.DefaultHttpResponse;
-import io.netty.handler.codec.http.HttpContentCompressor;
-
-/**
- * 解决大文件传输与Gzip压缩冲突问题
- * @author Looly
- *
- */
-public class HttpChunkContentCompressor extends HttpContentCompressor {
-	@Override
-	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-		StaticLog.debug("Write object [{}]", msg);
-		
-		if (msg instanceof FileRegion || msg instanceof DefaultHttpResponse) {
-			//文件传输不经过Gzip压缩
-			ctx.write(msg, promise);
-		}else{
-			super.write(ctx, msg, promise);
-		}
-	}
-}
+package com.xiaoleilu.loServer.handler;
+
+import cn.hutool.core.util.StrUtil;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * 解决大文件传输与Gzip压缩冲突问题<br>
+ * 只压缩文本类型的响应，定长的分段响应（文件）、已指定Content-Encoding（预压缩内容）、事件流以及小于阈值的响应直接发送<br>
+ * FileRegion不是HttpContent，不经过压缩器，因此文件响应必须在响应头阶段就决定不压缩
+ *
+ * @author Looly
+ *
+ */
+public class HttpChunkContentCompressor extends HttpContentCompressor {
+
+	private final int contentSizeThreshold;
+
+	/**
+	 * 构造
+	 *
+	 * @param compressionLevel 压缩级别，1~9
+	 * @param contentSizeThreshold 压缩的最小响应体大小
+	 */
+	public HttpChunkContentCompressor(int compressionLevel, int contentSizeThreshold) {
+		super(compressionLevel, 15, 8, contentSizeThreshold);
+		this.contentSizeThreshold = contentSizeThreshold;
+	}
+
+	@Override
+	protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+		final HttpHeaders headers = response.headers();
+		if (headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+			// 已编码
+			return null;
+		}
+		if (response instanceof HttpContent) {
+			if (((HttpContent) response).content().readableBytes() < contentSizeThreshold) {
+				return null;
+			}
+		} else if (headers.contains(HttpHeaderNames.CONTENT_LENGTH)) {
+			// 文件传输不经过Gzip压缩
+			return null;
+		}
+		final String contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+		if (false == isCompressible(contentType)) {
+			return null;
+		}
+		if (StrUtil.startWithIgnoreCase(contentType, Response.CONTENT_TYPE_EVENT_STREAM)) {
+			// 事件流长期保持，每个连接的压缩上下文占用大量内存
+			return null;
+		}
+
+		if (false == headers.containsValue(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING, true)) {
+			headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+		}
+		return super.beginEncode(response, acceptEncoding);
+	}
+
+	/**
+	 * 指定类型的内容是否值得压缩，文本、JSON、XML、JavaScript和SVG等可压缩，图片、视频和压缩包等已压缩的格式不压缩
+	 *
+	 * @param contentType Content-Type，可以包含charset等参数
+	 * @return 是否值得压缩
+	 */
+	public static boolean isCompressible(String contentType) {
+		if (StrUtil.isBlank(contentType)) {
+			return false;
+		}
+		contentType = contentType.toLowerCase();
+		return contentType.startsWith("text/") || contentType.contains("json") || contentType.contains("xml") || contentType.contains("javascript");
+	}
+}
@@ -0,0 +1,228 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.nio.channels.ClosedChannelException;
+
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.PendingWriteQueue;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+/**
+ * HTTP/1.1管线化（pipelining）的响应排序<br>
+ * 同一连接上的请求按照收到的顺序编号，Action可以并发或异步执行，先完成的后续响应暂存，轮到时再按顺序写出<br>
+ * 只用于HTTP/1.1，HTTP/2的流互相独立，无需排序
+ *
+ * @author Looly
+ *
+ */
+public class HttpPipeliningHandler extends ChannelOutboundHandlerAdapter {
+	private static final Log log = StaticLog.get();
+
+	/** 暂存响应数上限，超出时关闭连接 */
+	private final int maxPendingResponses;
+	/** 当前可以写出的响应序号 */
+	private int writeSequence;
+	/** 未轮到的响应，key为序号 */
+	private final IntObjectMap<PendingResponse> pendingResponses = new IntObjectHashMap<PendingResponse>();
+
+	/**
+	 * 构造
+	 *
+	 * @param maxPendingResponses 暂存响应数上限，超出时关闭连接
+	 */
+	public HttpPipeliningHandler(int maxPendingResponses) {
+		this.maxPendingResponses = maxPendingResponses;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (false == (msg instanceof SequencedMessage)) {
+			ctx.write(msg, promise);
+			return;
+		}
+
+		final SequencedMessage sequenced = (SequencedMessage) msg;
+		if (sequenced.sequence - writeSequence <= 0) {
+			ctx.write(sequenced.message, promise);
+			if (sequenced.isLast()) {
+				writeSequence++;
+				writePending(ctx);
+			}
+			return;
+		}
+
+		PendingResponse pending = pendingResponses.get(sequenced.sequence);
+		if (null == pending) {
+			if (pendingResponses.size() >= maxPendingResponses) {
+				if (ctx.channel().isActive()) {
+					log.warn("Too many pipelined responses pending on {}, close it.", ctx.channel());
+					ctx.close();
+				}
+				ReferenceCountUtil.release(sequenced.message);
+				promise.setFailure(new ClosedChannelException());
+				return;
+			}
+			pending = new PendingResponse(ctx);
+			pendingResponses.put(sequenced.sequence, pending);
+		}
+		pending.queue.add(sequenced.message, promise);
+		if (sequenced.isLast()) {
+			pending.isComplete = true;
+		}
+	}
+
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		failPending();
+		ctx.close(promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		failPending();
+	}
+
+	/**
+	 * 为消息附带请求序号
+	 *
+	 * @param sequence 请求序号，小于0表示无需排序
+	 * @param msg 消息
+	 * @return 写出的消息，无需排序时为原消息
+	 */
+	static Object sequenced(int sequence, Object msg) {
+		return (sequence < 0) ? msg : new SequencedMessage(sequence, msg);
+	}
+
+	/**
+	 * 写出已轮到的暂存响应，连续完成的响应一次写出并flush
+	 *
+	 * @param ctx ChannelHandlerContext
+	 */
+	private void writePending(ChannelHandlerContext ctx) {
+		PendingResponse pending;
+		boolean isWritten = false;
+		while (null != (pending = pendingResponses.remove(writeSequence))) {
+			pending.queue.removeAndWriteAll();
+			isWritten = true;
+			if (false == pending.isComplete) {
+				// 剩余部分写入时直接写出
+				break;
+			}
+			writeSequence++;
+		}
+		if (isWritten) {
+			ctx.flush();
+		}
+	}
+
+	/**
+	 * 连接关闭，丢弃暂存的响应
+	 */
+	private void failPending() {
+		if (pendingResponses.isEmpty()) {
+			return;
+		}
+		final ClosedChannelException cause = new ClosedChannelException();
+		for (PendingResponse pending : pendingResponses.values()) {
+			pending.queue.removeAndFailAll(cause);
+		}
+		pendingResponses.clear();
+	}
+
+	/**
+	 * 带请求序号的响应消息，由Response写出，经过此Handler后还原为原消息<br>
+	 * 引用计数委托给原消息，未经过此Handler就被丢弃（例如连接已关闭）时原消息同样被释放
+	 *
+	 * @author Looly
+	 *
+	 */
+	static class SequencedMessage implements ReferenceCounted {
+		final int sequence;
+		final Object message;
+
+		/**
+		 * 构造
+		 *
+		 * @param sequence 请求序号
+		 * @param message 原消息
+		 */
+		SequencedMessage(int sequence, Object message) {
+			this.sequence = sequence;
+			this.message = message;
+		}
+
+		/**
+		 * @return 是否为响应的最后一个消息，100 Continue等信息性响应不是
+		 */
+		boolean isLast() {
+			if (message instanceof HttpResponse && ((HttpResponse) message).status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+				return false;
+			}
+			return message instanceof LastHttpContent;
+		}
+
+		@Override
+		public int refCnt() {
+			return (message instanceof ReferenceCounted) ? ((ReferenceCounted) message).refCnt() : 1;
+		}
+
+		@Override
+		public SequencedMessage retain() {
+			ReferenceCountUtil.retain(message);
+			return this;
+		}
+
+		@Override
+		public SequencedMessage retain(int increment) {
+			ReferenceCountUtil.retain(message, increment);
+			return this;
+		}
+
+		@Override
+		public SequencedMessage touch() {
+			ReferenceCountUtil.touch(message);
+			return this;
+		}
+
+		@Override
+		public SequencedMessage touch(Object hint) {
+			ReferenceCountUtil.touch(message, hint);
+			return this;
+		}
+
+		@Override
+		public boolean release() {
+			return ReferenceCountUtil.release(message);
+		}
+
+		@Override
+		public boolean release(int decrement) {
+			return ReferenceCountUtil.release(message, decrement);
+		}
+	}
+
+	/**
+	 * 暂存的响应
+	 *
+	 * @author Looly
+	 *
+	 */
+	private static class PendingResponse {
+		final PendingWriteQueue queue;
+		/** 是否已收到响应的最后一个消息 */
+		boolean isComplete;
+
+		PendingResponse(ChannelHandlerContext ctx) {
+			this.queue = new PendingWriteQueue(ctx);
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.dispatch.ActionDispatcher;
+import com.xiaoleilu.loServer.metrics.ConnectionMetricsHandler;
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodecFactory;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AsciiString;
+
+/**
+ * 连接初始化器，按照协议组装Pipeline<br>
+ * HTTP/1.1：HttpServerCodec -> 超时 -> 压缩 -> ChunkedWriteHandler -> HttpPipeliningHandler -> ActionHandler<br>
+ * HTTP/2：Http2FrameCodec -> Http2MultiplexHandler，每个流为一个子Channel，子Channel中帧被转换为HttpObject后交给ActionHandler，因此Action无需区分协议<br>
+ * 启用SSL时通过ALPN协商h2，明文时支持h2c升级和prior knowledge
+ *
+ * @author Looly
+ *
+ */
+public class HttpServerInitializer extends ChannelInitializer<SocketChannel> {
+	private static final Log log = StaticLog.get();
+
+	/** 将ChunkedWriteHandler写出的ByteBuf包装为HttpContent，HTTP/2流只接受HttpObject */
+	private static final ChannelHandler CONTENT_WRAPPER = new ByteBufToHttpContentEncoder();
+	/** 带请求体的请求不升级h2c，避免升级处理器聚合请求体 */
+	private static final ChannelHandler UPGRADE_BODY_FILTER = new UpgradeBodyFilter();
+	/** HTTP/2连接上的异常处理，流中的异常由各自的ActionHandler处理 */
+	private static final ChannelHandler HTTP2_EXCEPTION_HANDLER = new Http2ExceptionHandler();
+
+	private final ActionDispatcher dispatcher;
+	private final SslContext sslContext;
+	/** HTTP/2流的初始化器，所有连接共用 */
+	private final ChannelInitializer<Http2StreamChannel> streamInitializer = new ChannelInitializer<Http2StreamChannel>() {
+		@Override
+		protected void initChannel(Http2StreamChannel ch) throws Exception {
+			final ChannelPipeline pipeline = ch.pipeline();
+			pipeline.addLast(new Http2StreamFrameToHttpObjectCodec(true));
+			if (ServerSetting.getCompressionThreshold() >= 0) {
+				pipeline.addLast(new HttpChunkContentCompressor(ServerSetting.getCompressionLevel(), ServerSetting.getCompressionThreshold()));
+			}
+			pipeline.addLast(CONTENT_WRAPPER)
+			.addLast(new DeferredChunkedWriteHandler())
+			.addLast(new ActionHandler(dispatcher));
+		}
+	};
+
+	/**
+	 * 构造
+	 *
+	 * @param dispatcher Action分发器
+	 * @param sslContext SslContext，null表示不启用SSL
+	 */
+	public HttpServerInitializer(ActionDispatcher dispatcher, SslContext sslContext) {
+		this.dispatcher = dispatcher;
+		this.sslContext = sslContext;
+	}
+
+	@Override
+	protected void initChannel(SocketChannel ch) throws Exception {
+		final ChannelPipeline pipeline = ch.pipeline();
+		if (ServerSetting.isMetricsEnabled()) {
+			pipeline.addLast(ConnectionMetricsHandler.INSTANCE);
+		}
+		if (ServerSetting.getFlushConsolidation() > 0) {
+			// 合并同一次读取中多个响应的flush，管线化或高并发时减少系统调用
+			pipeline.addLast(new FlushConsolidationHandler(ServerSetting.getFlushConsolidation(), true));
+		}
+		if (null != sslContext) {
+			// SSL，此时文件无法零拷贝发送，由ChunkedWriteHandler分段读取
+			pipeline.addLast(sslContext.newHandler(ch.alloc()));
+			if (ServerSetting.isHttp2()) {
+				// 握手完成后按照ALPN协商结果组装
+				pipeline.addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+					@Override
+					protected void configurePipeline(ChannelHandlerContext ctx, String protocol) throws Exception {
+						if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+							addHttp2(ctx.pipeline());
+						} else {
+							addHttp1(ctx.pipeline(), new HttpServerCodec());
+						}
+					}
+				});
+				return;
+			}
+		} else if (ServerSetting.isHttp2()) {
+			addH2c(pipeline);
+			return;
+		}
+		addHttp1(pipeline, new HttpServerCodec());
+	}
+
+	/**
+	 * 明文HTTP/2（h2c），同时支持Upgrade: h2c升级和直接发送HTTP/2连接前言，其它请求按照HTTP/1.1处理
+	 *
+	 * @param pipeline ChannelPipeline
+	 */
+	private void addH2c(ChannelPipeline pipeline) {
+		final HttpServerCodec sourceCodec = new HttpServerCodec();
+		final HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, new UpgradeCodecFactory() {
+			@Override
+			public UpgradeCodec newUpgradeCodec(CharSequence protocol) {
+				if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+					// 升级请求本身作为流1交给ActionHandler
+					return new Http2ServerUpgradeCodec(newHttp2FrameCodec(), new Http2MultiplexHandler(streamInitializer), HTTP2_EXCEPTION_HANDLER, newHttp1Remover());
+				}
+				return null;
+			}
+		}, (int) Math.min(ServerSetting.getMaxContentLength(), Integer.MAX_VALUE));
+
+		final ChannelInitializer<Channel> priorKnowledgeInitializer = new ChannelInitializer<Channel>() {
+			@Override
+			protected void initChannel(Channel ch) throws Exception {
+				removeHttp1(ch.pipeline());
+				addHttp2(ch.pipeline());
+			}
+		};
+		pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, priorKnowledgeInitializer));
+		pipeline.addBefore(pipeline.context(upgradeHandler).name(), null, UPGRADE_BODY_FILTER);
+		// 未升级时按照HTTP/1.1处理，HttpServerCodec已由CleartextHttp2ServerUpgradeHandler加入
+		addHttp1(pipeline, null);
+	}
+
+	/**
+	 * 加入HTTP/2的处理器
+	 *
+	 * @param pipeline ChannelPipeline
+	 */
+	private void addHttp2(ChannelPipeline pipeline) {
+		pipeline.addLast(newHttp2FrameCodec(), new Http2MultiplexHandler(streamInitializer), HTTP2_EXCEPTION_HANDLER);
+		addHttp2Idle(pipeline);
+	}
+
+	/**
+	 * 加入HTTP/1.1的处理器，PipelineBenchmark也使用此方法组装Pipeline
+	 *
+	 * @param pipeline ChannelPipeline
+	 * @param codec HttpServerCodec，null表示已加入
+	 */
+	void addHttp1(ChannelPipeline pipeline, HttpServerCodec codec) {
+		if (null != codec) {
+			pipeline.addLast(codec);
+		}
+		if (ServerSetting.getHeaderReadTimeout() > 0 || ServerSetting.getBodyReadTimeout() > 0 || ServerSetting.getWriteTimeout() > 0
+				|| ServerSetting.getKeepAliveTimeout() > 0 || ServerSetting.getMaxRequestsPerConnection() > 0) {
+			// 读写超时、长连接空闲回收和请求数限制
+			pipeline.addLast(new HttpTimeoutHandler(ServerSetting.getHeaderReadTimeout(), ServerSetting.getBodyReadTimeout(), ServerSetting.getWriteTimeout(),
+					ServerSetting.getKeepAliveTimeout(), ServerSetting.getMaxRequestsPerConnection()));
+		}
+		if (ServerSetting.getCompressionThreshold() >= 0) {
+			// 压缩Http消息
+			pipeline.addLast(new HttpChunkContentCompressor(ServerSetting.getCompressionLevel(), ServerSetting.getCompressionThreshold()));
+		}
+		pipeline
+		// 大文件支持
+		.addLast(new DeferredChunkedWriteHandler())
+
+		// 管线化的请求按照顺序响应
+		.addLast(new HttpPipeliningHandler(ServerSetting.getMaxPipelinedResponses()))
+
+		// 请求体由ActionHandler按照路由聚合或流式处理
+		.addLast(new ActionHandler(dispatcher));
+	}
+
+	/**
+	 * 创建HTTP/2连接级的帧编解码器
+	 *
+	 * @return Http2FrameCodec
+	 */
+	private static Http2FrameCodec newHttp2FrameCodec() {
+		final Http2Settings settings = Http2Settings.defaultSettings()
+				.maxConcurrentStreams(ServerSetting.getHttp2MaxConcurrentStreams())
+				.initialWindowSize(ServerSetting.getHttp2InitialWindowSize());
+		return Http2FrameCodecBuilder.forServer().initialSettings(settings).build();
+	}
+
+	/**
+	 * 创建移除HTTP/1.1处理器的初始化器，h2c升级后连接上不再有HTTP/1.1消息
+	 *
+	 * @return ChannelInitializer
+	 */
+	private static ChannelInitializer<Channel> newHttp1Remover() {
+		return new ChannelInitializer<Channel>() {
+			@Override
+			protected void initChannel(Channel ch) throws Exception {
+				removeHttp1(ch.pipeline());
+				addHttp2Idle(ch.pipeline());
+			}
+		};
+	}
+
+	/**
+	 * 在HTTP/2帧编解码器之前加入空闲和写出超时的检查
+	 *
+	 * @param pipeline ChannelPipeline
+	 */
+	private static void addHttp2Idle(ChannelPipeline pipeline) {
+		if (ServerSetting.getWriteTimeout() > 0 || ServerSetting.getKeepAliveTimeout() > 0) {
+			pipeline.addBefore(pipeline.context(Http2FrameCodec.class).name(), null,
+					new Http2IdleHandler(ServerSetting.getWriteTimeout(), ServerSetting.getKeepAliveTimeout()));
+		}
+	}
+
+	/**
+	 * 移除连接上HTTP/1.1的处理器
+	 *
+	 * @param pipeline ChannelPipeline
+	 */
+	static void removeHttp1(ChannelPipeline pipeline) {
+		if (null != pipeline.get(UpgradeBodyFilter.class)) {
+			pipeline.remove(UpgradeBodyFilter.class);
+		}
+		if (null != pipeline.get(HttpTimeoutHandler.class)) {
+			pipeline.remove(HttpTimeoutHandler.class);
+		}
+		if (null != pipeline.get(HttpChunkContentCompressor.class)) {
+			pipeline.remove(HttpChunkContentCompressor.class);
+		}
+		if (null != pipeline.get(ChunkedWriteHandler.class)) {
+			pipeline.remove(ChunkedWriteHandler.class);
+		}
+		if (null != pipeline.get(HttpPipeliningHandler.class)) {
+			pipeline.remove(HttpPipeliningHandler.class);
+		}
+		if (null != pipeline.get(ActionHandler.class)) {
+			pipeline.remove(ActionHandler.class);
+		}
+	}
+
+	/**
+	 * 将ByteBuf包装为HttpContent，文件分段和multipart的分隔部分都以ByteBuf写出
+	 *
+	 * @author Looly
+	 *
+	 */
+	@Sharable
+	private static class ByteBufToHttpContentEncoder extends MessageToMessageEncoder<ByteBuf> {
+		@Override
+		protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+			out.add(new DefaultHttpContent(msg.retain()));
+		}
+	}
+
+	/**
+	 * 在下一轮事件循环中恢复传输的ChunkedWriteHandler<br>
+	 * 连接在写入消息的过程中变为不可写时，FlushConsolidationHandler会在写入中途同步flush，写出完成后连接恢复可写，
+	 * 原实现在回调中立即写出下一段，排在当前消息剩余部分（例如分块结尾的CRLF）之前，导致分块编码错乱
+	 *
+	 * @author Looly
+	 *
+	 */
+	private static class DeferredChunkedWriteHandler extends ChunkedWriteHandler {
+		private ChannelHandlerContext ctx;
+		private final Runnable resumeTask = new Runnable() {
+			@Override
+			public void run() {
+				DeferredChunkedWriteHandler.super.resumeTransfer();
+			}
+		};
+
+		@Override
+		public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+			this.ctx = ctx;
+			super.handlerAdded(ctx);
+		}
+
+		@Override
+		public void resumeTransfer() {
+			if (null != ctx) {
+				ctx.executor().execute(resumeTask);
+			}
+		}
+
+		@Override
+		public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+			if (ctx.channel().isWritable()) {
+				resumeTransfer();
+			}
+			ctx.fireChannelWritabilityChanged();
+		}
+	}
+
+	/**
+	 * 去掉带请求体的请求中的Upgrade头，使其按照HTTP/1.1处理<br>
+	 * 升级处理器会按照全局大小上限聚合升级请求，大的请求体无法流式接收，客户端可以在之后的请求中再升级
+	 *
+	 * @author Looly
+	 *
+	 */
+	@Sharable
+	private static class UpgradeBodyFilter extends ChannelInboundHandlerAdapter {
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (msg instanceof HttpRequest) {
+				final HttpRequest request = (HttpRequest) msg;
+				if (request.headers().contains(HttpHeaderNames.UPGRADE) && (HttpUtil.getContentLength(request, 0L) > 0 || HttpUtil.isTransferEncodingChunked(request))) {
+					request.headers().remove(HttpHeaderNames.UPGRADE);
+				}
+			}
+			ctx.fireChannelRead(msg);
+		}
+	}
+
+	/**
+	 * HTTP/2连接的异常处理，客户端断开等IO异常只记录日志
+	 *
+	 * @author Looly
+	 *
+	 */
+	@Sharable
+	private static class Http2ExceptionHandler extends ChannelInboundHandlerAdapter {
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+			if (cause instanceof IOException) {
+				log.warn("{}", cause.getMessage());
+			} else {
+				log.error(cause, "HTTP/2 connection error, close it.");
+				ctx.close();
+			}
+		}
+	}
+
+	/**
+	 * HTTP/2连接的空闲和写出超时，没有活动的流且没有收发数据时关闭连接，有待发送的数据但长时间没有进展时关闭连接<br>
+	 * HTTP/2的请求头和请求体以帧为单位到达，由流控和最大并发流数限制，不单独计算读取超时
+	 *
+	 * @author Looly
+	 *
+	 */
+	private static class Http2IdleHandler extends IdleStateHandler {
+
+		/**
+		 * 构造
+		 *
+		 * @param writeTimeout 写出没有进展的超时毫秒数，0表示不限制
+		 * @param keepAliveTimeout 空闲超时毫秒数，0表示不限制
+		 */
+		Http2IdleHandler(long writeTimeout, long keepAliveTimeout) {
+			super(true, 0, writeTimeout, keepAliveTimeout, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+			if (IdleState.WRITER_IDLE == evt.state()) {
+				final ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+				if (null == buffer || 0 == buffer.totalPendingWriteBytes()) {
+					return;
+				}
+			} else if (IdleState.ALL_IDLE == evt.state()) {
+				final Http2FrameCodec codec = ctx.pipeline().get(Http2FrameCodec.class);
+				if (null != codec && codec.connection().numActiveStreams() > 0) {
+					return;
+				}
+			}
+			log.debug("{} timeout on {}, close it.", evt.state(), ctx.channel());
+			ServerMetrics.connectionTimedOut();
+			ctx.close();
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.xiaoleilu.loServer.metrics.ServerMetrics;
+
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * HTTP/1.x连接的超时和请求数限制，位于HttpServerCodec之后，超时时直接关闭连接<br>
+ * <ul>
+ * <li>请求头：从收到请求的第一个字节（新连接从建立时）开始计算，防止慢速发送请求头（slowloris）占用连接</li>
+ * <li>请求体：两次读取请求体的最大间隔，服务端暂停读取（流式请求体背压）时不计</li>
+ * <li>写出：有待发送的数据但长时间没有进展（客户端不读取）</li>
+ * <li>长连接空闲：没有进行中的请求和响应时的最大空闲时间</li>
+ * </ul>
+ * Action处理和发送响应期间（包括事件流和分块响应）不计读取超时，只检查写出是否停滞<br>
+ * 超时由一个定时任务周期检查，请求处理中不创建和取消定时任务，超时的实际时间最多延后检查周期（最短超时的一半）
+ *
+ * @author Looly
+ *
+ */
+class HttpTimeoutHandler extends ChannelDuplexHandler implements Runnable {
+	private static final Log log = StaticLog.get();
+
+	/** 等待请求头：新连接或收到了下一个请求的部分请求头 */
+	private static final int STATE_HEADER = 0;
+	/** 读取请求体 */
+	private static final int STATE_BODY = 1;
+	/** 请求已读完，等待响应或下一个请求 */
+	private static final int STATE_IDLE = 2;
+
+	// 以下超时为纳秒，0表示不限制
+	private final long headerReadTimeout;
+	private final long bodyReadTimeout;
+	private final long writeTimeout;
+	private final long keepAliveTimeout;
+	/** 每个连接的请求数上限，0表示不限制 */
+	private final int maxRequests;
+	/** 检查周期，0表示不检查 */
+	private final long checkInterval;
+
+	private ChannelHandlerContext ctx;
+	private int state = STATE_HEADER;
+	/** 当前状态的计时起点：请求头的第一个字节、上一次读取请求体或开始空闲的时间 */
+	private long stateTime;
+	/** 本次读取中是否解码出了消息 */
+	private boolean isDecoded;
+	/** 已收到请求头但响应未写完的请求数 */
+	private int activeRequests;
+	/** 已收到的请求数 */
+	private int requests;
+
+	// 写出进度的快照，用于判断写出是否停滞
+	private int lastWriteMessage;
+	private long lastWriteProgress;
+	private long lastPendingBytes;
+	private long writeProgressTime;
+
+	private ScheduledFuture<?> timer;
+	private boolean isStarted;
+
+	/**
+	 * 构造
+	 *
+	 * @param headerReadTimeout 读取请求头的超时毫秒数，0表示不限制
+	 * @param bodyReadTimeout 读取请求体的最大间隔毫秒数，0表示不限制
+	 * @param writeTimeout 写出没有进展的超时毫秒数，0表示不限制
+	 * @param keepAliveTimeout 长连接空闲的超时毫秒数，0表示不限制
+	 * @param maxRequests 每个连接的请求数上限，达到上限的请求响应后关闭连接，0表示不限制
+	 */
+	HttpTimeoutHandler(long headerReadTimeout, long bodyReadTimeout, long writeTimeout, long keepAliveTimeout, int maxRequests) {
+		this.headerReadTimeout = TimeUnit.MILLISECONDS.toNanos(headerReadTimeout);
+		this.bodyReadTimeout = TimeUnit.MILLISECONDS.toNanos(bodyReadTimeout);
+		this.writeTimeout = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+		this.keepAliveTimeout = TimeUnit.MILLISECONDS.toNanos(keepAliveTimeout);
+		this.maxRequests = maxRequests;
+
+		long minTimeout = Long.MAX_VALUE;
+		for (long timeout : new long[] { this.headerReadTimeout, this.bodyReadTimeout, this.writeTimeout, this.keepAliveTimeout }) {
+			if (timeout > 0) {
+				minTimeout = Math.min(minTimeout, timeout);
+			}
+		}
+		this.checkInterval = (Long.MAX_VALUE == minTimeout) ? 0 : Math.max(1, minTimeout / 2);
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+		if (ctx.channel().isActive()) {
+			// ALPN协商后加入时连接已经建立
+			start();
+		}
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		stop();
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		start();
+		ctx.fireChannelActive();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		stop();
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof HttpObject) {
+			isDecoded = true;
+			if (msg instanceof HttpRequest) {
+				onRequest((HttpRequest) msg);
+			}
+			if (msg instanceof HttpContent) {
+				state = (msg instanceof LastHttpContent) ? STATE_IDLE : STATE_BODY;
+			}
+		}
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		if (isDecoded) {
+			// 读取请求体有进展或请求已读完
+			isDecoded = false;
+			stateTime = System.nanoTime();
+		} else if (STATE_IDLE == state) {
+			// 收到数据但未解码出请求头，开始计算下一个请求的请求头超时
+			state = STATE_HEADER;
+			stateTime = System.nanoTime();
+		}
+		ctx.fireChannelReadComplete();
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (msg instanceof LastHttpContent && activeRequests > 0 && false == isInformational(msg)) {
+			if (0 == --activeRequests && STATE_IDLE == state) {
+				// 响应全部写出，开始计算长连接空闲
+				stateTime = System.nanoTime();
+			}
+		}
+		ctx.write(msg, promise);
+	}
+
+	/**
+	 * 定时检查超时
+	 */
+	@Override
+	public void run() {
+		timer = null;
+		if (false == isStarted || false == ctx.channel().isActive()) {
+			return;
+		}
+		final long now = System.nanoTime();
+		final String timeout = checkTimeout(now);
+		if (null != timeout) {
+			log.debug("{} timeout on {}, close it.", timeout, ctx.channel());
+			ServerMetrics.connectionTimedOut();
+			ctx.close();
+			return;
+		}
+		timer = ctx.executor().schedule(this, Math.max(1, Math.min(checkInterval, nextDeadline() - now)), TimeUnit.NANOSECONDS);
+	}
+
+	// --------------------------------------------------------- Private method start
+	/**
+	 * 开始计时
+	 */
+	private void start() {
+		if (isStarted) {
+			return;
+		}
+		isStarted = true;
+		stateTime = writeProgressTime = System.nanoTime();
+		if (checkInterval > 0) {
+			timer = ctx.executor().schedule(this, checkInterval, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * 停止计时
+	 */
+	private void stop() {
+		isStarted = false;
+		if (null != timer) {
+			timer.cancel(false);
+			timer = null;
+		}
+	}
+
+	/**
+	 * 收到请求头，达到请求数上限时将请求标记为不保持连接，由ActionHandler在响应后关闭连接
+	 *
+	 * @param request 请求
+	 */
+	private void onRequest(HttpRequest request) {
+		activeRequests++;
+		requests++;
+		state = STATE_BODY;
+		if (maxRequests > 0 && requests >= maxRequests) {
+			HttpUtil.setKeepAlive(request, false);
+		}
+	}
+
+	/**
+	 * 检查是否超时
+	 *
+	 * @param now 当前时间（纳秒）
+	 * @return 超时的类型，未超时返回null
+	 */
+	private String checkTimeout(long now) {
+		if (STATE_IDLE != state && false == ctx.channel().config().isAutoRead()) {
+			// 服务端暂停读取，不计读取超时
+			stateTime = now;
+		}
+		final long elapsed = now - stateTime;
+		switch (state) {
+		case STATE_HEADER:
+			if (headerReadTimeout > 0 && elapsed >= headerReadTimeout) {
+				return "Header read";
+			}
+			break;
+		case STATE_BODY:
+			if (bodyReadTimeout > 0 && elapsed >= bodyReadTimeout) {
+				return "Body read";
+			}
+			break;
+		default:
+			if (0 == activeRequests && keepAliveTimeout > 0 && elapsed >= keepAliveTimeout) {
+				return "Keep-alive";
+			}
+		}
+		if (writeTimeout > 0 && isWriteStalled(now)) {
+			return "Write";
+		}
+		return null;
+	}
+
+	/**
+	 * @return 当前状态下读取或空闲超时的时间，无需检查时为Long.MAX_VALUE
+	 */
+	private long nextDeadline() {
+		long timeout = 0;
+		switch (state) {
+		case STATE_HEADER:
+			timeout = headerReadTimeout;
+			break;
+		case STATE_BODY:
+			timeout = bodyReadTimeout;
+			break;
+		default:
+			if (0 == activeRequests) {
+				timeout = keepAliveTimeout;
+			}
+		}
+		return (timeout > 0) ? stateTime + timeout : Long.MAX_VALUE;
+	}
+
+	/**
+	 * 检查写出是否停滞，待发送的数据没有减少且当前消息没有进展时视为停滞
+	 *
+	 * @param now 当前时间（纳秒）
+	 * @return 是否停滞超过写出超时
+	 */
+	private boolean isWriteStalled(long now) {
+		final ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+		final long pendingBytes = (null == buffer) ? 0 : buffer.totalPendingWriteBytes();
+		if (0 == pendingBytes) {
+			lastPendingBytes = 0;
+			writeProgressTime = now;
+			return false;
+		}
+
+		final int message = System.identityHashCode(buffer.current());
+		final long progress = buffer.currentProgress();
+		final boolean isProgressed = message != lastWriteMessage || progress != lastWriteProgress || pendingBytes < lastPendingBytes;
+		lastWriteMessage = message;
+		lastWriteProgress = progress;
+		lastPendingBytes = pendingBytes;
+		if (isProgressed) {
+			writeProgressTime = now;
+			return false;
+		}
+		return now - writeProgressTime >= writeTimeout;
+	}
+
+	/**
+	 * @param msg 消息
+	 * @return 是否为100 Continue等信息性响应
+	 */
+	private static boolean isInformational(Object msg) {
+		return msg instanceof HttpResponse && ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+	}
+}
@@ -1,529 +1,937 @@
-package com.xiaoleilu.loServer.handler;
-
-import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.nio.charset.Charset;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-
-import cn.hutool.core.convert.Convert;
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.net.NetUtil;
-import cn.hutool.core.util.CharsetUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.URLUtil;
-import cn.hutool.log.Log;
-import cn.hutool.log.StaticLog;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpHeaderNames;
-import io.netty.handler.codec.http.HttpHeaderValues;
-import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.handler.codec.http.HttpMethod;
-import io.netty.handler.codec.http.HttpRequest;
-import io.netty.handler.codec.http.HttpVersion;
-import io.netty.handler.codec.http.QueryStringDecoder;
-import io.netty.handler.codec.http.cookie.Cookie;
-import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
-import io.netty.handler.codec.http.multipart.Attribute;
-import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
-import io.netty.handler.codec.http.multipart.FileUpload;
-import io.netty.handler.codec.http.multipart.HttpDataFactory;
-import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData.HttpDataType;
-
-/**
- * Http请求对象
- * 
- * @author Looly
- *
- */
-public class Request {
-	private static final Log log = StaticLog.get();
-
-	public static final String METHOD_DELETE = HttpMethod.DELETE.name();
-	public static final String METHOD_HEAD = HttpMethod.HEAD.name();
-	public static final String METHOD_GET = HttpMethod.GET.name();
-	public static final String METHOD_OPTIONS = HttpMethod.OPTIONS.name();
-	public static final String METHOD_POST = HttpMethod.POST.name();
-	public static final String METHOD_PUT = HttpMethod.PUT.name();
-	public static final String METHOD_TRACE = HttpMethod.TRACE.name();
-
-	private static final HttpDataFactory HTTP_DATA_FACTORY = new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE);
-
-	private FullHttpRequest nettyRequest;
-
-	private String path;
-	private String ip;
-	private Map<String, String> headers = new HashMap<String, String>();
-	private Map<String, Object> params = new HashMap<String, Object>();
-	private Map<String, Cookie> cookies = new HashMap<String, Cookie>();
-
-	/**
-	 * 构造
-	 * 
-	 * @param ctx ChannelHandlerContext
-	 * @param nettyRequest HttpRequest
-	 */
-	private Request(ChannelHandlerContext ctx, FullHttpRequest nettyRequest) {
-		this.nettyRequest = nettyRequest;
-		final String uri = nettyRequest.uri();
-		this.path = URLUtil.getPath(getUri());
-
-		this.putHeadersAndCookies(nettyRequest.headers());
-
-		// request URI parameters
-		this.putParams(new QueryStringDecoder(uri));
-		if(nettyRequest.method() != HttpMethod.GET && !"application/octet-stream".equals(nettyRequest.headers().get("Content-Type"))){
-			HttpPostRequestDecoder decoder = null;
-			try {
-				decoder = new HttpPostRequestDecoder(HTTP_DATA_FACTORY, nettyRequest);
-				this.putParams(decoder);
-			} finally {
-				if(null != decoder){
-					decoder.destroy();
-					decoder = null;
-				}
-			}
-		}
-
-		// IP
-		this.putIp(ctx);
-	}
-
-	/**
-	 * @return Netty的HttpRequest
-	 */
-	public HttpRequest getNettyRequest() {
-		return this.nettyRequest;
-	}
-
-	/**
-	 * 获得版本信息
-	 * 
-	 * @return 版本
-	 */
-	public String getProtocolVersion() {
-		return nettyRequest.protocolVersion().text();
-	}
-
-	/**
-	 * 获得URI（带参数的路径）
-	 * 
-	 * @return URI
-	 */
-	public String getUri() {
-		return nettyRequest.uri();
-	}
-
-	/**
-	 * @return 获得path（不带参数的路径）
-	 */
-	public String getPath() {
-		return path;
-	}
-
-	/**
-	 * 获得Http方法
-	 * 
-	 * @return Http method
-	 */
-	public String getMethod() {
-		return nettyRequest.method().name();
-	}
-
-	/**
-	 * 获得IP地址
-	 * 
-	 * @return IP地址
-	 */
-	public String getIp() {
-		return ip;
-	}
-
-	/**
-	 * 获得所有头信息
-	 * 
-	 * @return 头信息Map
-	 */
-	public Map<String, String> getHeaders() {
-		return headers;
-	}
-
-	/**
-	 * 使用ISO8859_1字符集获得Header内容<br>
-	 * 由于Header中很少有中文，故一般情况下无需转码
-	 * 
-	 * @param headerKey 头信息的KEY
-	 * @return 值
-	 */
-	public String getHeader(String headerKey) {
-		return headers.get(headerKey);
-	}
-
-	/**
-	 * @return 是否为普通表单（application/x-www-form-urlencoded）
-	 */
-	public boolean isXWwwFormUrlencoded() {
-		return "application/x-www-form-urlencoded".equals(getHeader("Content-Type"));
-	}
-
-	/**
-	 * 获得指定的Cookie
-	 * 
-	 * @param name cookie名
-	 * @return Cookie对象
-	 */
-	public Cookie getCookie(String name) {
-		return cookies.get(name);
-	}
-
-	/**
-	 * @return 获得所有Cookie信息
-	 */
-	public Map<String, Cookie> getCookies() {
-		return this.cookies;
-	}
-
-	/**
-	 * @return 客户浏览器是否为IE
-	 */
-	public boolean isIE() {
-		String userAgent = getHeader("User-Agent");
-		if (StrUtil.isNotBlank(userAgent)) {
-			userAgent = userAgent.toUpperCase();
-			if (userAgent.contains("MSIE") || userAgent.contains("TRIDENT")) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/**
-	 * @param name 参数名
-	 * @return 获得请求参数
-	 */
-	public String getParam(String name) {
-		final Object value = params.get(name);
-		if(null == value){
-			return null;
-		}
-		
-		if(value instanceof String){
-			return (String)value;
-		}
-		return value.toString();
-	}
-	
-	/**
-	 * @param name 参数名
-	 * @return 获得请求参数
-	 */
-	public Object getObjParam(String name) {
-		return params.get(name);
-	}
-
-	/**
-	 * 获得GET请求参数<br>
-	 * 会根据浏览器类型自动识别GET请求的编码方式从而解码<br>
-	 * charsetOfServlet为null则默认的ISO_8859_1
-	 * 
-	 * @param name 参数名
-	 * @param charset 字符集
-	 * @return 获得请求参数
-	 */
-	public String getParam(String name, Charset charset) {
-		if (null == charset) {
-			charset = Charset.forName(CharsetUtil.ISO_8859_1);
-		}
-
-		String destCharset = CharsetUtil.UTF_8;
-		if (isIE()) {
-			// IE浏览器GET请求使用GBK编码
-			destCharset = CharsetUtil.GBK;
-		}
-
-		String value = getParam(name);
-		if (METHOD_GET.equalsIgnoreCase(getMethod())) {
-			value = CharsetUtil.convert(value, charset.toString(), destCharset);
-		}
-		return value;
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得请求参数
-	 */
-	public String getParam(String name, String defaultValue) {
-		String param = getParam(name);
-		return StrUtil.isBlank(param) ? defaultValue : param;
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得Integer类型请求参数
-	 */
-	public Integer getIntParam(String name, Integer defaultValue) {
-		return Convert.toInt(getParam(name), defaultValue);
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得long类型请求参数
-	 */
-	public Long getLongParam(String name, Long defaultValue) {
-		return Convert.toLong(getParam(name), defaultValue);
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得Double类型请求参数
-	 */
-	public Double getDoubleParam(String name, Double defaultValue) {
-		return Convert.toDouble(getParam(name), defaultValue);
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得Float类型请求参数
-	 */
-	public Float getFloatParam(String name, Float defaultValue) {
-		return Convert.toFloat(getParam(name), defaultValue);
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得Boolean类型请求参数
-	 */
-	public Boolean getBoolParam(String name, Boolean defaultValue) {
-		return Convert.toBool(getParam(name), defaultValue);
-	}
-
-	/**
-	 * 格式：<br>
-	 * 1、yyyy-MM-dd HH:mm:ss <br>
-	 * 2、yyyy-MM-dd <br>
-	 * 3、HH:mm:ss <br>
-	 * 
-	 * @param name 参数名
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得Date类型请求参数，默认格式：
-	 */
-	public Date getDateParam(String name, Date defaultValue) {
-		String param = getParam(name);
-		return StrUtil.isBlank(param) ? defaultValue : DateUtil.parse(param);
-	}
-
-	/**
-	 * @param name 参数名
-	 * @param format 格式
-	 * @param defaultValue 当客户端未传参的默认值
-	 * @return 获得Date类型请求参数
-	 */
-	public Date getDateParam(String name, String format, Date defaultValue) {
-		String param = getParam(name);
-		return StrUtil.isBlank(param) ? defaultValue : DateUtil.parse(param, format);
-	}
-
-	/**
-	 * 获得请求参数<br>
-	 * 列表类型值，常用于表单中的多选框
-	 * 
-	 * @param name 参数名
-	 * @return 数组
-	 */
-	@SuppressWarnings("unchecked")
-	public List<String> getArrayParam(String name) {
-		Object value = params.get(name);
-		if(null == value){
-			return null;
-		}
-		
-		if(value instanceof List){
-			return (List<String>) value;
-		}else if(value instanceof String){
-			return StrUtil.split((String)value, ',');
-		}else{
-			throw new RuntimeException("Value is not a List type!");
-		}
-	}
-
-	/**
-	 * 获得所有请求参数
-	 * 
-	 * @return Map
-	 */
-	public Map<String, Object> getParams() {
-		return params;
-	}
-
-	/**
-	 * @return 是否为长连接
-	 */
-	public boolean isKeepAlive() {
-		final String connectionHeader = getHeader(HttpHeaderNames.CONNECTION.toString());
-		// 无论任何版本Connection为close时都关闭连接
-		if (HttpHeaderValues.CLOSE.toString().equalsIgnoreCase(connectionHeader)) {
-			return false;
-		}
-
-		// HTTP/1.0只有Connection为Keep-Alive时才会保持连接
-		if (HttpVersion.HTTP_1_0.text().equals(getProtocolVersion())) {
-			if (false == HttpHeaderValues.KEEP_ALIVE.toString().equalsIgnoreCase(connectionHeader)) {
-				return false;
-			}
-		}
-		// HTTP/1.1默认打开Keep-Alive
-		return true;
-	}
-
-	// --------------------------------------------------------- Protected method start
-	/**
-	 * 填充参数（GET请求的参数）
-	 * 
-	 * @param decoder QueryStringDecoder
-	 */
-	protected void putParams(QueryStringDecoder decoder) {
-		if (null != decoder) {
-			List<String> valueList;
-			for (Entry<String, List<String>> entry : decoder.parameters().entrySet()) {
-				valueList = entry.getValue();
-				if(null != valueList){
-					this.putParam(entry.getKey(), 1 == valueList.size() ? valueList.get(0) : valueList);
-				}
-			}
-		}
-	}
-
-	/**
-	 * 填充参数（POST请求的参数）
-	 * 
-	 * @param decoder QueryStringDecoder
-	 */
-	protected void putParams(HttpPostRequestDecoder decoder) {
-		if (null == decoder) {
-			return;
-		}
-		
-		for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
-			putParam(data);
-		}
-	}
-	
-	/**
-	 * 填充参数
-	 * 
-	 * @param data InterfaceHttpData
-	 */
-	protected void putParam(InterfaceHttpData data) {
-		final HttpDataType dataType = data.getHttpDataType();
-		if (dataType == HttpDataType.Attribute) {
-			//普通参数
-			Attribute attribute = (Attribute) data;
-			try {
-				this.putParam(attribute.getName(), attribute.getValue());
-			} catch (IOException e) {
-				log.error(e);
-			}
-		}else if(dataType == HttpDataType.FileUpload){
-			//文件
-			FileUpload fileUpload = (FileUpload) data;
-			if(fileUpload.isCompleted()){
-				try {
-					this.putParam(data.getName(), fileUpload.getFile());
-				} catch (IOException e) {
-					log.error(e, "Get file param [{}] error!", data.getName());
-				}
-			}
-		}
-	}
-
-	/**
-	 * 填充参数
-	 * 
-	 * @param key 参数名
-	 * @param value 参数值
-	 */
-	protected void putParam(String key, Object value) {
-		this.params.put(key, value);
-	}
-
-	/**
-	 * 填充头部信息和Cookie信息
-	 * 
-	 * @param headers HttpHeaders
-	 */
-	protected void putHeadersAndCookies(HttpHeaders headers) {
-		for (Entry<String, String> entry : headers) {
-			this.headers.put(entry.getKey(), entry.getValue());
-		}
-
-		// Cookie
-		final String cookieString = this.headers.get(HttpHeaderNames.COOKIE.toString());
-		if (StrUtil.isNotBlank(cookieString)) {
-			final Set<Cookie> cookies = ServerCookieDecoder.LAX.decode(cookieString);
-			for (Cookie cookie : cookies) {
-				this.cookies.put(cookie.name(), cookie);
-			}
-		}
-	}
-
-	/**
-	 * 设置客户端IP
-	 * 
-	 * @param ctx ChannelHandlerContext
-	 */
-	protected void putIp(ChannelHandlerContext ctx) {
-		String ip = getHeader("X-Forwarded-For");
-		if (StrUtil.isNotBlank(ip)) {
-			ip = NetUtil.getMultistageReverseProxyIp(ip);
-		} else {
-			final InetSocketAddress insocket = (InetSocketAddress) ctx.channel().remoteAddress();
-			ip = insocket.getAddress().getHostAddress();
-		}
-		this.ip = ip;
-	}
-	// --------------------------------------------------------- Protected method end
-
-	@Override
-	public String toString() {
-		final StringBuilder sb = new StringBuilder();
-		sb.append("\r\nprotocolVersion: ").append(getProtocolVersion()).append("\r\n");
-		sb.append("uri: ").append(getUri()).append("\r\n");
-		sb.append("path: ").append(path).append("\r\n");
-		sb.append("method: ").append(getMethod()).append("\r\n");
-		sb.append("ip: ").append(ip).append("\r\n");
-		sb.append("headers:\r\n ");
-		for (Entry<String, String> entry : headers.entrySet()) {
-			sb.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
-		}
-		sb.append("params: \r\n");
-		for (Entry<String, Object> entry : params.entrySet()) {
-			sb.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
-		}
-
-		return sb.toString();
-	}
-
-	/**
-	 * 构建Request对象
-	 * 
-	 * @param ctx ChannelHandlerContext
-	 * @param nettyRequest Netty的HttpRequest
-	 * @return Request
-	 */
-	protected final static Request build(ChannelHandlerContext ctx, FullHttpRequest nettyRequest) {
-		return new Request(ctx, nettyRequest);
-	}
-}
+package com.xiaoleilu.loServer.handler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.listener.BodyListener;
+import com.xiaoleilu.loServer.listener.UploadListener;
+import com.xiaoleilu.loServer.router.ActionRoute;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.netty.handler.codec.http.multipart.Attribute;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.EndOfDataDecoderException;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData.HttpDataType;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Http请求对象
+ * 
+ * @author Looly
+ *
+ */
+public class Request {
+	private static final Log log = StaticLog.get();
+
+	public static final String METHOD_DELETE = HttpMethod.DELETE.name();
+	public static final String METHOD_HEAD = HttpMethod.HEAD.name();
+	public static final String METHOD_GET = HttpMethod.GET.name();
+	public static final String METHOD_OPTIONS = HttpMethod.OPTIONS.name();
+	public static final String METHOD_POST = HttpMethod.POST.name();
+	public static final String METHOD_PUT = HttpMethod.PUT.name();
+	public static final String METHOD_TRACE = HttpMethod.TRACE.name();
+
+	/** 流式解析时解码器缓冲区的压缩阈值，Netty默认为10M */
+	private static final int DECODER_DISCARD_THRESHOLD = 64 * 1024;
+	/** 按照内存上限缓存的HttpDataFactory */
+	private static final Map<Long, HttpDataFactory> DATA_FACTORIES = new ConcurrentHashMap<Long, HttpDataFactory>();
+
+	private final ChannelHandlerContext ctx;
+	private HttpRequest nettyRequest;
+
+	private String path;
+	/** 以下字段在首次访问时解析，未解析时为null */
+	private String ip;
+	private Map<String, String> headers;
+	private Map<String, Object> params;
+	private Map<String, Cookie> cookies;
+	/** 是否已释放 */
+	private volatile boolean isReleased;
+	/** 路径变量，路由中无变量时为null */
+	private Map<String, String> pathParams;
+	/** 流式接收的请求体，非流式接收时为null */
+	private StreamingBody body;
+	/** 匹配的路由，未匹配时为null */
+	private ActionRoute route;
+	/** 上传的文件，无文件时为null */
+	private Map<String, FileUpload> fileUploads;
+	/** 解析请求体使用的解码器，在释放请求时销毁，同时删除上传的临时文件 */
+	private HttpPostRequestDecoder bodyDecoder;
+	/** 请求在连接上的序号，用于管线化时按顺序响应，-1表示无需排序 */
+	private int sequence = -1;
+	/** 收到请求头的时间（System.nanoTime()），用于统计处理耗时 */
+	private final long startNanos;
+
+	/**
+	 * 构造<br>
+	 * 只解析路由需要的路径，头信息直接读取Netty的HttpHeaders，Cookie、参数和IP在首次访问时解析
+	 * 
+	 * @param ctx ChannelHandlerContext
+	 * @param nettyRequest HttpRequest
+	 */
+	private Request(ChannelHandlerContext ctx, HttpRequest nettyRequest) {
+		this.ctx = ctx;
+		this.nettyRequest = nettyRequest;
+		this.path = parsePath(nettyRequest.uri());
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return Netty的HttpRequest
+	 */
+	public HttpRequest getNettyRequest() {
+		return this.nettyRequest;
+	}
+
+	/**
+	 * 获得版本信息
+	 * 
+	 * @return 版本
+	 */
+	public String getProtocolVersion() {
+		return nettyRequest.protocolVersion().text();
+	}
+
+	/**
+	 * 获得URI（带参数的路径）
+	 * 
+	 * @return URI
+	 */
+	public String getUri() {
+		return nettyRequest.uri();
+	}
+
+	/**
+	 * @return 获得path（不带参数的路径）
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * 获得Http方法
+	 * 
+	 * @return Http method
+	 */
+	public String getMethod() {
+		return nettyRequest.method().name();
+	}
+
+	/**
+	 * 获得IP地址
+	 * 
+	 * @return IP地址
+	 */
+	public String getIp() {
+		if (null == ip) {
+			putIp(ctx);
+		}
+		return ip;
+	}
+
+	/**
+	 * 获得连接对端的IP地址，不读取X-Forwarded-For，客户端无法伪造；部署在反向代理之后时为代理的地址
+	 * 
+	 * @return IP地址
+	 */
+	public String getRemoteIp() {
+		final SocketAddress address = ctx.channel().remoteAddress();
+		if (address instanceof InetSocketAddress) {
+			final InetSocketAddress insocket = (InetSocketAddress) address;
+			return (null == insocket.getAddress()) ? insocket.getHostString() : insocket.getAddress().getHostAddress();
+		}
+		// 非TCP连接（例如EmbeddedChannel）
+		return String.valueOf(address);
+	}
+
+	/**
+	 * 获得所有头信息<br>
+	 * 首次调用时复制Netty的HttpHeaders，只读取个别头信息时请使用{@link #getHeader(String)}
+	 * 
+	 * @return 头信息Map
+	 */
+	public Map<String, String> getHeaders() {
+		if (null == headers) {
+			final Map<String, String> headers = new HashMap<String, String>();
+			for (Entry<String, String> entry : nettyRequest.headers()) {
+				headers.put(entry.getKey(), entry.getValue());
+			}
+			this.headers = headers;
+		}
+		return headers;
+	}
+
+	/**
+	 * 使用ISO8859_1字符集获得Header内容<br>
+	 * 由于Header中很少有中文，故一般情况下无需转码
+	 * 
+	 * @param headerKey 头信息的KEY
+	 * @return 值
+	 */
+	public String getHeader(String headerKey) {
+		return nettyRequest.headers().get(headerKey);
+	}
+
+	/**
+	 * @return 是否为普通表单（application/x-www-form-urlencoded）
+	 */
+	public boolean isXWwwFormUrlencoded() {
+		return "application/x-www-form-urlencoded".equals(getHeader("Content-Type"));
+	}
+
+	/**
+	 * 获得指定的Cookie
+	 * 
+	 * @param name cookie名
+	 * @return Cookie对象
+	 */
+	public Cookie getCookie(String name) {
+		return getCookies().get(name);
+	}
+
+	/**
+	 * @return 获得所有Cookie信息
+	 */
+	public Map<String, Cookie> getCookies() {
+		if (null == cookies) {
+			putCookies(nettyRequest.headers());
+		}
+		return this.cookies;
+	}
+
+	/**
+	 * 客户端是否接受指定的内容编码，根据Accept-Encoding头判断，q=0表示不接受
+	 *
+	 * @param encoding 编码，例如gzip、br
+	 * @return 是否接受
+	 */
+	public boolean acceptsEncoding(String encoding) {
+		final String acceptEncoding = nettyRequest.headers().get(HttpHeaderNames.ACCEPT_ENCODING);
+		if (StrUtil.isBlank(acceptEncoding)) {
+			return false;
+		}
+
+		boolean isWildcardAccepted = false;
+		int semicolonIndex;
+		String name;
+		boolean isAccepted;
+		for (String part : StrUtil.split(acceptEncoding, ',')) {
+			semicolonIndex = part.indexOf(';');
+			name = StrUtil.trim((semicolonIndex < 0) ? part : part.substring(0, semicolonIndex));
+			isAccepted = semicolonIndex < 0 || isQualityPositive(part.substring(semicolonIndex + 1));
+			if (name.equalsIgnoreCase(encoding)) {
+				// 明确指定的编码优先于通配
+				return isAccepted;
+			}
+			if ("*".equals(name)) {
+				isWildcardAccepted = isAccepted;
+			}
+		}
+		return isWildcardAccepted;
+	}
+
+	/**
+	 * @return 客户浏览器是否为IE
+	 */
+	public boolean isIE() {
+		String userAgent = getHeader("User-Agent");
+		if (StrUtil.isNotBlank(userAgent)) {
+			userAgent = userAgent.toUpperCase();
+			if (userAgent.contains("MSIE") || userAgent.contains("TRIDENT")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param name 参数名
+	 * @return 获得请求参数
+	 */
+	public String getParam(String name) {
+		final Object value = getParams().get(name);
+		if(null == value){
+			return null;
+		}
+		
+		if(value instanceof String){
+			return (String)value;
+		}
+		return value.toString();
+	}
+	
+	/**
+	 * 获得路径变量，例如路由为/user/{id}，请求/user/1时getPathParam("id")为"1"<br>
+	 * 末尾通配（/static/**）匹配的剩余路径使用"*"获取
+	 * 
+	 * @param name 变量名
+	 * @return 路径变量值，不存在返回null
+	 */
+	public String getPathParam(String name) {
+		return (null == pathParams) ? null : pathParams.get(name);
+	}
+
+	/**
+	 * @return 获得所有路径变量
+	 */
+	public Map<String, String> getPathParams() {
+		if (null == pathParams) {
+			return Collections.emptyMap();
+		}
+		return pathParams;
+	}
+
+	/**
+	 * @param name 参数名
+	 * @return 获得请求参数
+	 */
+	public Object getObjParam(String name) {
+		return getParams().get(name);
+	}
+
+	/**
+	 * 获得上传的文件<br>
+	 * 小于内存上限的文件保存在内存中，否则保存在临时文件中，临时文件在请求处理完毕（包括异步Action完成）后删除，需要保留时调用{@link FileUpload#renameTo(java.io.File)}
+	 * 
+	 * @param name 参数名
+	 * @return 上传的文件，不存在返回null
+	 */
+	public FileUpload getFileUpload(String name) {
+		return getFileUploads().get(name);
+	}
+
+	/**
+	 * @return 获得所有上传的文件
+	 */
+	public Map<String, FileUpload> getFileUploads() {
+		getParams();
+		if (null == fileUploads) {
+			return Collections.emptyMap();
+		}
+		return fileUploads;
+	}
+
+	/**
+	 * @return 匹配的路由，未匹配时为null
+	 */
+	public ActionRoute getRoute() {
+		return route;
+	}
+
+	/**
+	 * 获得GET请求参数<br>
+	 * 会根据浏览器类型自动识别GET请求的编码方式从而解码<br>
+	 * charsetOfServlet为null则默认的ISO_8859_1
+	 * 
+	 * @param name 参数名
+	 * @param charset 字符集
+	 * @return 获得请求参数
+	 */
+	public String getParam(String name, Charset charset) {
+		if (null == charset) {
+			charset = Charset.forName(CharsetUtil.ISO_8859_1);
+		}
+
+		String destCharset = CharsetUtil.UTF_8;
+		if (isIE()) {
+			// IE浏览器GET请求使用GBK编码
+			destCharset = CharsetUtil.GBK;
+		}
+
+		String value = getParam(name);
+		if (METHOD_GET.equalsIgnoreCase(getMethod())) {
+			value = CharsetUtil.convert(value, charset.toString(), destCharset);
+		}
+		return value;
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得请求参数
+	 */
+	public String getParam(String name, String defaultValue) {
+		String param = getParam(name);
+		return StrUtil.isBlank(param) ? defaultValue : param;
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得Integer类型请求参数
+	 */
+	public Integer getIntParam(String name, Integer defaultValue) {
+		return Convert.toInt(getParam(name), defaultValue);
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得long类型请求参数
+	 */
+	public Long getLongParam(String name, Long defaultValue) {
+		return Convert.toLong(getParam(name), defaultValue);
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得Double类型请求参数
+	 */
+	public Double getDoubleParam(String name, Double defaultValue) {
+		return Convert.toDouble(getParam(name), defaultValue);
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得Float类型请求参数
+	 */
+	public Float getFloatParam(String name, Float defaultValue) {
+		return Convert.toFloat(getParam(name), defaultValue);
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得Boolean类型请求参数
+	 */
+	public Boolean getBoolParam(String name, Boolean defaultValue) {
+		return Convert.toBool(getParam(name), defaultValue);
+	}
+
+	/**
+	 * 格式：<br>
+	 * 1、yyyy-MM-dd HH:mm:ss <br>
+	 * 2、yyyy-MM-dd <br>
+	 * 3、HH:mm:ss <br>
+	 * 
+	 * @param name 参数名
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得Date类型请求参数，默认格式：
+	 */
+	public Date getDateParam(String name, Date defaultValue) {
+		String param = getParam(name);
+		return StrUtil.isBlank(param) ? defaultValue : DateUtil.parse(param);
+	}
+
+	/**
+	 * @param name 参数名
+	 * @param format 格式
+	 * @param defaultValue 当客户端未传参的默认值
+	 * @return 获得Date类型请求参数
+	 */
+	public Date getDateParam(String name, String format, Date defaultValue) {
+		String param = getParam(name);
+		return StrUtil.isBlank(param) ? defaultValue : DateUtil.parse(param, format);
+	}
+
+	/**
+	 * 获得请求参数<br>
+	 * 列表类型值，常用于表单中的多选框
+	 * 
+	 * @param name 参数名
+	 * @return 数组
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> getArrayParam(String name) {
+		Object value = getParams().get(name);
+		if(null == value){
+			return null;
+		}
+		
+		if(value instanceof List){
+			return (List<String>) value;
+		}else if(value instanceof String){
+			return StrUtil.split((String)value, ',');
+		}else{
+			throw new RuntimeException("Value is not a List type!");
+		}
+	}
+
+	/**
+	 * 获得所有请求参数<br>
+	 * URI中的参数和请求体中的表单在首次调用时解析
+	 * 
+	 * @return Map
+	 */
+	public Map<String, Object> getParams() {
+		if (null == params) {
+			this.params = new HashMap<String, Object>();
+			// request URI parameters
+			if (getUri().indexOf('?') > -1) {
+				this.putParams(new QueryStringDecoder(getUri()));
+			}
+			if (nettyRequest instanceof FullHttpRequest) {
+				this.putBodyParams((FullHttpRequest) nettyRequest);
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * @return 是否为流式接收请求体，见{@link com.xiaoleilu.loServer.annotation.Body}
+	 */
+	public boolean isStreaming() {
+		return null != body;
+	}
+
+	/**
+	 * 逐段读取流式接收的请求体，每个请求只能调用一次<br>
+	 * 监听在IO线程中被调用，处理完一段后才会读取下一段；Action完成时仍未指定读取方式的请求体将被丢弃
+	 * 
+	 * @param listener 请求体监听
+	 * @return 请求体读取完毕时完成的CompletionStage
+	 * @throws IllegalStateException 非流式接收或已指定过读取方式
+	 */
+	public CompletionStage<Void> onBody(BodyListener listener) {
+		if (null == body) {
+			throw new IllegalStateException("Request body is not streaming, use @Body(streaming = true) on action.");
+		}
+		return body.consume(listener);
+	}
+
+	/**
+	 * 逐段解析流式接收的表单或multipart请求体，解析完毕后参数可通过getParam等方法获得，每个请求只能调用一次<br>
+	 * 非流式接收时请求体在Action执行前已解析，直接返回已完成的CompletionStage
+	 * 
+	 * @return 解析完毕时完成的CompletionStage
+	 * @throws IllegalStateException 已指定过读取方式
+	 */
+	public CompletionStage<Request> decodeBody() {
+		return decodeBody(null);
+	}
+
+	/**
+	 * 逐段解析流式接收的表单或multipart请求体，解析完毕后参数可通过getParam等方法获得，每个请求只能调用一次<br>
+	 * 每个文件解析完毕时回调监听，可在回调中将文件移动到目标路径，超出内存上限的文件只写入一次临时文件<br>
+	 * 非流式接收时请求体在Action执行前已解析，直接返回已完成的CompletionStage
+	 * 
+	 * @param listener 上传文件监听，null表示不监听
+	 * @return 解析完毕时完成的CompletionStage
+	 * @throws IllegalStateException 已指定过读取方式
+	 */
+	public CompletionStage<Request> decodeBody(final UploadListener listener) {
+		if (null == body) {
+			return CompletableFuture.completedFuture(this);
+		}
+
+		final HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(dataFactory(), nettyRequest);
+		decoder.setDiscardThreshold(DECODER_DISCARD_THRESHOLD);
+		this.bodyDecoder = decoder;
+		return body.consume(new BodyListener() {
+			@Override
+			public void onData(ByteBuf content) throws Exception {
+				decoder.offer(new DefaultHttpContent(content));
+				putParams(decoder, listener);
+			}
+		}).thenApply(v -> {
+			decoder.offer(LastHttpContent.EMPTY_LAST_CONTENT);
+			try {
+				putParams(decoder, listener);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+			return this;
+		});
+	}
+
+	/**
+	 * @return 是否为长连接
+	 */
+	public boolean isKeepAlive() {
+		final String connectionHeader = nettyRequest.headers().get(HttpHeaderNames.CONNECTION);
+		// 无论任何版本Connection为close时都关闭连接
+		if (HttpHeaderValues.CLOSE.contentEqualsIgnoreCase(connectionHeader)) {
+			return false;
+		}
+
+		// HTTP/1.0只有Connection为Keep-Alive时才会保持连接
+		if (HttpVersion.HTTP_1_0.equals(nettyRequest.protocolVersion())) {
+			if (false == HttpHeaderValues.KEEP_ALIVE.contentEqualsIgnoreCase(connectionHeader)) {
+				return false;
+			}
+		}
+		// HTTP/1.1默认打开Keep-Alive
+		return true;
+	}
+
+	// --------------------------------------------------------- Protected method start
+	/**
+	 * 释放请求占用的资源，在请求处理完毕后由ActionHandler调用，重复调用无副作用
+	 */
+	protected void release() {
+		if (false == this.isReleased) {
+			this.isReleased = true;
+			ReferenceCountUtil.release(nettyRequest);
+			if (null != body) {
+				// 出错提前响应时丢弃剩余的请求体，保持连接可用
+				body.discard();
+			}
+			final HttpPostRequestDecoder decoder = this.bodyDecoder;
+			if (null != decoder) {
+				if (null != body) {
+					// 流式解析在IO线程中进行，在IO线程中销毁以避免并发
+					body.execute(new Runnable() {
+						@Override
+						public void run() {
+							decoder.destroy();
+						}
+					});
+				} else {
+					decoder.destroy();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 设置匹配的路由
+	 * 
+	 * @param route 路由，未匹配时为null
+	 */
+	protected void setRoute(ActionRoute route) {
+		this.route = route;
+	}
+
+	/**
+	 * @return 请求在连接上的序号，-1表示无需排序
+	 */
+	int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * 设置请求在连接上的序号，响应按照序号顺序写出
+	 * 
+	 * @param sequence 序号
+	 */
+	void setSequence(int sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * @return 收到请求头的时间，System.nanoTime()的值
+	 */
+	long getStartNanos() {
+		return startNanos;
+	}
+
+	/**
+	 * 设置聚合完成的请求，请求体中的参数在首次访问时解析
+	 * 
+	 * @param fullRequest 聚合完成的FullHttpRequest
+	 */
+	protected void setFullRequest(FullHttpRequest fullRequest) {
+		this.nettyRequest = fullRequest;
+	}
+
+	/**
+	 * 填充请求体中的参数（表单和上传文件）
+	 * 
+	 * @param fullRequest 聚合完成的FullHttpRequest
+	 */
+	protected void putBodyParams(FullHttpRequest fullRequest) {
+		if(fullRequest.method() != HttpMethod.GET && fullRequest.content().isReadable() && !"application/octet-stream".equals(fullRequest.headers().get(HttpHeaderNames.CONTENT_TYPE))){
+			//解码器在释放请求时销毁，保证上传文件在请求处理期间可用
+			this.bodyDecoder = new HttpPostRequestDecoder(dataFactory(), fullRequest);
+			this.putParams(bodyDecoder);
+		}
+	}
+
+	/**
+	 * 填充参数（GET请求的参数）
+	 * 
+	 * @param decoder QueryStringDecoder
+	 */
+	protected void putParams(QueryStringDecoder decoder) {
+		if (null != decoder) {
+			List<String> valueList;
+			for (Entry<String, List<String>> entry : decoder.parameters().entrySet()) {
+				valueList = entry.getValue();
+				if(null != valueList){
+					this.putParam(entry.getKey(), 1 == valueList.size() ? valueList.get(0) : valueList);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 填充参数（POST请求的参数）
+	 * 
+	 * @param decoder QueryStringDecoder
+	 */
+	protected void putParams(HttpPostRequestDecoder decoder) {
+		if (null == decoder) {
+			return;
+		}
+		
+		for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+			putParam(data);
+		}
+	}
+
+	/**
+	 * 填充流式解析中已解析完毕的参数
+	 * 
+	 * @param decoder HttpPostRequestDecoder
+	 * @param listener 上传文件监听，null表示不监听
+	 * @throws Exception 监听抛出的异常
+	 */
+	protected void putParams(HttpPostRequestDecoder decoder, UploadListener listener) throws Exception {
+		InterfaceHttpData data;
+		try {
+			while (decoder.hasNext()) {
+				data = decoder.next();
+				if (null != listener && data.getHttpDataType() == HttpDataType.FileUpload) {
+					// 先回调，参数中保存的是移动后的文件
+					listener.onUpload((FileUpload) data);
+				}
+				putParam(data);
+			}
+		} catch (EndOfDataDecoderException e) {
+			// 已解析到请求体结尾
+		}
+	}
+	
+	/**
+	 * 填充参数
+	 * 
+	 * @param data InterfaceHttpData
+	 */
+	protected void putParam(InterfaceHttpData data) {
+		final HttpDataType dataType = data.getHttpDataType();
+		if (dataType == HttpDataType.Attribute) {
+			//普通参数
+			Attribute attribute = (Attribute) data;
+			try {
+				this.putParam(attribute.getName(), attribute.getValue());
+			} catch (IOException e) {
+				log.error(e);
+			}
+		}else if(dataType == HttpDataType.FileUpload){
+			//文件
+			FileUpload fileUpload = (FileUpload) data;
+			if(fileUpload.isCompleted()){
+				if(null == this.fileUploads) {
+					this.fileUploads = new HashMap<String, FileUpload>();
+				}
+				this.fileUploads.put(data.getName(), fileUpload);
+				if(false == fileUpload.isInMemory()) {
+					try {
+						this.putParam(data.getName(), fileUpload.getFile());
+					} catch (IOException e) {
+						log.error(e, "Get file param [{}] error!", data.getName());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 填充参数
+	 * 
+	 * @param key 参数名
+	 * @param value 参数值
+	 */
+	protected void putParam(String key, Object value) {
+		getParams().put(key, value);
+	}
+
+	/**
+	 * 填充路径变量
+	 * 
+	 * @param route 匹配的路由
+	 * @param indexes 路由匹配时记录的路径变量起止下标
+	 */
+	protected void putPathParams(ActionRoute route, int[] indexes) {
+		final String[] names = route.getParamNames();
+		for (int i = 0; i < names.length; i++) {
+			if (null != names[i]) {
+				if (null == this.pathParams) {
+					this.pathParams = new HashMap<String, String>(names.length);
+				}
+				this.pathParams.put(names[i], path.substring(indexes[i << 1], indexes[(i << 1) + 1]));
+			}
+		}
+	}
+
+	/**
+	 * 填充Cookie信息
+	 * 
+	 * @param headers HttpHeaders
+	 */
+	protected void putCookies(HttpHeaders headers) {
+		final Map<String, Cookie> cookieMap = new HashMap<String, Cookie>();
+		final String cookieString = headers.get(HttpHeaderNames.COOKIE);
+		if (StrUtil.isNotBlank(cookieString)) {
+			final Set<Cookie> cookies = ServerCookieDecoder.LAX.decode(cookieString);
+			for (Cookie cookie : cookies) {
+				cookieMap.put(cookie.name(), cookie);
+			}
+		}
+		this.cookies = cookieMap;
+	}
+
+	/**
+	 * 设置客户端IP
+	 * 
+	 * @param ctx ChannelHandlerContext
+	 */
+	protected void putIp(ChannelHandlerContext ctx) {
+		String ip = getHeader("X-Forwarded-For");
+		if (StrUtil.isNotBlank(ip)) {
+			ip = NetUtil.getMultistageReverseProxyIp(ip);
+		} else {
+			ip = getRemoteIp();
+		}
+		this.ip = ip;
+	}
+
+	/**
+	 * 解析URI中的路径，常见的不含转义字符的相对路径直接截取，避免创建URI对象
+	 * 
+	 * @param uri URI
+	 * @return 路径
+	 */
+	private static String parsePath(String uri) {
+		if (uri.startsWith(StrUtil.SLASH) && uri.indexOf('%') < 0) {
+			final int length = uri.length();
+			for (int i = 0; i < length; i++) {
+				final char c = uri.charAt(i);
+				if (c == '?' || c == '#') {
+					return uri.substring(0, i);
+				}
+			}
+			return uri;
+		}
+		return URLUtil.getPath(uri);
+	}
+
+	/**
+	 * Accept-Encoding中的参数是否表示接受，例如"q=0.5"，q=0或无法解析表示不接受
+	 *
+	 * @param params 分号之后的参数部分
+	 * @return 是否接受
+	 */
+	private static boolean isQualityPositive(String params) {
+		String param;
+		for (String part : StrUtil.split(params, ';')) {
+			param = StrUtil.trim(part);
+			if (param.startsWith("q=") || param.startsWith("Q=")) {
+				try {
+					return Double.parseDouble(param.substring(2)) > 0;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return 按照路由设置的内存上限获得HttpDataFactory
+	 */
+	private HttpDataFactory dataFactory() {
+		long threshold = (null == route) ? -1 : route.getUploadThreshold();
+		if (threshold < 0) {
+			threshold = ServerSetting.getUploadThreshold();
+		}
+		HttpDataFactory factory = DATA_FACTORIES.get(threshold);
+		if (null == factory) {
+			factory = new DefaultHttpDataFactory(threshold);
+			final HttpDataFactory old = DATA_FACTORIES.putIfAbsent(threshold, factory);
+			if (null != old) {
+				factory = old;
+			}
+		}
+		return factory;
+	}
+	// --------------------------------------------------------- Protected method end
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("\r\nprotocolVersion: ").append(getProtocolVersion()).append("\r\n");
+		sb.append("uri: ").append(getUri()).append("\r\n");
+		sb.append("path: ").append(path).append("\r\n");
+		sb.append("method: ").append(getMethod()).append("\r\n");
+		sb.append("ip: ").append(getIp()).append("\r\n");
+		sb.append("headers:\r\n ");
+		for (Entry<String, String> entry : nettyRequest.headers()) {
+			sb.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+		}
+		sb.append("params: \r\n");
+		for (Entry<String, Object> entry : getParams().entrySet()) {
+			sb.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * 构建Request对象
+	 * 
+	 * @param ctx ChannelHandlerContext
+	 * @param nettyRequest Netty的HttpRequest
+	 * @return Request
+	 */
+	protected final static Request build(ChannelHandlerContext ctx, HttpRequest nettyRequest) {
+		return new Request(ctx, nettyRequest);
+	}
+
+	/**
+	 * 设置流式接收的请求体
+	 * 
+	 * @param body 流式接收的请求体
+	 */
+	void setBody(StreamingBody body) {
+		this.body = body;
+	}
+
+	/**
+	 * @return 流式接收的请求体，非流式接收时为null
+	 */
+	StreamingBody getBody() {
+		return body;
+	}
+}
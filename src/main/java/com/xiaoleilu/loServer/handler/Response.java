@@ -1,590 +1,1201 @@
-package com.xiaoleilu.loServer.handler;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.HashSet;
-import java.util.Locale;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.TimeZone;
-
-import com.xiaoleilu.loServer.ServerSetting;
-import com.xiaoleilu.loServer.listener.FileProgressiveFutureListener;
-
-import cn.hutool.core.date.DatePattern;
-import cn.hutool.core.date.DateUtil;
-import cn.hutool.core.util.CharsetUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.http.HttpUtil;
-import cn.hutool.log.Log;
-import cn.hutool.log.StaticLog;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.DefaultFileRegion;
-import io.netty.handler.codec.http.DefaultFullHttpResponse;
-import io.netty.handler.codec.http.DefaultHttpHeaders;
-import io.netty.handler.codec.http.DefaultHttpResponse;
-import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpHeaderNames;
-import io.netty.handler.codec.http.HttpHeaderValues;
-import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.handler.codec.http.HttpResponseStatus;
-import io.netty.handler.codec.http.HttpVersion;
-import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.codec.http.cookie.Cookie;
-import io.netty.handler.codec.http.cookie.DefaultCookie;
-import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
-
-/**
- * 响应对象
- * 
- * @author Looly
- *
- */
-public class Response {
-	private static final Log log = StaticLog.get();
-
-	/** 返回内容类型：普通文本 */
-	public final static String CONTENT_TYPE_TEXT = "text/plain";
-	/** 返回内容类型：HTML */
-	public final static String CONTENT_TYPE_HTML = "text/html";
-	/** 返回内容类型：XML */
-	public final static String CONTENT_TYPE_XML = "text/xml";
-	/** 返回内容类型：JAVASCRIPT */
-	public final static String CONTENT_TYPE_JAVASCRIPT = "application/javascript";
-	/** 返回内容类型：JSON */
-	public final static String CONTENT_TYPE_JSON = "application/json";
-	public final static String CONTENT_TYPE_JSON_IE = "text/json";
-
-	private ChannelHandlerContext ctx;
-	private Request request;
-
-	private HttpVersion httpVersion = HttpVersion.HTTP_1_1;
-	private HttpResponseStatus status = HttpResponseStatus.OK;
-	private String contentType = CONTENT_TYPE_HTML;
-	private String charset = ServerSetting.getCharset();
-	private HttpHeaders headers = new DefaultHttpHeaders();
-	private Set<Cookie> cookies = new HashSet<Cookie>();
-	private Object content = Unpooled.EMPTY_BUFFER;
-	// 发送完成标记
-	private boolean isSent;
-
-	public Response(ChannelHandlerContext ctx, Request request) {
-		this.ctx = ctx;
-		this.request = request;
-	}
-
-	/**
-	 * 设置响应的Http版本号
-	 * 
-	 * @param httpVersion http版本号对象
-	 * @return 自己
-	 */
-	public Response setHttpVersion(HttpVersion httpVersion) {
-		this.httpVersion = httpVersion;
-		return this;
-	}
-
-	/**
-	 * 响应状态码<br>
-	 * 使用io.netty.handler.codec.http.HttpResponseStatus对象
-	 * 
-	 * @param status 状态码
-	 * @return 自己
-	 */
-	public Response setStatus(HttpResponseStatus status) {
-		this.status = status;
-		return this;
-	}
-
-	/**
-	 * 响应状态码
-	 * 
-	 * @param status 状态码
-	 * @return 自己
-	 */
-	public Response setStatus(int status) {
-		return setStatus(HttpResponseStatus.valueOf(status));
-	}
-
-	/**
-	 * 设置Content-Type
-	 * 
-	 * @param contentType Content-Type
-	 * @return 自己
-	 */
-	public Response setContentType(String contentType) {
-		this.contentType = contentType;
-		return this;
-	}
-
-	/**
-	 * 设置返回内容的字符集编码
-	 * 
-	 * @param charset 编码
-	 * @return 自己
-	 */
-	public Response setCharset(String charset) {
-		this.charset = charset;
-		return this;
-	}
-
-	/**
-	 * 增加响应的Header<br>
-	 * 重复的Header将被叠加
-	 * 
-	 * @param name 名
-	 * @param value 值，可以是String，Date， int
-	 * @return 自己
-	 */
-	public Response addHeader(String name, Object value) {
-		headers.add(name, value);
-		return this;
-	}
-
-	/**
-	 * 设置响应的Header<br>
-	 * 重复的Header将被替换
-	 * 
-	 * @param name 名
-	 * @param value 值，可以是String，Date， int
-	 * @return 自己
-	 */
-	public Response setHeader(String name, Object value) {
-		headers.set(name, value);
-		return this;
-	}
-
-	/**
-	 * 设置响应体长度
-	 * 
-	 * @param contentLength 响应体长度
-	 * @return 自己
-	 */
-	public Response setContentLength(long contentLength) {
-		setHeader(HttpHeaderNames.CONTENT_LENGTH.toString(), contentLength);
-		return this;
-	}
-
-	/**
-	 * 设置是否长连接
-	 * 
-	 * @return 自己
-	 */
-	public Response setKeepAlive() {
-		setHeader(HttpHeaderNames.CONNECTION.toString(), HttpHeaderValues.KEEP_ALIVE.toString());
-		return this;
-	}
-
-	// --------------------------------------------------------- Cookie start
-	/**
-	 * 设定返回给客户端的Cookie
-	 * 
-	 * @param cookie
-	 * @return 自己
-	 */
-	public Response addCookie(Cookie cookie) {
-		cookies.add(cookie);
-		return this;
-	}
-
-	/**
-	 * 设定返回给客户端的Cookie
-	 * 
-	 * @param name Cookie名
-	 * @param value Cookie值
-	 * @return 自己
-	 */
-	public Response addCookie(String name, String value) {
-		return addCookie(new DefaultCookie(name, value));
-	}
-
-	/**
-	 * 设定返回给客户端的Cookie
-	 * 
-	 * @param name cookie名
-	 * @param value cookie值
-	 * @param maxAgeInSeconds -1: 关闭浏览器清除Cookie. 0: 立即清除Cookie. n>0 : Cookie存在的秒数.
-	 * @param path Cookie的有效路径
-	 * @param domain the Cookie可见的域，依据 RFC 2109 标准
-	 * @return 自己
-	 */
-	public Response addCookie(String name, String value, int maxAgeInSeconds, String path, String domain) {
-		Cookie cookie = new DefaultCookie(name, value);
-		if (domain != null) {
-			cookie.setDomain(domain);
-		}
-		cookie.setMaxAge(maxAgeInSeconds);
-		cookie.setPath(path);
-		return addCookie(cookie);
-	}
-
-	/**
-	 * 设定返回给客户端的Cookie<br>
-	 * Path: "/"<br>
-	 * No Domain
-	 * 
-	 * @param name cookie名
-	 * @param value cookie值
-	 * @param maxAgeInSeconds -1: 关闭浏览器清除Cookie. 0: 立即清除Cookie. n>0 : Cookie存在的秒数.
-	 * @return 自己
-	 */
-	public Response addCookie(String name, String value, int maxAgeInSeconds) {
-		return addCookie(name, value, maxAgeInSeconds, "/", null);
-	}
-	// --------------------------------------------------------- Cookie end
-
-	/**
-	 * 设置响应HTML文本内容
-	 * 
-	 * @param contentText 响应的文本
-	 * @return 自己
-	 */
-	public Response setContent(String contentText) {
-		this.content = Unpooled.copiedBuffer(contentText, Charset.forName(charset));
-		return this;
-	}
-
-	/**
-	 * 设置响应文本内容
-	 * 
-	 * @param contentText 响应的文本
-	 * @return 自己
-	 */
-	public Response setTextContent(String contentText) {
-		setContentType(CONTENT_TYPE_TEXT);
-		return setContent(contentText);
-	}
-
-	/**
-	 * 设置响应JSON文本内容
-	 * 
-	 * @param contentText 响应的JSON文本
-	 * @return 自己
-	 */
-	public Response setJsonContent(String contentText) {
-		setContentType(request.isIE() ? CONTENT_TYPE_JSON : CONTENT_TYPE_JSON);
-		return setContent(contentText);
-	}
-
-	/**
-	 * 设置响应XML文本内容
-	 * 
-	 * @param contentText 响应的XML文本
-	 * @return 自己
-	 */
-	public Response setXmlContent(String contentText) {
-		setContentType(CONTENT_TYPE_XML);
-		return setContent(contentText);
-	}
-
-	/**
-	 * 设置响应文本内容
-	 * 
-	 * @param contentBytes 响应的字节
-	 * @return 自己
-	 */
-	public Response setContent(byte[] contentBytes) {
-		return setContent(Unpooled.copiedBuffer(contentBytes));
-	}
-
-	/**
-	 * 设置响应文本内容
-	 * 
-	 * @param byteBuf 响应的字节
-	 * @return 自己
-	 */
-	public Response setContent(ByteBuf byteBuf) {
-		this.content = byteBuf;
-		return this;
-	}
-
-	/**
-	 * 设置响应到客户端的文件
-	 * 
-	 * @param file 文件
-	 * @return 自己
-	 */
-	public Response setContent(File file) {
-		this.content = file;
-		return this;
-	}
-
-	/**
-	 * Sets the Date and Cache headers for the HTTP Response
-	 *
-	 * @param response HTTP response
-	 * @param fileToCache file to extract content type
-	 */
-	/**
-	 * 设置日期和过期时间
-	 * 
-	 * @param lastModify 上一次修改时间
-	 * @param httpCacheSeconds 缓存时间，单位秒
-	 */
-	public void setDateAndCache(long lastModify, int httpCacheSeconds) {
-		SimpleDateFormat formatter = new SimpleDateFormat(DatePattern.HTTP_DATETIME_PATTERN, Locale.US);
-		formatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-
-		// Date header
-		Calendar time = new GregorianCalendar();
-		setHeader(HttpHeaderNames.DATE.toString(), formatter.format(time.getTime()));
-
-		// Add cache headers
-		time.add(Calendar.SECOND, httpCacheSeconds);
-
-		setHeader(HttpHeaderNames.EXPIRES.toString(), formatter.format(time.getTime()));
-		setHeader(HttpHeaderNames.CACHE_CONTROL.toString(), "private, max-age=" + httpCacheSeconds);
-		setHeader(HttpHeaderNames.LAST_MODIFIED.toString(), formatter.format(DateUtil.date(lastModify)));
-	}
-
-	// -------------------------------------------------------------------------------------- build HttpResponse start
-	/**
-	 * 转换为Netty所用Response<br>
-	 * 不包括content，一般用于返回文件类型的响应
-	 * 
-	 * @return DefaultHttpResponse
-	 */
-	private DefaultHttpResponse toDefaultHttpResponse() {
-		final DefaultHttpResponse defaultHttpResponse = new DefaultHttpResponse(httpVersion, status);
-
-		fillHeadersAndCookies(defaultHttpResponse.headers());
-
-		return defaultHttpResponse;
-	}
-
-	/**
-	 * 转换为Netty所用Response<br>
-	 * 用于返回一般类型响应（文本）
-	 * 
-	 * @return FullHttpResponse
-	 */
-	private FullHttpResponse toFullHttpResponse() {
-		final ByteBuf byteBuf = (ByteBuf) content;
-		final FullHttpResponse fullHttpResponse = new DefaultFullHttpResponse(httpVersion, status, byteBuf);
-
-		// headers
-		final HttpHeaders httpHeaders = fullHttpResponse.headers();
-		fillHeadersAndCookies(httpHeaders);
-		httpHeaders.set(HttpHeaderNames.CONTENT_LENGTH.toString(), byteBuf.readableBytes());
-
-		return fullHttpResponse;
-	}
-
-	/**
-	 * 填充头信息和Cookie信息
-	 * 
-	 * @param httpHeaders Http头
-	 */
-	private void fillHeadersAndCookies(HttpHeaders httpHeaders) {
-		httpHeaders.set(HttpHeaderNames.CONTENT_TYPE.toString(), StrUtil.format("{};charset={}", contentType, charset));
-		httpHeaders.set(HttpHeaderNames.CONTENT_ENCODING.toString(), charset);
-
-		// Cookies
-		for (Cookie cookie : cookies) {
-			httpHeaders.add(HttpHeaderNames.SET_COOKIE.toString(), ServerCookieEncoder.LAX.encode(cookie));
-		}
-	}
-	// -------------------------------------------------------------------------------------- build HttpResponse end
-
-	// -------------------------------------------------------------------------------------- send start
-	/**
-	 * 发送响应到客户端<br>
-	 * 
-	 * @return ChannelFuture
-	 * @throws IOException
-	 */
-	public ChannelFuture send() {
-		ChannelFuture channelFuture;
-		if (content instanceof File) {
-			// 文件
-			File file = (File) content;
-			try {
-				channelFuture = sendFile(file);
-			} catch (IOException e) {
-				log.error(StrUtil.format("Send {} error!", file), e);
-				channelFuture = sendError(HttpResponseStatus.FORBIDDEN, "");
-			}
-		} else {
-			// 普通文本
-			channelFuture = sendFull();
-		}
-
-		this.isSent = true;
-		return channelFuture;
-	}
-
-	/**
-	 * @return 是否已经出发发送请求，内部使用<br>
-	 */
-	protected boolean isSent() {
-		return this.isSent;
-	}
-
-	/**
-	 * 发送响应到客户端
-	 * 
-	 * @return ChannelFuture
-	 */
-	private ChannelFuture sendFull() {
-		if (request != null && request.isKeepAlive()) {
-			setKeepAlive();
-			return ctx.writeAndFlush(this.toFullHttpResponse());
-		} else {
-			return sendAndCloseFull();
-		}
-	}
-
-	/**
-	 * 发送给到客户端并关闭ChannelHandlerContext
-	 * 
-	 * @return ChannelFuture
-	 */
-	private ChannelFuture sendAndCloseFull() {
-		return ctx.writeAndFlush(this.toFullHttpResponse()).addListener(ChannelFutureListener.CLOSE);
-	}
-
-	/**
-	 * 发送文件
-	 * 
-	 * @param file 文件
-	 * @return ChannelFuture
-	 * @throws IOException
-	 */
-	private ChannelFuture sendFile(File file) throws IOException {
-		final RandomAccessFile raf = new RandomAccessFile(file, "r");
-
-		// 内容长度
-		long fileLength = raf.length();
-		this.setContentLength(fileLength);
-
-		// 文件类型
-		String contentType = HttpUtil.getMimeType(file.getName());
-		if (StrUtil.isBlank(contentType)) {
-			// 无法识别默认使用数据流
-			contentType = "application/octet-stream";
-		}
-		this.setContentType(contentType);
-
-		ctx.write(this.toDefaultHttpResponse());
-		ctx.write(new DefaultFileRegion(raf.getChannel(), 0, fileLength), ctx.newProgressivePromise()).addListener(FileProgressiveFutureListener.build(raf));
-
-		return sendEmptyLast();
-	}
-
-	/**
-	 * 发送结尾标记，表示发送结束
-	 * 
-	 * @return ChannelFuture
-	 */
-	private ChannelFuture sendEmptyLast() {
-		final ChannelFuture lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-		if (false == request.isKeepAlive()) {
-			lastContentFuture.addListener(ChannelFutureListener.CLOSE);
-		}
-
-		return lastContentFuture;
-	}
-	// -------------------------------------------------------------------------------------- send end
-
-	// ---------------------------------------------------------------------------- special response start
-
-	/**
-	 * 302 重定向
-	 * 
-	 * @param uri 重定向到的URI
-	 * @return ChannelFuture
-	 */
-	public ChannelFuture sendRedirect(String uri) {
-		return this.setStatus(HttpResponseStatus.FOUND).setHeader(HttpHeaderNames.LOCATION.toString(), uri).send();
-	}
-
-	/**
-	 * 304 文件未修改
-	 * 
-	 * @return ChannelFuture
-	 */
-	public ChannelFuture sendNotModified() {
-		return this.setStatus(HttpResponseStatus.NOT_MODIFIED).setHeader(HttpHeaderNames.DATE.toString(), DateUtil.formatHttpDate(DateUtil.date())).send();
-	}
-
-	/**
-	 * 发送错误消息
-	 * 
-	 * @param status 错误状态码
-	 * @param msg 消息内容
-	 * @return ChannelFuture
-	 */
-	public ChannelFuture sendError(HttpResponseStatus status, String msg) {
-		if (ctx.channel().isActive()) {
-			return this.setStatus(status).setContent(msg).send();
-		}
-		return null;
-	}
-
-	/**
-	 * 发送404 Not Found
-	 * 
-	 * @param msg 消息内容
-	 * @return ChannelFuture
-	 */
-	public ChannelFuture sendNotFound(String msg) {
-		return sendError(HttpResponseStatus.NOT_FOUND, msg);
-	}
-
-	/**
-	 * 发送500 Internal Server Error
-	 * 
-	 * @param msg 消息内容
-	 * @return ChannelFuture
-	 */
-	public ChannelFuture sendServerError(String msg) {
-		return sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, msg);
-	}
-
-	// ---------------------------------------------------------------------------- special response end
-
-	@Override
-	public String toString() {
-		final StringBuilder sb = new StringBuilder();
-		sb.append("headers:\r\n ");
-		for (Entry<String, String> entry : headers.entries()) {
-			sb.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
-		}
-		sb.append("content: ").append(StrUtil.str(content, CharsetUtil.UTF_8));
-
-		return sb.toString();
-	}
-
-	// ---------------------------------------------------------------------------- static method start
-	/**
-	 * 构建Response对象
-	 * 
-	 * @param ctx ChannelHandlerContext
-	 * @param request 请求对象
-	 * @return Response对象
-	 */
-	protected static Response build(ChannelHandlerContext ctx, Request request) {
-		return new Response(ctx, request);
-	}
-
-	/**
-	 * 构建Response对象，Request对象为空，将无法获得某些信息<br>
-	 * 1. 无法使用长连接
-	 * 
-	 * @param ctx ChannelHandlerContext
-	 * @return Response对象
-	 */
-	protected static Response build(ChannelHandlerContext ctx) {
-		return new Response(ctx, null);
-	}
-	// ---------------------------------------------------------------------------- static method end
-}
+package com.xiaoleilu.loServer.handler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TimeZone;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.listener.FileProgressiveFutureListener;
+import com.xiaoleilu.loServer.resource.StaticResource;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.handler.codec.http.cookie.DefaultCookie;
+import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.PromiseNotifier;
+
+/**
+ * 响应对象
+ * 
+ * @author Looly
+ *
+ */
+public class Response {
+	private static final Log log = StaticLog.get();
+
+	/** 无法零拷贝时分段读取文件的大小，与TLS记录的最大长度一致 */
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	/** 返回内容类型：普通文本 */
+	public final static String CONTENT_TYPE_TEXT = "text/plain";
+	/** 返回内容类型：HTML */
+	public final static String CONTENT_TYPE_HTML = "text/html";
+	/** 返回内容类型：XML */
+	public final static String CONTENT_TYPE_XML = "text/xml";
+	/** 返回内容类型：JAVASCRIPT */
+	public final static String CONTENT_TYPE_JAVASCRIPT = "application/javascript";
+	/** 返回内容类型：JSON */
+	public final static String CONTENT_TYPE_JSON = "application/json";
+	public final static String CONTENT_TYPE_JSON_IE = "text/json";
+	/** 返回内容类型：Server-Sent Events事件流 */
+	public final static String CONTENT_TYPE_EVENT_STREAM = "text/event-stream";
+
+	private ChannelHandlerContext ctx;
+	private Request request;
+
+	private HttpVersion httpVersion = HttpVersion.HTTP_1_1;
+	private HttpResponseStatus status = HttpResponseStatus.OK;
+	private String contentType = CONTENT_TYPE_HTML;
+	private Charset charset = ServerSetting.charset();
+	private HttpHeaders headers = new DefaultHttpHeaders();
+	private Set<Cookie> cookies = new HashSet<Cookie>();
+	private Object content = Unpooled.EMPTY_BUFFER;
+	/** 分块发送的响应体，未使用时为null */
+	private ChunkedOutputStream chunkedOutput;
+	// 发送完成标记，异步Action可能在其它线程中读取；已发送或已丢弃后设置的状态和内容被忽略
+	private volatile boolean isSent;
+
+	public Response(ChannelHandlerContext ctx, Request request) {
+		this.ctx = ctx;
+		this.request = request;
+	}
+
+	/**
+	 * 设置响应的Http版本号
+	 * 
+	 * @param httpVersion http版本号对象
+	 * @return 自己
+	 */
+	public Response setHttpVersion(HttpVersion httpVersion) {
+		this.httpVersion = httpVersion;
+		return this;
+	}
+
+	/**
+	 * 响应状态码<br>
+	 * 使用io.netty.handler.codec.http.HttpResponseStatus对象
+	 * 
+	 * @param status 状态码
+	 * @return 自己
+	 */
+	public Response setStatus(HttpResponseStatus status) {
+		if (false == isSent) {
+			this.status = status;
+		}
+		return this;
+	}
+
+	/**
+	 * 响应状态码
+	 * 
+	 * @param status 状态码
+	 * @return 自己
+	 */
+	public Response setStatus(int status) {
+		return setStatus(HttpResponseStatus.valueOf(status));
+	}
+
+	/**
+	 * @return 响应状态码
+	 */
+	public HttpResponseStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * 设置Content-Type
+	 * 
+	 * @param contentType Content-Type
+	 * @return 自己
+	 */
+	public Response setContentType(String contentType) {
+		this.contentType = contentType;
+		return this;
+	}
+
+	/**
+	 * 设置返回内容的字符集编码
+	 * 
+	 * @param charset 编码
+	 * @return 自己
+	 */
+	public Response setCharset(String charset) {
+		return setCharset(CharsetUtil.charset(charset));
+	}
+
+	/**
+	 * 设置返回内容的字符集编码
+	 * 
+	 * @param charset 编码
+	 * @return 自己
+	 */
+	public Response setCharset(Charset charset) {
+		this.charset = charset;
+		return this;
+	}
+
+	/**
+	 * 增加响应的Header<br>
+	 * 重复的Header将被叠加
+	 * 
+	 * @param name 名
+	 * @param value 值，可以是String，Date， int
+	 * @return 自己
+	 */
+	public Response addHeader(String name, Object value) {
+		headers.add(name, value);
+		return this;
+	}
+
+	/**
+	 * 设置响应的Header<br>
+	 * 重复的Header将被替换
+	 * 
+	 * @param name 名
+	 * @param value 值，可以是String，Date， int
+	 * @return 自己
+	 */
+	public Response setHeader(String name, Object value) {
+		headers.set(name, value);
+		return this;
+	}
+
+	/**
+	 * 设置ETag头
+	 * 
+	 * @param etag ETag，例如"v1"，弱ETag以W/开头
+	 * @return 自己
+	 */
+	public Response setETag(String etag) {
+		setHeader(HttpHeaderNames.ETAG.toString(), etag);
+		return this;
+	}
+
+	/**
+	 * 设置响应体长度
+	 * 
+	 * @param contentLength 响应体长度
+	 * @return 自己
+	 */
+	public Response setContentLength(long contentLength) {
+		setHeader(HttpHeaderNames.CONTENT_LENGTH.toString(), contentLength);
+		return this;
+	}
+
+	/**
+	 * 设置是否长连接
+	 * 
+	 * @return 自己
+	 */
+	public Response setKeepAlive() {
+		setHeader(HttpHeaderNames.CONNECTION.toString(), HttpHeaderValues.KEEP_ALIVE.toString());
+		return this;
+	}
+
+	// --------------------------------------------------------- Cookie start
+	/**
+	 * 设定返回给客户端的Cookie
+	 * 
+	 * @param cookie
+	 * @return 自己
+	 */
+	public Response addCookie(Cookie cookie) {
+		cookies.add(cookie);
+		return this;
+	}
+
+	/**
+	 * 设定返回给客户端的Cookie
+	 * 
+	 * @param name Cookie名
+	 * @param value Cookie值
+	 * @return 自己
+	 */
+	public Response addCookie(String name, String value) {
+		return addCookie(new DefaultCookie(name, value));
+	}
+
+	/**
+	 * 设定返回给客户端的Cookie
+	 * 
+	 * @param name cookie名
+	 * @param value cookie值
+	 * @param maxAgeInSeconds -1: 关闭浏览器清除Cookie. 0: 立即清除Cookie. n>0 : Cookie存在的秒数.
+	 * @param path Cookie的有效路径
+	 * @param domain the Cookie可见的域，依据 RFC 2109 标准
+	 * @return 自己
+	 */
+	public Response addCookie(String name, String value, int maxAgeInSeconds, String path, String domain) {
+		Cookie cookie = new DefaultCookie(name, value);
+		if (domain != null) {
+			cookie.setDomain(domain);
+		}
+		cookie.setMaxAge(maxAgeInSeconds);
+		cookie.setPath(path);
+		return addCookie(cookie);
+	}
+
+	/**
+	 * 设定返回给客户端的Cookie<br>
+	 * Path: "/"<br>
+	 * No Domain
+	 * 
+	 * @param name cookie名
+	 * @param value cookie值
+	 * @param maxAgeInSeconds -1: 关闭浏览器清除Cookie. 0: 立即清除Cookie. n>0 : Cookie存在的秒数.
+	 * @return 自己
+	 */
+	public Response addCookie(String name, String value, int maxAgeInSeconds) {
+		return addCookie(name, value, maxAgeInSeconds, "/", null);
+	}
+	// --------------------------------------------------------- Cookie end
+
+	/**
+	 * 设置响应HTML文本内容
+	 * 
+	 * @param contentText 响应的文本
+	 * @return 自己
+	 */
+	public Response setContent(String contentText) {
+		return setContent(encode(contentText));
+	}
+
+	/**
+	 * 设置响应文本内容
+	 * 
+	 * @param contentText 响应的文本
+	 * @return 自己
+	 */
+	public Response setTextContent(String contentText) {
+		setContentType(CONTENT_TYPE_TEXT);
+		return setContent(contentText);
+	}
+
+	/**
+	 * 设置响应JSON文本内容
+	 * 
+	 * @param contentText 响应的JSON文本
+	 * @return 自己
+	 */
+	public Response setJsonContent(String contentText) {
+		setContentType(request.isIE() ? CONTENT_TYPE_JSON : CONTENT_TYPE_JSON);
+		return setContent(contentText);
+	}
+
+	/**
+	 * 设置响应XML文本内容
+	 * 
+	 * @param contentText 响应的XML文本
+	 * @return 自己
+	 */
+	public Response setXmlContent(String contentText) {
+		setContentType(CONTENT_TYPE_XML);
+		return setContent(contentText);
+	}
+
+	/**
+	 * 设置响应文本内容<br>
+	 * 字节数组直接被包装而不拷贝，发送前请勿修改此数组
+	 * 
+	 * @param contentBytes 响应的字节
+	 * @return 自己
+	 */
+	public Response setContent(byte[] contentBytes) {
+		return setContent(Unpooled.wrappedBuffer(contentBytes));
+	}
+
+	/**
+	 * 设置响应文本内容<br>
+	 * ByteBuf的引用由Response接管，发送后自动释放
+	 * 
+	 * @param byteBuf 响应的字节
+	 * @return 自己
+	 */
+	public Response setContent(ByteBuf byteBuf) {
+		replaceContent(byteBuf);
+		return this;
+	}
+
+	/**
+	 * 设置响应到客户端的文件
+	 * 
+	 * @param file 文件
+	 * @return 自己
+	 */
+	public Response setContent(File file) {
+		replaceContent(file);
+		return this;
+	}
+
+	/**
+	 * 设置响应到客户端的静态资源，使用资源中缓存的元数据，发送时不再访问文件系统
+	 * 
+	 * @param resource 静态资源
+	 * @return 自己
+	 */
+	public Response setContent(StaticResource resource) {
+		replaceContent(resource);
+		return this;
+	}
+
+	/**
+	 * Sets the Date and Cache headers for the HTTP Response
+	 *
+	 * @param response HTTP response
+	 * @param fileToCache file to extract content type
+	 */
+	/**
+	 * 设置日期和过期时间
+	 * 
+	 * @param lastModify 上一次修改时间
+	 * @param httpCacheSeconds 缓存时间，单位秒
+	 */
+	public void setDateAndCache(long lastModify, int httpCacheSeconds) {
+		SimpleDateFormat formatter = new SimpleDateFormat(DatePattern.HTTP_DATETIME_PATTERN, Locale.US);
+		formatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+		// Date header
+		Calendar time = new GregorianCalendar();
+		setHeader(HttpHeaderNames.DATE.toString(), formatter.format(time.getTime()));
+
+		// Add cache headers
+		time.add(Calendar.SECOND, httpCacheSeconds);
+
+		setHeader(HttpHeaderNames.EXPIRES.toString(), formatter.format(time.getTime()));
+		setHeader(HttpHeaderNames.CACHE_CONTROL.toString(), "private, max-age=" + httpCacheSeconds);
+		setHeader(HttpHeaderNames.LAST_MODIFIED.toString(), formatter.format(DateUtil.date(lastModify)));
+	}
+
+	/**
+	 * 设置分块发送的响应体，发送时由IO线程在连接可写时逐块读取，内存占用与响应体大小无关<br>
+	 * 适用于可以按需生成内容的大响应（例如分页查询的导出），Input由Response接管，发送完毕后关闭
+	 * 
+	 * @param input 响应体，每次读取一个分块
+	 * @return 自己
+	 */
+	public Response setContent(ChunkedInput<ByteBuf> input) {
+		replaceContent(input);
+		return this;
+	}
+
+	// -------------------------------------------------------------------------------------- content start
+	/**
+	 * 将文本编码为ByteBuf<br>
+	 * 直接从Channel的分配器（默认为池化直接内存）中申请刚好大小的Buffer并写入，避免中间的byte[]拷贝
+	 * 
+	 * @param contentText 文本
+	 * @return ByteBuf
+	 */
+	private ByteBuf encode(String contentText) {
+		if (StrUtil.isEmpty(contentText)) {
+			return Unpooled.EMPTY_BUFFER;
+		}
+
+		final ByteBufAllocator alloc = ctx.alloc();
+		if (CharsetUtil.CHARSET_UTF_8.equals(charset)) {
+			final ByteBuf byteBuf = alloc.buffer(ByteBufUtil.utf8Bytes(contentText));
+			ByteBufUtil.writeUtf8(byteBuf, contentText);
+			return byteBuf;
+		}
+		return ByteBufUtil.encodeString(alloc, CharBuffer.wrap(contentText), charset);
+	}
+
+	/**
+	 * 替换内容并释放之前设置的内容，已发送或已丢弃时释放传入的内容<br>
+	 * 异步Action超时后仍可能在其它线程中设置内容，此时不能释放已交给IO线程发送的内容
+	 * 
+	 * @param content 新的内容
+	 */
+	private synchronized void replaceContent(Object content) {
+		if (isSent) {
+			closeFileContent(content);
+			return;
+		}
+		releaseContent();
+		this.content = content;
+	}
+
+	/**
+	 * 释放之前设置的ByteBuf内容，用于内容被覆盖时
+	 */
+	private void releaseContent() {
+		if (content instanceof ByteBuf) {
+			final ByteBuf byteBuf = (ByteBuf) content;
+			if (byteBuf.refCnt() > 0) {
+				byteBuf.release();
+			}
+		} else if (content instanceof ChunkedInput) {
+			closeFileContent(content);
+		}
+		this.content = Unpooled.EMPTY_BUFFER;
+	}
+	// -------------------------------------------------------------------------------------- content end
+
+	// -------------------------------------------------------------------------------------- build HttpResponse start
+	/**
+	 * 转换为Netty所用Response<br>
+	 * 不包括content，一般用于返回文件类型的响应
+	 * 
+	 * @return DefaultHttpResponse
+	 */
+	private DefaultHttpResponse toDefaultHttpResponse() {
+		final DefaultHttpResponse defaultHttpResponse = new DefaultHttpResponse(httpVersion, status);
+
+		fillHeadersAndCookies(defaultHttpResponse.headers());
+
+		return defaultHttpResponse;
+	}
+
+	/**
+	 * 转换为Netty所用Response<br>
+	 * 用于返回一般类型响应（文本）
+	 * 
+	 * @return FullHttpResponse
+	 */
+	private FullHttpResponse toFullHttpResponse() {
+		final ByteBuf byteBuf = (ByteBuf) content;
+		final FullHttpResponse fullHttpResponse = new DefaultFullHttpResponse(httpVersion, status, byteBuf);
+
+		// headers
+		final HttpHeaders httpHeaders = fullHttpResponse.headers();
+		fillHeadersAndCookies(httpHeaders);
+		httpHeaders.setInt(HttpHeaderNames.CONTENT_LENGTH, byteBuf.readableBytes());
+
+		return fullHttpResponse;
+	}
+
+	/**
+	 * 填充头信息和Cookie信息
+	 * 
+	 * @param httpHeaders Http头
+	 */
+	private void fillHeadersAndCookies(HttpHeaders httpHeaders) {
+		httpHeaders.set(this.headers);
+		if (false == httpHeaders.contains(HttpHeaderNames.CONTENT_TYPE)) {
+			httpHeaders.set(HttpHeaderNames.CONTENT_TYPE, contentType + ";charset=" + charset.name());
+		}
+		if (null != request && false == request.isKeepAlive()) {
+			// 响应后关闭连接（例如达到连接的请求数上限），告知客户端不再复用
+			httpHeaders.set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+		}
+
+		// Cookies
+		for (Cookie cookie : cookies) {
+			httpHeaders.add(HttpHeaderNames.SET_COOKIE.toString(), ServerCookieEncoder.LAX.encode(cookie));
+		}
+	}
+	// -------------------------------------------------------------------------------------- build HttpResponse end
+
+	// -------------------------------------------------------------------------------------- send start
+	/**
+	 * 发送响应到客户端<br>
+	 * 在业务线程中调用时，发送过程被提交到此连接的IO线程中执行，保证写出顺序和线程安全
+	 * 
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture send() {
+		this.isSent = true;
+		final EventExecutor executor = ctx.executor();
+		if (executor.inEventLoop()) {
+			return doSend();
+		}
+
+		final ChannelPromise promise = ctx.newPromise();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				doSend().addListener(new PromiseNotifier<Void, ChannelFuture>(promise));
+			}
+		});
+		return promise;
+	}
+
+	/**
+	 * 发送101响应切换协议，用于WebSocket握手<br>
+	 * 与其它响应一样按照管线化的顺序写出，只包含头信息和Cookie，已设置的内容被丢弃
+	 *
+	 * @return ChannelFuture，完成后连接上不再有HTTP响应
+	 */
+	ChannelFuture sendSwitchingProtocols() {
+		this.isSent = true;
+		this.status = HttpResponseStatus.SWITCHING_PROTOCOLS;
+		ReferenceCountUtil.release(content);
+		this.content = Unpooled.EMPTY_BUFFER;
+
+		final FullHttpResponse response = new DefaultFullHttpResponse(httpVersion, status, Unpooled.EMPTY_BUFFER);
+		response.headers().set(this.headers);
+		for (Cookie cookie : cookies) {
+			response.headers().add(HttpHeaderNames.SET_COOKIE.toString(), ServerCookieEncoder.LAX.encode(cookie));
+		}
+		final EventExecutor executor = ctx.executor();
+		if (executor.inEventLoop()) {
+			return ctx.writeAndFlush(sequenced(response));
+		}
+
+		final ChannelPromise promise = ctx.newPromise();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ctx.writeAndFlush(sequenced(response), promise);
+			}
+		});
+		return promise;
+	}
+
+	/**
+	 * 发送响应头并开启Server-Sent Events事件流，之后通过返回的{@link EventStream}发送事件<br>
+	 * 已设置的内容被丢弃，Content-Type为text/event-stream，事件流不压缩
+	 *
+	 * @return 事件流
+	 */
+	public EventStream sendEventStream() {
+		this.isSent = true;
+		releaseContent();
+		setContentType(CONTENT_TYPE_EVENT_STREAM);
+		setCharset(CharsetUtil.CHARSET_UTF_8);
+		setHeader(HttpHeaderNames.CACHE_CONTROL.toString(), HttpHeaderValues.NO_CACHE.toString());
+		// 禁止Nginx等反向代理缓冲事件
+		setHeader("X-Accel-Buffering", "no");
+
+		final DefaultHttpResponse head = this.toDefaultHttpResponse();
+		return new EventStream(ctx, request, setChunked(head), head);
+	}
+
+	/**
+	 * 发送响应头并开启分块发送的响应体，之后通过返回的流写入内容，用于边生成边发送的大响应<br>
+	 * 已设置的内容被丢弃，Action返回（异步Action完成）后流自动关闭，Action抛出异常时中止响应并关闭连接
+	 *
+	 * @return 响应体输出流，多次调用返回同一个流
+	 */
+	public ChunkedOutputStream sendChunked() {
+		if (null != chunkedOutput) {
+			return chunkedOutput;
+		}
+		this.isSent = true;
+		releaseContent();
+		final DefaultHttpResponse head = this.toDefaultHttpResponse();
+		this.chunkedOutput = new ChunkedOutputStream(ctx, request, setChunked(head), head, CHUNK_SIZE);
+		return chunkedOutput;
+	}
+
+	/**
+	 * 结束分块发送的响应体，未使用或已关闭时忽略，由ActionHandler在Action完成后调用
+	 */
+	void closeChunked() {
+		if (null != chunkedOutput) {
+			try {
+				chunkedOutput.close();
+			} catch (IOException e) {
+				log.warn("Close chunked response of [{}] error: {}", (null == request) ? null : request.getPath(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 中止未关闭的分块响应体，用于Action在开始发送后出错，此时无法再发送错误页面
+	 *
+	 * @return 是否中止，未使用或已关闭时返回false
+	 */
+	boolean abortChunked() {
+		if (null == chunkedOutput || chunkedOutput.isClosed()) {
+			return false;
+		}
+		chunkedOutput.abort();
+		return true;
+	}
+
+	/**
+	 * 丢弃响应并释放已设置的内容，之后设置的状态和内容被忽略，用于异步Action超时或连接关闭后Action仍在写入
+	 *
+	 * @return 是否丢弃，已开始发送时返回false
+	 */
+	synchronized boolean discard() {
+		if (isSent) {
+			return false;
+		}
+		this.isSent = true;
+		releaseContent();
+		return true;
+	}
+
+	/**
+	 * @return 是否已经出发发送请求，内部使用<br>
+	 */
+	protected boolean isSent() {
+		return this.isSent;
+	}
+
+	/**
+	 * 在IO线程中发送响应
+	 * 
+	 * @return ChannelFuture
+	 */
+	private ChannelFuture doSend() {
+		ChannelFuture channelFuture;
+		if (content instanceof StaticResource) {
+			// 静态资源
+			final StaticResource resource = (StaticResource) content;
+			try {
+				channelFuture = sendResource(resource);
+			} catch (IOException e) {
+				log.error(StrUtil.format("Send {} error!", resource), e);
+				channelFuture = sendForbidden();
+			}
+		} else if (content instanceof ChunkedInput) {
+			// 分块读取的内容
+			@SuppressWarnings("unchecked")
+			final ChunkedInput<ByteBuf> input = (ChunkedInput<ByteBuf>) content;
+			channelFuture = sendChunkedInput(input);
+		} else if (content instanceof File) {
+			// 文件
+			File file = (File) content;
+			try {
+				channelFuture = sendFile(file);
+			} catch (IOException e) {
+				log.error(StrUtil.format("Send {} error!", file), e);
+				channelFuture = sendForbidden();
+			}
+		} else {
+			// 普通文本
+			channelFuture = sendFull();
+		}
+		return channelFuture;
+	}
+
+	/**
+	 * 读取文件出错时改为发送403，此时响应已标记为发送，setStatus和setContent不再生效
+	 * 
+	 * @return ChannelFuture
+	 */
+	private ChannelFuture sendForbidden() {
+		this.status = HttpResponseStatus.FORBIDDEN;
+		releaseContent();
+		return sendFull();
+	}
+
+	/**
+	 * 发送响应到客户端
+	 * 
+	 * @return ChannelFuture
+	 */
+	private ChannelFuture sendFull() {
+		if (request != null && request.isKeepAlive()) {
+			setKeepAlive();
+			return ctx.writeAndFlush(sequenced(this.toFullHttpResponse()));
+		} else {
+			return sendAndCloseFull();
+		}
+	}
+
+	/**
+	 * 发送给到客户端并关闭ChannelHandlerContext
+	 * 
+	 * @return ChannelFuture
+	 */
+	private ChannelFuture sendAndCloseFull() {
+		return ctx.writeAndFlush(sequenced(this.toFullHttpResponse())).addListener(ChannelFutureListener.CLOSE);
+	}
+
+	/**
+	 * 发送分块读取的内容，由ChunkedWriteHandler在连接可写时读取
+	 * 
+	 * @param input 内容
+	 * @return ChannelFuture
+	 */
+	private ChannelFuture sendChunkedInput(ChunkedInput<ByteBuf> input) {
+		final DefaultHttpResponse head = this.toDefaultHttpResponse();
+		final boolean isKeepAlive = setChunked(head);
+		ctx.write(sequenced(head));
+		ctx.write(sequenced(new HttpContentInput(input)));
+
+		final ChannelFuture lastContentFuture = ctx.writeAndFlush(sequenced(LastHttpContent.EMPTY_LAST_CONTENT));
+		if (false == isKeepAlive) {
+			lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+		}
+		return lastContentFuture;
+	}
+
+	/**
+	 * 设置长度未知的响应头，HTTP/1.1使用分块传输，HTTP/1.0不支持分块，以关闭连接表示结束；HTTP/2的流无需设置
+	 * 
+	 * @param head 响应头
+	 * @return 响应结束后连接是否保持
+	 */
+	private boolean setChunked(HttpResponse head) {
+		boolean isKeepAlive = null != request && request.isKeepAlive();
+		if (false == ctx.channel() instanceof Http2StreamChannel) {
+			if (null != request && HttpVersion.HTTP_1_1.equals(request.getNettyRequest().protocolVersion())) {
+				head.headers().set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+			} else {
+				isKeepAlive = false;
+			}
+			head.headers().set(HttpHeaderNames.CONNECTION, isKeepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+		}
+		return isKeepAlive;
+	}
+
+	/**
+	 * 发送文件
+	 * 
+	 * @param file 文件
+	 * @return ChannelFuture
+	 * @throws IOException
+	 */
+	private ChannelFuture sendFile(File file) throws IOException {
+		// 文件类型
+		String contentType = HttpUtil.getMimeType(file.getName());
+		if (StrUtil.isBlank(contentType)) {
+			// 无法识别默认使用数据流
+			contentType = "application/octet-stream";
+		}
+		this.setContentType(contentType);
+
+		final List<ByteRange> ranges = getRanges(file.length(), DatePattern.HTTP_DATETIME_FORMAT.format(file.lastModified()));
+		if (null != ranges) {
+			return sendRanges(null, file, file.length(), contentType, ranges);
+		}
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		// 内容长度
+		long fileLength = raf.length();
+		this.setContentLength(fileLength);
+
+		final Object fileContent;
+		if (isZeroCopy()) {
+			fileContent = new DefaultFileRegion(raf.getChannel(), 0, fileLength);
+		} else {
+			fileContent = new ChunkedNioFile(raf.getChannel(), 0, fileLength, CHUNK_SIZE);
+		}
+		ctx.write(sequenced(this.toDefaultHttpResponse()));
+		ctx.write(sequenced(fileContent), ctx.newProgressivePromise()).addListener(FileProgressiveFutureListener.build(raf));
+
+		return sendEmptyLast();
+	}
+
+	/**
+	 * 发送静态资源
+	 * 
+	 * @param resource 静态资源
+	 * @return ChannelFuture
+	 * @throws IOException
+	 */
+	private ChannelFuture sendResource(StaticResource resource) throws IOException {
+		if (null == resource.getContentEncoding()) {
+			final List<ByteRange> ranges = getRanges(resource.getLength(), resource.getLastModifiedHeader());
+			if (null != ranges) {
+				return sendRanges(resource, resource.getFile(), resource.getLength(), resource.getContentType(), ranges);
+			}
+		}
+
+		final ByteBuf cachedContent = resource.retainedContent();
+		if (null != cachedContent) {
+			// 内容已在内存中，与响应头一同写出
+			this.setContentType(resource.getContentType());
+			this.content = cachedContent;
+			return sendFull();
+		}
+
+		final Object fileContent = newFileContent(resource, resource.getFile(), 0, resource.getLength());
+		this.setContentLength(resource.getLength());
+		this.setContentType(resource.getContentType());
+
+		ctx.write(sequenced(this.toDefaultHttpResponse()));
+		ctx.write(sequenced(fileContent));
+
+		return sendEmptyLast();
+	}
+
+	/**
+	 * 获得请求中可满足的Range<br>
+	 * 只处理GET请求、状态为200且未压缩的响应，If-Range与文件的Last-Modified或强ETag不一致时忽略Range，发送完整内容
+	 * 
+	 * @param length 文件长度
+	 * @param lastModifiedHeader 格式化好的Last-Modified头
+	 * @return 可满足的范围，null表示发送完整内容，空列表表示范围不可满足
+	 */
+	private List<ByteRange> getRanges(long length, String lastModifiedHeader) {
+		if (null == request || HttpResponseStatus.OK != status || headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+			return null;
+		}
+		this.setHeader(HttpHeaderNames.ACCEPT_RANGES.toString(), HttpHeaderValues.BYTES);
+
+		final String rangeHeader = request.getHeader(HttpHeaderNames.RANGE.toString());
+		if (StrUtil.isBlank(rangeHeader) || false == Request.METHOD_GET.equalsIgnoreCase(request.getMethod())) {
+			return null;
+		}
+		final String ifRange = request.getHeader(HttpHeaderNames.IF_RANGE.toString());
+		if (StrUtil.isNotBlank(ifRange) && false == ifRange.equals(lastModifiedHeader) && false == ETag.strongMatches(ifRange, headers.get(HttpHeaderNames.ETAG))) {
+			// 文件已变更
+			return null;
+		}
+		return ByteRange.parse(rangeHeader, length);
+	}
+
+	/**
+	 * 发送文件的部分内容<br>
+	 * 单个范围发送206和对应的FileRegion，多个范围发送multipart/byteranges，各部分的头与FileRegion交替写出，仍为零拷贝
+	 * 
+	 * @param resource 静态资源，为null时直接打开文件
+	 * @param file 文件
+	 * @param length 文件长度
+	 * @param contentType 文件类型
+	 * @param ranges 范围，为空时发送416
+	 * @return ChannelFuture
+	 * @throws IOException
+	 */
+	private ChannelFuture sendRanges(StaticResource resource, File file, long length, String contentType, List<ByteRange> ranges) throws IOException {
+		if (ranges.isEmpty()) {
+			this.status = HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+			this.setHeader(HttpHeaderNames.CONTENT_RANGE.toString(), "bytes */" + length);
+			this.content = Unpooled.EMPTY_BUFFER;
+			return sendFull();
+		}
+
+		this.status = HttpResponseStatus.PARTIAL_CONTENT;
+		if (1 == ranges.size()) {
+			final ByteRange range = ranges.get(0);
+			this.setHeader(HttpHeaderNames.CONTENT_RANGE.toString(), range.toContentRange(length));
+			this.setContentLength(range.getLength());
+			final Object fileContent = newFileContent(resource, file, range.getStart(), range.getLength());
+			ctx.write(sequenced(this.toDefaultHttpResponse()));
+			ctx.write(sequenced(fileContent));
+			return sendEmptyLast();
+		}
+
+		// 先创建所有分段，打开文件失败时尚未写出任何内容
+		final Object[] fileContents = new Object[ranges.size()];
+		try {
+			for (int i = 0; i < fileContents.length; i++) {
+				fileContents[i] = newFileContent(resource, file, ranges.get(i).getStart(), ranges.get(i).getLength());
+			}
+		} catch (IOException e) {
+			for (Object fileContent : fileContents) {
+				closeFileContent(fileContent);
+			}
+			throw e;
+		}
+
+		final String boundary = RandomUtil.randomString(24);
+		final ByteBuf[] partHeaders = new ByteBuf[ranges.size()];
+		final ByteBuf end = Unpooled.copiedBuffer("\r\n--" + boundary + "--\r\n", CharsetUtil.CHARSET_ISO_8859_1);
+		long contentLength = end.readableBytes();
+		String partHeader;
+		for (int i = 0; i < partHeaders.length; i++) {
+			partHeader = StrUtil.format("\r\n--{}\r\nContent-Type: {}\r\nContent-Range: {}\r\n\r\n", boundary, contentType, ranges.get(i).toContentRange(length));
+			partHeaders[i] = Unpooled.copiedBuffer(partHeader, CharsetUtil.CHARSET_ISO_8859_1);
+			contentLength += partHeaders[i].readableBytes() + ranges.get(i).getLength();
+		}
+
+		this.setHeader(HttpHeaderNames.CONTENT_TYPE.toString(), "multipart/byteranges; boundary=" + boundary);
+		this.setContentLength(contentLength);
+		ctx.write(sequenced(this.toDefaultHttpResponse()));
+		for (int i = 0; i < partHeaders.length; i++) {
+			ctx.write(sequenced(partHeaders[i]));
+			ctx.write(sequenced(fileContents[i]));
+		}
+		ctx.write(sequenced(end));
+		return sendEmptyLast();
+	}
+
+	/**
+	 * 创建发送文件指定部分的消息<br>
+	 * 可以零拷贝时为FileRegion，文件在真正发送时才打开；否则（例如SSL）为由ChunkedWriteHandler分段读取的ChunkedInput
+	 * 
+	 * @param resource 静态资源，为null时直接使用文件
+	 * @param file 文件
+	 * @param position 开始位置
+	 * @param count 长度
+	 * @return FileRegion或ChunkedInput
+	 * @throws IOException
+	 */
+	private Object newFileContent(StaticResource resource, File file, long position, long count) throws IOException {
+		if (isZeroCopy()) {
+			if (null != resource) {
+				return resource.newRegion(position, count);
+			}
+			return new DefaultFileRegion(file, position, count);
+		}
+
+		if (null != resource) {
+			return resource.newChunkedInput(position, count, CHUNK_SIZE);
+		}
+		return new ChunkedNioFile(FileChannel.open(file.toPath(), StandardOpenOption.READ), position, count, CHUNK_SIZE);
+	}
+
+	/**
+	 * 释放未写出的FileRegion或ChunkedInput
+	 * 
+	 * @param fileContent FileRegion或ChunkedInput，可以为null
+	 */
+	private static void closeFileContent(Object fileContent) {
+		if (fileContent instanceof ChunkedInput) {
+			try {
+				((ChunkedInput<?>) fileContent).close();
+			} catch (Exception e) {
+				// ignore
+			}
+		} else {
+			ReferenceCountUtil.release(fileContent);
+		}
+	}
+
+	/**
+	 * @return 是否可以使用FileRegion零拷贝发送文件，SSL加密时和HTTP/2的流中（内容需封装为DATA帧）不可以
+	 */
+	private boolean isZeroCopy() {
+		return false == (ctx.channel() instanceof Http2StreamChannel) && null == ctx.pipeline().get(SslHandler.class);
+	}
+
+	/**
+	 * 管线化的连接上为消息附带请求序号，由{@link HttpPipeliningHandler}按照请求顺序写出
+	 * 
+	 * @param msg 消息
+	 * @return 写出的消息
+	 */
+	private Object sequenced(Object msg) {
+		return (null == request) ? msg : HttpPipeliningHandler.sequenced(request.getSequence(), msg);
+	}
+
+	/**
+	 * 发送结尾标记，表示发送结束
+	 * 
+	 * @return ChannelFuture
+	 */
+	private ChannelFuture sendEmptyLast() {
+		final ChannelFuture lastContentFuture = ctx.writeAndFlush(sequenced(LastHttpContent.EMPTY_LAST_CONTENT));
+		if (false == request.isKeepAlive()) {
+			lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+		}
+
+		return lastContentFuture;
+	}
+	// -------------------------------------------------------------------------------------- send end
+
+	// ---------------------------------------------------------------------------- special response start
+
+	/**
+	 * 302 重定向
+	 * 
+	 * @param uri 重定向到的URI
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendRedirect(String uri) {
+		return this.setStatus(HttpResponseStatus.FOUND).setHeader(HttpHeaderNames.LOCATION.toString(), uri).send();
+	}
+
+	/**
+	 * 304 文件未修改
+	 * 
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendNotModified() {
+		// 304不包含响应体
+		releaseContent();
+		return this.setStatus(HttpResponseStatus.NOT_MODIFIED).setHeader(HttpHeaderNames.DATE.toString(), DateUtil.formatHttpDate(DateUtil.date())).send();
+	}
+
+	/**
+	 * 设置ETag头并根据请求的If-None-Match判断客户端缓存是否有效，有效时发送304<br>
+	 * 只对GET和HEAD请求生效，ETag可以在生成响应内容之前由版本号等信息得到，匹配时省去生成内容的开销
+	 * 
+	 * @param etag ETag，例如"v1"，弱ETag以W/开头
+	 * @return 是否已发送304，为true时Action应直接返回
+	 */
+	public boolean checkNotModified(String etag) {
+		setETag(etag);
+		if (null == request) {
+			return false;
+		}
+		final String method = request.getMethod();
+		if (false == Request.METHOD_GET.equalsIgnoreCase(method) && false == HttpMethod.HEAD.name().equalsIgnoreCase(method)) {
+			return false;
+		}
+		if (ETag.matches(request.getHeader(HttpHeaderNames.IF_NONE_MATCH.toString()), etag)) {
+			sendNotModified();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 使用已设置的响应内容的MD5摘要作为强ETag，并根据请求的If-None-Match判断客户端缓存是否有效，有效时发送304
+	 * 
+	 * @return 是否已发送304，响应内容不是文本或字节时返回false
+	 * @see #checkNotModified(String)
+	 */
+	public boolean checkNotModified() {
+		if (false == content instanceof ByteBuf) {
+			return false;
+		}
+		return checkNotModified(ETag.strong((ByteBuf) content));
+	}
+
+	/**
+	 * 发送错误消息
+	 * 
+	 * @param status 错误状态码
+	 * @param msg 消息内容
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendError(HttpResponseStatus status, String msg) {
+		if (ctx.channel().isActive()) {
+			return this.setStatus(status).setContent(msg).send();
+		}
+		return null;
+	}
+
+	/**
+	 * 发送404 Not Found
+	 * 
+	 * @param msg 消息内容
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendNotFound(String msg) {
+		return sendError(HttpResponseStatus.NOT_FOUND, msg);
+	}
+
+	/**
+	 * 发送500 Internal Server Error
+	 * 
+	 * @param msg 消息内容
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendServerError(String msg) {
+		return sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, msg);
+	}
+
+	// ---------------------------------------------------------------------------- special response end
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("headers:\r\n ");
+		for (Entry<String, String> entry : headers.entries()) {
+			sb.append("    ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+		}
+		sb.append("content: ").append(StrUtil.str(content, CharsetUtil.UTF_8));
+
+		return sb.toString();
+	}
+
+	/**
+	 * 将读取的分块包装为HttpContent，经过压缩器时可被压缩<br>
+	 * 不产生LastHttpContent，结尾由Response按照管线化的顺序单独写出
+	 * 
+	 * @author Looly
+	 *
+	 */
+	private static class HttpContentInput implements ChunkedInput<HttpContent> {
+		private final ChunkedInput<ByteBuf> input;
+
+		HttpContentInput(ChunkedInput<ByteBuf> input) {
+			this.input = input;
+		}
+
+		@Override
+		public boolean isEndOfInput() throws Exception {
+			return input.isEndOfInput();
+		}
+
+		@Override
+		public void close() throws Exception {
+			input.close();
+		}
+
+		@Deprecated
+		@Override
+		public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+			return readChunk(ctx.alloc());
+		}
+
+		@Override
+		public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+			final ByteBuf chunk = input.readChunk(allocator);
+			return (null == chunk) ? null : new DefaultHttpContent(chunk);
+		}
+
+		@Override
+		public long length() {
+			return input.length();
+		}
+
+		@Override
+		public long progress() {
+			return input.progress();
+		}
+	}
+
+	// ---------------------------------------------------------------------------- static method start
+	/**
+	 * 构建Response对象
+	 * 
+	 * @param ctx ChannelHandlerContext
+	 * @param request 请求对象
+	 * @return Response对象
+	 */
+	protected static Response build(ChannelHandlerContext ctx, Request request) {
+		return new Response(ctx, request);
+	}
+
+	/**
+	 * 构建Response对象，Request对象为空，将无法获得某些信息<br>
+	 * 1. 无法使用长连接
+	 * 
+	 * @param ctx ChannelHandlerContext
+	 * @return Response对象
+	 */
+	protected static Response build(ChannelHandlerContext ctx) {
+		return new Response(ctx, null);
+	}
+	// ---------------------------------------------------------------------------- static method end
+}
@@ -0,0 +1,173 @@
+package com.xiaoleilu.loServer.handler;
+
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.StrUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Server-Sent Events的一个事件，不可变<br>
+ * 事件只编码一次，同一个事件发送给多个{@link EventStream}时共享编码后的字节
+ *
+ * @author Looly
+ *
+ */
+public class ServerSentEvent {
+
+	/** 未指定事件名时浏览器使用的事件名 */
+	private static final String DEFAULT_EVENT = "message";
+
+	private final String id;
+	private final String event;
+	private final String data;
+	private final long retry;
+	/** 编码后的字节，不可释放 */
+	private volatile ByteBuf encoded;
+
+	/**
+	 * 构造
+	 *
+	 * @param data 数据，多行时按行拆分为多个data字段
+	 */
+	public ServerSentEvent(String data) {
+		this(null, null, data, -1);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param event 事件名，null表示默认的message
+	 * @param data 数据，多行时按行拆分为多个data字段
+	 */
+	public ServerSentEvent(String event, String data) {
+		this(null, event, data, -1);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param id 事件ID，客户端重连时通过Last-Event-ID头发回，null表示不设置
+	 * @param event 事件名，null表示默认的message
+	 * @param data 数据，多行时按行拆分为多个data字段
+	 */
+	public ServerSentEvent(String id, String event, String data) {
+		this(id, event, data, -1);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param id 事件ID，客户端重连时通过Last-Event-ID头发回，null表示不设置
+	 * @param event 事件名，null表示默认的message
+	 * @param data 数据，多行时按行拆分为多个data字段
+	 * @param retry 客户端重连的间隔毫秒数，小于0表示不设置
+	 */
+	public ServerSentEvent(String id, String event, String data, long retry) {
+		checkField("id", id);
+		checkField("event", event);
+		this.id = id;
+		this.event = event;
+		this.data = data;
+		this.retry = retry;
+	}
+
+	/**
+	 * @return 事件ID
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return 事件名，null表示默认的message
+	 */
+	public String getEvent() {
+		return event;
+	}
+
+	/**
+	 * @return 数据
+	 */
+	public String getData() {
+		return data;
+	}
+
+	/**
+	 * @return 客户端重连的间隔毫秒数，小于0表示未设置
+	 */
+	public long getRetry() {
+		return retry;
+	}
+
+	/**
+	 * @return 事件名，未指定时为message，积压时同名的事件只保留最新的一个
+	 */
+	String getKey() {
+		return (null == event) ? DEFAULT_EVENT : event;
+	}
+
+	/**
+	 * 获得编码后的字节，首次调用时编码
+	 *
+	 * @return 编码结果的duplicate，无需释放
+	 */
+	ByteBuf content() {
+		ByteBuf encoded = this.encoded;
+		if (null == encoded) {
+			encoded = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(StrUtil.bytes(encode(), CharsetUtil.CHARSET_UTF_8)));
+			this.encoded = encoded;
+		}
+		return encoded.duplicate();
+	}
+
+	/**
+	 * 按照text/event-stream格式编码
+	 *
+	 * @return 事件文本，以空行结尾
+	 */
+	private String encode() {
+		final StringBuilder sb = new StringBuilder();
+		if (null != id) {
+			sb.append("id: ").append(id).append('\n');
+		}
+		if (null != event) {
+			sb.append("event: ").append(event).append('\n');
+		}
+		if (retry >= 0) {
+			sb.append("retry: ").append(retry).append('\n');
+		}
+		if (null != data) {
+			int start = 0;
+			char c;
+			for (int i = 0; i < data.length(); i++) {
+				c = data.charAt(i);
+				if ('\r' == c || '\n' == c) {
+					sb.append("data: ").append(data, start, i).append('\n');
+					if ('\r' == c && i + 1 < data.length() && '\n' == data.charAt(i + 1)) {
+						i++;
+					}
+					start = i + 1;
+				}
+			}
+			sb.append("data: ").append(data, start, data.length()).append('\n');
+		}
+		return sb.append('\n').toString();
+	}
+
+	/**
+	 * 检查单行字段不包含换行
+	 *
+	 * @param name 字段名
+	 * @param value 字段值
+	 */
+	private static void checkField(String name, String value) {
+		if (null != value && (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)) {
+			throw new IllegalArgumentException(StrUtil.format("Event {} must not contain line breaks: {}", name, value));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ServerSentEvent [id=" + id + ", event=" + event + ", data=" + data + "]";
+	}
+}
@@ -0,0 +1,184 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.xiaoleilu.loServer.listener.BodyListener;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+
+/**
+ * 流式接收的请求体<br>
+ * 由ActionHandler在IO线程中逐段写入，Action通过{@link Request#onBody(BodyListener)}或{@link Request#decodeBody()}指定读取方式<br>
+ * 接收期间关闭连接的自动读取，读取方式确定之前只保留已解码的少量片段，之后每处理完一段再读取下一段，内存占用与请求体大小无关
+ *
+ * @author Looly
+ *
+ */
+class StreamingBody {
+
+	/** 丢弃请求体 */
+	private static final BodyListener DISCARD = new BodyListener() {
+		@Override
+		public void onData(ByteBuf content) {
+		}
+	};
+
+	private final ChannelHandlerContext ctx;
+	/** 读取下一段并flush流控窗口更新，用于HTTP/2流 */
+	private final Runnable readAndFlush = new Runnable() {
+		@Override
+		public void run() {
+			if (ctx.channel().isActive()) {
+				ctx.read();
+				ctx.flush();
+			}
+		}
+	};
+	private final AtomicReference<BodyListener> listener = new AtomicReference<BodyListener>();
+	private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+	/** 读取方式确定之前收到的片段，只在IO线程中访问 */
+	private final ArrayDeque<HttpContent> pending = new ArrayDeque<HttpContent>(4);
+	/** 是否已收到最后一段，只在IO线程中访问 */
+	private boolean isEnded;
+
+	/**
+	 * 构造，关闭连接的自动读取直到请求体接收完毕
+	 *
+	 * @param ctx ChannelHandlerContext
+	 */
+	StreamingBody(ChannelHandlerContext ctx) {
+		this.ctx = ctx;
+		ctx.channel().config().setAutoRead(false);
+	}
+
+	/**
+	 * 写入一段请求体，在IO线程中调用，content的所有权转移给此对象
+	 *
+	 * @param content 请求体片段
+	 */
+	void offer(HttpContent content) {
+		if (isEnded) {
+			content.release();
+			return;
+		}
+		pending.add(content);
+		if (content instanceof LastHttpContent) {
+			// 请求体已接收完毕，未处理的片段数量有限，恢复自动读取以接收下一个请求
+			isEnded = true;
+			ctx.channel().config().setAutoRead(true);
+		}
+		drain();
+	}
+
+	/**
+	 * 指定请求体的读取方式，只能指定一次
+	 *
+	 * @param listener 请求体监听
+	 * @return 请求体读取完毕时完成的CompletionStage，监听抛出异常或连接关闭时异常完成
+	 * @throws IllegalStateException 已指定过读取方式
+	 */
+	CompletionStage<Void> consume(BodyListener listener) {
+		if (false == this.listener.compareAndSet(null, listener)) {
+			if (listener == DISCARD) {
+				return future;
+			}
+			throw new IllegalStateException("Request body has already been consumed!");
+		}
+
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * 未指定读取方式时丢弃剩余的请求体，已指定时无副作用
+	 *
+	 * @return 请求体读取完毕时完成的CompletionStage
+	 */
+	CompletionStage<Void> discard() {
+		return consume(DISCARD);
+	}
+
+	/**
+	 * 在Action完成后等待请求体读取完毕，Action完成时仍未读取的请求体将被丢弃
+	 *
+	 * @param stage 异步Action返回的CompletionStage，null表示同步Action已完成
+	 * @return 两者都完成时完成的CompletionStage
+	 */
+	CompletionStage<?> after(CompletionStage<?> stage) {
+		if (null == stage) {
+			return discard();
+		}
+		return stage.whenComplete((result, cause) -> discard()).thenCombine(future, (result, v) -> result);
+	}
+
+	/**
+	 * 请求体接收失败（超出大小限制或连接关闭），剩余的请求体将被丢弃，在IO线程中调用
+	 *
+	 * @param cause 原因
+	 */
+	void fail(Throwable cause) {
+		future.completeExceptionally(cause);
+		this.listener.compareAndSet(null, DISCARD);
+		drain();
+	}
+
+	/**
+	 * 在IO线程中执行任务，当前线程为IO线程时直接执行
+	 *
+	 * @param task 任务
+	 */
+	void execute(Runnable task) {
+		if (ctx.executor().inEventLoop()) {
+			task.run();
+		} else {
+			ctx.executor().execute(task);
+		}
+	}
+
+	/**
+	 * 将已收到的片段交给监听处理，在IO线程中调用
+	 */
+	private void drain() {
+		final BodyListener listener = this.listener.get();
+		if (null == listener) {
+			// 等待Action指定读取方式
+			return;
+		}
+
+		HttpContent content;
+		while (null != (content = pending.poll())) {
+			try {
+				if (listener != DISCARD && false == future.isDone() && content.content().isReadable()) {
+					listener.onData(content.content());
+				}
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				content.release();
+			}
+		}
+
+		if (isEnded) {
+			future.complete(null);
+		} else if (ctx.channel().isActive()) {
+			if (ctx.channel() instanceof Http2StreamChannel) {
+				// HTTP/2流在read()时才为已读取的数据发送WINDOW_UPDATE，读取过程中调用时当前片段尚未计入，需等本次读取结束后再调用并flush
+				ctx.executor().execute(readAndFlush);
+			} else {
+				ctx.read();
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package com.xiaoleilu.loServer.handler;
+
+import com.xiaoleilu.loServer.ServerSetting;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * WebSocket会话组，用于向大量订阅者广播<br>
+ * 广播的帧只编码一次，未压缩的会话写出编码结果的retainedDuplicate，不再逐个连接编码和复制；
+ * 启用permessage-deflate的会话各自维护压缩上下文，写出帧的retainedDuplicate，由各连接压缩<br>
+ * 关闭的会话自动从组中移除，所有方法可在任意线程中调用
+ *
+ * @author Looly
+ *
+ */
+public class WebSocketGroup {
+
+	/** 未压缩的会话 */
+	private static final ChannelMatcher PLAIN = new ChannelMatcher() {
+		@Override
+		public boolean matches(Channel channel) {
+			final WebSocketSession session = WebSocketSession.get(channel);
+			return null != session && false == session.isCompressed();
+		}
+	};
+	/** 启用压缩的会话 */
+	private static final ChannelMatcher COMPRESSED = new ChannelMatcher() {
+		@Override
+		public boolean matches(Channel channel) {
+			final WebSocketSession session = WebSocketSession.get(channel);
+			return null != session && session.isCompressed();
+		}
+	};
+
+	private final ChannelGroup channels;
+
+	/**
+	 * 构造
+	 *
+	 * @param name 组名
+	 */
+	public WebSocketGroup(String name) {
+		this.channels = new DefaultChannelGroup(name, GlobalEventExecutor.INSTANCE);
+	}
+
+	/**
+	 * 加入会话
+	 *
+	 * @param session 会话
+	 * @return 是否加入，已在组中时返回false
+	 */
+	public boolean add(WebSocketSession session) {
+		return channels.add(session.getChannel());
+	}
+
+	/**
+	 * 移除会话
+	 *
+	 * @param session 会话
+	 * @return 是否移除
+	 */
+	public boolean remove(WebSocketSession session) {
+		return channels.remove(session.getChannel());
+	}
+
+	/**
+	 * @return 会话数
+	 */
+	public int size() {
+		return channels.size();
+	}
+
+	/**
+	 * 广播文本消息
+	 *
+	 * @param text 文本
+	 */
+	public void broadcastText(String text) {
+		broadcast(new TextWebSocketFrame(text));
+	}
+
+	/**
+	 * 广播二进制消息
+	 *
+	 * @param data 数据，广播后释放
+	 */
+	public void broadcastBinary(ByteBuf data) {
+		broadcast(new BinaryWebSocketFrame(data));
+	}
+
+	/**
+	 * 广播帧
+	 *
+	 * @param frame 帧，广播后释放
+	 */
+	public void broadcast(WebSocketFrame frame) {
+		try {
+			// ChannelGroup为每个连接写出消息的retainedDuplicate，写出后释放原消息
+			channels.writeAndFlush(encode(frame), PLAIN);
+			channels.writeAndFlush(frame.retain(), COMPRESSED);
+		} finally {
+			frame.release();
+		}
+	}
+
+	/**
+	 * 关闭组中所有会话
+	 *
+	 * @param statusCode 状态码
+	 * @param reason 原因，可以为null
+	 */
+	public void close(int statusCode, String reason) {
+		for (Channel channel : channels) {
+			final WebSocketSession session = WebSocketSession.get(channel);
+			if (null != session) {
+				session.close(statusCode, reason);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "WebSocketGroup [" + channels.name() + "] size=" + channels.size();
+	}
+
+	/**
+	 * 将帧编码为服务端发出的字节（RFC 6455 5.2，服务端的帧无掩码），经过连接上的帧编码器时原样写出
+	 *
+	 * @param frame 帧，不释放
+	 * @return 编码后的字节
+	 */
+	private static ByteBuf encode(WebSocketFrame frame) {
+		final ByteBuf payload = frame.content();
+		final int length = payload.readableBytes();
+		final int headerLength = (length <= 125) ? 2 : ((length <= 0xFFFF) ? 4 : 10);
+
+		final ByteBuf buf = ServerSetting.getAllocator().directBuffer(headerLength + length);
+		buf.writeByte((frame.isFinalFragment() ? 0x80 : 0) | (frame.rsv() << 4) | opcode(frame));
+		if (length <= 125) {
+			buf.writeByte(length);
+		} else if (length <= 0xFFFF) {
+			buf.writeByte(126);
+			buf.writeShort(length);
+		} else {
+			buf.writeByte(127);
+			buf.writeLong(length);
+		}
+		buf.writeBytes(payload, payload.readerIndex(), length);
+		return buf;
+	}
+
+	/**
+	 * @param frame 帧
+	 * @return 操作码
+	 */
+	private static int opcode(WebSocketFrame frame) {
+		if (frame instanceof TextWebSocketFrame) {
+			return 0x1;
+		} else if (frame instanceof BinaryWebSocketFrame) {
+			return 0x2;
+		} else if (frame instanceof ContinuationWebSocketFrame) {
+			return 0x0;
+		} else if (frame instanceof CloseWebSocketFrame) {
+			return 0x8;
+		} else if (frame instanceof PingWebSocketFrame) {
+			return 0x9;
+		} else if (frame instanceof PongWebSocketFrame) {
+			return 0xA;
+		}
+		throw new IllegalArgumentException("Unsupported frame type: " + frame.getClass().getName());
+	}
+}
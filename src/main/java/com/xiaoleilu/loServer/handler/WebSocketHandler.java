@@ -0,0 +1,319 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.xiaoleilu.loServer.ServerSetting;
+import com.xiaoleilu.loServer.action.WebSocketAction;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CorruptedWebSocketFrameException;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+/**
+ * WebSocket处理单元<br>
+ * 握手（RFC 6455）由ActionHandler在Filter通过后调用{@link #upgrade(ChannelHandlerContext, Request, Response, WebSocketAction)}，
+ * 101响应与其它响应一样按照管线化的顺序写出，写出后将Pipeline中HTTP/1.1的处理器替换为帧编解码器（可选permessage-deflate）和此Handler<br>
+ * 只支持HTTP/1.1连接上的升级，HTTP/2的流上返回426
+ *
+ * @author Looly
+ *
+ */
+public class WebSocketHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+	private static final Log log = StaticLog.get();
+
+	/** 计算Sec-WebSocket-Accept的GUID（RFC 6455 1.3） */
+	private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final String VERSION = "13";
+	private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+	/** 关闭帧中没有状态码（RFC 6455 7.4.1） */
+	private static final int NO_STATUS_CODE = 1005;
+	/** 未收到关闭帧而断开 */
+	private static final int ABNORMAL_CLOSURE = 1006;
+
+	private final WebSocketAction action;
+	private final WebSocketSession session;
+
+	/**
+	 * 构造
+	 *
+	 * @param action WebSocketAction
+	 * @param session 会话
+	 */
+	private WebSocketHandler(WebSocketAction action, WebSocketSession session) {
+		this.action = action;
+		this.session = session;
+	}
+
+	/**
+	 * 是否为WebSocket握手请求，只有HTTP/1.1连接可以升级
+	 *
+	 * @param ctx ChannelHandlerContext
+	 * @param request 请求
+	 * @return 是否为握手请求
+	 */
+	static boolean isUpgradeRequest(ChannelHandlerContext ctx, Request request) {
+		final HttpRequest nettyRequest = request.getNettyRequest();
+		final HttpHeaders headers = nettyRequest.headers();
+		return HttpMethod.GET.equals(nettyRequest.method())
+				&& headers.containsValue(HttpHeaderNames.CONNECTION, HttpHeaderValues.UPGRADE, true)
+				&& HttpHeaderValues.WEBSOCKET.contentEqualsIgnoreCase(headers.get(HttpHeaderNames.UPGRADE))
+				&& null != ctx.pipeline().get(HttpServerCodec.class);
+	}
+
+	/**
+	 * 完成握手，协商子协议和permessage-deflate，发送101响应后切换Pipeline<br>
+	 * 版本不支持或缺少Sec-WebSocket-Key时设置错误响应，由调用者按照普通响应发送
+	 *
+	 * @param ctx ActionHandler的ChannelHandlerContext
+	 * @param request 握手请求
+	 * @param response 响应
+	 * @param action WebSocketAction
+	 */
+	static void upgrade(final ChannelHandlerContext ctx, Request request, Response response, final WebSocketAction action) {
+		final HttpHeaders headers = request.getNettyRequest().headers();
+		if (false == VERSION.equals(headers.get(HttpHeaderNames.SEC_WEBSOCKET_VERSION))) {
+			response.setStatus(HttpResponseStatus.UPGRADE_REQUIRED)
+				.setHeader(HttpHeaderNames.SEC_WEBSOCKET_VERSION.toString(), VERSION)
+				.setContent("426 Unsupported WebSocket version!");
+			return;
+		}
+		final String key = headers.get(HttpHeaderNames.SEC_WEBSOCKET_KEY);
+		if (StrUtil.isBlank(key)) {
+			response.setStatus(HttpResponseStatus.BAD_REQUEST).setContent("400 Missing Sec-WebSocket-Key!");
+			return;
+		}
+
+		response.setHeader(HttpHeaderNames.UPGRADE.toString(), HttpHeaderValues.WEBSOCKET.toString())
+			.setHeader(HttpHeaderNames.CONNECTION.toString(), HttpHeaderValues.UPGRADE.toString())
+			.setHeader(HttpHeaderNames.SEC_WEBSOCKET_ACCEPT.toString(), Base64.encode(DigestUtil.sha1(key.trim() + ACCEPT_GUID)));
+
+		final String subprotocol = selectSubprotocol(headers.get(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL), action.getSubprotocols());
+		if (null != subprotocol) {
+			response.setHeader(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL.toString(), subprotocol);
+		}
+		final WebSocketServerExtension extension = ServerSetting.isWebSocketCompression() ? negotiateDeflate(headers.get(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS)) : null;
+		if (null != extension) {
+			response.setHeader(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS.toString(), toHeaderValue(extension.newReponseData()));
+		}
+
+		final WebSocketSession session = new WebSocketSession(ctx.channel(), request, subprotocol, null != extension);
+		response.sendSwitchingProtocols().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (false == future.isSuccess()) {
+					ctx.close();
+					return;
+				}
+				switchPipeline(ctx.pipeline(), extension, new WebSocketHandler(action, session));
+			}
+		});
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) throws Exception {
+		try {
+			if (frame instanceof TextWebSocketFrame) {
+				action.onText(session, ((TextWebSocketFrame) frame).text());
+			} else if (frame instanceof BinaryWebSocketFrame) {
+				action.onBinary(session, frame.content());
+			} else if (frame instanceof PingWebSocketFrame) {
+				ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
+			} else if (frame instanceof CloseWebSocketFrame) {
+				// 回应关闭帧后关闭连接
+				final CloseWebSocketFrame closeFrame = (CloseWebSocketFrame) frame;
+				session.setCloseStatus((closeFrame.statusCode() < 0) ? NO_STATUS_CODE : closeFrame.statusCode(), closeFrame.reasonText());
+				ctx.writeAndFlush(closeFrame.retain()).addListener(ChannelFutureListener.CLOSE);
+			}
+		} catch (Exception e) {
+			onError(e);
+		}
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		final int status = session.getCloseStatus();
+		try {
+			action.onClose(session, (status < 0) ? ABNORMAL_CLOSURE : status, session.getCloseReason());
+		} catch (Exception e) {
+			log.error(e, "WebSocket onClose of [{}] error!", session.getPath());
+		}
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		if (cause instanceof IOException) {
+			log.warn("{}", cause.getMessage());
+			ctx.close();
+			return;
+		}
+		if (cause instanceof CorruptedWebSocketFrameException) {
+			// 客户端违反协议，帧解码器已发出关闭帧
+			log.warn("WebSocket protocol violation on {}: {}", session, cause.getMessage());
+			session.setCloseStatus(((CorruptedWebSocketFrameException) cause).closeStatus().code(), cause.getMessage());
+			ctx.close();
+			return;
+		}
+		if (cause instanceof TooLongFrameException) {
+			// 分片聚合后超出长度上限
+			log.warn("WebSocket message too big on {}: {}", session, cause.getMessage());
+			session.close(WebSocketCloseStatus.MESSAGE_TOO_BIG.code(), null);
+			return;
+		}
+		onError(cause);
+	}
+
+	/**
+	 * 回调异常或非法的帧，交给Action处理
+	 *
+	 * @param cause 异常
+	 */
+	private void onError(Throwable cause) {
+		log.error(cause, "WebSocket error on {}", session);
+		try {
+			action.onError(session, cause);
+		} catch (Exception e) {
+			log.error(e, "WebSocket onError of [{}] error!", session.getPath());
+			session.getChannel().close();
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------- Private method start
+	/**
+	 * 将HTTP/1.1的处理器替换为WebSocket帧的处理器<br>
+	 * 帧解码器加在HttpServerCodec之后，移除HttpServerCodec时其中未解码的字节交给帧解码器，全部替换完成后回调onOpen
+	 *
+	 * @param pipeline ChannelPipeline
+	 * @param extension permessage-deflate扩展，null表示不压缩
+	 * @param handler WebSocketHandler
+	 */
+	private static void switchPipeline(ChannelPipeline pipeline, WebSocketServerExtension extension, WebSocketHandler handler) {
+		final int maxFramePayloadLength = ServerSetting.getWebSocketMaxFramePayloadLength();
+		final String codecName = pipeline.context(HttpServerCodec.class).name();
+		pipeline.addAfter(codecName, "wsDecoder", new WebSocket13FrameDecoder(true, null != extension, maxFramePayloadLength));
+		pipeline.addAfter("wsDecoder", "wsEncoder", new WebSocket13FrameEncoder(false));
+		String last = "wsEncoder";
+		if (null != extension) {
+			pipeline.addAfter(last, "wsExtensionDecoder", extension.newExtensionDecoder());
+			pipeline.addAfter("wsExtensionDecoder", "wsExtensionEncoder", extension.newExtensionEncoder());
+			last = "wsExtensionEncoder";
+		}
+		pipeline.addAfter(last, "wsAggregator", new WebSocketFrameAggregator(maxFramePayloadLength));
+		pipeline.addAfter("wsAggregator", "wsHandler", handler);
+
+		HttpServerInitializer.removeHttp1(pipeline);
+		if (null != pipeline.get(HttpServerUpgradeHandler.class)) {
+			pipeline.remove(HttpServerUpgradeHandler.class);
+		}
+		pipeline.remove(codecName);
+
+		// HttpServerCodec移除后才能写出帧，因此在此之后再回调
+		try {
+			handler.action.onOpen(handler.session);
+		} catch (Exception e) {
+			handler.onError(e);
+		}
+	}
+
+	/**
+	 * 从客户端提供的子协议中选择第一个支持的
+	 *
+	 * @param requested 客户端提供的子协议，逗号分隔
+	 * @param supported Action支持的子协议
+	 * @return 选择的子协议，无匹配返回null
+	 */
+	private static String selectSubprotocol(String requested, String[] supported) {
+		if (StrUtil.isBlank(requested) || ArrayUtil.isEmpty(supported)) {
+			return null;
+		}
+		final List<String> offered = StrUtil.splitTrim(requested, ',');
+		for (String protocol : supported) {
+			if (offered.contains(protocol)) {
+				return protocol;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 协商permessage-deflate（RFC 7692），按照客户端提供的顺序接受第一个可用的参数组合
+	 *
+	 * @param requested Sec-WebSocket-Extensions请求头
+	 * @return 协商的扩展，未请求或参数不可接受时返回null
+	 */
+	private static WebSocketServerExtension negotiateDeflate(String requested) {
+		if (StrUtil.isBlank(requested)) {
+			return null;
+		}
+		final PerMessageDeflateServerExtensionHandshaker handshaker = new PerMessageDeflateServerExtensionHandshaker(
+				ServerSetting.getCompressionLevel(), ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(), 15, true, false);
+		for (String offer : StrUtil.splitTrim(requested, ',')) {
+			final List<String> parts = StrUtil.splitTrim(offer, ';');
+			if (false == PERMESSAGE_DEFLATE.equalsIgnoreCase(parts.get(0))) {
+				continue;
+			}
+			final Map<String, String> parameters = new HashMap<String, String>();
+			for (int i = 1; i < parts.size(); i++) {
+				final List<String> pair = StrUtil.splitTrim(parts.get(i), '=', 2);
+				parameters.put(pair.get(0), (pair.size() > 1) ? StrUtil.unWrap(pair.get(1), '"') : null);
+			}
+			final WebSocketServerExtension extension = handshaker.handshakeExtension(new WebSocketExtensionData(PERMESSAGE_DEFLATE, parameters));
+			if (null != extension) {
+				return extension;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param data 扩展数据
+	 * @return Sec-WebSocket-Extensions响应头的值
+	 */
+	private static String toHeaderValue(WebSocketExtensionData data) {
+		final StringBuilder builder = new StringBuilder(data.name());
+		for (Entry<String, String> entry : data.parameters().entrySet()) {
+			builder.append("; ").append(entry.getKey());
+			if (null != entry.getValue()) {
+				builder.append('=').append(entry.getValue());
+			}
+		}
+		return builder.toString();
+	}
+	// ---------------------------------------------------------------------------------------- Private method end
+}
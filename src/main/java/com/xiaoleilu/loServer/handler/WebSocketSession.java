@@ -0,0 +1,268 @@
+package com.xiaoleilu.loServer.handler;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.AttributeKey;
+
+/**
+ * WebSocket会话<br>
+ * 保存握手请求中的路径、参数和头信息（握手请求在握手后即释放），发送方法可在任意线程中调用
+ *
+ * @author Looly
+ *
+ */
+public class WebSocketSession {
+
+	private static final AttributeKey<WebSocketSession> SESSION_KEY = AttributeKey.valueOf("loServer.webSocketSession");
+
+	private final Channel channel;
+	private final String path;
+	private final String uri;
+	private final String ip;
+	private final Map<String, String> pathParams;
+	private final Map<String, Object> params;
+	private final Map<String, String> headers;
+	/** 协商的子协议，null表示未使用 */
+	private final String subprotocol;
+	/** 是否启用了permessage-deflate */
+	private final boolean compressed;
+	private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+	/** 关闭状态码和原因，收到或发出关闭帧时记录 */
+	private volatile int closeStatus = -1;
+	private volatile String closeReason;
+
+	/**
+	 * 构造，并绑定到连接上
+	 *
+	 * @param channel 连接
+	 * @param request 握手请求
+	 * @param subprotocol 子协议，null表示未使用
+	 * @param compressed 是否启用了permessage-deflate
+	 */
+	WebSocketSession(Channel channel, Request request, String subprotocol, boolean compressed) {
+		this.channel = channel;
+		this.path = request.getPath();
+		this.uri = request.getUri();
+		this.ip = request.getIp();
+		this.pathParams = new HashMap<String, String>(request.getPathParams());
+		this.params = new HashMap<String, Object>(request.getParams());
+		this.headers = request.getHeaders();
+		this.subprotocol = subprotocol;
+		this.compressed = compressed;
+		channel.attr(SESSION_KEY).set(this);
+	}
+
+	/**
+	 * 获得连接上的会话
+	 *
+	 * @param channel 连接
+	 * @return 会话，非WebSocket连接返回null
+	 */
+	public static WebSocketSession get(Channel channel) {
+		return channel.attr(SESSION_KEY).get();
+	}
+
+	/**
+	 * @return 会话ID
+	 */
+	public String getId() {
+		return channel.id().asShortText();
+	}
+
+	/**
+	 * @return 连接
+	 */
+	public Channel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return 握手请求的路径
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return 握手请求的URI
+	 */
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return 客户端IP
+	 */
+	public String getIp() {
+		return ip;
+	}
+
+	/**
+	 * @param name 变量名
+	 * @return 路径变量值，不存在返回null
+	 */
+	public String getPathParam(String name) {
+		return pathParams.get(name);
+	}
+
+	/**
+	 * @param name 参数名
+	 * @return 握手请求URI中的参数，不存在返回null
+	 */
+	public String getParam(String name) {
+		final Object value = params.get(name);
+		return (null == value) ? null : value.toString();
+	}
+
+	/**
+	 * @param name 头名称
+	 * @return 握手请求的头信息，不存在返回null
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * @return 握手请求的所有头信息
+	 */
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	/**
+	 * @return 协商的子协议，null表示未使用
+	 */
+	public String getSubprotocol() {
+		return subprotocol;
+	}
+
+	/**
+	 * @return 是否启用了permessage-deflate压缩
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * @return 连接是否打开
+	 */
+	public boolean isOpen() {
+		return channel.isActive();
+	}
+
+	/**
+	 * @return 连接是否可写，为false时待发送的数据超过了高水位
+	 */
+	public boolean isWritable() {
+		return channel.isWritable();
+	}
+
+	/**
+	 * 设置会话属性
+	 *
+	 * @param name 属性名
+	 * @param value 属性值，null表示移除
+	 */
+	public void setAttr(String name, Object value) {
+		if (null == value) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	/**
+	 * @param <T> 属性值类型
+	 * @param name 属性名
+	 * @return 会话属性，不存在返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getAttr(String name) {
+		return (T) attributes.get(name);
+	}
+
+	/**
+	 * 发送文本消息
+	 *
+	 * @param text 文本
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendText(String text) {
+		return send(new TextWebSocketFrame(text));
+	}
+
+	/**
+	 * 发送二进制消息
+	 *
+	 * @param data 数据，发送后释放
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture sendBinary(ByteBuf data) {
+		return send(new BinaryWebSocketFrame(data));
+	}
+
+	/**
+	 * 发送帧
+	 *
+	 * @param frame 帧，发送后释放
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture send(WebSocketFrame frame) {
+		return channel.writeAndFlush(frame);
+	}
+
+	/**
+	 * 发送关闭帧并关闭连接
+	 *
+	 * @param statusCode 状态码，例如1000表示正常关闭
+	 * @param reason 原因，可以为null
+	 * @return ChannelFuture
+	 */
+	public ChannelFuture close(int statusCode, String reason) {
+		setCloseStatus(statusCode, reason);
+		return channel.writeAndFlush(new CloseWebSocketFrame(statusCode, reason)).addListener(ChannelFutureListener.CLOSE);
+	}
+
+	/**
+	 * 记录关闭状态，只记录第一次
+	 *
+	 * @param statusCode 状态码
+	 * @param reason 原因
+	 */
+	void setCloseStatus(int statusCode, String reason) {
+		if (closeStatus < 0) {
+			this.closeStatus = statusCode;
+			this.closeReason = reason;
+		}
+	}
+
+	/**
+	 * @return 关闭状态码，未收到或发出关闭帧时为-1
+	 */
+	int getCloseStatus() {
+		return closeStatus;
+	}
+
+	/**
+	 * @return 关闭原因
+	 */
+	String getCloseReason() {
+		return closeReason;
+	}
+
+	@Override
+	public String toString() {
+		return "WebSocketSession [" + getId() + "] " + ip + " -> " + path + (compressed ? " (deflate)" : "");
+	}
+}
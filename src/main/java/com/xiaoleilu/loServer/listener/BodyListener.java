@@ -0,0 +1,22 @@
+package com.xiaoleilu.loServer.listener;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 流式请求体监听<br>
+ * 每收到一段请求体调用一次，方法返回后才会从连接中读取下一段，以此实现背压<br>
+ * 回调在连接的IO线程中执行，应避免长时间阻塞
+ * 
+ * @author Looly
+ *
+ */
+public interface BodyListener {
+
+	/**
+	 * 收到一段请求体，方法返回后content将被释放，如需保留请调用retain()
+	 * 
+	 * @param content 请求体片段
+	 * @throws Exception 处理异常，异常将中断请求体的处理并交由ErrorAction处理
+	 */
+	public void onData(ByteBuf content) throws Exception;
+}
@@ -0,0 +1,22 @@
+package com.xiaoleilu.loServer.listener;
+
+import io.netty.handler.codec.http.multipart.FileUpload;
+
+/**
+ * 上传文件监听<br>
+ * 流式解析multipart请求体时，每个文件解析完毕调用一次，回调在连接的IO线程中执行<br>
+ * 调用{@link FileUpload#renameTo(java.io.File)}可将已落盘的临时文件直接移动到目标路径，未移动的临时文件在请求处理完毕后删除
+ * 
+ * @author Looly
+ *
+ */
+public interface UploadListener {
+
+	/**
+	 * 文件解析完毕
+	 * 
+	 * @param upload 上传的文件
+	 * @throws Exception 处理异常，异常将中断请求体的处理并交由ErrorAction处理
+	 */
+	public void onUpload(FileUpload upload) throws Exception;
+}
@@ -0,0 +1,57 @@
+package com.xiaoleilu.loServer.metrics;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/**
+ * 连接级的指标：连接数和收发字节数<br>
+ * 位于Pipeline的最前端，SSL时统计的是加密后的字节数，所有连接共用一个实例
+ *
+ * @author Looly
+ *
+ */
+@Sharable
+public class ConnectionMetricsHandler extends ChannelDuplexHandler {
+
+	public static final ConnectionMetricsHandler INSTANCE = new ConnectionMetricsHandler();
+
+	private ConnectionMetricsHandler() {
+	}
+
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception {
+		ServerMetrics.connectionOpened();
+		ctx.fireChannelActive();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		ServerMetrics.connectionClosed();
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof ByteBuf) {
+			ServerMetrics.addReceivedBytes(((ByteBuf) msg).readableBytes());
+		}
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (msg instanceof ByteBuf) {
+			ServerMetrics.addSentBytes(((ByteBuf) msg).readableBytes());
+		} else if (msg instanceof FileRegion) {
+			ServerMetrics.addSentBytes(((FileRegion) msg).count());
+		} else if (msg instanceof ByteBufHolder) {
+			ServerMetrics.addSentBytes(((ByteBufHolder) msg).content().readableBytes());
+		}
+		ctx.write(msg, promise);
+	}
+}
@@ -0,0 +1,134 @@
+package com.xiaoleilu.loServer.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图<br>
+ * 与HdrHistogram相同的对数-线性分桶：每个2的幂区间再等分为8段，相对误差不超过12.5%，桶数固定，记录时无需加锁或分配内存<br>
+ * 每个桶为{@link LongAdder}，多个线程同时记录时分散到不同的Cell，避免争用同一缓存行
+ *
+ * @author Looly
+ *
+ */
+public class LatencyHistogram {
+
+	/** 每个2的幂区间内线性分段数的位数 */
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	/** 可区分的最大值的位数，单位为微秒时约38小时，超出的值记入最后一个桶 */
+	private static final int MAX_VALUE_BITS = 37;
+	private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * 构造
+	 */
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * 记录一个值
+	 *
+	 * @param value 值，小于0时记为0
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets[indexOf(Math.min(value, MAX_VALUE))].increment();
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * @return 记录的值的个数
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return 记录的值的总和
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return 记录的最大值
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 计算分位数，所有分位数基于同一份桶计数的快照<br>
+	 * 返回值为所在桶的上界（不超过记录的最大值），即实际值不大于返回值
+	 *
+	 * @param quantiles 分位数，0~1之间，例如0.99
+	 * @return 对应的值，未记录任何值时全部为0
+	 */
+	public long[] getValuesAt(double... quantiles) {
+		final long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+
+		final long[] values = new long[quantiles.length];
+		if (0 == total) {
+			return values;
+		}
+		final long maxValue = max.get();
+		for (int q = 0; q < quantiles.length; q++) {
+			final long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					values[q] = Math.min(upperBoundOf(i), maxValue);
+					break;
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * 值所在的桶，小于8的值各占一个桶，其余按照最高位所在的区间和其后3位定位
+	 *
+	 * @param value 值，不大于{@link #MAX_VALUE}
+	 * @return 桶下标
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+	}
+
+	/**
+	 * @param index 桶下标
+	 * @return 桶内的最大值
+	 */
+	private static long upperBoundOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		final int shift = index / SUB_BUCKET_COUNT - 1;
+		final long lowerBound = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
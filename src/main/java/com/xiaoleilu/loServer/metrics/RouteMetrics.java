@@ -0,0 +1,90 @@
+package com.xiaoleilu.loServer.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个路由的指标：按状态码的请求数和请求处理延迟
+ *
+ * @author Looly
+ *
+ */
+public class RouteMetrics {
+
+	/** 状态码上限（不含），HttpResponseStatus允许三位数的自定义状态码 */
+	private static final int MAX_STATUS = 1000;
+
+	private final String route;
+	/** 按状态码计数，首次出现时创建 */
+	private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<LongAdder>(MAX_STATUS);
+	/** 请求处理延迟，单位微秒 */
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * 构造
+	 *
+	 * @param route 路由名
+	 */
+	RouteMetrics(String route) {
+		this.route = route;
+	}
+
+	/**
+	 * @return 路由名
+	 */
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * 记录一次处理完毕的请求
+	 *
+	 * @param status 响应状态码
+	 * @param latencyNanos 处理耗时，单位纳秒
+	 */
+	public void record(int status, long latencyNanos) {
+		countStatus(status);
+		latency.record(latencyNanos / 1000);
+	}
+
+	/**
+	 * 只计数不记录延迟，用于交给Action之前就被拒绝的请求
+	 *
+	 * @param status 响应状态码
+	 */
+	public void countStatus(int status) {
+		if (status < 0 || status >= MAX_STATUS) {
+			status = 0;
+		}
+		LongAdder counter = statusCounts.get(status);
+		if (null == counter) {
+			statusCounts.compareAndSet(status, null, new LongAdder());
+			counter = statusCounts.get(status);
+		}
+		counter.increment();
+	}
+
+	/**
+	 * @return 状态码和对应的请求数，按状态码排序
+	 */
+	public Map<Integer, Long> getStatusCounts() {
+		final Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		LongAdder counter;
+		for (int i = 0; i < MAX_STATUS; i++) {
+			counter = statusCounts.get(i);
+			if (null != counter) {
+				counts.put(i, counter.sum());
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @return 请求处理延迟，单位微秒
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+}
@@ -0,0 +1,238 @@
+package com.xiaoleilu.loServer.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.xiaoleilu.loServer.router.ActionRoute;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+/**
+ * 服务器运行指标<br>
+ * 计数器均为{@link LongAdder}，IO线程和业务线程记录时互不争用，只在输出时汇总<br>
+ * 使用{@link #toPrometheus()}输出Prometheus文本格式，见{@link com.xiaoleilu.loServer.action.MetricsAction}
+ *
+ * @author Looly
+ *
+ */
+public final class ServerMetrics {
+
+	/** 未匹配到路由的请求（静态文件）使用的路由名 */
+	public static final String STATIC_ROUTE = "static";
+	/** 输出的延迟分位数 */
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private static final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<String, RouteMetrics>();
+	private static final LongAdder connections = new LongAdder();
+	private static final LongAdder activeConnections = new LongAdder();
+	private static final LongAdder receivedBytes = new LongAdder();
+	private static final LongAdder sentBytes = new LongAdder();
+	private static final LongAdder rejectedConnections = new LongAdder();
+	private static final LongAdder timedOutConnections = new LongAdder();
+	/** 需要输出排队任务数的线程组，key为名称 */
+	private static final ConcurrentMap<String, EventExecutorGroup> executorGroups = new ConcurrentHashMap<String, EventExecutorGroup>();
+
+	private ServerMetrics() {
+	}
+
+	/**
+	 * 获得路由的指标，首次访问时创建
+	 *
+	 * @param route 路由，null表示未匹配到路由（静态文件）
+	 * @return RouteMetrics
+	 */
+	public static RouteMetrics getRoute(ActionRoute route) {
+		final String name = (null == route) ? STATIC_ROUTE : route.getPattern();
+		final RouteMetrics metrics = routes.get(name);
+		if (null != metrics) {
+			return metrics;
+		}
+		return routes.computeIfAbsent(name, RouteMetrics::new);
+	}
+
+	/**
+	 * 新连接建立
+	 */
+	public static void connectionOpened() {
+		connections.increment();
+		activeConnections.increment();
+	}
+
+	/**
+	 * 连接关闭
+	 */
+	public static void connectionClosed() {
+		activeConnections.decrement();
+	}
+
+	/**
+	 * 新连接因超出最大连接数被拒绝
+	 */
+	public static void connectionRejected() {
+		rejectedConnections.increment();
+	}
+
+	/**
+	 * 连接因读写超时或长连接空闲被关闭
+	 */
+	public static void connectionTimedOut() {
+		timedOutConnections.increment();
+	}
+
+	/**
+	 * @param bytes 收到的字节数
+	 */
+	public static void addReceivedBytes(long bytes) {
+		receivedBytes.add(bytes);
+	}
+
+	/**
+	 * @param bytes 写出的字节数
+	 */
+	public static void addSentBytes(long bytes) {
+		sentBytes.add(bytes);
+	}
+
+	/**
+	 * 注册需要输出排队任务数的线程组，例如IO线程组和业务线程池
+	 *
+	 * @param name 名称，重名时替换
+	 * @param group 线程组
+	 */
+	public static void register(String name, EventExecutorGroup group) {
+		executorGroups.put(name, group);
+	}
+
+	/**
+	 * 取消注册线程组，线程组关闭时调用
+	 *
+	 * @param name 名称
+	 */
+	public static void unregister(String name) {
+		executorGroups.remove(name);
+	}
+
+	/**
+	 * 清空所有指标
+	 */
+	public static void reset() {
+		routes.clear();
+		connections.reset();
+		receivedBytes.reset();
+		sentBytes.reset();
+		rejectedConnections.reset();
+		timedOutConnections.reset();
+	}
+
+	/**
+	 * 输出Prometheus文本格式（0.0.4）的指标，延迟以秒为单位
+	 *
+	 * @return 指标文本
+	 */
+	public static String toPrometheus() {
+		final StringBuilder sb = new StringBuilder(4096);
+		final Map<String, RouteMetrics> sortedRoutes = new TreeMap<String, RouteMetrics>(routes);
+
+		header(sb, "loserver_requests_total", "counter", "Total HTTP requests by route and status.");
+		for (RouteMetrics metrics : sortedRoutes.values()) {
+			for (Entry<Integer, Long> entry : metrics.getStatusCounts().entrySet()) {
+				sb.append("loserver_requests_total{route=\"").append(escape(metrics.getRoute())).append("\",status=\"").append(entry.getKey()).append("\"} ")
+						.append(entry.getValue()).append('\n');
+			}
+		}
+
+		header(sb, "loserver_request_duration_seconds", "summary", "Time from receiving request headers to sending the response.");
+		LatencyHistogram latency;
+		String route;
+		for (RouteMetrics metrics : sortedRoutes.values()) {
+			latency = metrics.getLatency();
+			if (0 == latency.getCount()) {
+				continue;
+			}
+			route = escape(metrics.getRoute());
+			final long[] values = latency.getValuesAt(QUANTILES);
+			for (int i = 0; i < QUANTILES.length; i++) {
+				sb.append("loserver_request_duration_seconds{route=\"").append(route).append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+						.append(toSeconds(values[i])).append('\n');
+			}
+			sb.append("loserver_request_duration_seconds_sum{route=\"").append(route).append("\"} ").append(toSeconds(latency.getSum())).append('\n');
+			sb.append("loserver_request_duration_seconds_count{route=\"").append(route).append("\"} ").append(latency.getCount()).append('\n');
+		}
+
+		header(sb, "loserver_request_duration_seconds_max", "gauge", "Max request duration by route.");
+		for (RouteMetrics metrics : sortedRoutes.values()) {
+			latency = metrics.getLatency();
+			if (latency.getCount() > 0) {
+				sb.append("loserver_request_duration_seconds_max{route=\"").append(escape(metrics.getRoute())).append("\"} ").append(toSeconds(latency.getMax())).append('\n');
+			}
+		}
+
+		header(sb, "loserver_connections_active", "gauge", "Open connections.");
+		sb.append("loserver_connections_active ").append(activeConnections.sum()).append('\n');
+		header(sb, "loserver_connections_total", "counter", "Accepted connections.");
+		sb.append("loserver_connections_total ").append(connections.sum()).append('\n');
+		header(sb, "loserver_connections_rejected_total", "counter", "Connections closed at accept because of the connection limit.");
+		sb.append("loserver_connections_rejected_total ").append(rejectedConnections.sum()).append('\n');
+		header(sb, "loserver_connections_timed_out_total", "counter", "Connections closed by read, write or keep-alive timeouts.");
+		sb.append("loserver_connections_timed_out_total ").append(timedOutConnections.sum()).append('\n');
+		header(sb, "loserver_received_bytes_total", "counter", "Bytes read from connections.");
+		sb.append("loserver_received_bytes_total ").append(receivedBytes.sum()).append('\n');
+		header(sb, "loserver_sent_bytes_total", "counter", "Bytes written to connections.");
+		sb.append("loserver_sent_bytes_total ").append(sentBytes.sum()).append('\n');
+
+		header(sb, "loserver_executor_pending_tasks", "gauge", "Tasks waiting in each event loop or action executor.");
+		for (Entry<String, EventExecutorGroup> entry : new TreeMap<String, EventExecutorGroup>(executorGroups).entrySet()) {
+			int index = 0;
+			for (EventExecutor executor : entry.getValue()) {
+				if (executor instanceof SingleThreadEventExecutor) {
+					sb.append("loserver_executor_pending_tasks{group=\"").append(escape(entry.getKey())).append("\",executor=\"").append(index).append("\"} ")
+							.append(((SingleThreadEventExecutor) executor).pendingTasks()).append('\n');
+				}
+				index++;
+			}
+		}
+		return sb.toString();
+	}
+
+	// --------------------------------------------------------- Private method start
+	/**
+	 * 输出指标的HELP和TYPE行
+	 *
+	 * @param sb StringBuilder
+	 * @param name 指标名
+	 * @param type 类型
+	 * @param help 说明
+	 */
+	private static void header(StringBuilder sb, String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * @param micros 微秒
+	 * @return 秒
+	 */
+	private static double toSeconds(long micros) {
+		return micros / 1000000.0;
+	}
+
+	/**
+	 * 转义标签值中的反斜杠、双引号和换行
+	 *
+	 * @param value 标签值
+	 * @return 转义后的值
+	 */
+	private static String escape(String value) {
+		if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	// --------------------------------------------------------- Private method end
+}
@@ -0,0 +1,635 @@
+package com.xiaoleilu.loServer.resource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import com.xiaoleilu.loServer.handler.ETag;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.http.HttpUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * 静态资源，保存文件解析后的元数据<br>
+ * 元数据在创建时读取一次，之后由{@link StaticResourceCache}在文件变更时整体失效，请求时不再访问文件系统<br>
+ * 小文件的内容可以缓存在内存中，发送时与响应头一同写出<br>
+ * 同目录下的预压缩文件（例如a.css.br、a.css.gz）在创建时一同识别，文本文件也可以压缩后缓存在内存中
+ * 
+ * @author Looly
+ *
+ */
+public class StaticResource {
+
+	/** 支持的预压缩编码，按照优先顺序排列 */
+	private static final String[] ENCODINGS = { "br", "gzip" };
+	/** 预压缩编码对应的文件扩展名 */
+	private static final String[] ENCODING_EXTS = { ".br", ".gz" };
+
+	private final File file;
+	private final long length;
+	private final long lastModified;
+	private final String contentType;
+	/** 内容编码，null表示未压缩 */
+	private final String contentEncoding;
+	/** 与ENCODINGS一一对应的预压缩文件，不存在为null */
+	private final StaticResource[] encodedFiles;
+	/** 格式化好的Last-Modified头 */
+	private final String lastModifiedHeader;
+	/** 由大小和修改时间生成的弱ETag */
+	private final String weakETag;
+	/** 是否共享FileChannel */
+	private final boolean isShareChannel;
+
+	/** 共享的FileChannel，首次发送时打开 */
+	private SharedFileChannel channel;
+	/** 缓存在内存中的文件内容，未缓存时为null */
+	private volatile ByteBuf content;
+	/** 缓存在内存中的gzip压缩内容，未缓存时为null */
+	private volatile ByteBuf gzipContent;
+	/** 压缩后不能减小体积，不再尝试压缩 */
+	private boolean isIncompressible;
+	/** 由内容摘要生成的强ETag，内容已缓存时首次使用时计算，否则由StaticResourceCache在后台线程中读取文件计算 */
+	private volatile String strongETag;
+	/** 是否已失效，失效后不再共享FileChannel */
+	private boolean isInvalid;
+	/** 最近访问时间，用于淘汰 */
+	volatile long lastAccess;
+	/** 是否已被请求过，再次请求时才缓存内容 */
+	volatile boolean isRequested;
+
+	/**
+	 * 构造，读取文件元数据
+	 * 
+	 * @param file 文件
+	 * @param isShareChannel 是否共享FileChannel
+	 */
+	public StaticResource(File file, boolean isShareChannel) {
+		this(file, isShareChannel, null, null);
+	}
+
+	/**
+	 * 构造，读取文件元数据
+	 * 
+	 * @param file 文件
+	 * @param isShareChannel 是否共享FileChannel
+	 * @param contentType MIME类型，null表示根据文件名识别
+	 * @param contentEncoding 预压缩文件的内容编码，null表示原始文件
+	 */
+	private StaticResource(File file, boolean isShareChannel, String contentType, String contentEncoding) {
+		this.file = file;
+		this.length = file.length();
+		this.lastModified = file.lastModified();
+		this.isShareChannel = isShareChannel;
+
+		if (null == contentType) {
+			contentType = HttpUtil.getMimeType(file.getName());
+			if (StrUtil.isBlank(contentType)) {
+				// 无法识别默认使用数据流
+				contentType = "application/octet-stream";
+			}
+		}
+		this.contentType = contentType;
+		this.contentEncoding = contentEncoding;
+		this.encodedFiles = (null == contentEncoding) ? findEncodedFiles() : null;
+		this.lastModifiedHeader = DatePattern.HTTP_DATETIME_FORMAT.format(lastModified);
+		this.weakETag = ETag.weak(length, lastModified);
+		this.lastAccess = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return 文件
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return 文件大小
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return 最后修改时间
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return MIME类型
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * 获得ETag<br>
+	 * 强ETag在内容已缓存时直接计算摘要，不读取文件；摘要尚未计算时使用弱ETag，见{@link StaticResourceCache#getETag(StaticResource, boolean)}
+	 * 
+	 * @param isStrong 是否使用内容摘要生成强ETag
+	 * @return ETag
+	 */
+	public String getETag(boolean isStrong) {
+		if (false == isStrong) {
+			return weakETag;
+		}
+
+		String strongETag = this.strongETag;
+		if (null == strongETag) {
+			final ByteBuf content = retainedContent();
+			if (null == content) {
+				return weakETag;
+			}
+			try {
+				strongETag = ETag.strong(content);
+			} finally {
+				content.release();
+			}
+			this.strongETag = strongETag;
+		}
+		return strongETag;
+	}
+
+	/**
+	 * @return 内容编码，null表示未压缩
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	/**
+	 * 获得指定编码的预压缩文件
+	 * 
+	 * @param encoding 编码，例如br、gzip
+	 * @return 预压缩文件，不存在返回null
+	 */
+	public StaticResource getEncodedFile(String encoding) {
+		if (null != encodedFiles) {
+			for (int i = 0; i < ENCODINGS.length; i++) {
+				if (ENCODINGS[i].equals(encoding)) {
+					return encodedFiles[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return 是否存在预压缩文件
+	 */
+	public boolean hasEncodedFile() {
+		if (null != encodedFiles) {
+			for (StaticResource encodedFile : encodedFiles) {
+				if (null != encodedFile) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 路径的变更是否影响此资源，包括文件本身、其所在的目录和预压缩文件
+	 * 
+	 * @param changed 变更的文件或目录
+	 * @return 是否影响
+	 */
+	boolean dependsOn(Path changed) {
+		final Path path = file.getAbsoluteFile().toPath();
+		if (path.startsWith(changed)) {
+			return true;
+		}
+		if (null != encodedFiles) {
+			final String fileName = changed.getFileName().toString();
+			for (String ext : ENCODING_EXTS) {
+				if (fileName.endsWith(ext) && changed.equals(path.resolveSibling(path.getFileName() + ext))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return 格式化好的Last-Modified头
+	 */
+	public String getLastModifiedHeader() {
+		return lastModifiedHeader;
+	}
+
+	/**
+	 * @return 文件内容是否已缓存在内存中
+	 */
+	public boolean isContentCached() {
+		return null != content;
+	}
+
+	/**
+	 * 获得缓存在内存中的文件内容，每次调用返回独立读写位置的只读副本，使用后需释放
+	 * 
+	 * @return 文件内容，未缓存或已失效返回null
+	 */
+	public ByteBuf retainedContent() {
+		final ByteBuf content = this.content;
+		if (null == content) {
+			return null;
+		}
+		try {
+			return content.retainedDuplicate();
+		} catch (IllegalReferenceCountException e) {
+			// 并发失效
+			return null;
+		}
+	}
+
+	/**
+	 * @return 文件内容、压缩内容或预压缩文件的内容是否缓存在内存中
+	 */
+	boolean isMemoryCached() {
+		if (null != content || null != gzipContent) {
+			return true;
+		}
+		if (null != encodedFiles) {
+			for (StaticResource encodedFile : encodedFiles) {
+				if (null != encodedFile && encodedFile.isMemoryCached()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 获得缓存在内存中的gzip压缩内容，每次调用返回独立读写位置的只读副本，使用后需释放
+	 * 
+	 * @return 压缩内容，未缓存或已失效返回null
+	 */
+	public ByteBuf retainedGzipContent() {
+		final ByteBuf gzipContent = this.gzipContent;
+		if (null == gzipContent) {
+			return null;
+		}
+		try {
+			return gzipContent.retainedDuplicate();
+		} catch (IllegalReferenceCountException e) {
+			// 并发失效
+			return null;
+		}
+	}
+
+	/**
+	 * @return 是否需要压缩，已压缩、压缩后不能减小体积或已失效时不需要
+	 */
+	synchronized boolean isCompressNeeded() {
+		return false == isInvalid && false == isIncompressible && null == gzipContent;
+	}
+
+	/**
+	 * 使用gzip压缩文件内容并缓存在内存中，压缩后体积不减小或读取过程中文件被修改时不缓存
+	 * 
+	 * @param level 压缩级别，1~9
+	 * @return 缓存的字节数，未缓存返回0
+	 * @throws IOException 读取失败
+	 */
+	long compressContent(final int level) throws IOException {
+		synchronized (this) {
+			if (isInvalid || isIncompressible || null != gzipContent) {
+				return 0;
+			}
+		}
+
+		final ByteBuf buf = Unpooled.directBuffer((int) Math.min(length / 2 + 64, Integer.MAX_VALUE));
+		try (InputStream in = new FileInputStream(file);
+				GZIPOutputStream out = new GZIPOutputStream(new ByteBufOutputStream(buf), 8192) {
+					{
+						def.setLevel(level);
+					}
+				}) {
+			IoUtil.copy(in, out);
+		} catch (IOException e) {
+			buf.release();
+			throw e;
+		}
+
+		if (file.lastModified() != lastModified || file.length() != length) {
+			// 读取过程中文件被修改
+			buf.release();
+			return 0;
+		}
+		synchronized (this) {
+			if (isInvalid || null != this.gzipContent) {
+				buf.release();
+				return 0;
+			}
+			if (buf.readableBytes() >= length) {
+				buf.release();
+				isIncompressible = true;
+				return 0;
+			}
+			this.gzipContent = buf.capacity(buf.readableBytes()).asReadOnly();
+		}
+		return buf.readableBytes();
+	}
+
+	/**
+	 * 读取文件内容到内存，读取前后文件的修改时间和大小发生变化时不缓存
+	 * 
+	 * @return 缓存的字节数，未缓存返回0
+	 * @throws IOException 读取失败
+	 */
+	long loadContent() throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			return 0;
+		}
+
+		final ByteBuf buf = Unpooled.directBuffer((int) length);
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (buf.isWritable()) {
+				if (buf.writeBytes(fileChannel, buf.writerIndex(), buf.writableBytes()) < 0) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			buf.release();
+			throw e;
+		}
+
+		if (buf.isWritable() || file.lastModified() != lastModified || file.length() != length) {
+			// 读取过程中文件被修改
+			buf.release();
+			return 0;
+		}
+		synchronized (this) {
+			if (isInvalid || null != this.content) {
+				buf.release();
+				return 0;
+			}
+			this.content = buf.asReadOnly();
+		}
+		return length;
+	}
+
+	/**
+	 * 释放缓存在内存中的文件内容、压缩内容和预压缩文件的内容，正在发送的副本不受影响
+	 * 
+	 * @return 释放的字节数
+	 */
+	long releaseContent() {
+		long released = 0;
+		synchronized (this) {
+			if (null != content) {
+				released += content.capacity();
+				content.release();
+				content = null;
+			}
+			if (null != gzipContent) {
+				released += gzipContent.capacity();
+				gzipContent.release();
+				gzipContent = null;
+			}
+		}
+		if (null != encodedFiles) {
+			for (StaticResource encodedFile : encodedFiles) {
+				if (null != encodedFile) {
+					released += encodedFile.releaseContent();
+				}
+			}
+		}
+		return released;
+	}
+
+	/**
+	 * 创建用于发送文件内容的FileRegion<br>
+	 * 共享FileChannel时所有请求使用同一个FileChannel按位置读取，在资源失效且所有发送完成后关闭
+	 * 
+	 * @param position 开始位置
+	 * @param count 长度
+	 * @return FileRegion
+	 * @throws IOException 打开文件失败
+	 */
+	public FileRegion newRegion(long position, long count) throws IOException {
+		final SharedFileChannel channel = retainChannel();
+		if (null == channel) {
+			// 在真正发送时才打开文件
+			return new DefaultFileRegion(file, position, count);
+		}
+		return new SharedFileRegion(channel, position, count);
+	}
+
+	/**
+	 * 创建分段读取文件内容的ChunkedInput，用于无法零拷贝发送时（例如SSL）<br>
+	 * 共享FileChannel时按位置读取，与其它请求互不影响
+	 * 
+	 * @param position 开始位置
+	 * @param count 长度
+	 * @param chunkSize 每段大小
+	 * @return ChunkedInput
+	 * @throws IOException 打开文件失败
+	 */
+	public ChunkedInput<ByteBuf> newChunkedInput(long position, long count, int chunkSize) throws IOException {
+		final SharedFileChannel channel = retainChannel();
+		if (null == channel) {
+			return new ChunkedNioFile(FileChannel.open(file.toPath(), StandardOpenOption.READ), position, count, chunkSize);
+		}
+		try {
+			return new SharedChunkedFile(channel, position, count, chunkSize);
+		} catch (IOException e) {
+			channel.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * 获得共享的FileChannel并增加引用，首次调用时打开文件
+	 * 
+	 * @return 共享的FileChannel，不共享或已失效时返回null
+	 * @throws IOException 打开文件失败
+	 */
+	private SharedFileChannel retainChannel() throws IOException {
+		if (false == isShareChannel) {
+			return null;
+		}
+		synchronized (this) {
+			if (isInvalid) {
+				return null;
+			}
+			if (null == this.channel) {
+				this.channel = new SharedFileChannel(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+			}
+			this.channel.retain();
+			return this.channel;
+		}
+	}
+
+	/**
+	 * 失效，释放共享的FileChannel和缓存的文件内容，正在发送的请求完成后关闭
+	 * 
+	 * @return 释放的内存字节数
+	 */
+	long invalidate() {
+		final SharedFileChannel channel;
+		synchronized (this) {
+			this.isInvalid = true;
+			channel = this.channel;
+			this.channel = null;
+		}
+		if (null != channel) {
+			channel.release();
+		}
+		if (null != encodedFiles) {
+			for (StaticResource encodedFile : encodedFiles) {
+				if (null != encodedFile) {
+					encodedFile.invalidate();
+				}
+			}
+		}
+		return releaseContent();
+	}
+
+	/**
+	 * @return 是否需要读取文件计算强ETag，已计算或已失效时不需要（未缓存的资源每次都要读取文件，不值得）
+	 */
+	synchronized boolean isDigestNeeded() {
+		return false == isInvalid && null == strongETag;
+	}
+
+	/**
+	 * 读取文件计算内容摘要作为强ETag，会阻塞，在后台线程中调用<br>
+	 * 资源已失效、读取失败或读取过程中文件被修改时不设置，继续使用弱ETag
+	 */
+	void computeStrongETag() {
+		if (false == isDigestNeeded()) {
+			return;
+		}
+		final String md5Hex;
+		try {
+			md5Hex = DigestUtil.md5Hex(file);
+		} catch (IORuntimeException e) {
+			return;
+		}
+		if (file.lastModified() != lastModified || file.length() != length) {
+			return;
+		}
+		this.strongETag = ETag.strong(md5Hex);
+	}
+
+	/**
+	 * 查找同目录下的预压缩文件，修改时间早于原始文件的视为过期
+	 * 
+	 * @return 与ENCODINGS一一对应的预压缩文件，都不存在时返回null
+	 */
+	private StaticResource[] findEncodedFiles() {
+		StaticResource[] encodedFiles = null;
+		File encodedFile;
+		for (int i = 0; i < ENCODINGS.length; i++) {
+			encodedFile = new File(file.getPath() + ENCODING_EXTS[i]);
+			if (encodedFile.isFile() && encodedFile.lastModified() >= lastModified) {
+				if (null == encodedFiles) {
+					encodedFiles = new StaticResource[ENCODINGS.length];
+				}
+				encodedFiles[i] = new StaticResource(encodedFile, isShareChannel, contentType, ENCODINGS[i]);
+			}
+		}
+		return encodedFiles;
+	}
+
+	@Override
+	public String toString() {
+		return file.getPath();
+	}
+
+	/**
+	 * 引用计数的FileChannel，引用为0时关闭
+	 * 
+	 * @author Looly
+	 *
+	 */
+	private static class SharedFileChannel extends AbstractReferenceCounted {
+		private final FileChannel channel;
+
+		SharedFileChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		protected void deallocate() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+
+		@Override
+		public ReferenceCounted touch(Object hint) {
+			return this;
+		}
+	}
+
+	/**
+	 * 使用共享FileChannel的FileRegion<br>
+	 * 继承DefaultFileRegion以使用epoll的sendfile，释放时只减少共享FileChannel的引用而不关闭它
+	 * 
+	 * @author Looly
+	 *
+	 */
+	private static class SharedFileRegion extends DefaultFileRegion {
+		private final SharedFileChannel channel;
+
+		SharedFileRegion(SharedFileChannel channel, long position, long count) {
+			super(channel.channel, position, count);
+			this.channel = channel;
+		}
+
+		@Override
+		protected void deallocate() {
+			channel.release();
+		}
+	}
+
+	/**
+	 * 使用共享FileChannel的ChunkedInput<br>
+	 * 关闭时只减少共享FileChannel的引用而不关闭它
+	 * 
+	 * @author Looly
+	 *
+	 */
+	private static class SharedChunkedFile extends ChunkedNioFile {
+		private final SharedFileChannel channel;
+		private boolean isClosed;
+
+		SharedChunkedFile(SharedFileChannel channel, long position, long count, int chunkSize) throws IOException {
+			super(channel.channel, position, count, chunkSize);
+			this.channel = channel;
+		}
+
+		@Override
+		public void close() {
+			if (false == isClosed) {
+				isClosed = true;
+				channel.release();
+			}
+		}
+	}
+}
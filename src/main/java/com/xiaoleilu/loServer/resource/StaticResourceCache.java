@@ -0,0 +1,495 @@
+package com.xiaoleilu.loServer.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+
+/**
+ * 静态资源缓存<br>
+ * 以请求路径为键缓存解析后的{@link StaticResource}，命中时不访问文件系统<br>
+ * 使用WatchService监听已缓存文件所在的目录，文件变更、删除或新建时使对应的缓存失效；WatchService不可用时不缓存<br>
+ * 缓存数超出上限时淘汰最久未访问的部分<br>
+ * 再次命中的小文件在后台线程中将内容读入内存，之后发送时不再读取磁盘，读入前仍从磁盘发送；内容总大小超出上限时释放最久未访问文件的内容<br>
+ * 文本文件的gzip压缩内容同样缓存在内存中，与文件内容共用总大小上限，避免每次请求重复压缩；压缩在后台线程中进行，完成前发送原始文件
+ *
+ * @author Looly
+ *
+ */
+public class StaticResourceCache {
+	private static final Log log = StaticLog.get();
+
+	/** 超出上限时每次淘汰的比例 */
+	private static final int EVICT_DIVISOR = 8;
+	/** 后台线程排队任务数上限，超出时放弃，之后的请求再次提交 */
+	private static final int MAX_PENDING_TASKS = 1024;
+
+	private final int capacity;
+	private final boolean isShareChannel;
+	/** 内容缓存在内存中的文件大小上限 */
+	private final long memoryFileSize;
+	/** 内存中缓存的内容总大小上限 */
+	private final long memoryCacheSize;
+	/** 内存中缓存的内容总大小 */
+	private final AtomicLong memoryUsed = new AtomicLong();
+	/** 压缩后缓存的文件大小上限，0表示不压缩 */
+	private long compressFileSize;
+	/** 压缩级别 */
+	private int compressionLevel = 6;
+	private final ConcurrentHashMap<String, StaticResource> cache = new ConcurrentHashMap<String, StaticResource>();
+	/** 已监听的目录 */
+	private final Set<Path> watchedDirs = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+	/** 后台线程，读取文件内容、压缩和计算摘要，不阻塞IO线程；首次提交任务时启动 */
+	private final EventExecutor worker = new DefaultEventExecutor(null, new DefaultThreadFactory("loServer-static", true), MAX_PENDING_TASKS,
+			RejectedExecutionHandlers.reject());
+	/** 正在后台读取内容的资源，同一资源只提交一次 */
+	private final Set<StaticResource> loading = ConcurrentHashMap.newKeySet();
+	/** 正在后台压缩的资源，同一资源只提交一次 */
+	private final Set<StaticResource> compressing = ConcurrentHashMap.newKeySet();
+	/** 正在后台计算摘要的资源，同一资源只提交一次 */
+	private final Set<StaticResource> digesting = ConcurrentHashMap.newKeySet();
+
+	private volatile WatchService watcher;
+	private volatile boolean isWatcherUnavailable;
+
+	/**
+	 * 构造
+	 *
+	 * @param capacity 最大缓存数，小于等于0表示不缓存
+	 * @param isShareChannel 是否共享FileChannel
+	 */
+	public StaticResourceCache(int capacity, boolean isShareChannel) {
+		this(capacity, isShareChannel, 0, 0);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param capacity 最大缓存数，小于等于0表示不缓存
+	 * @param isShareChannel 是否共享FileChannel
+	 * @param memoryFileSize 内容缓存在内存中的文件大小上限，小于等于0表示不缓存内容
+	 * @param memoryCacheSize 内存中缓存的内容总大小上限，小于等于0表示不缓存内容
+	 */
+	public StaticResourceCache(int capacity, boolean isShareChannel, long memoryFileSize, long memoryCacheSize) {
+		this.capacity = capacity;
+		this.isShareChannel = isShareChannel;
+		this.memoryFileSize = Math.min(memoryFileSize, memoryCacheSize);
+		this.memoryCacheSize = memoryCacheSize;
+	}
+
+	/**
+	 * 设置静态文件的压缩，压缩内容缓存在内存中，与文件内容共用总大小上限
+	 *
+	 * @param compressFileSize 压缩后缓存的文件大小上限，小于等于0表示不压缩
+	 * @param compressionLevel 压缩级别，1~9
+	 * @return this
+	 */
+	public StaticResourceCache setCompression(long compressFileSize, int compressionLevel) {
+		this.compressFileSize = Math.min(compressFileSize, memoryCacheSize);
+		this.compressionLevel = compressionLevel;
+		return this;
+	}
+
+	/**
+	 * 获得缓存的静态资源
+	 *
+	 * @param path 请求路径
+	 * @return 静态资源，未缓存返回null
+	 */
+	public StaticResource get(String path) {
+		final StaticResource resource = cache.get(path);
+		if (null != resource) {
+			touch(resource);
+		}
+		return resource;
+	}
+
+	/**
+	 * 获得静态资源指定编码的预压缩文件
+	 *
+	 * @param resource 静态资源
+	 * @param encoding 编码，例如br、gzip
+	 * @return 预压缩文件，不存在返回null
+	 */
+	public StaticResource getEncodedFile(StaticResource resource, String encoding) {
+		final StaticResource encodedFile = resource.getEncodedFile(encoding);
+		if (null != encodedFile) {
+			touch(encodedFile);
+		}
+		return encodedFile;
+	}
+
+	/**
+	 * 获得静态资源的ETag<br>
+	 * 强ETag的摘要未计算且内容未缓存时，提交到后台线程读取文件计算，完成前使用弱ETag
+	 *
+	 * @param resource 静态资源
+	 * @param isStrong 是否使用内容摘要生成强ETag
+	 * @return ETag
+	 */
+	public String getETag(final StaticResource resource, boolean isStrong) {
+		final String etag = resource.getETag(isStrong);
+		if (isStrong && resource.isDigestNeeded() && digesting.add(resource)) {
+			submit(resource, digesting, new Runnable() {
+				@Override
+				public void run() {
+					resource.computeStrongETag();
+				}
+			});
+		}
+		return etag;
+	}
+
+	/**
+	 * 获得静态资源的gzip压缩内容，首次调用时提交到后台线程压缩并缓存
+	 *
+	 * @param resource 静态资源
+	 * @return 压缩内容的只读副本，使用后需释放；文件过大、未缓存、尚未压缩完成或压缩后体积不减小时返回null
+	 */
+	public ByteBuf getGzipContent(final StaticResource resource) {
+		if (resource.getLength() > compressFileSize) {
+			return null;
+		}
+		final ByteBuf gzipContent = resource.retainedGzipContent();
+		if (null == gzipContent && resource.isCompressNeeded() && compressing.add(resource)) {
+			submit(resource, compressing, new Runnable() {
+				@Override
+				public void run() {
+					compress(resource);
+				}
+			});
+		}
+		return gzipContent;
+	}
+
+	/**
+	 * 创建静态资源并缓存之
+	 *
+	 * @param path 请求路径
+	 * @param file 文件，必须为已存在的普通文件
+	 * @return 静态资源
+	 */
+	public StaticResource put(String path, File file) {
+		// 先监听再读取元数据，保证读取之后的变更都能被监听到
+		final boolean isCacheable = capacity > 0 && watch(file.getAbsoluteFile().toPath().getParent());
+		final StaticResource resource = new StaticResource(file, isShareChannel);
+		resource.isRequested = true;
+		if (false == isCacheable) {
+			// 不缓存，也不共享FileChannel
+			resource.invalidate();
+			return resource;
+		}
+
+		final StaticResource old = cache.put(path, resource);
+		if (null != old) {
+			release(old);
+		}
+		if (cache.size() > capacity) {
+			evict();
+		}
+		return resource;
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		final Iterator<StaticResource> iterator = cache.values().iterator();
+		while (iterator.hasNext()) {
+			release(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * @return 缓存数
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return 内存中缓存的内容总大小
+	 */
+	public long memoryUsed() {
+		return memoryUsed.get();
+	}
+
+	/**
+	 * 关闭文件监听并清空缓存
+	 */
+	public void close() {
+		final WatchService watcher = this.watcher;
+		this.isWatcherUnavailable = true;
+		if (null != watcher) {
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		worker.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+		clear();
+	}
+
+	// --------------------------------------------------------- Private method start
+	/**
+	 * 使路径本身及其下的所有缓存失效
+	 *
+	 * @param changed 变更的文件或目录
+	 */
+	private void invalidate(Path changed) {
+		final Iterator<StaticResource> iterator = cache.values().iterator();
+		StaticResource resource;
+		while (iterator.hasNext()) {
+			resource = iterator.next();
+			if (resource.dependsOn(changed)) {
+				release(resource);
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * 淘汰最久未访问的部分缓存
+	 */
+	private synchronized void evict() {
+		final int count = cache.size() - capacity + capacity / EVICT_DIVISOR;
+		if (count <= 0) {
+			return;
+		}
+		final List<Entry<String, StaticResource>> entries = new ArrayList<Entry<String, StaticResource>>(cache.entrySet());
+		Collections.sort(entries, new Comparator<Entry<String, StaticResource>>() {
+			@Override
+			public int compare(Entry<String, StaticResource> o1, Entry<String, StaticResource> o2) {
+				return Long.compare(o1.getValue().lastAccess, o2.getValue().lastAccess);
+			}
+		});
+		for (int i = 0; i < count && i < entries.size(); i++) {
+			if (cache.remove(entries.get(i).getKey(), entries.get(i).getValue())) {
+				release(entries.get(i).getValue());
+			}
+		}
+	}
+
+	/**
+	 * 更新资源的访问时间，再次请求的小文件提交到后台线程将内容读入内存
+	 *
+	 * @param resource 静态资源
+	 */
+	private void touch(final StaticResource resource) {
+		resource.lastAccess = System.currentTimeMillis();
+		if (resource.getLength() <= memoryFileSize && false == resource.isContentCached()) {
+			if (false == resource.isRequested) {
+				resource.isRequested = true;
+			} else if (loading.add(resource)) {
+				submit(resource, loading, new Runnable() {
+					@Override
+					public void run() {
+						loadContent(resource);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * 使资源失效并扣除其占用的内存
+	 *
+	 * @param resource 静态资源
+	 */
+	private void release(StaticResource resource) {
+		memoryUsed.addAndGet(-resource.invalidate());
+	}
+
+	/**
+	 * 在后台线程中执行资源的任务，完成或无法提交时从进行中的集合移除，之后的请求可以再次提交
+	 *
+	 * @param resource 静态资源
+	 * @param running 进行中的资源
+	 * @param task 任务
+	 */
+	private void submit(final StaticResource resource, final Set<StaticResource> running, final Runnable task) {
+		try {
+			worker.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						running.remove(resource);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			running.remove(resource);
+		}
+	}
+
+	/**
+	 * 压缩文件内容并缓存，超出总大小上限时先释放最久未访问文件的内容，在后台线程中执行
+	 *
+	 * @param resource 静态资源
+	 */
+	private void compress(StaticResource resource) {
+		if (memoryUsed.get() + resource.getLength() > memoryCacheSize) {
+			evictContent(resource.getLength());
+		}
+		try {
+			memoryUsed.addAndGet(resource.compressContent(compressionLevel));
+		} catch (IOException e) {
+			log.warn("Compress [{}] error: {}", resource.getFile(), e.getMessage());
+		}
+	}
+
+	/**
+	 * 将文件内容读入内存，超出总大小上限时先释放最久未访问文件的内容，在后台线程中执行
+	 *
+	 * @param resource 静态资源
+	 */
+	private void loadContent(StaticResource resource) {
+		if (memoryUsed.get() + resource.getLength() > memoryCacheSize) {
+			evictContent(resource.getLength());
+		}
+		try {
+			memoryUsed.addAndGet(resource.loadContent());
+		} catch (IOException e) {
+			log.warn("Load content of [{}] error: {}", resource.getFile(), e.getMessage());
+		}
+	}
+
+	/**
+	 * 释放最久未访问文件的内容，直到可容纳指定大小并留出一部分余量
+	 *
+	 * @param required 需要的字节数
+	 */
+	private synchronized void evictContent(long required) {
+		final long target = memoryCacheSize - required - memoryCacheSize / EVICT_DIVISOR;
+		if (memoryUsed.get() <= target) {
+			return;
+		}
+		final List<StaticResource> resources = new ArrayList<StaticResource>();
+		for (StaticResource resource : cache.values()) {
+			if (resource.isMemoryCached()) {
+				resources.add(resource);
+			}
+		}
+		Collections.sort(resources, new Comparator<StaticResource>() {
+			@Override
+			public int compare(StaticResource o1, StaticResource o2) {
+				return Long.compare(o1.lastAccess, o2.lastAccess);
+			}
+		});
+		for (int i = 0; i < resources.size() && memoryUsed.get() > target; i++) {
+			memoryUsed.addAndGet(-resources.get(i).releaseContent());
+		}
+	}
+
+	/**
+	 * 监听目录
+	 *
+	 * @param dir 目录
+	 * @return 是否监听成功，监听失败时不缓存此目录下的文件
+	 */
+	private boolean watch(Path dir) {
+		if (watchedDirs.contains(dir)) {
+			return true;
+		}
+		final WatchService watcher = watcher();
+		if (null == watcher) {
+			return false;
+		}
+		try {
+			dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			watchedDirs.add(dir);
+			return true;
+		} catch (IOException | ClosedWatchServiceException e) {
+			log.warn("Watch dir [{}] error, static resources in it will not be cached: {}", dir, e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @return WatchService，首次调用时创建并启动监听线程，不可用时返回null
+	 */
+	private WatchService watcher() {
+		if (null == watcher && false == isWatcherUnavailable) {
+			synchronized (this) {
+				if (null == watcher && false == isWatcherUnavailable) {
+					try {
+						final WatchService watcher = FileSystems.getDefault().newWatchService();
+						final Thread thread = new Thread(new Runnable() {
+							@Override
+							public void run() {
+								watchLoop(watcher);
+							}
+						}, "loServer-static-watcher");
+						thread.setDaemon(true);
+						thread.start();
+						this.watcher = watcher;
+					} catch (IOException e) {
+						log.warn("WatchService is not available, static resources will not be cached: {}", e.getMessage());
+						isWatcherUnavailable = true;
+					}
+				}
+			}
+		}
+		return watcher;
+	}
+
+	/**
+	 * 监听循环，在监听线程中执行
+	 *
+	 * @param watcher WatchService
+	 */
+	private void watchLoop(WatchService watcher) {
+		WatchKey key;
+		while (true) {
+			try {
+				key = watcher.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			final Path dir = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					// 事件丢失，无法确定变更的文件
+					clear();
+				} else {
+					invalidate(dir.resolve((Path) event.context()));
+				}
+			}
+			if (false == key.reset()) {
+				// 目录已删除
+				watchedDirs.remove(dir);
+				invalidate(dir);
+			}
+		}
+	}
+	// --------------------------------------------------------- Private method end
+}
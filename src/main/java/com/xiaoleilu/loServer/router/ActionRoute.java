@@ -0,0 +1,166 @@
+package com.xiaoleilu.loServer.router;
+
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.dispatch.DispatchMode;
+import com.xiaoleilu.loServer.filter.FilterChain;
+
+/**
+ * 路由项，保存路径模式与对应的Action<br>
+ * 路由在注册时编译，请求时只读取
+ *
+ * @author Looly
+ *
+ */
+public class ActionRoute {
+
+	/** 路径模式，例如：/user/{id} */
+	private final String pattern;
+	/** 路径变量名，顺序与匹配时捕获的顺序一致，匿名通配的名称为null */
+	private final String[] paramNames;
+	private volatile Action action;
+	/** 注册时预编译的Filter链 */
+	private volatile FilterChain filterChain = FilterChain.EMPTY;
+	/** Action的执行方式，null表示使用全局设置 */
+	private volatile DispatchMode dispatchMode;
+	/** 是否流式接收请求体 */
+	private volatile boolean streaming;
+	/** 请求体大小上限，小于0表示使用全局设置 */
+	private volatile long maxContentLength = -1;
+	/** 表单和上传文件保存在内存中的大小上限，小于0表示使用全局设置 */
+	private volatile long uploadThreshold = -1;
+
+	/**
+	 * 构造
+	 *
+	 * @param pattern 路径模式
+	 * @param paramNames 路径变量名
+	 * @param action Action
+	 */
+	ActionRoute(String pattern, String[] paramNames, Action action) {
+		this.pattern = pattern;
+		this.paramNames = paramNames;
+		this.action = action;
+	}
+
+	/**
+	 * @return 路径模式
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return 路径变量名
+	 */
+	public String[] getParamNames() {
+		return paramNames;
+	}
+
+	/**
+	 * @return 是否包含路径变量
+	 */
+	public boolean hasParams() {
+		return paramNames.length > 0;
+	}
+
+	/**
+	 * @return Action
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * 设置Action，同一路径重复注册时替换之
+	 *
+	 * @param action Action
+	 */
+	void setAction(Action action) {
+		this.action = action;
+	}
+
+	/**
+	 * @return 此路由对应的Filter链
+	 */
+	public FilterChain getFilterChain() {
+		return filterChain;
+	}
+
+	/**
+	 * 设置Filter链，在路由或Filter注册时调用
+	 *
+	 * @param filterChain Filter链
+	 */
+	public void setFilterChain(FilterChain filterChain) {
+		this.filterChain = (null == filterChain) ? FilterChain.EMPTY : filterChain;
+	}
+
+	/**
+	 * @return Action的执行方式，null表示使用全局设置
+	 */
+	public DispatchMode getDispatchMode() {
+		return dispatchMode;
+	}
+
+	/**
+	 * 设置Action的执行方式
+	 *
+	 * @param dispatchMode 执行方式，null表示使用全局设置
+	 */
+	public void setDispatchMode(DispatchMode dispatchMode) {
+		this.dispatchMode = dispatchMode;
+	}
+
+	/**
+	 * @return 是否流式接收请求体
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * 设置是否流式接收请求体
+	 *
+	 * @param streaming 是否流式接收请求体
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * @return 请求体大小上限，小于0表示使用全局设置（流式接收时不限制）
+	 */
+	public long getMaxContentLength() {
+		return maxContentLength;
+	}
+
+	/**
+	 * 设置请求体大小上限
+	 *
+	 * @param maxContentLength 字节数，小于0表示使用全局设置（流式接收时不限制）
+	 */
+	public void setMaxContentLength(long maxContentLength) {
+		this.maxContentLength = maxContentLength;
+	}
+
+	/**
+	 * @return 表单和上传文件保存在内存中的大小上限，小于0表示使用全局设置
+	 */
+	public long getUploadThreshold() {
+		return uploadThreshold;
+	}
+
+	/**
+	 * 设置表单和上传文件保存在内存中的大小上限，超出后写入临时文件
+	 *
+	 * @param uploadThreshold 字节数，0表示总是写入临时文件，小于0表示使用全局设置
+	 */
+	public void setUploadThreshold(long uploadThreshold) {
+		this.uploadThreshold = uploadThreshold;
+	}
+
+	@Override
+	public String toString() {
+		return pattern + " -> " + action;
+	}
+}
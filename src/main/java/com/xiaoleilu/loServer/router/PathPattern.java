@@ -0,0 +1,115 @@
+package com.xiaoleilu.loServer.router;
+
+/**
+ * 路径模式，语法与{@link Router}相同，用于Filter等需要单独判断路径是否匹配的场景<br>
+ * 除匹配请求路径外，还可以判断两个路径模式之间的覆盖关系，用于在注册时预先计算每个路由的Filter链
+ *
+ * @author Looly
+ *
+ */
+public class PathPattern {
+
+	/** 模式覆盖关系：被比较模式能匹配的路径全部被此模式匹配 */
+	public static final int COVER_ALL = 1;
+	/** 模式覆盖关系：被比较模式能匹配的路径都不被此模式匹配 */
+	public static final int COVER_NONE = 0;
+	/** 模式覆盖关系：无法在注册时确定，需在请求时判断 */
+	public static final int COVER_PARTIAL = -1;
+
+	private final String pattern;
+	private final Router matcher;
+	/** 第一个变量或通配之前的静态部分 */
+	private final String literalPrefix;
+	/** 是否为纯静态路径 */
+	private final boolean isStatic;
+	/** 是否为"静态前缀 + 末尾通配"的形式，例如/api/* */
+	private final boolean isPrefixOnly;
+
+	/**
+	 * 构造
+	 *
+	 * @param pattern 路径模式
+	 */
+	public PathPattern(String pattern) {
+		this.pattern = pattern;
+		this.matcher = new Router();
+		this.matcher.add(pattern, null);
+
+		final int wildcardIndex = indexOfWildcard(pattern);
+		this.isStatic = wildcardIndex < 0;
+		this.literalPrefix = isStatic ? pattern : pattern.substring(0, wildcardIndex);
+		this.isPrefixOnly = (false == isStatic) && (pattern.endsWith("/*") || pattern.endsWith("/**")) && literalPrefix.length() == pattern.lastIndexOf('/') + 1;
+	}
+
+	/**
+	 * @return 路径模式
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return 是否匹配所有路径
+	 */
+	public boolean isMatchAll() {
+		return isPrefixOnly && "/".equals(literalPrefix);
+	}
+
+	/**
+	 * 请求路径是否匹配此模式
+	 *
+	 * @param path 请求路径
+	 * @return 是否匹配
+	 */
+	public boolean matches(String path) {
+		return null != matcher.match(path);
+	}
+
+	/**
+	 * 判断此模式对另一个路由模式的覆盖关系
+	 *
+	 * @param routePattern 路由的路径模式
+	 * @return {@link #COVER_ALL}、{@link #COVER_NONE}或{@link #COVER_PARTIAL}
+	 */
+	public int cover(String routePattern) {
+		final int routeWildcardIndex = indexOfWildcard(routePattern);
+		if (routeWildcardIndex < 0) {
+			// 静态路由可直接判断
+			return matches(routePattern) ? COVER_ALL : COVER_NONE;
+		}
+
+		final String routePrefix = routePattern.substring(0, routeWildcardIndex);
+		if (isPrefixOnly && routePrefix.startsWith(literalPrefix)) {
+			return COVER_ALL;
+		}
+		if (routePrefix.startsWith(literalPrefix) || literalPrefix.startsWith(routePrefix)) {
+			return COVER_PARTIAL;
+		}
+		// 两者的静态前缀互不包含，不可能匹配相同的路径
+		return COVER_NONE;
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+
+	/**
+	 * @param pattern 路径模式
+	 * @return 第一个变量或通配所在的路径段的开始位置，纯静态路径返回-1
+	 */
+	private static int indexOfWildcard(String pattern) {
+		int index = -1;
+		for (int i = 0; i < pattern.length(); i++) {
+			final char c = pattern.charAt(i);
+			if (c == '{' || c == '*') {
+				index = i;
+				break;
+			}
+		}
+		if (index < 0) {
+			return -1;
+		}
+		return pattern.lastIndexOf('/', index) + 1;
+	}
+}
@@ -0,0 +1,86 @@
+package com.xiaoleilu.loServer.router;
+
+import java.util.Arrays;
+
+/**
+ * 基数树（Radix Tree）节点<br>
+ * 静态节点保存公共前缀，子节点按照首字符索引；路径变量节点匹配一个路径段；通配节点匹配剩余全部路径
+ *
+ * @author Looly
+ *
+ */
+class RouteNode {
+
+	/** 节点类型：静态文本 */
+	static final int STATIC = 0;
+	/** 节点类型：路径变量，匹配到下一个"/"之前 */
+	static final int PARAM = 1;
+	/** 节点类型：通配，匹配剩余全部路径 */
+	static final int ANY = 2;
+
+	private static final RouteNode[] EMPTY_NODES = new RouteNode[0];
+	private static final char[] EMPTY_LABELS = new char[0];
+
+	final int type;
+	/** 静态前缀，只对STATIC节点有效 */
+	String prefix;
+	/** 静态子节点首字符，与staticChildren一一对应 */
+	char[] labels = EMPTY_LABELS;
+	RouteNode[] staticChildren = EMPTY_NODES;
+	RouteNode paramChild;
+	RouteNode anyChild;
+	/** 此节点结束时对应的路由，无路由时为null */
+	ActionRoute route;
+
+	RouteNode(int type, String prefix) {
+		this.type = type;
+		this.prefix = prefix;
+	}
+
+	/**
+	 * 查找指定首字符的静态子节点
+	 *
+	 * @param label 首字符
+	 * @return 子节点，不存在返回null
+	 */
+	RouteNode findStaticChild(char label) {
+		final char[] labels = this.labels;
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i] == label) {
+				return staticChildren[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 增加静态子节点
+	 *
+	 * @param child 子节点
+	 */
+	void addStaticChild(RouteNode child) {
+		final int length = labels.length;
+		final char[] newLabels = Arrays.copyOf(labels, length + 1);
+		final RouteNode[] newChildren = Arrays.copyOf(staticChildren, length + 1);
+		newLabels[length] = child.prefix.charAt(0);
+		newChildren[length] = child;
+		this.staticChildren = newChildren;
+		this.labels = newLabels;
+	}
+
+	/**
+	 * 替换指定首字符的静态子节点
+	 *
+	 * @param child 新的子节点
+	 */
+	void replaceStaticChild(RouteNode child) {
+		final char label = child.prefix.charAt(0);
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i] == label) {
+				staticChildren[i] = child;
+				return;
+			}
+		}
+		addStaticChild(child);
+	}
+}
@@ -0,0 +1,289 @@
+package com.xiaoleilu.loServer.router;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.exception.ServerSettingException;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 基于基数树（Radix Tree）的路由器<br>
+ * 支持的路径模式：
+ * <pre>
+ * /user/list        静态路径
+ * /user/{id}        路径变量，匹配一个路径段，通过Request.getPathParam("id")获取
+ * /user/*&#47;posts    匿名通配，匹配一个路径段
+ * /static/**        匹配/static/下的所有路径，剩余路径通过Request.getPathParam("*")获取
+ * /static/*         末尾的*与**相同，兼容原有的"/*"全局映射
+ * </pre>
+ * 匹配优先级：静态路径 &gt; 路径变量 &gt; 通配，匹配时间只与路径长度相关，与路由数量无关<br>
+ * 路径按原样匹配，末尾的"/"不会被忽略：/user/5/不匹配/user/{id}，/static不匹配/static/**<br>
+ * 匹配过程不创建对象，路径变量以起止下标的形式写入调用方提供的数组中<br>
+ * 路由应在服务启动前注册，运行时注册不保证对正在处理的请求立即可见
+ *
+ * @author Looly
+ *
+ */
+public class Router {
+
+	/** 末尾通配捕获的剩余路径对应的变量名 */
+	public static final String ANY_PARAM_NAME = "*";
+
+	private final RouteNode root = new RouteNode(RouteNode.STATIC, StrUtil.EMPTY);
+	private final Map<String, ActionRoute> routes = new LinkedHashMap<String, ActionRoute>();
+	/** 所有路由中路径变量的最大个数，用于调用方分配捕获数组 */
+	private volatile int maxParams;
+
+	/**
+	 * 增加路由，相同路径模式的路由将被覆盖
+	 *
+	 * @param pattern 路径模式，必须以"/"开头
+	 * @param action Action
+	 * @return 路由项
+	 */
+	public synchronized ActionRoute add(String pattern, Action action) {
+		final List<String> paramNames = new ArrayList<String>();
+		RouteNode node = root;
+		final StringBuilder staticPart = new StringBuilder();
+
+		final int length = pattern.length();
+		int segmentStart = 1;
+		while (segmentStart <= length) {
+			int segmentEnd = pattern.indexOf('/', segmentStart);
+			if (segmentEnd < 0) {
+				segmentEnd = length;
+			}
+			final String segment = pattern.substring(segmentStart, segmentEnd);
+			final boolean isLast = segmentEnd == length;
+			staticPart.append('/');
+
+			if ("**".equals(segment) || ("*".equals(segment) && isLast)) {
+				if (false == isLast) {
+					throw new ServerSettingException("[{}] '**' must be the last segment!", pattern);
+				}
+				node = insertStatic(node, staticPart);
+				if (null == node.anyChild) {
+					node.anyChild = new RouteNode(RouteNode.ANY, null);
+				}
+				node = node.anyChild;
+				paramNames.add(ANY_PARAM_NAME);
+			} else if ("*".equals(segment) || isParamSegment(segment)) {
+				node = insertStatic(node, staticPart);
+				if (null == node.paramChild) {
+					node.paramChild = new RouteNode(RouteNode.PARAM, null);
+				}
+				node = node.paramChild;
+				paramNames.add("*".equals(segment) ? null : segment.substring(1, segment.length() - 1));
+			} else if (segment.indexOf('{') > -1 || segment.indexOf('*') > -1) {
+				throw new ServerSettingException("[{}] path variable or wildcard must be a whole segment!", pattern);
+			} else {
+				staticPart.append(segment);
+			}
+			segmentStart = segmentEnd + 1;
+		}
+		node = insertStatic(node, staticPart);
+
+		final ActionRoute route = new ActionRoute(pattern, paramNames.toArray(new String[paramNames.size()]), action);
+		node.route = route;
+		routes.put(pattern, route);
+		if (paramNames.size() > maxParams) {
+			maxParams = paramNames.size();
+		}
+		return route;
+	}
+
+	/**
+	 * 获得已注册的路由项
+	 *
+	 * @param pattern 注册时的路径模式
+	 * @return 路由项，不存在返回null
+	 */
+	public synchronized ActionRoute get(String pattern) {
+		return routes.get(pattern);
+	}
+
+	/**
+	 * @return 所有已注册的路由项，按照注册顺序
+	 */
+	public synchronized Collection<ActionRoute> getRoutes() {
+		return Collections.unmodifiableCollection(new ArrayList<ActionRoute>(routes.values()));
+	}
+
+	/**
+	 * @return 所有路由中路径变量的最大个数
+	 */
+	public int getMaxParams() {
+		return maxParams;
+	}
+
+	/**
+	 * 清空所有路由
+	 */
+	public synchronized void clear() {
+		root.labels = new char[0];
+		root.staticChildren = new RouteNode[0];
+		root.paramChild = null;
+		root.anyChild = null;
+		root.route = null;
+		routes.clear();
+		maxParams = 0;
+	}
+
+	/**
+	 * 匹配路径，不捕获路径变量
+	 *
+	 * @param path 请求路径
+	 * @return 匹配的路由项，无匹配返回null
+	 */
+	public ActionRoute match(String path) {
+		return match(path, null);
+	}
+
+	/**
+	 * 匹配路径<br>
+	 * 第i个路径变量的起止下标分别写入params[2i]和params[2i + 1]，变量名见{@link ActionRoute#getParamNames()}
+	 *
+	 * @param path 请求路径
+	 * @param params 路径变量下标数组，长度至少为{@link #getMaxParams()} * 2，为null表示不捕获
+	 * @return 匹配的路由项，无匹配返回null
+	 */
+	public ActionRoute match(String path, int[] params) {
+		return find(root, path, 0, params, 0);
+	}
+
+	// --------------------------------------------------------- Private method start
+	/**
+	 * 递归匹配节点，失败时回溯尝试低优先级的子节点
+	 *
+	 * @param node 当前节点
+	 * @param path 路径
+	 * @param pos 当前节点开始匹配的位置
+	 * @param params 路径变量下标数组
+	 * @param paramCount 已捕获的变量个数
+	 * @return 匹配的路由项
+	 */
+	private static ActionRoute find(RouteNode node, String path, int pos, int[] params, int paramCount) {
+		final int length = path.length();
+		switch (node.type) {
+		case RouteNode.STATIC:
+			final String prefix = node.prefix;
+			if (false == path.regionMatches(pos, prefix, 0, prefix.length())) {
+				return null;
+			}
+			pos += prefix.length();
+			break;
+		case RouteNode.PARAM:
+			int end = path.indexOf('/', pos);
+			if (end < 0) {
+				end = length;
+			}
+			if (end == pos) {
+				// 路径变量不能为空
+				return null;
+			}
+			capture(params, paramCount++, pos, end);
+			pos = end;
+			break;
+		default:
+			capture(params, paramCount++, pos, length);
+			pos = length;
+			break;
+		}
+
+		if (pos == length) {
+			if (null != node.route) {
+				return node.route;
+			}
+		} else {
+			final RouteNode staticChild = node.findStaticChild(path.charAt(pos));
+			if (null != staticChild) {
+				final ActionRoute route = find(staticChild, path, pos, params, paramCount);
+				if (null != route) {
+					return route;
+				}
+			}
+			if (null != node.paramChild) {
+				final ActionRoute route = find(node.paramChild, path, pos, params, paramCount);
+				if (null != route) {
+					return route;
+				}
+			}
+		}
+
+		// 通配可匹配空的剩余路径
+		if (null != node.anyChild) {
+			return find(node.anyChild, path, pos, params, paramCount);
+		}
+		return null;
+	}
+
+	/**
+	 * 记录路径变量下标
+	 *
+	 * @param params 下标数组
+	 * @param index 第几个变量
+	 * @param start 开始下标
+	 * @param end 结束下标（不包括）
+	 */
+	private static void capture(int[] params, int index, int start, int end) {
+		if (null != params) {
+			params[index << 1] = start;
+			params[(index << 1) + 1] = end;
+		}
+	}
+
+	/**
+	 * 插入静态文本，按照最长公共前缀拆分已有节点
+	 *
+	 * @param node 起始节点
+	 * @param staticPart 静态文本，插入后被清空
+	 * @return 静态文本结束处的节点
+	 */
+	private static RouteNode insertStatic(RouteNode node, StringBuilder staticPart) {
+		String text = staticPart.toString();
+		staticPart.setLength(0);
+
+		while (text.length() > 0) {
+			RouteNode child = node.findStaticChild(text.charAt(0));
+			if (null == child) {
+				child = new RouteNode(RouteNode.STATIC, text);
+				node.addStaticChild(child);
+				return child;
+			}
+
+			final String prefix = child.prefix;
+			final int max = Math.min(prefix.length(), text.length());
+			int common = 0;
+			while (common < max && prefix.charAt(common) == text.charAt(common)) {
+				common++;
+			}
+
+			if (common < prefix.length()) {
+				// 拆分已有节点
+				final RouteNode middle = new RouteNode(RouteNode.STATIC, prefix.substring(0, common));
+				child.prefix = prefix.substring(common);
+				middle.addStaticChild(child);
+				node.replaceStaticChild(middle);
+				child = middle;
+			}
+			text = text.substring(common);
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * @param segment 路径段
+	 * @return 是否为路径变量段，例如{id}
+	 */
+	private static boolean isParamSegment(String segment) {
+		return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+	}
+	// --------------------------------------------------------- Private method end
+}
@@ -0,0 +1,179 @@
+package com.xiaoleilu.loServer.transport;
+
+import java.util.concurrent.ThreadFactory;
+
+import cn.hutool.core.exceptions.UtilException;
+import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.log.Log;
+import cn.hutool.log.StaticLog;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * 网络传输层类型<br>
+ * 用于选择Netty的EventLoop和ServerChannel实现，原生传输不可用时自动回退到NIO<br>
+ * io_uring依赖netty-incubator-transport-native-io_uring，通过反射加载，不存在时视为不可用
+ *
+ * @author Looly
+ *
+ */
+public enum TransportType {
+	/** 自动选择，优先级：io_uring &gt; epoll &gt; nio */
+	AUTO,
+	/** JDK NIO Selector */
+	NIO,
+	/** Linux原生epoll */
+	EPOLL,
+	/** Linux原生io_uring（incubator） */
+	IO_URING;
+
+	private static final Log log = StaticLog.get();
+
+	private static final String IO_URING_CLASS = "io.netty.incubator.channel.uring.IOUring";
+	private static final String IO_URING_GROUP_CLASS = "io.netty.incubator.channel.uring.IOUringEventLoopGroup";
+	private static final String IO_URING_CHANNEL_CLASS = "io.netty.incubator.channel.uring.IOUringServerSocketChannel";
+
+	/**
+	 * 当前环境下此传输类型是否可用
+	 *
+	 * @return 是否可用
+	 */
+	public boolean isAvailable() {
+		switch (this) {
+		case NIO:
+		case AUTO:
+			return true;
+		case EPOLL:
+			return isEpollAvailable();
+		case IO_URING:
+			return isIoUringAvailable();
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * 解析为实际可用的传输类型<br>
+	 * AUTO按照优先级选择，指定的原生传输不可用时回退到NIO
+	 *
+	 * @return 实际使用的传输类型，不会为AUTO
+	 */
+	public TransportType resolve() {
+		if (this == AUTO) {
+			if (isIoUringAvailable()) {
+				return IO_URING;
+			}
+			if (isEpollAvailable()) {
+				return EPOLL;
+			}
+			return NIO;
+		}
+
+		if (false == isAvailable()) {
+			log.warn("Transport [{}] is not available, fallback to NIO. Cause: {}", this, unavailabilityCause());
+			return NIO;
+		}
+		return this;
+	}
+
+	/**
+	 * 创建EventLoopGroup
+	 *
+	 * @param threads 线程数，0表示使用Netty默认值（CPU核数 * 2）
+	 * @param name 线程名前缀
+	 * @return EventLoopGroup
+	 */
+	public EventLoopGroup newEventLoopGroup(int threads, String name) {
+		final ThreadFactory threadFactory = new DefaultThreadFactory(name);
+		switch (resolve()) {
+		case EPOLL:
+			return new EpollEventLoopGroup(threads, threadFactory);
+		case IO_URING:
+			try {
+				return (EventLoopGroup) ClassUtil.loadClass(IO_URING_GROUP_CLASS).getConstructor(int.class, ThreadFactory.class).newInstance(threads, threadFactory);
+			} catch (Exception e) {
+				throw new UtilException(e, "Create io_uring EventLoopGroup error!");
+			}
+		default:
+			return new NioEventLoopGroup(threads, threadFactory);
+		}
+	}
+
+	/**
+	 * @return 对应的ServerSocketChannel实现类
+	 */
+	public Class<? extends ServerSocketChannel> serverChannelClass() {
+		switch (resolve()) {
+		case EPOLL:
+			return EpollServerSocketChannel.class;
+		case IO_URING:
+			return ClassUtil.<ServerSocketChannel>loadClass(IO_URING_CHANNEL_CLASS);
+		default:
+			return NioServerSocketChannel.class;
+		}
+	}
+
+	/**
+	 * 解析配置中的传输类型名称，忽略大小写，"io-uring"与"io_uring"等价
+	 *
+	 * @param name 名称
+	 * @return TransportType，名称为空时返回AUTO
+	 */
+	public static TransportType of(String name) {
+		if (StrUtil.isBlank(name)) {
+			return AUTO;
+		}
+		return valueOf(name.trim().replace('-', '_').toUpperCase());
+	}
+
+	// --------------------------------------------------------- Private method start
+	/**
+	 * @return 不可用的原因
+	 */
+	private Throwable unavailabilityCause() {
+		if (this == EPOLL) {
+			return Epoll.unavailabilityCause();
+		}
+		if (this == IO_URING) {
+			try {
+				return (Throwable) ReflectUtil.invokeStatic(ReflectUtil.getMethodByName(ClassUtil.loadClass(IO_URING_CLASS), "unavailabilityCause"));
+			} catch (Exception e) {
+				return e;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return epoll是否可用
+	 */
+	private static boolean isEpollAvailable() {
+		try {
+			return Epoll.isAvailable();
+		} catch (Throwable e) {
+			// 非Linux平台或缺少native库
+			return false;
+		}
+	}
+
+	/**
+	 * @return io_uring是否可用
+	 */
+	private static boolean isIoUringAvailable() {
+		try {
+			final Class<?> ioUringClass = Class.forName(IO_URING_CLASS, true, TransportType.class.getClassLoader());
+			return (Boolean) ReflectUtil.invokeStatic(ReflectUtil.getMethodByName(ioUringClass, "isAvailable"));
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+	// --------------------------------------------------------- Private method end
+}
@@ -0,0 +1,118 @@
+package com.xiaoleilu.loServer.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Range头解析测试
+ *
+ * @author Looly
+ *
+ */
+public class ByteRangeTest {
+
+	private static final long LENGTH = 1000;
+
+	@Test
+	public void suffixRangeTest() {
+		assertRanges("bytes=-500", "500-999");
+		// 后缀长度超出文件长度时为整个文件
+		assertRanges("bytes=-5000", "0-999");
+	}
+
+	@Test
+	public void openEndedRangeTest() {
+		assertRanges("bytes=500-", "500-999");
+		// 结束位置超出文件长度时截断
+		assertRanges("bytes=500-5000", "500-999");
+	}
+
+	@Test
+	public void mergeTest() {
+		// 重叠
+		assertRanges("bytes=0-199,100-299", "0-299");
+		// 相邻
+		assertRanges("bytes=0-99,100-199", "0-199");
+		// 乱序，不相邻的保持分开
+		assertRanges("bytes=600-699,0-99,50-149", "0-149", "600-699");
+		// 后缀范围与普通范围重叠
+		assertRanges("bytes=0-599,-500", "0-999");
+	}
+
+	@Test
+	public void tooManyRangesTest() {
+		final StringBuilder header = new StringBuilder("bytes=0-0");
+		for (int i = 1; i < 16; i++) {
+			header.append(',').append(i * 10).append('-').append(i * 10);
+		}
+		assertEquals(16, ByteRange.parse(header.toString(), LENGTH).size());
+
+		// 超过16个范围时忽略Range头
+		header.append(",900-900");
+		assertNull(ByteRange.parse(header.toString(), LENGTH));
+	}
+
+	@Test
+	public void unsatisfiableTest() {
+		// 空列表表示应返回416
+		assertTrue(ByteRange.parse("bytes=1000-", LENGTH).isEmpty());
+		assertTrue(ByteRange.parse("bytes=2000-3000,1000-1999", LENGTH).isEmpty());
+		assertTrue(ByteRange.parse("bytes=-0", LENGTH).isEmpty());
+		assertTrue(ByteRange.parse("bytes=-500", 0).isEmpty());
+		// 部分可满足时只返回可满足的范围
+		assertRanges("bytes=2000-,0-9", "0-9");
+	}
+
+	@Test
+	public void invalidTest() {
+		assertNull(ByteRange.parse(null, LENGTH));
+		assertNull(ByteRange.parse("items=0-9", LENGTH));
+		assertNull(ByteRange.parse("bytes=", LENGTH));
+		assertNull(ByteRange.parse("bytes=9-0", LENGTH));
+		assertNull(ByteRange.parse("bytes=abc-", LENGTH));
+		assertNull(ByteRange.parse("bytes=-+5", LENGTH));
+		assertNull(ByteRange.parse("bytes=5", LENGTH));
+	}
+
+	@Test
+	public void ifRangeTest() {
+		final String strong = ETag.strong("0123456789abcdef0123456789abcdef");
+		final String weak = ETag.weak(LENGTH, 1500000000000L);
+
+		assertTrue(ETag.strongMatches(strong, strong));
+		// If-Range只使用强比较，弱ETag即使相同也不匹配，应忽略Range发送完整内容
+		assertFalse(ETag.strongMatches(weak, weak));
+		assertFalse(ETag.strongMatches(weak, strong));
+		assertFalse(ETag.strongMatches("W/" + strong, strong));
+		assertFalse(ETag.strongMatches(null, strong));
+	}
+
+	@Test
+	public void contentRangeTest() {
+		final ByteRange range = ByteRange.parse("bytes=-500", LENGTH).get(0);
+		assertEquals(500, range.getLength());
+		assertEquals("bytes 500-999/1000", range.toContentRange(LENGTH));
+	}
+
+	/**
+	 * 断言解析结果
+	 *
+	 * @param header Range头
+	 * @param expected 期望的范围，例如0-499
+	 */
+	private static void assertRanges(String header, String... expected) {
+		final List<ByteRange> ranges = ByteRange.parse(header, LENGTH);
+		assertNotNull(header, ranges);
+		assertEquals(header, expected.length, ranges.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(header, expected[i], ranges.get(i).toString());
+		}
+	}
+}
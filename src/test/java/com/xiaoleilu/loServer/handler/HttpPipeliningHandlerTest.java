@@ -0,0 +1,204 @@
+package com.xiaoleilu.loServer.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.channels.ClosedChannelException;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 管线化响应排序测试
+ *
+ * @author Looly
+ *
+ */
+public class HttpPipeliningHandlerTest {
+
+	@Test
+	public void reorderTest() {
+		final EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(16));
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(2, response(2)));
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, response(1)));
+		// 未轮到的响应暂存
+		assertNull(channel.readOutbound());
+
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(0, response(0)));
+		// 连续完成的响应按序号依次写出
+		assertResponse(channel.readOutbound(), 0);
+		assertResponse(channel.readOutbound(), 1);
+		assertResponse(channel.readOutbound(), 2);
+		assertNull(channel.readOutbound());
+
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(3, response(3)));
+		assertResponse(channel.readOutbound(), 3);
+		assertFalse(channel.finish());
+	}
+
+	@Test
+	public void partialResponseTest() {
+		final EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(16));
+		// 1的响应头和部分内容先于0完成
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)));
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, content("a", false)));
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(2, response(2)));
+		// 100 Continue不是响应的结束
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(0, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE)));
+		assertEquals(HttpResponseStatus.CONTINUE, ((FullHttpResponse) channel.readOutbound()).status());
+		assertNull(channel.readOutbound());
+
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(0, response(0)));
+		assertResponse(channel.readOutbound(), 0);
+		// 1已写出的部分随0之后写出，2仍等待1结束
+		assertEquals(HttpResponseStatus.OK, ((DefaultHttpResponse) channel.readOutbound()).status());
+		assertContent(channel.readOutbound(), "a");
+		assertNull(channel.readOutbound());
+
+		// 1的剩余部分直接写出，之后写出暂存的2
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, content("b", true)));
+		assertContent(channel.readOutbound(), "b");
+		assertResponse(channel.readOutbound(), 2);
+		assertFalse(channel.finish());
+	}
+
+	@Test
+	public void overflowTest() {
+		final EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(2));
+		final FullHttpResponse pending1 = response(1);
+		final FullHttpResponse pending2 = response(2);
+		final FullHttpResponse overflow = response(3);
+		final ChannelFuture future1 = channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, pending1));
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(2, pending2));
+		assertTrue(channel.isActive());
+
+		// 超出暂存上限时关闭连接，超出的消息被释放
+		final ChannelFuture overflowFuture = channel.writeAndFlush(HttpPipeliningHandler.sequenced(3, overflow));
+		channel.runPendingTasks();
+		assertFalse(channel.isActive());
+		assertTrue(overflowFuture.cause() instanceof ClosedChannelException);
+		assertEquals(0, overflow.refCnt());
+
+		// 已暂存的消息随连接关闭被释放
+		assertTrue(future1.cause() instanceof ClosedChannelException);
+		assertEquals(0, pending1.refCnt());
+		assertEquals(0, pending2.refCnt());
+		assertNull(channel.readOutbound());
+	}
+
+	@Test
+	public void releaseOnCloseTest() {
+		final EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(16));
+		final FullHttpResponse pending1 = response(1);
+		final FullHttpResponse pending2 = response(2);
+		final ChannelFuture future1 = channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, pending1));
+		final ChannelFuture future2 = channel.writeAndFlush(HttpPipeliningHandler.sequenced(2, pending2));
+
+		channel.close();
+		assertTrue(future1.cause() instanceof ClosedChannelException);
+		assertTrue(future2.cause() instanceof ClosedChannelException);
+		assertEquals(0, pending1.refCnt());
+		assertEquals(0, pending2.refCnt());
+		assertFalse(channel.finish());
+	}
+
+	@Test
+	public void sequencedMessageTest() {
+		final FullHttpResponse response = response(0);
+		final Object msg = HttpPipeliningHandler.sequenced(0, response);
+
+		// 引用计数委托给原消息
+		ReferenceCountUtil.retain(msg);
+		assertEquals(2, response.refCnt());
+		assertEquals(2, ReferenceCountUtil.refCnt(msg));
+		assertFalse(ReferenceCountUtil.release(msg));
+		// 未经过HttpPipeliningHandler就被丢弃时原消息同样被释放
+		assertTrue(ReferenceCountUtil.release(msg));
+		assertEquals(0, response.refCnt());
+
+		// 无需排序时为原消息
+		final FullHttpResponse unsequenced = response(0);
+		assertSame(unsequenced, HttpPipeliningHandler.sequenced(-1, unsequenced));
+		unsequenced.release();
+	}
+
+	@Test
+	public void unsequencedTest() {
+		final EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(16));
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(1, response(1)));
+		// 没有序号的消息（例如WebSocket帧）直接写出
+		channel.writeAndFlush(Unpooled.copiedBuffer("raw", CharsetUtil.UTF_8));
+		assertContent(channel.readOutbound(), "raw");
+		assertNull(channel.readOutbound());
+
+		channel.writeAndFlush(HttpPipeliningHandler.sequenced(0, response(0)));
+		assertResponse(channel.readOutbound(), 0);
+		assertResponse(channel.readOutbound(), 1);
+		assertFalse(channel.finish());
+	}
+
+	/**
+	 * 创建完整响应，内容为序号
+	 *
+	 * @param sequence 序号
+	 * @return 响应
+	 */
+	private static FullHttpResponse response(int sequence) {
+		return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer(String.valueOf(sequence), CharsetUtil.UTF_8));
+	}
+
+	/**
+	 * 创建响应内容
+	 *
+	 * @param text 内容
+	 * @param isLast 是否为最后一块
+	 * @return HttpContent
+	 */
+	private static HttpContent content(String text, boolean isLast) {
+		return isLast ? new DefaultLastHttpContent(Unpooled.copiedBuffer(text, CharsetUtil.UTF_8))
+				: new DefaultHttpContent(Unpooled.copiedBuffer(text, CharsetUtil.UTF_8));
+	}
+
+	/**
+	 * 断言写出的完整响应并释放
+	 *
+	 * @param msg 写出的消息
+	 * @param sequence 期望的序号
+	 */
+	private static void assertResponse(Object msg, int sequence) {
+		assertTrue(String.valueOf(msg), msg instanceof FullHttpResponse);
+		assertContent(msg, String.valueOf(sequence));
+	}
+
+	/**
+	 * 断言写出的内容并释放
+	 *
+	 * @param msg 写出的消息，HttpContent或ByteBuf
+	 * @param expected 期望的内容
+	 */
+	private static void assertContent(Object msg, String expected) {
+		try {
+			final ByteBuf content = (msg instanceof HttpContent) ? ((HttpContent) msg).content() : (ByteBuf) msg;
+			assertEquals(expected, content.toString(CharsetUtil.UTF_8));
+		} finally {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.xiaoleilu.loServer.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * 路径模式匹配和覆盖关系测试
+ *
+ * @author Looly
+ *
+ */
+public class PathPatternTest {
+
+	/** 交叉检查使用的模式 */
+	private static final String[] PATTERNS = { "/", "/*", "/**", "/user", "/user/*", "/user/**", "/user/list", "/user/{id}",
+			"/user/{id}/orders/{oid}", "/user/*/posts", "/users/{id}", "/a/b/*", "/a/{x}/c", "/a/b/d", "/{x}/b", "/static/**", "/api/v1/*" };
+	/** 交叉检查使用的请求路径 */
+	private static final String[] PATHS = { "/", "/user", "/user/", "/user/list", "/user/list/", "/user/5", "/user/5/orders/6", "/user/5/posts",
+			"/users/5", "/userx", "/a/b/c", "/a/b/d", "/a/b/", "/a/z/c", "/a/b", "/x/b", "/static", "/static/", "/static/js/app.js", "/api/v1/",
+			"/api/v1/items/1", "/api/v2/items" };
+
+	@Test
+	public void matchesTest() {
+		assertTrue(new PathPattern("/user/{id}").matches("/user/5"));
+		assertFalse(new PathPattern("/user/{id}").matches("/user/5/orders"));
+		assertFalse(new PathPattern("/user/{id}").matches("/user/"));
+		assertTrue(new PathPattern("/user/*").matches("/user/5/orders"));
+		assertTrue(new PathPattern("/user/*").matches("/user/"));
+		assertFalse(new PathPattern("/user/*").matches("/user"));
+		assertTrue(new PathPattern("/user/*/posts").matches("/user/5/posts"));
+		assertFalse(new PathPattern("/user/*/posts").matches("/user/5/6/posts"));
+		assertTrue(new PathPattern("/user/list").matches("/user/list"));
+		assertFalse(new PathPattern("/user/list").matches("/user/list/"));
+	}
+
+	@Test
+	public void matchAllTest() {
+		assertTrue(new PathPattern("/*").isMatchAll());
+		assertTrue(new PathPattern("/**").isMatchAll());
+		assertFalse(new PathPattern("/").isMatchAll());
+		assertFalse(new PathPattern("/{x}").isMatchAll());
+		assertFalse(new PathPattern("/api/*").isMatchAll());
+	}
+
+	@Test
+	public void coverAllTest() {
+		assertCover("/user/*", "/user/{id}/orders/{oid}", PathPattern.COVER_ALL);
+		assertCover("/user/*", "/user/{id}", PathPattern.COVER_ALL);
+		assertCover("/user/**", "/user/*/posts", PathPattern.COVER_ALL);
+		assertCover("/*", "/a/{x}/c", PathPattern.COVER_ALL);
+		// 静态路由直接匹配
+		assertCover("/user/{id}", "/user/list", PathPattern.COVER_ALL);
+		assertCover("/user/*", "/user/list", PathPattern.COVER_ALL);
+	}
+
+	@Test
+	public void coverPartialTest() {
+		// 静态模式只匹配路由能匹配的部分路径
+		assertCover("/user/list", "/user/{id}", PathPattern.COVER_PARTIAL);
+		assertCover("/a/b/*", "/a/{x}/c", PathPattern.COVER_PARTIAL);
+		assertCover("/user/{id}", "/user/*", PathPattern.COVER_PARTIAL);
+		assertCover("/user/{id}", "/user/{id}/orders/{oid}", PathPattern.COVER_PARTIAL);
+		assertCover("/{x}/b", "/a/{x}/c", PathPattern.COVER_PARTIAL);
+	}
+
+	@Test
+	public void coverNoneTest() {
+		assertCover("/user/*", "/users/{id}", PathPattern.COVER_NONE);
+		assertCover("/api/v1/*", "/api/v2/{id}", PathPattern.COVER_NONE);
+		assertCover("/user/{id}", "/user/list/", PathPattern.COVER_NONE);
+		assertCover("/a/b/*", "/static/**", PathPattern.COVER_NONE);
+	}
+
+	/**
+	 * 覆盖关系与实际匹配结果一致：COVER_ALL时路由匹配的路径都被模式匹配，COVER_NONE时都不被匹配<br>
+	 * 判断错误会导致Filter被跳过或错误执行
+	 */
+	@Test
+	public void coverConsistencyTest() {
+		for (String filterPattern : PATTERNS) {
+			final PathPattern pattern = new PathPattern(filterPattern);
+			for (String routePattern : PATTERNS) {
+				final PathPattern route = new PathPattern(routePattern);
+				final int cover = pattern.cover(routePattern);
+				for (String path : PATHS) {
+					if (false == route.matches(path)) {
+						continue;
+					}
+					final String message = filterPattern + " over " + routePattern + " on " + path;
+					if (PathPattern.COVER_ALL == cover) {
+						assertTrue(message, pattern.matches(path));
+					} else if (PathPattern.COVER_NONE == cover) {
+						assertFalse(message, pattern.matches(path));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 断言覆盖关系
+	 *
+	 * @param pattern 模式
+	 * @param routePattern 路由的路径模式
+	 * @param expected 期望的覆盖关系
+	 */
+	private static void assertCover(String pattern, String routePattern, int expected) {
+		assertEquals(pattern + " over " + routePattern, expected, new PathPattern(pattern).cover(routePattern));
+	}
+}
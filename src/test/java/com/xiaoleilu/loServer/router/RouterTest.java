@@ -0,0 +1,177 @@
+package com.xiaoleilu.loServer.router;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.xiaoleilu.loServer.action.Action;
+import com.xiaoleilu.loServer.exception.ServerSettingException;
+import com.xiaoleilu.loServer.handler.Request;
+import com.xiaoleilu.loServer.handler.Response;
+
+/**
+ * 路由匹配测试
+ *
+ * @author Looly
+ *
+ */
+public class RouterTest {
+
+	private static final Action ACTION = new Action() {
+		@Override
+		public void doAction(Request request, Response response) {
+		}
+	};
+
+	@Test
+	public void precedenceTest() {
+		final Router router = router("/user/*", "/user/{id}", "/user/list");
+		// 静态路径 > 路径变量 > 通配
+		assertMatch(router, "/user/list", "/user/list");
+		assertMatch(router, "/user/5", "/user/{id}");
+		assertMatch(router, "/user/5/orders", "/user/*");
+		// 静态路径是路径变量的前缀时仍按整段匹配
+		assertMatch(router, "/user/listing", "/user/{id}");
+
+		// 注册顺序不影响优先级
+		final Router reversed = router("/user/list", "/user/{id}", "/user/*");
+		assertMatch(reversed, "/user/list", "/user/list");
+		assertMatch(reversed, "/user/5", "/user/{id}");
+	}
+
+	@Test
+	public void backtrackTest() {
+		final Router router = router("/a/{x}/c", "/a/b/d");
+		// 静态子节点/a/b/之后无法匹配c，回溯到路径变量
+		assertMatch(router, "/a/b/c", "/a/{x}/c");
+		assertMatch(router, "/a/b/d", "/a/b/d");
+		assertMatch(router, "/a/z/c", "/a/{x}/c");
+		assertNull(router.match("/a/z/d"));
+
+		// 路径变量之后无法匹配时回溯到通配
+		final Router withAny = router("/a/{x}/c", "/a/**");
+		assertMatch(withAny, "/a/b/c", "/a/{x}/c");
+		assertMatch(withAny, "/a/b/e", "/a/**");
+	}
+
+	@Test
+	public void trailingSlashTest() {
+		// 末尾的"/"是路径的一部分，不会被忽略
+		final Router router = router("/user/{id}", "/user/list");
+		assertNull(router.match("/user/5/"));
+		assertNull(router.match("/user/list/"));
+
+		// 有通配时由通配匹配
+		router.add("/user/*", ACTION);
+		assertMatch(router, "/user/5/", "/user/*");
+		assertMatch(router, "/user/list/", "/user/*");
+
+		// /static/**只匹配/static/下的路径，不匹配/static本身
+		final Router staticRouter = router("/static/**");
+		assertNull(staticRouter.match("/static"));
+		assertMatch(staticRouter, "/static/", "/static/**");
+		assertMatch(staticRouter, "/static/js/app.js", "/static/**");
+	}
+
+	@Test
+	public void paramCaptureTest() {
+		final Router router = router("/user/{id}/orders/{oid}", "/files/**", "/user/*/posts");
+		final int[] params = new int[router.getMaxParams() * 2];
+
+		String path = "/user/12/orders/345";
+		ActionRoute route = router.match(path, params);
+		assertArrayEquals(new String[] { "id", "oid" }, route.getParamNames());
+		assertEquals("12", path.substring(params[0], params[1]));
+		assertEquals("345", path.substring(params[2], params[3]));
+
+		// 匿名通配捕获但没有变量名
+		path = "/user/abc/posts";
+		route = router.match(path, params);
+		assertArrayEquals(new String[] { null }, route.getParamNames());
+		assertEquals("abc", path.substring(params[0], params[1]));
+
+		// 末尾通配捕获剩余路径，可以为空
+		path = "/files/a/b.txt";
+		route = router.match(path, params);
+		assertArrayEquals(new String[] { Router.ANY_PARAM_NAME }, route.getParamNames());
+		assertEquals("a/b.txt", path.substring(params[0], params[1]));
+		router.match("/files/", params);
+		assertEquals(params[0], params[1]);
+
+		// 路径变量不能为空
+		assertNull(router.match("/user//orders/1"));
+	}
+
+	@Test
+	public void backtrackCaptureTest() {
+		// 回溯后使用最终匹配的路由的捕获
+		final Router router = router("/a/{x}/c", "/a/{y}/{z}/d");
+		final int[] params = new int[router.getMaxParams() * 2];
+		final String path = "/a/b/q/d";
+		assertEquals("/a/{y}/{z}/d", router.match(path, params).getPattern());
+		assertEquals("b", path.substring(params[0], params[1]));
+		assertEquals("q", path.substring(params[2], params[3]));
+	}
+
+	@Test
+	public void overrideAndClearTest() {
+		final Router router = router("/hello", "/user/{id}");
+		final Action other = new Action() {
+			@Override
+			public void doAction(Request request, Response response) {
+			}
+		};
+		router.add("/hello", other);
+		assertEquals(other, router.match("/hello").getAction());
+		assertEquals(2, router.getRoutes().size());
+		assertEquals(1, router.getMaxParams());
+
+		router.clear();
+		assertNull(router.match("/hello"));
+		assertEquals(0, router.getRoutes().size());
+		assertEquals(0, router.getMaxParams());
+	}
+
+	@Test(expected = ServerSettingException.class)
+	public void partialWildcardTest() {
+		new Router().add("/files/*.txt", ACTION);
+	}
+
+	@Test(expected = ServerSettingException.class)
+	public void partialParamTest() {
+		new Router().add("/user/id-{id}", ACTION);
+	}
+
+	@Test(expected = ServerSettingException.class)
+	public void anyNotLastTest() {
+		new Router().add("/static/**/js", ACTION);
+	}
+
+	/**
+	 * 创建路由器
+	 *
+	 * @param patterns 路径模式
+	 * @return Router
+	 */
+	private static Router router(String... patterns) {
+		final Router router = new Router();
+		for (String pattern : patterns) {
+			router.add(pattern, ACTION);
+		}
+		return router;
+	}
+
+	/**
+	 * 断言路径匹配的路由
+	 *
+	 * @param router 路由器
+	 * @param path 请求路径
+	 * @param pattern 期望的路径模式
+	 */
+	private static void assertMatch(Router router, String path, String pattern) {
+		final ActionRoute route = router.match(path);
+		assertEquals(path, pattern, (null == route) ? null : route.getPattern());
+	}
+}